@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.cli;
+
+import chipmunk.binary.*;
+import chipmunk.compiler.ChipmunkCompiler;
+import chipmunk.compiler.ChipmunkSource;
+import chipmunk.compiler.ParsedModule;
+import chipmunk.vm.ModuleLoader;
+import chipmunk.vm.jvm.CompiledModuleCache;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * An on-disk cache of compiled modules that lets the CLI compile incrementally. For every source file
+ * the cache records a hash of its contents, the modules it defines, the modules those import, and a hash
+ * of the imported modules that aren't compiled from sources (e.g. binaries loaded from binary directories).
+ * The compiled modules themselves are stored as binaries in the cache directory, one per module, named
+ * after the module and the path of the source defining it - several sources may define modules with the
+ * same name, such as sources without a module declaration.
+ *
+ * A source is recompiled if its contents changed, if its binaries are missing or unreadable, if any of the
+ * binary modules it imports changed, or if it imports a module defined by a source that is being recompiled.
+ * Everything else is loaded from the cache.
+ *
+ * Cached binaries are memory mapped when they are read, so they are never modified in place: binaries are
+ * written to a temporary file and moved over the old binary, and binaries read during this run are never
+ * deleted. Binaries that are no longer referenced by the index are deleted by a later run.
+ */
+public class BuildCache {
+
+    public static final String INDEX_FILE = "index";
+    protected static final String INDEX_HEADER = "chipmunk-build-cache " + BinaryConstants.BINARY_VERSION;
+
+    public record Entry(String hash, List<String> modules, Set<String> imports, String dependencyHash) {}
+
+    protected final Path directory;
+    protected final Map<Path, Entry> entries;
+    protected final Set<Path> recompiled;
+    protected final Set<Path> loaded;
+
+    public BuildCache(Path directory){
+        this.directory = directory;
+        entries = new LinkedHashMap<>();
+        recompiled = new LinkedHashSet<>();
+        loaded = new HashSet<>();
+    }
+
+    public Path getDirectory(){
+        return directory;
+    }
+
+    public Map<Path, Entry> getEntries(){
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Returns the sources that were recompiled by the last call to compile().
+     */
+    public Set<Path> getRecompiled(){
+        return Collections.unmodifiableSet(recompiled);
+    }
+
+    /**
+     * Reads the cache index. A missing index, or one written for a different binary version, leaves the
+     * cache empty so that everything will be recompiled.
+     */
+    public void load() throws IOException {
+        entries.clear();
+
+        Path index = directory.resolve(INDEX_FILE);
+        if(!Files.exists(index)){
+            return;
+        }
+
+        List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+        if(lines.isEmpty() || !lines.get(0).equals(INDEX_HEADER)){
+            return;
+        }
+
+        for(String line : lines.subList(1, lines.size())){
+            String[] fields = line.split("\t", -1);
+            if(fields.length != 5){
+                continue;
+            }
+            entries.put(Path.of(fields[0]), new Entry(fields[1], split(fields[2]), new LinkedHashSet<>(split(fields[3])), fields[4]));
+        }
+    }
+
+    public void save() throws IOException {
+        Files.createDirectories(directory);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(INDEX_HEADER);
+        entries.forEach((source, entry) -> lines.add(String.join("\t",
+                source.toString(),
+                entry.hash(),
+                String.join(",", entry.modules()),
+                String.join(",", entry.imports()),
+                entry.dependencyHash())));
+
+        Path index = directory.resolve(INDEX_FILE);
+        Path temp = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+        try{
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            replace(temp, index);
+        }finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Compiles the given sources, reusing cached binaries for sources that don't need to be recompiled,
+     * and updates the cache. The uncached sources (e.g. a script read from standard input) are always
+     * compiled. Modules are returned in source order, uncached sources first.
+     */
+    public BinaryModule[] compile(ChipmunkCompiler compiler, List<Path> sourcePaths, List<ChipmunkSource> uncached) throws IOException {
+        recompiled.clear();
+
+        List<Path> sources = sourcePaths.stream()
+                .map(p -> p.toAbsolutePath().normalize())
+                .distinct()
+                .toList();
+
+        Map<Path, String> hashes = new LinkedHashMap<>();
+        for(Path source : sources){
+            hashes.put(source, hash(Files.readAllBytes(source)));
+        }
+
+        // Modules the sources defined when they were last compiled. Imports of any other module are
+        // resolved from binaries outside the cache, which are tracked by their content.
+        Set<String> sourceModules = new HashSet<>();
+        for(Path source : sources){
+            Entry entry = entries.get(source);
+            if(entry != null){
+                sourceModules.addAll(entry.modules());
+            }
+        }
+
+        Set<Path> dirty = new LinkedHashSet<>();
+        for(Path source : sources){
+            Entry entry = entries.get(source);
+            if(entry == null || !entry.hash().equals(hashes.get(source))
+                    || !entry.dependencyHash().equals(dependencyHash(compiler.getModuleLoader(), entry.imports(), sourceModules))){
+                dirty.add(source);
+            }
+        }
+
+        Map<Path, List<BinaryModule>> cached = new HashMap<>();
+        Map<Path, List<BinaryModule>> compiled;
+        List<BinaryModule> compiledUncached;
+        while(true){
+            addDependents(sources, dirty);
+
+            cached.clear();
+            for(Path source : sources){
+                if(!dirty.contains(source)){
+                    List<BinaryModule> modules = readCached(source, entries.get(source));
+                    if(modules == null){
+                        dirty.add(source);
+                    }else{
+                        cached.put(source, modules);
+                    }
+                }
+            }
+
+            // Reading a source's binaries failed, so the sources importing it must be recompiled too
+            if(cached.size() + dirty.size() != sources.size()){
+                continue;
+            }
+
+            cached.values().forEach(compiler.getModuleLoader()::addToLoaded);
+
+            List<Path> toCompile = sources.stream().filter(dirty::contains).toList();
+            compiled = new HashMap<>();
+            compiledUncached = compile(compiler, toCompile, uncached, compiled);
+
+            // A recompiled source may now define a module that an unchanged source imports
+            Set<String> defined = new HashSet<>();
+            compiled.values().forEach(modules -> modules.forEach(m -> defined.add(m.getName())));
+            compiledUncached.forEach(m -> defined.add(m.getName()));
+
+            boolean affected = false;
+            for(Path source : sources){
+                if(!dirty.contains(source) && !Collections.disjoint(entries.get(source).imports(), defined)){
+                    dirty.add(source);
+                    affected = true;
+                }
+            }
+
+            if(!affected){
+                break;
+            }
+        }
+
+        Set<String> defined = new HashSet<>();
+        compiled.values().forEach(modules -> defined.addAll(moduleNames(modules)));
+        cached.values().forEach(modules -> defined.addAll(moduleNames(modules)));
+
+        for(Path source : sources){
+            if(compiled.containsKey(source)){
+                List<BinaryModule> modules = compiled.get(source);
+                if(writeCached(source, modules)){
+                    Set<String> imports = importNames(modules);
+                    entries.put(source, new Entry(hashes.get(source), moduleNames(modules), imports,
+                            dependencyHash(compiler.getModuleLoader(), imports, defined)));
+                }else{
+                    // Leave the source out of the index so it is recompiled next time
+                    entries.remove(source);
+                }
+            }
+        }
+        recompiled.addAll(compiled.keySet());
+        prune(hashes.keySet());
+
+        List<BinaryModule> all = new ArrayList<>(compiledUncached);
+        for(Path source : sources){
+            all.addAll(compiled.containsKey(source) ? compiled.get(source) : cached.get(source));
+        }
+        return all.toArray(new BinaryModule[0]);
+    }
+
+    protected List<BinaryModule> compile(ChipmunkCompiler compiler, List<Path> sources, List<ChipmunkSource> uncached, Map<Path, List<BinaryModule>> compiled) throws IOException {
+        // Parse each source separately so that the compiled modules can be matched back up with their sources
+        List<ParsedModule> parsed = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for(ChipmunkSource source : uncached){
+            counts.add(parse(compiler, source, parsed));
+        }
+        for(Path source : sources){
+            try(InputStream is = Files.newInputStream(source)){
+                counts.add(parse(compiler, new ChipmunkSource(is, source.getFileName().toString()), parsed));
+            }
+        }
+
+        List<BinaryModule> modules = Arrays.asList(compiler.compile(parsed));
+
+        int start = 0;
+        List<BinaryModule> fromUncached = new ArrayList<>();
+        for(int i = 0; i < counts.size(); i++){
+            List<BinaryModule> fromSource = modules.subList(start, start + counts.get(i));
+            if(i < uncached.size()){
+                fromUncached.addAll(fromSource);
+            }else{
+                compiled.put(sources.get(i - uncached.size()), fromSource);
+            }
+            start += counts.get(i);
+        }
+
+        return fromUncached;
+    }
+
+    protected int parse(ChipmunkCompiler compiler, ChipmunkSource source, List<ParsedModule> parsed){
+        List<ParsedModule> modules = compiler.parse(source);
+        parsed.addAll(modules);
+        return modules.size();
+    }
+
+    /**
+     * Marks every source that (directly or transitively) imports a module defined by a dirty source as dirty.
+     */
+    protected void addDependents(List<Path> sources, Set<Path> dirty){
+        boolean changed = true;
+        while(changed){
+            Set<String> dirtyModules = new HashSet<>();
+            for(Path source : dirty){
+                Entry entry = entries.get(source);
+                if(entry != null){
+                    dirtyModules.addAll(entry.modules());
+                }
+            }
+
+            changed = false;
+            for(Path source : sources){
+                if(!dirty.contains(source) && !Collections.disjoint(entries.get(source).imports(), dirtyModules)){
+                    dirty.add(source);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes the binary modules that are imported but not defined by any source. These are compiled against,
+     * so the sources importing them must be recompiled when they change.
+     */
+    protected String dependencyHash(ModuleLoader loader, Set<String> imports, Set<String> sourceModules) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for(String name : new TreeSet<>(imports)){
+            if(sourceModules.contains(name)){
+                continue;
+            }
+
+            String moduleHash;
+            try{
+                BinaryModule module = loader != null ? loader.loadBinary(name) : null;
+                moduleHash = module != null ? CompiledModuleCache.contentHash(module) : "none";
+            }catch(BinaryFormatException e){
+                moduleHash = "unreadable";
+            }
+            sb.append(name).append('=').append(moduleHash).append('\n');
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected List<BinaryModule> readCached(Path source, Entry entry){
+        List<BinaryModule> modules = new ArrayList<>();
+        for(String name : entry.modules()){
+            Path path = binaryPath(source, name);
+            try{
+                modules.add(new BinaryReader().readModule(path));
+                loaded.add(path);
+            }catch(IOException | BinaryFormatException e){
+                return null;
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * Writes the source's binaries, returning false if any of them couldn't be written.
+     */
+    protected boolean writeCached(Path source, List<BinaryModule> modules) throws IOException {
+        Files.createDirectories(directory);
+        for(BinaryModule module : modules){
+            Path path = binaryPath(source, module.getName());
+            Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try{
+                try(OutputStream os = new BufferedOutputStream(Files.newOutputStream(temp))){
+                    new BinaryWriter().writeModule(os, module);
+                }
+                replace(temp, path);
+            }catch(IllegalConstantTypeException e){
+                // Not representable as a binary
+                return false;
+            }catch(IOException e){
+                // The old binary may be in use (e.g. by another process on Windows)
+                return false;
+            }finally{
+                Files.deleteIfExists(temp);
+            }
+        }
+        return true;
+    }
+
+    protected void replace(Path temp, Path path) throws IOException {
+        // Readers must never see a partially written file, and mapped binaries must never change
+        try{
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(AtomicMoveNotSupportedException e){
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Drops entries for sources that are no longer being compiled, then deletes the binaries that aren't
+     * referenced by any entry. Binaries read during this run are kept even if they are no longer referenced,
+     * since they may still be mapped; a later run deletes them.
+     */
+    protected void prune(Set<Path> sources) throws IOException {
+        entries.keySet().removeIf(source -> !sources.contains(source));
+
+        if(!Files.isDirectory(directory)){
+            return;
+        }
+
+        Set<Path> referenced = new HashSet<>();
+        entries.forEach((source, entry) -> entry.modules().forEach(m -> referenced.add(binaryPath(source, m))));
+
+        List<Path> binaries;
+        try(var files = Files.list(directory)){
+            binaries = files.filter(f -> f.getFileName().toString().endsWith("." + ChipmunkCLI.CHIPMUNK_BIN_EXTENSION)).toList();
+        }
+
+        for(Path binary : binaries){
+            if(!referenced.contains(binary) && !loaded.contains(binary)){
+                try{
+                    Files.deleteIfExists(binary);
+                }catch(IOException e){
+                    // Still in use - try again next time
+                }
+            }
+        }
+    }
+
+    protected Path binaryPath(Path source, String moduleName){
+        String sourceKey = hash(source.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return directory.resolve(moduleName + "." + sourceKey + "." + ChipmunkCLI.CHIPMUNK_BIN_EXTENSION);
+    }
+
+    protected static List<String> moduleNames(List<BinaryModule> modules){
+        return modules.stream().map(BinaryModule::getName).toList();
+    }
+
+    protected static Set<String> importNames(List<BinaryModule> modules){
+        Set<String> imports = new LinkedHashSet<>();
+        for(BinaryModule module : modules){
+            for(BinaryImport binaryImport : module.getImports()){
+                imports.add(binaryImport.getName());
+            }
+        }
+        imports.removeAll(moduleNames(modules));
+        return imports;
+    }
+
+    protected static List<String> split(String field){
+        return field.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(field.split(",")));
+    }
+
+    protected static String hash(byte[] content){
+        try{
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package chipmunk.cli.commands;
 import chipmunk.binary.BinaryModule;
 import chipmunk.binary.BinaryNamespace;
 import chipmunk.binary.FieldType;
+import chipmunk.cli.BuildCache;
 import chipmunk.cli.CLIUtil;
 import chipmunk.cli.ChipmunkCLI;
 import chipmunk.compiler.ChipmunkCompiler;
@@ -37,6 +38,7 @@ import chipmunk.vm.ChipmunkScript;
 import chipmunk.vm.ChipmunkVM;
 import chipmunk.vm.ModuleLoader;
 import chipmunk.vm.jvm.CompilationUnit;
+import chipmunk.vm.jvm.ModuleClassStore;
 import chipmunk.vm.locators.FileModuleLocator;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -54,6 +56,7 @@ import java.util.concurrent.Callable;
 public class Run implements Callable<Integer> {
 
     public static final String NO_SOURCE = "";
+    public static final String CLASSES_DIR = "classes";
 
     @Option(names = {"-e", "-entrypoint"}, description = "Entrypoint in the form module.name::method")
     protected String entryPoint;
@@ -64,6 +67,9 @@ public class Run implements Callable<Integer> {
     @Option(names = {"-b", "-binDirs"}, defaultValue = "", description = "Comma separated list of directories to load binary modules from")
     protected String binDirs;
 
+    @Option(names = {"-c", "-cache"}, defaultValue = "", description = "Directory to cache compiled modules and their generated classes in. When set, only sources that changed (and the sources that import them) are recompiled, and module classes are reused between runs")
+    protected String cacheDir;
+
     @Option(names = {"-d", "-debug"}, defaultValue = "false", description = "Enable stack traces from compiler/script")
     protected boolean debug;
 
@@ -133,22 +139,36 @@ public class Run implements Callable<Integer> {
                 }
             }
 
-            for(Path sourcePath : sourcePaths){
-                sources.add(new ChipmunkSource(Files.newInputStream(sourcePath), sourcePath.getFileName().toString()));
-            }
-
-            if(sources.size() == 0){
+            if(sources.size() == 0 && sourcePaths.size() == 0){
                 System.out.println("No source specified, exiting");
                 return 1;
             }
 
             // Compile source & run
-            Compilation compilation = new Compilation();
-            compilation.getSources().addAll(sources);
-
             ChipmunkCompiler compiler = new ChipmunkCompiler(loader);
             compiler.setModuleLoader(loader);
-            BinaryModule[] modules  = compiler.compile(compilation);
+
+            BinaryModule[] modules;
+            if(!cacheDir.equals("")){
+                BuildCache cache = new BuildCache(Paths.get(cacheDir));
+                cache.load();
+                modules = cache.compile(compiler, sourcePaths, sources);
+                cache.save();
+
+                loader.setClassStore(new ModuleClassStore(cache.getDirectory().resolve(CLASSES_DIR)));
+
+                if(debug){
+                    System.err.println("Recompiled " + cache.getRecompiled().size() + " of " + sourcePaths.size() + " sources");
+                }
+            }else{
+                for(Path sourcePath : sourcePaths){
+                    sources.add(new ChipmunkSource(Files.newInputStream(sourcePath), sourcePath.getFileName().toString()));
+                }
+
+                Compilation compilation = new Compilation();
+                compilation.getSources().addAll(sources);
+                modules = compiler.compile(compilation);
+            }
 
             loader.addToLoaded(Arrays.asList(modules));
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.cli
+
+import chipmunk.binary.BinaryWriter
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.ModuleLoader
+import chipmunk.vm.locators.FileModuleLocator
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class BuildCacheSpecification extends Specification {
+
+    Path sources = Files.createTempDirectory("chipmunk-sources")
+    Path binaries = Files.createTempDirectory("chipmunk-binaries")
+    Path directory = Files.createTempDirectory("chipmunk-cache")
+
+    BuildCache cache
+
+    def cleanup(){
+        sources.toFile().deleteDir()
+        binaries.toFile().deleteDir()
+        directory.toFile().deleteDir()
+    }
+
+    def source(String name, String code){
+        Files.writeString(sources.resolve(name), code)
+    }
+
+    def binary(String name, String code){
+        def module = new ChipmunkCompiler().compile(new ByteArrayInputStream(code.getBytes()), name + ".chp")[0]
+        Files.newOutputStream(binaries.resolve(name + FileModuleLocator.BINARY_FILE_EXTENSION)).withCloseable {
+            new BinaryWriter().writeModule(it, module)
+        }
+    }
+
+    def compile(){
+        def loader = new ModuleLoader()
+        loader.addLocator(new FileModuleLocator([binaries]))
+
+        cache = new BuildCache(directory)
+        cache.load()
+        def modules = cache.compile(new ChipmunkCompiler(loader), Files.list(sources).sorted().toList(), [])
+        cache.save()
+        return modules
+    }
+
+    def recompiled(){
+        return cache.getRecompiled().collect { it.getFileName().toString() }.sort()
+    }
+
+    def "Unchanged sources are loaded from the cache"(){
+        when:
+        source("a.chp", "module a\ndef f(){ return 1 }\n")
+        source("main.chp", "module main\nimport a.f\ndef main(){ return f() }\n")
+        compile()
+        def firstRecompiled = recompiled()
+        def modules = compile()
+
+        then:
+        firstRecompiled == ["a.chp", "main.chp"]
+        recompiled().isEmpty()
+        modules*.getName() == ["a", "main"]
+    }
+
+    def "Edited sources and the sources importing them are recompiled"(){
+        when:
+        source("a.chp", "module a\ndef f(){ return 1 }\n")
+        source("b.chp", "module b\ndef g(){ return 2 }\n")
+        source("main.chp", "module main\nimport a.f\ndef main(){ return f() }\n")
+        compile()
+        source("a.chp", "module a\ndef f(){ return 3 }\n")
+        compile()
+
+        then:
+        recompiled() == ["a.chp", "main.chp"]
+    }
+
+    def "Sources without a module declaration are cached separately"(){
+        when:
+        source("one.chp", "def main(){ return 1 }\n")
+        source("two.chp", "def f(){ return 2 }\n")
+        compile()
+        def modules = compile()
+
+        then:
+        recompiled().isEmpty()
+        modules*.getName() == ["default", "default"]
+        modules*.getNamespace()*.has("main") == [true, false]
+        modules*.getNamespace()*.has("f") == [false, true]
+    }
+
+    def "Changed binary dependencies invalidate the sources importing them"(){
+        when:
+        binary("lib", "module lib\ndef f(){ return 1 }\n")
+        source("main.chp", "module main\nimport lib.f\ndef main(){ return f() }\n")
+        source("other.chp", "module other\ndef g(){ return 2 }\n")
+        compile()
+        binary("lib", "module lib\ndef f(){ return 1 }\ndef g(){ return 2 }\n")
+        compile()
+
+        then:
+        recompiled() == ["main.chp"]
+    }
+
+    def "Recompiling a source leaves its loaded binaries intact"(){
+        when:
+        source("a.chp", "module a\ndef f(){ return 1 }\n")
+        def code = compile()[0].getNamespace().getEntry("f").getBinaryMethod().getCode()
+        def loaded = compile()[0]
+        source("a.chp", "module a\ndef f(){ return 1 + 2 + 3 }\ndef g(){ return 4 }\n")
+        compile()
+
+        then:
+        recompiled() == ["a.chp"]
+        loaded.getNamespace().getEntry("f").getBinaryMethod().getCode() == code
+        Files.list(directory).noneMatch { it.toString().endsWith(".tmp") }
+    }
+
+    def "Binaries of removed sources are deleted"(){
+        when:
+        source("a.chp", "module a\ndef f(){ return 1 }\n")
+        source("b.chp", "module b\ndef g(){ return 2 }\n")
+        compile()
+        Files.delete(sources.resolve("b.chp"))
+        compile()
+
+        then:
+        cache.getEntries().size() == 1
+        Files.list(directory).filter { it.toString().endsWith(".chpb") }.count() == 1
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.benchmark;
+
+import chipmunk.binary.BinaryModule;
+import chipmunk.binary.BinaryReader;
+import chipmunk.binary.BinaryWriter;
+import chipmunk.compiler.ChipmunkCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class BinaryFormatBenchmark {
+
+    @State(Scope.Thread)
+    public static class Modules {
+
+        public BinaryModule module;
+        public byte[] binary;
+
+        @Setup(Level.Trial)
+        public void initialize() throws Throwable {
+            try(var is = BinaryFormatBenchmark.class.getResourceAsStream("Mandelbrot.chp")){
+                module = new ChipmunkCompiler().compile(is, "Mandelbrot.chp")[0];
+            }
+
+            var os = new ByteArrayOutputStream();
+            new BinaryWriter().writeModule(os, module);
+            binary = os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object write(BinaryFormatBenchmark.Modules modules) throws Throwable {
+        var os = new ByteArrayOutputStream(modules.binary.length);
+        new BinaryWriter().writeModule(os, modules.module);
+        return os;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object read(BinaryFormatBenchmark.Modules modules) throws Throwable {
+        return new BinaryReader().readModule(new ByteArrayInputStream(modules.binary));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object roundTrip(BinaryFormatBenchmark.Modules modules) throws Throwable {
+        var os = new ByteArrayOutputStream(modules.binary.length);
+        new BinaryWriter().writeModule(os, modules.module);
+        return new BinaryReader().readModule(new ByteArrayInputStream(os.toByteArray()));
+    }
+
+}
@@ -20,23 +20,45 @@
 
 package chipmunk.benchmark;
 
+import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+/**
+ * Runs the Chipmunk benchmark suite. Results are written as JSON so that runs can be compared
+ * between releases.
+ *
+ * Usage: ChipmunkBenchmarks [results file] [benchmark regex...]
+ */
 public class ChipmunkBenchmarks {
 
+    public static final String DEFAULT_RESULTS_FILE = "jmh-results.json";
+
     public static void main(String[] args) throws RunnerException {
 
-        Options opt = new OptionsBuilder()
+        String resultsFile = args.length > 0 ? args[0] : DEFAULT_RESULTS_FILE;
+
+        ChainedOptionsBuilder opt = new OptionsBuilder()
+                .forks(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultsFile);
+
+        if(args.length > 1){
+            for(int i = 1; i < args.length; i++){
+                opt.include(args[i]);
+            }
+        }else{
+            opt.include(BinaryFormatBenchmark.class.getSimpleName())
                 .include(CompilingBenchmark.class.getSimpleName())
+                .include(FrontEndBenchmark.class.getSimpleName())
+                .include(InvocationBenchmark.class.getSimpleName())
                 .include(MathBenchmark.class.getSimpleName())
-                .include(PolymorphismBenchmark.class.getSimpleName())
-                .forks(1)
-                .build();
+                .include(PolymorphismBenchmark.class.getSimpleName());
+        }
 
-        new Runner(opt).run();
+        new Runner(opt.build()).run();
 
     }
 
@@ -20,7 +20,9 @@
 
 package chipmunk.benchmark;
 
+import chipmunk.binary.BinaryModule;
 import chipmunk.compiler.ChipmunkCompiler;
+import chipmunk.vm.ChipmunkVM;
 import org.openjdk.jmh.annotations.*;
 
 import java.io.ByteArrayInputStream;
@@ -31,12 +33,16 @@ public class CompilingBenchmark {
     public static class Code {
 
         public byte[] source;
+        public BinaryModule module;
+        public ChipmunkVM vm;
 
         @Setup(Level.Trial)
         public void initialize() throws Throwable {
             try(var is = CompilingBenchmark.class.getResourceAsStream("Mandelbrot.chp")){
                 source = is.readAllBytes();
             }
+            vm = new ChipmunkVM();
+            module = new ChipmunkCompiler().compile(new ByteArrayInputStream(source), "Mandelbrot.chp")[0];
         }
     }
 
@@ -47,4 +53,10 @@ public class CompilingBenchmark {
         return compiler.compile(new ByteArrayInputStream(code.source), "Mandelbrot.chp");
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object compileToJvm(CompilingBenchmark.Code code) {
+        return code.vm.createDefaultJvmCompiler().compileModule(code.module);
+    }
+
 }
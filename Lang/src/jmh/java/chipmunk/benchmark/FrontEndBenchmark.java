@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.benchmark;
+
+import chipmunk.compiler.lexer.ChipmunkLexer;
+import chipmunk.compiler.lexer.TokenStream;
+import chipmunk.compiler.parser.ChipmunkParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+
+public class FrontEndBenchmark {
+
+    @State(Scope.Thread)
+    public static class Code {
+
+        public String source;
+        public TokenStream tokens;
+
+        @Setup(Level.Trial)
+        public void initialize() throws Throwable {
+            try(var is = FrontEndBenchmark.class.getResourceAsStream("Mandelbrot.chp")){
+                source = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            tokens = new ChipmunkLexer().lex(source);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object lex(FrontEndBenchmark.Code code) {
+        return new ChipmunkLexer().lex(code.source);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object parse(FrontEndBenchmark.Code code) {
+        var parser = new ChipmunkParser(code.tokens.duplicate());
+        parser.setFileName("Mandelbrot.chp");
+        parser.parse();
+        return parser.getModuleRoots();
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.benchmark;
+
+import chipmunk.compiler.ChipmunkCompiler;
+import chipmunk.runtime.ChipmunkModule;
+import chipmunk.vm.ChipmunkVM;
+import chipmunk.vm.ScriptFunction;
+import org.openjdk.jmh.annotations.*;
+
+public class InvocationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Functions {
+
+        public ChipmunkVM vm;
+        public ChipmunkModule module;
+        public ScriptFunction add;
+
+        public Object[] args;
+
+        @Setup(Level.Trial)
+        public void initializeVM() throws Throwable {
+            vm = new ChipmunkVM();
+            try(var is = InvocationBenchmark.class.getResourceAsStream("HostCalls.chp")){
+                module = vm.load(new ChipmunkCompiler().compile(is, "HostCalls.chp")[0]);
+            }
+            add = vm.lookupFunction(module, "add", 2);
+            args = new Object[]{1, 2};
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object invoke(InvocationBenchmark.Functions functions) throws Throwable {
+        return functions.vm.invoke(functions.module, "add", functions.args);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object scriptFunction(InvocationBenchmark.Functions functions) throws Throwable {
+        return functions.add.invoke(functions.args);
+    }
+
+}
@@ -23,7 +23,13 @@ package chipmunk.binary;
 public class BinaryConstants {
 
     public static final String CHIPMUNK_BINARY_IDENTIFIER = "chpb";
-    public static final short BINARY_VERSION = 1_0;
+    public static final short BINARY_VERSION = 1_6;
+    public static final short LOCAL_TYPES_VERSION = 1_1;
+    public static final short INDEXED_VERSION = 1_2;
+    public static final short CONFINED_UPVALUE_VERSION = 1_3;
+    public static final short MODULE_CALL_VERSION = 1_4;
+    public static final short SELF_ATTR_VERSION = 1_5;
+    public static final short TYPED_SIGNATURE_VERSION = 1_6;
 
     public static final int TRAIT_FLAG = 0b01;
     public static final int FINAL_FLAG = 0b10;
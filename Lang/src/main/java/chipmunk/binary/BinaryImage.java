@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a module binary in the indexed format written by BinaryWriter. Opening an image
+ * decodes only the module header, constants, and imports. Namespaces are decoded the first time their
+ * entries are accessed, and method code and tables the first time any of them are accessed, so the parts
+ * of a module that a script never touches are never decoded. Strings are decoded from the string table on
+ * first use and shared from then on.
+ *
+ * The image keeps a reference to the binary's data (typically a memory-mapped file), which must not be
+ * modified while the module is in use. All reads use absolute positions, so lazy decoding is safe from
+ * any thread.
+ */
+public class BinaryImage {
+
+    /**
+     * A read position in the image's data.
+     */
+    protected class Cursor {
+
+        protected int position;
+
+        protected Cursor(int position){
+            this.position = position;
+        }
+
+        public byte readByte(){
+            return data.get(position++);
+        }
+
+        public int readFixedInt(){
+            int value = data.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        public long readFixedLong(){
+            long value = data.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        public int readVarint() throws BinaryFormatException {
+            int value = 0;
+            for(int shift = 0; shift < 35; shift += 7){
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if((b & 0x80) == 0){
+                    return value;
+                }
+            }
+            throw new BinaryFormatException("Malformed varint at " + position);
+        }
+
+        public long readVarlong() throws BinaryFormatException {
+            long value = 0;
+            for(int shift = 0; shift < 70; shift += 7){
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0){
+                    return value;
+                }
+            }
+            throw new BinaryFormatException("Malformed varint at " + position);
+        }
+
+        public int readSigned() throws BinaryFormatException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        public long readSignedLong() throws BinaryFormatException {
+            long value = readVarlong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        public int readCount() throws BinaryFormatException {
+            int count = readVarint();
+            if(count < 0 || count > maxBufferSize){
+                throw new BinaryFormatException(
+                        String.format("Max buffer size is %d but binary contains buffer of size %d",
+                                maxBufferSize,
+                                Integer.toUnsignedLong(count)));
+            }
+            return count;
+        }
+
+        public String readString() throws BinaryFormatException {
+            return string(readVarint());
+        }
+
+        public String[] readStrings() throws BinaryFormatException {
+            String[] strings = new String[readCount()];
+            for(int i = 0; i < strings.length; i++){
+                strings[i] = readString();
+            }
+            return strings;
+        }
+    }
+
+    protected final ByteBuffer data;
+    protected final int maxBufferSize;
+    protected final short version;
+    protected final int namespaces;
+    protected final int bodies;
+    protected final int[] stringOffsets;
+    protected final String[] strings;
+
+    protected BinaryModule module;
+
+    /**
+     * Opens an image over the binary's data following the version number.
+     */
+    public BinaryImage(ByteBuffer data, int maxBufferSize, short version) throws BinaryFormatException {
+        this.data = data.asReadOnlyBuffer();
+        this.maxBufferSize = maxBufferSize;
+        this.version = version;
+
+        try{
+            Cursor contents = new Cursor(0);
+            int stringTable = contents.readFixedInt();
+            namespaces = contents.readFixedInt();
+            bodies = contents.readFixedInt();
+
+            Cursor cursor = new Cursor(stringTable);
+            stringOffsets = new int[cursor.readCount()];
+            for(int i = 0; i < stringOffsets.length; i++){
+                stringOffsets[i] = cursor.position;
+                int length = cursor.readCount();
+                cursor.position += length;
+            }
+            strings = new String[stringOffsets.length];
+        }catch(IndexOutOfBoundsException e){
+            throw new BinaryFormatException(e);
+        }
+    }
+
+    public ByteBuffer getData(){
+        return data.duplicate();
+    }
+
+    public short getVersion(){
+        return version;
+    }
+
+    /**
+     * Decodes the module header, constants, and imports. Namespaces and method bodies are decoded lazily.
+     */
+    public BinaryModule readModule() throws BinaryFormatException {
+        if(module != null){
+            return module;
+        }
+
+        try{
+            Cursor cursor = new Cursor(BinaryWriter.TABLE_OF_CONTENTS_SIZE);
+
+            BinaryModule module = new BinaryModule(cursor.readString());
+            module.setFileName(cursor.readString());
+            module.setConstantPool(readConstants(cursor, module));
+            module.setImports(readImports(cursor));
+            module.setNamespace(namespace(cursor.readVarint(), module));
+            module.setImage(this);
+
+            this.module = module;
+            return module;
+        }catch(IndexOutOfBoundsException e){
+            throw new BinaryFormatException(e);
+        }
+    }
+
+    /**
+     * Decodes every lazily read part of the module now. Useful before discarding the binary's data.
+     */
+    public void decodeAll(){
+        if(module != null){
+            decodeAll(module.getNamespace());
+            for(Object constant : module.getConstantPool()){
+                if(constant instanceof BinaryMethod method){
+                    method.getCode();
+                }else if(constant instanceof BinaryClass cls){
+                    decodeAll(cls.getSharedNamespace());
+                    decodeAll(cls.getInstanceNamespace());
+                }
+            }
+        }
+    }
+
+    protected void decodeAll(BinaryNamespace namespace){
+        for(BinaryNamespace.Entry e : namespace.getEntries()){
+            if(e.getType() == FieldType.METHOD){
+                e.getBinaryMethod().getCode();
+            }else if(e.getType() == FieldType.CLASS){
+                decodeAll(e.getBinaryClass().getSharedNamespace());
+                decodeAll(e.getBinaryClass().getInstanceNamespace());
+            }
+        }
+    }
+
+    protected String string(int reference) throws BinaryFormatException {
+        if(reference == 0){
+            return null;
+        }
+
+        int index = reference - 1;
+        if(index >= strings.length){
+            throw new BinaryFormatException(String.format("%d is not a valid string index", index));
+        }
+
+        String s = strings[index];
+        if(s == null){
+            Cursor cursor = new Cursor(stringOffsets[index]);
+            byte[] bytes = new byte[cursor.readVarint()];
+            data.get(cursor.position, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    protected Object[] readConstants(Cursor cursor, BinaryModule module) throws BinaryFormatException {
+        Object[] constants = new Object[cursor.readCount()];
+        for(int i = 0; i < constants.length; i++){
+            constants[i] = readObject(cursor, module);
+        }
+        return constants;
+    }
+
+    protected BinaryImport[] readImports(Cursor cursor) throws BinaryFormatException {
+        BinaryImport[] imports = new BinaryImport[cursor.readCount()];
+
+        for(int i = 0; i < imports.length; i++){
+            final String name = cursor.readString();
+            final boolean importAll = cursor.readByte() != 0;
+
+            BinaryImport im = new BinaryImport(name, importAll);
+            im.setSymbols(cursor.readStrings());
+            im.setAliases(cursor.readStrings());
+            imports[i] = im;
+        }
+
+        return imports;
+    }
+
+    protected BinaryNamespace namespace(int offset, BinaryModule module){
+        return new BinaryNamespace(() -> {
+            try{
+                return readNamespace(new Cursor(namespaces + offset), module);
+            }catch(BinaryFormatException | IndexOutOfBoundsException e){
+                throw new IllegalStateException("Corrupt namespace in module binary " + module.getName(), e);
+            }
+        });
+    }
+
+    protected List<BinaryNamespace.Entry> readNamespace(Cursor cursor, BinaryModule module) throws BinaryFormatException {
+        final int count = cursor.readCount();
+        List<BinaryNamespace.Entry> entries = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++){
+            final String name = cursor.readString();
+            final byte flags = cursor.readByte();
+            final FieldType type = fieldType(cursor.readByte());
+
+            if(type == FieldType.METHOD){
+                entries.add(new BinaryNamespace.Entry(name, flags, readMethod(cursor, module)));
+            }else if(type == FieldType.CLASS){
+                entries.add(new BinaryNamespace.Entry(name, flags, readClass(cursor, module)));
+            }else{
+                entries.add(new BinaryNamespace.Entry(name, flags, type));
+            }
+        }
+
+        return entries;
+    }
+
+    protected Object readObject(Cursor cursor, BinaryModule module) throws BinaryFormatException {
+        final int typeOrdinal = cursor.readByte();
+        if(typeOrdinal < 0 || typeOrdinal >= ConstantType.values().length){
+            throw new BinaryFormatException(String.format("%d is not a valid constant type", typeOrdinal));
+        }
+
+        return switch (ConstantType.values()[typeOrdinal]) {
+            case NULL -> null;
+            case BYTE -> cursor.readByte();
+            case BOOLEAN -> cursor.readByte() != 0;
+            case SHORT -> (short) cursor.readSigned();
+            case INT -> cursor.readSigned();
+            case LONG -> cursor.readSignedLong();
+            case FLOAT -> Float.intBitsToFloat(cursor.readFixedInt());
+            case DOUBLE -> Double.longBitsToDouble(cursor.readFixedLong());
+            case STRING -> cursor.readString();
+            case METHOD -> readMethod(cursor, module);
+            case CLASS -> readClass(cursor, module);
+        };
+    }
+
+    protected BinaryMethod readMethod(Cursor cursor, BinaryModule module) throws BinaryFormatException {
+        BinaryMethod method = new BinaryMethod();
+
+        method.setDeclarationSymbol(cursor.readString());
+        method.setLocalCount(cursor.readVarint());
+        method.setArgCount(cursor.readVarint());
+        method.setDefaultArgCount(cursor.readVarint());
+        method.setModule(module);
+
+        final int body = bodies + cursor.readVarint();
+        if(version >= BinaryConstants.TYPED_SIGNATURE_VERSION){
+            method.setReturnType(readLocalType(cursor));
+            method.setArgTypes(readLocalTypes(cursor));
+        }
+
+        method.setBodyLoader(m -> {
+            try{
+                readBody(new Cursor(body), m);
+            }catch(BinaryFormatException | IndexOutOfBoundsException e){
+                throw new IllegalStateException("Corrupt method body in module binary " + module.getName(), e);
+            }
+        });
+
+        return method;
+    }
+
+    protected void readBody(Cursor cursor, BinaryMethod method) throws BinaryFormatException {
+        byte[] code = new byte[cursor.readCount()];
+        data.get(cursor.position, code);
+        cursor.position += code.length;
+        method.setCode(code);
+
+        ExceptionBlock[] exceptionTable = new ExceptionBlock[cursor.readCount()];
+        for(int i = 0; i < exceptionTable.length; i++){
+            ExceptionBlock block = new ExceptionBlock();
+            block.startIndex = cursor.readSigned();
+            block.catchIndex = cursor.readSigned();
+            block.endIndex = cursor.readSigned();
+            block.exceptionLocalIndex = cursor.readSigned();
+            exceptionTable[i] = block;
+        }
+        method.setExceptionTable(exceptionTable);
+
+        DebugEntry[] debugTable = new DebugEntry[cursor.readCount()];
+        for(int i = 0; i < debugTable.length; i++){
+            DebugEntry entry = new DebugEntry();
+            entry.beginIndex = cursor.readSigned();
+            entry.endIndex = cursor.readSigned();
+            entry.lineNumber = cursor.readSigned();
+            debugTable[i] = entry;
+        }
+        method.setDebugTable(debugTable);
+
+        method.setLocalTypes(readLocalTypes(cursor));
+    }
+
+    protected LocalType[] readLocalTypes(Cursor cursor) throws BinaryFormatException {
+        LocalType[] localTypes = new LocalType[cursor.readCount()];
+        for(int i = 0; i < localTypes.length; i++){
+            localTypes[i] = readLocalType(cursor);
+        }
+        return localTypes;
+    }
+
+    protected LocalType readLocalType(Cursor cursor) throws BinaryFormatException {
+        final int typeOrdinal = cursor.readByte();
+        if(typeOrdinal < 0 || typeOrdinal >= LocalType.values().length){
+            throw new BinaryFormatException(String.format("%d is not a valid local type", typeOrdinal));
+        }
+        return LocalType.values()[typeOrdinal];
+    }
+
+    protected BinaryClass readClass(Cursor cursor, BinaryModule module) throws BinaryFormatException {
+        BinaryClass cls = new BinaryClass(cursor.readString(), module);
+
+        cls.setSharedNamespace(namespace(cursor.readVarint(), module));
+        cls.setInstanceNamespace(namespace(cursor.readVarint(), module));
+
+        return cls;
+    }
+
+    protected static FieldType fieldType(int ordinal) throws BinaryFormatException {
+        if(ordinal < 0 || ordinal >= FieldType.values().length){
+            throw new BinaryFormatException(String.format("%d is not a valid field type", ordinal));
+        }
+        return FieldType.values()[ordinal];
+    }
+}
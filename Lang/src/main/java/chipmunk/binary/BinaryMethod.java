@@ -22,6 +22,14 @@ package chipmunk.binary;
 
 public class BinaryMethod {
 
+    /**
+     * Decodes the code and tables of a method read lazily from a binary. Called at most once, the first
+     * time any of them are needed.
+     */
+    public interface BodyLoader {
+        void load(BinaryMethod method);
+    }
+
     protected int argCount;
     protected int defaultArgCount;
     protected int localCount;
@@ -29,12 +37,36 @@ public class BinaryMethod {
     protected byte[] instructions;
     protected ExceptionBlock[] exceptionTable;
     protected DebugEntry[] debugTable;
+    protected LocalType[] localTypes;
+    protected LocalType[] argTypes;
+    protected LocalType returnType;
     protected String declarationSymbol;
 
     protected BinaryModule module;
+    protected volatile BodyLoader bodyLoader;
 
     public BinaryMethod(){
         localCount = 1;
+        returnType = LocalType.DYNAMIC;
+    }
+
+    public void setBodyLoader(BodyLoader loader){
+        bodyLoader = loader;
+    }
+
+    public boolean isBodyLoaded(){
+        return bodyLoader == null;
+    }
+
+    protected void loadBody(){
+        if(bodyLoader != null){
+            synchronized (this){
+                if(bodyLoader != null){
+                    bodyLoader.load(this);
+                    bodyLoader = null;
+                }
+            }
+        }
     }
 
     public int getArgCount(){
@@ -70,6 +102,7 @@ public class BinaryMethod {
     }
 
     public ExceptionBlock[] getExceptionTable() {
+        loadBody();
         return exceptionTable;
     }
 
@@ -78,9 +111,69 @@ public class BinaryMethod {
     }
 
     public DebugEntry[] getDebugTable() {
+        loadBody();
         return debugTable;
     }
 
+    public void setLocalTypes(LocalType[] types) {
+        localTypes = types;
+    }
+
+    public LocalType[] getLocalTypes() {
+        loadBody();
+        return localTypes;
+    }
+
+    public LocalType getLocalType(int index) {
+        loadBody();
+        if(localTypes == null || index < 0 || index >= localTypes.length){
+            return LocalType.DYNAMIC;
+        }
+        return localTypes[index];
+    }
+
+    public void setArgTypes(LocalType[] types) {
+        argTypes = types;
+    }
+
+    public LocalType[] getArgTypes() {
+        return argTypes;
+    }
+
+    /**
+     * Returns the declared type of the argument in the given local slot. Slot 0 is self.
+     */
+    public LocalType getArgType(int index) {
+        if(argTypes == null || index < 0 || index >= argTypes.length){
+            return LocalType.DYNAMIC;
+        }
+        return argTypes[index];
+    }
+
+    public void setReturnType(LocalType type) {
+        returnType = type;
+    }
+
+    public LocalType getReturnType() {
+        return returnType;
+    }
+
+    /**
+     * True if the method takes at least one argument and all of its arguments and its return value have
+     * declared primitive types, so that it can be called with unboxed values.
+     */
+    public boolean hasTypedSignature() {
+        if(returnType == LocalType.DYNAMIC || argCount < 2 || defaultArgCount > 0){
+            return false;
+        }
+        for(int i = 1; i < argCount; i++){
+            if(getArgType(i) == LocalType.DYNAMIC){
+                return false;
+            }
+        }
+        return true;
+    }
+
     public String getDeclarationSymbol() {
         return declarationSymbol;
     }
@@ -94,6 +187,7 @@ public class BinaryMethod {
     }
 
     public byte[] getCode(){
+        loadBody();
         return instructions;
     }
 
@@ -27,6 +27,7 @@ public class BinaryModule {
     protected Object[] constantPool;
     protected BinaryImport[] imports;
     protected BinaryNamespace namespace;
+    protected BinaryImage image;
 
     public BinaryModule(){
         namespace = new BinaryNamespace();
@@ -77,4 +78,15 @@ public class BinaryModule {
         this.constantPool = constantPool;
     }
 
+    /**
+     * Returns the image the module was read from, or null if the module wasn't read from an indexed binary.
+     */
+    public BinaryImage getImage(){
+        return image;
+    }
+
+    public void setImage(BinaryImage image){
+        this.image = image;
+    }
+
 }
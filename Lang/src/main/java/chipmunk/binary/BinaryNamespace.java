@@ -23,6 +23,7 @@ package chipmunk.binary;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
@@ -92,6 +93,7 @@ public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
     }
 
     protected List<Entry> entries;
+    protected volatile Supplier<List<Entry>> loader;
 
     public BinaryNamespace(){
         this(0);
@@ -101,21 +103,39 @@ public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
         entries = new ArrayList<>(size);
     }
 
+    /**
+     * Creates a namespace whose entries are decoded by the loader the first time they are needed.
+     */
+    public BinaryNamespace(Supplier<List<Entry>> loader){
+        this.loader = loader;
+    }
+
     public List<Entry> getEntries() {
+        if(loader != null){
+            synchronized (this){
+                if(loader != null){
+                    entries = loader.get();
+                    loader = null;
+                }
+            }
+        }
         return entries;
     }
 
     public void setEntries(List<Entry> entries){
-        this.entries = entries;
+        synchronized (this){
+            this.entries = entries;
+            loader = null;
+        }
     }
 
     public void addEntry(BinaryNamespace.Entry entry){
-        entries.add(entry);
+        getEntries().add(entry);
     }
 
     public boolean has(String symbol){
 
-        for(Entry e : entries){
+        for(Entry e : getEntries()){
             if(e.getName().equals(symbol)){
                 return true;
             }
@@ -126,7 +146,7 @@ public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
 
     public Object get(String symbol){
 
-        for(Entry e : entries){
+        for(Entry e : getEntries()){
             if(e.getName().equals(symbol)){
                 FieldType type = e.getType();
 
@@ -144,7 +164,7 @@ public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
 
     public Entry getEntry(String symbol){
 
-        for(Entry e : entries){
+        for(Entry e : getEntries()){
             if(e.getName().equals(symbol)){
                 return e;
             }
@@ -155,11 +175,11 @@ public class BinaryNamespace implements Iterable<BinaryNamespace.Entry> {
 
     @Override
     public Iterator<Entry> iterator() {
-        return entries.iterator();
+        return getEntries().iterator();
     }
 
     public String[] getNames(){
-        return entries.stream()
+        return getEntries().stream()
                 .map(Entry::getName)
                 .collect(Collectors.toList())
                 .toArray(new String[]{});
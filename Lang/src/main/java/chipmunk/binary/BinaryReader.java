@@ -24,10 +24,23 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads module binaries. Binaries in the current (indexed) format are read through a BinaryImage, so
+ * namespaces and method bodies are only decoded when first used. Binaries written by older versions are
+ * decoded in full.
+ */
 public class BinaryReader {
 
     protected int maxBufferSize;
+    protected short version;
 
     public BinaryReader(){
         maxBufferSize = Integer.MAX_VALUE;
@@ -56,13 +69,11 @@ public class BinaryReader {
                 throw new BinaryFormatException("This is not a Chipmunk binary");
             }
 
-            final short version = dis.readShort();
-            if(BinaryConstants.BINARY_VERSION < version){
-                throw new BinaryFormatException(
-                        String.format(
-                                "This parser only supports Chipmunk version %d, but this binary is version %d",
-                                BinaryConstants.BINARY_VERSION,
-                                version));
+            version = dis.readShort();
+            checkVersion();
+
+            if(version >= BinaryConstants.INDEXED_VERSION){
+                return new BinaryImage(ByteBuffer.wrap(dis.readAllBytes()), maxBufferSize, version).readModule();
             }
 
             // Read name, constants, imports, & namespace
@@ -84,6 +95,49 @@ public class BinaryReader {
 
     }
 
+    /**
+     * Reads the module binary at the given path. Binaries in the indexed format are memory-mapped rather than
+     * read into memory, and only the parts of the module that are used are ever decoded.
+     */
+    public BinaryModule readModule(Path path) throws IOException, BinaryFormatException {
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            final int identifierLength = data.getShort() & 0xFFFF;
+            byte[] identifier = new byte[identifierLength];
+            data.get(identifier);
+            if(!BinaryConstants.CHIPMUNK_BINARY_IDENTIFIER.equals(new String(identifier, StandardCharsets.UTF_8))){
+                throw new BinaryFormatException("This is not a Chipmunk binary");
+            }
+
+            version = data.getShort();
+            checkVersion();
+
+            if(version < BinaryConstants.INDEXED_VERSION){
+                try(InputStream is = Files.newInputStream(path)){
+                    return readModule(is);
+                }
+            }
+
+            return new BinaryImage(data.slice(), maxBufferSize, version).readModule();
+
+        }catch(BufferUnderflowException e){
+            throw new BinaryFormatException(e);
+        }
+    }
+
+    protected void checkVersion() throws BinaryFormatException {
+        if(BinaryConstants.BINARY_VERSION < version){
+            throw new BinaryFormatException(
+                    String.format(
+                            "This parser only supports Chipmunk version %d, but this binary is version %d",
+                            BinaryConstants.BINARY_VERSION,
+                            version));
+        }
+    }
+
     protected Object[] readConstants(DataInputStream is, BinaryModule module) throws IOException, BinaryFormatException {
 
         final int count = is.readInt();
@@ -197,11 +251,32 @@ public class BinaryReader {
         method.setExceptionTable(readExceptionTable(is));
         method.setDebugTable(readDebugTable(is));
 
+        if(version >= BinaryConstants.LOCAL_TYPES_VERSION){
+            method.setLocalTypes(readLocalTypes(is));
+        }
+
         method.setModule(module);
 
         return method;
     }
 
+    protected LocalType[] readLocalTypes(DataInputStream is) throws IOException, BinaryFormatException {
+
+        final int count = is.readInt();
+        checkBufferSize(count);
+
+        LocalType[] localTypes = new LocalType[count];
+        for(int i = 0; i < count; i++){
+            final int typeOrdinal = is.readByte();
+            if(typeOrdinal < 0 || typeOrdinal >= LocalType.values().length){
+                throw new BinaryFormatException(String.format("%d is not a valid local type", typeOrdinal));
+            }
+            localTypes[i] = LocalType.values()[typeOrdinal];
+        }
+
+        return localTypes;
+    }
+
     protected DebugEntry[] readDebugTable(DataInputStream is) throws IOException, BinaryFormatException {
 
         final int count = is.readInt();
@@ -20,58 +20,173 @@
 
 package chipmunk.binary;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static chipmunk.binary.ConstantType.*;
 
+/**
+ * Writes modules in the indexed binary format (see BinaryImage). After the identifier and version,
+ * a binary consists of:
+ * <ul>
+ * <li>A table of contents: the offsets of the string table, namespace section, and method body section</li>
+ * <li>The module section: module name and file name, constants, imports, and the offset of the module's namespace</li>
+ * <li>The string table. Every string in the module is stored once and referred to by index</li>
+ * <li>The namespace section. Class entries refer to their namespaces by offset</li>
+ * <li>The method body section: code, exception, debug, and local type tables. Method headers refer to their body by offset</li>
+ * </ul>
+ * All offsets are relative to the start of the section they point into, all counts, indices, and offsets are
+ * varints, and signed integers are zigzag encoded varints.
+ */
 public class BinaryWriter {
 
+    public static final int TABLE_OF_CONTENTS_SIZE = 12;
+
+    protected static class Section extends ByteArrayOutputStream {
+
+        public void writeVarint(int value){
+            while((value & ~0x7F) != 0){
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        public void writeVarlong(long value){
+            while((value & ~0x7FL) != 0){
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        public void writeSigned(int value){
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        public void writeSigned(long value){
+            writeVarlong((value << 1) ^ (value >> 63));
+        }
+
+        public void writeFixed(int value){
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        public void writeFixed(long value){
+            writeFixed((int) (value >>> 32));
+            writeFixed((int) value);
+        }
+
+        public void appendTo(Section section){
+            section.write(buf, 0, count);
+        }
+    }
+
+    protected Map<String, Integer> strings;
+    protected Section moduleSection;
+    protected Section namespaceSection;
+    protected Section bodySection;
+
     public void writeModule(OutputStream os, BinaryModule module) throws IOException, IllegalConstantTypeException {
 
+        strings = new LinkedHashMap<>();
+        moduleSection = new Section();
+        namespaceSection = new Section();
+        bodySection = new Section();
+
+        writeString(moduleSection, module.getName());
+        writeString(moduleSection, module.getFileName());
+        writeConstants(moduleSection, module.getConstantPool());
+        writeImports(moduleSection, module.getImports());
+        moduleSection.writeVarint(writeNamespace(module.getNamespace()));
+
+        Section stringSection = new Section();
+        stringSection.writeVarint(strings.size());
+        for(String s : strings.keySet()){
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            stringSection.writeVarint(bytes.length);
+            stringSection.write(bytes);
+        }
+
+        Section contents = new Section();
+        int stringsOffset = TABLE_OF_CONTENTS_SIZE + moduleSection.size();
+        int namespacesOffset = stringsOffset + stringSection.size();
+        contents.writeFixed(stringsOffset);
+        contents.writeFixed(namespacesOffset);
+        contents.writeFixed(namespacesOffset + namespaceSection.size());
+
         DataOutputStream dos = new DataOutputStream(os);
         dos.writeUTF(BinaryConstants.CHIPMUNK_BINARY_IDENTIFIER);
         dos.writeShort(BinaryConstants.BINARY_VERSION);
 
-        dos.writeUTF(module.getName());
-        dos.writeUTF(module.getFileName());
-        writeConstants(dos, module.getConstantPool());
-        writeImports(dos, module.getImports());
-        writeNamespace(dos, module.getNamespace());
+        contents.writeTo(dos);
+        moduleSection.writeTo(dos);
+        stringSection.writeTo(dos);
+        namespaceSection.writeTo(dos);
+        bodySection.writeTo(dos);
 
         dos.flush();
     }
 
-    protected void writeConstants(DataOutputStream os, Object[] objs) throws IOException, IllegalConstantTypeException {
+    /**
+     * Writes a reference to a string in the string table: 0 for null, otherwise the string's index + 1.
+     */
+    protected void writeString(Section os, String s){
+        if(s == null){
+            os.writeVarint(0);
+            return;
+        }
+
+        Integer index = strings.get(s);
+        if(index == null){
+            index = strings.size();
+            strings.put(s, index);
+        }
+        os.writeVarint(index + 1);
+    }
+
+    protected void writeConstants(Section os, Object[] objs) throws IllegalConstantTypeException {
 
-        os.writeInt(objs.length);
+        os.writeVarint(objs.length);
         for(Object o : objs){
             writeObject(os, o);
         }
 
     }
 
-    protected void writeImports(DataOutputStream os, BinaryImport[] imports) throws IOException {
+    protected void writeImports(Section os, BinaryImport[] imports) {
 
-        os.writeInt(imports.length);
+        os.writeVarint(imports.length);
         for(BinaryImport i : imports){
 
-            os.writeUTF(i.getName());
-            os.writeBoolean(i.isImportAll());
+            writeString(os, i.getName());
+            os.write(i.isImportAll() ? 1 : 0);
             writeStrings(os, i.getSymbols());
             writeStrings(os, i.getAliases());
 
         }
     }
 
-    protected void writeNamespace(DataOutputStream os, BinaryNamespace namespace) throws IOException, IllegalConstantTypeException {
+    /**
+     * Writes the namespace to the namespace section and returns its offset. Methods and classes in the
+     * namespace are written first, so namespaces always follow the namespaces they contain.
+     */
+    protected int writeNamespace(BinaryNamespace namespace) throws IllegalConstantTypeException {
 
-        os.writeInt(namespace.getEntries().size());
+        Section os = new Section();
+        os.writeVarint(namespace.getEntries().size());
         for(BinaryNamespace.Entry e : namespace.getEntries()){
-            os.writeUTF(e.getName());
-            os.writeByte(e.getFlags());
-            os.writeByte((byte)e.getType().ordinal());
+            writeString(os, e.getName());
+            os.write(e.getFlags());
+            os.write(e.getType().ordinal());
             if(e.getType() == FieldType.METHOD){
                 writeMethod(os, e.getBinaryMethod());
             }else if(e.getType() == FieldType.CLASS){
@@ -79,107 +194,130 @@ public class BinaryWriter {
             }
         }
 
+        int offset = namespaceSection.size();
+        os.appendTo(namespaceSection);
+        return offset;
     }
 
-    protected void writeStrings(DataOutputStream os, String[] strings) throws IOException {
+    protected void writeStrings(Section os, String[] strings) {
 
         if(strings == null){
-            os.writeInt(0);
+            os.writeVarint(0);
             return;
         }
 
-        os.writeInt(strings.length);
+        os.writeVarint(strings.length);
 
         for(String s : strings){
-            os.writeUTF(s);
+            writeString(os, s);
         }
 
     }
 
-    protected void writeMethod(DataOutputStream os, BinaryMethod method) throws IOException, IllegalConstantTypeException {
+    /**
+     * Writes the method header to the given section and its body to the body section.
+     */
+    protected void writeMethod(Section os, BinaryMethod method) {
 
-        os.writeUTF(method.getDeclarationSymbol());
-        os.writeInt(method.getLocalCount());
-        os.writeInt(method.getArgCount());
-        os.writeInt(method.getDefaultArgCount());
+        writeString(os, method.getDeclarationSymbol());
+        os.writeVarint(method.getLocalCount());
+        os.writeVarint(method.getArgCount());
+        os.writeVarint(method.getDefaultArgCount());
+        os.writeVarint(bodySection.size());
+        os.write(method.getReturnType().ordinal());
+        writeLocalTypes(os, method.getArgTypes());
 
         byte[] instructions = method.getCode();
-        os.writeInt(instructions.length);
-        os.write(instructions);
+        bodySection.writeVarint(instructions.length);
+        bodySection.writeBytes(instructions);
 
-        writeExceptionTable(os, method.getExceptionTable());
-        writeDebugTable(os, method.getDebugTable());
+        writeExceptionTable(bodySection, method.getExceptionTable());
+        writeDebugTable(bodySection, method.getDebugTable());
+        writeLocalTypes(bodySection, method.getLocalTypes());
     }
 
-    protected void writeExceptionTable(DataOutputStream os, ExceptionBlock[] table) throws IOException {
+    protected void writeExceptionTable(Section os, ExceptionBlock[] table) {
 
-        os.writeInt(table.length);
+        os.writeVarint(table.length);
 
         for(int i = 0; i < table.length; i++){
             ExceptionBlock b = table[i];
 
-            os.writeInt(b.startIndex);
-            os.writeInt(b.catchIndex);
-            os.writeInt(b.endIndex);
-            os.writeInt(b.exceptionLocalIndex);
+            os.writeSigned(b.startIndex);
+            os.writeSigned(b.catchIndex);
+            os.writeSigned(b.endIndex);
+            os.writeSigned(b.exceptionLocalIndex);
         }
     }
 
-    protected void writeDebugTable(DataOutputStream os, DebugEntry[] table) throws IOException {
+    protected void writeLocalTypes(Section os, LocalType[] types) {
 
-        os.writeInt(table.length);
+        if(types == null){
+            os.writeVarint(0);
+            return;
+        }
+
+        os.writeVarint(types.length);
+
+        for(int i = 0; i < types.length; i++){
+            os.write(types[i].ordinal());
+        }
+    }
+
+    protected void writeDebugTable(Section os, DebugEntry[] table) {
+
+        os.writeVarint(table.length);
 
         for(int i = 0; i < table.length; i++){
             DebugEntry e = table[i];
 
-            os.writeInt(e.beginIndex);
-            os.writeInt(e.endIndex);
-            os.writeInt(e.lineNumber);
+            os.writeSigned(e.beginIndex);
+            os.writeSigned(e.endIndex);
+            os.writeSigned(e.lineNumber);
         }
     }
 
-    protected void writeClass(DataOutputStream os, BinaryClass cls) throws IOException, IllegalConstantTypeException {
-
-        os.writeUTF(cls.getName());
-        writeNamespace(os, cls.getSharedNamespace());
+    protected void writeClass(Section os, BinaryClass cls) throws IllegalConstantTypeException {
 
-        writeNamespace(os, cls.getInstanceNamespace());
+        writeString(os, cls.getName());
+        os.writeVarint(writeNamespace(cls.getSharedNamespace()));
+        os.writeVarint(writeNamespace(cls.getInstanceNamespace()));
 
     }
 
-    protected void writeObject(DataOutputStream os, Object obj) throws IOException, IllegalConstantTypeException {
+    protected void writeObject(Section os, Object obj) throws IllegalConstantTypeException {
 
         if(obj == null){
-            os.writeByte(NULL.ordinal());
+            os.write(NULL.ordinal());
         }else if(obj instanceof Byte){
-            os.writeByte(BYTE.ordinal());
-            os.writeByte((Byte) obj);
+            os.write(BYTE.ordinal());
+            os.write((Byte) obj);
         }else if(obj instanceof Boolean){
-            os.writeByte(BOOLEAN.ordinal());
-            os.writeBoolean((Boolean) obj);
+            os.write(BOOLEAN.ordinal());
+            os.write((Boolean) obj ? 1 : 0);
         }else if(obj instanceof Short){
-            os.writeByte(SHORT.ordinal());
-            os.writeShort((Short) obj);
+            os.write(SHORT.ordinal());
+            os.writeSigned((int) (Short) obj);
         }else if(obj instanceof Integer){
-            os.writeByte(INT.ordinal());
-            os.writeInt((Integer) obj);
+            os.write(INT.ordinal());
+            os.writeSigned((int) (Integer) obj);
         }else if(obj instanceof Long){
-            os.writeByte(LONG.ordinal());
-            os.writeLong((Long) obj);
+            os.write(LONG.ordinal());
+            os.writeSigned((long) (Long) obj);
         }else if(obj instanceof Float){
-            os.writeByte(FLOAT.ordinal());
-            os.writeFloat((Float) obj);
+            os.write(FLOAT.ordinal());
+            os.writeFixed(Float.floatToRawIntBits((Float) obj));
         }else if(obj instanceof Double){
-            os.writeByte(DOUBLE.ordinal());
-            os.writeDouble((Double) obj);
+            os.write(DOUBLE.ordinal());
+            os.writeFixed(Double.doubleToRawLongBits((Double) obj));
         }else if(obj instanceof String){
-            os.writeByte(STRING.ordinal());
-            os.writeUTF((String) obj);
+            os.write(STRING.ordinal());
+            writeString(os, (String) obj);
         }else if(obj instanceof BinaryMethod){
-            os.writeByte(METHOD.ordinal());
+            os.write(METHOD.ordinal());
             writeMethod(os, (BinaryMethod) obj);
         }else if(obj instanceof BinaryClass){
-            os.writeByte(CLASS.ordinal());
+            os.write(CLASS.ordinal());
             writeClass(os, (BinaryClass) obj);
         }else{
             throw new IllegalConstantTypeException(String.format("%s is not a valid Chipmunk constant", obj.getClass().getName()));
@@ -22,6 +22,12 @@ package chipmunk.compiler;
 
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import chipmunk.compiler.ast.*;
 import chipmunk.compiler.imports.NativeImportResolver;
@@ -33,6 +39,7 @@ import chipmunk.compiler.ast.transforms.*;
 import chipmunk.compiler.codegen.ModuleVisitor;
 import chipmunk.compiler.imports.AstImportResolver;
 import chipmunk.compiler.imports.BinaryImportResolver;
+import chipmunk.compiler.imports.ModuleDependencyGraph;
 import chipmunk.compiler.lexer.ChipmunkLexer;
 import chipmunk.compiler.lexer.Token;
 import chipmunk.compiler.lexer.TokenStream;
@@ -44,8 +51,10 @@ public class ChipmunkCompiler {
 		POST_PARSE, SYMBOL_RESOLUTION, IMPORT_RESOLUTION, PRE_ASSEMBLY
 	}
 
-	protected Map<Pass, List<AstVisitor>> passes;
+	// Visitors carry per-module state, so each module visit gets fresh instances
+	protected Map<Pass, List<Supplier<AstVisitor>>> passes;
 	protected ModuleLoader moduleLoader;
+	protected Executor executor;
 
 	protected final AstImportResolver astResolver;
 	protected final BinaryImportResolver binaryResolver;
@@ -63,21 +72,24 @@ public class ChipmunkCompiler {
 
 		passes = new HashMap<>();
 		passes.put(Pass.POST_PARSE, Arrays.asList(
-				new LangImportVisitor(),
-				new InitializerBuilderVisitor()));
+				LangImportVisitor::new,
+				InitializerBuilderVisitor::new));
 
 		passes.put(Pass.SYMBOL_RESOLUTION, Arrays.asList(
-				new SymbolTableBuilderVisitor(),
-				new ConstructorVisitor()));
+				SymbolTableBuilderVisitor::new,
+				ConstructorVisitor::new));
 
 		passes.put(Pass.IMPORT_RESOLUTION, Arrays.asList(
-				new ImportResolverVisitor(Arrays.asList(astResolver, binaryResolver, nativeResolver)))
+				() -> new ImportResolverVisitor(Arrays.asList(astResolver, binaryResolver, nativeResolver)))
 		);
 
 		passes.put(Pass.PRE_ASSEMBLY, Arrays.asList(
-				//new UpvalueMarkerVisitor(),
-				new SymbolAccessRewriteVisitor(),
-				new InnerMethodRewriteVisitor()));
+				SymbolAccessRewriteVisitor::new,
+				UpvalueMarkerVisitor::new,
+				InnerMethodRewriteVisitor::new,
+				TypeInferenceVisitor::new,
+				ModuleCallDevirtualizationVisitor::new,
+				ReturnTypeVisitor::new));
 	}
 
 	public ModuleLoader getModuleLoader(){
@@ -90,6 +102,30 @@ public class ChipmunkCompiler {
 		loader.registerNativeFactory(LangModule.MODULE_NAME, LangModule::new);
 	}
 
+	public Executor getExecutor(){
+		return executor;
+	}
+
+	/**
+	 * Sets the executor used to compile modules in parallel. When this is null (the default) compilation
+	 * is sequential. Parallel compilation produces the same modules, in the same order, as sequential
+	 * compilation.
+	 */
+	public void setExecutor(Executor executor){
+		this.executor = executor;
+	}
+
+	/**
+	 * Enables or disables parallel compilation using the common fork-join pool.
+	 */
+	public void setParallel(boolean parallel){
+		executor = parallel ? ForkJoinPool.commonPool() : null;
+	}
+
+	public boolean isParallel(){
+		return executor != null;
+	}
+
 	public AstImportResolver getAstResolver(){
 		return astResolver;
 	}
@@ -118,6 +154,10 @@ public class ChipmunkCompiler {
 		visitors.forEach(v -> v.visit(node));
 	}
 
+	public void visitAst(AstNode node, Pass pass){
+		passes.get(pass).forEach(v -> v.get().visit(node));
+	}
+
 	public BinaryModule[] compile(InputStream src, String fileName) throws CompileChipmunk {
 		Compilation compilation = new Compilation();
 		compilation.addSource(new ChipmunkSource(src, fileName));
@@ -127,14 +167,20 @@ public class ChipmunkCompiler {
 	public BinaryModule[] compile(Compilation compilation) throws CompileChipmunk {
 		var asts = new ArrayList<ParsedModule>();
 
-		for(ChipmunkSource source : compilation.getSources()){
-			List<AstNode> parsed = parse(lex(source.readFully()), source.getFileName());
-			parsed.forEach(n -> asts.add(new ParsedModule(source.getFileName(), n)));
+		for(List<ParsedModule> parsed : forEachInOrder(compilation.getSources(), this::parse)){
+			asts.addAll(parsed);
 		}
 
 		return compile(asts);
 	}
 
+	public List<ParsedModule> parse(ChipmunkSource source) throws CompileChipmunk {
+		return parse(lex(source.readFully()), source.getFileName())
+				.stream()
+				.map(n -> new ParsedModule(source.getFileName(), n))
+				.toList();
+	}
+
 	public BinaryModule[] compile(AstNode... asts) throws CompileChipmunk {
 		return compile(Arrays.stream(asts).map(a -> new ParsedModule("<memory>", a)).toList());
 	}
@@ -146,25 +192,99 @@ public class ChipmunkCompiler {
 	public BinaryModule[] compile(List<ParsedModule> parsedModules) throws CompileChipmunk {
 		astResolver.setModules(parsedModules.stream().map(ParsedModule::ast).toList());
 
-		parsedModules.forEach(p -> visitAst(p.ast(), passes.get(Pass.POST_PARSE)));
-		parsedModules.forEach(p -> visitAst(p.ast(), passes.get(Pass.SYMBOL_RESOLUTION)));
-		parsedModules.forEach(p -> visitAst(p.ast(), passes.get(Pass.IMPORT_RESOLUTION)));
-		parsedModules.forEach(p -> visitAst(p.ast(), passes.get(Pass.PRE_ASSEMBLY)));
+		if(executor == null){
+			parsedModules.forEach(p -> visitAst(p.ast(), Pass.POST_PARSE));
+			parsedModules.forEach(p -> visitAst(p.ast(), Pass.SYMBOL_RESOLUTION));
+			parsedModules.forEach(p -> visitAst(p.ast(), Pass.IMPORT_RESOLUTION));
+			parsedModules.forEach(p -> visitAst(p.ast(), Pass.PRE_ASSEMBLY));
+
+			return parsedModules.stream()
+					.map(this::assemble)
+					.toArray(BinaryModule[]::new);
+		}
+
+		// Everything up to import resolution only touches the module being compiled
+		forEachInOrder(parsedModules, p -> {
+			visitAst(p.ast(), Pass.POST_PARSE);
+			visitAst(p.ast(), Pass.SYMBOL_RESOLUTION);
+			return p;
+		});
+
+		resolveImports(parsedModules);
+
+		return forEachInOrder(parsedModules, p -> {
+			visitAst(p.ast(), Pass.PRE_ASSEMBLY);
+			return assemble(p);
+		}).toArray(new BinaryModule[0]);
+	}
+
+	protected BinaryModule assemble(ParsedModule parsed){
+		ModuleVisitor visitor = new ModuleVisitor(parsed.fileName());
+		parsed.ast().visit(visitor);
+
+		BinaryModule module = visitor.getModule();
+		module.setFileName(parsed.fileName());
+		return module;
+	}
 
-		BinaryModule[] modules = new BinaryModule[parsedModules.size()];
-		for(int i = 0; i < parsedModules.size(); i++){
-			var parsed = parsedModules.get(i);
-			var ast = parsed.ast();
+	/**
+	 * Runs import resolution in parallel. Resolving a module's imports reads the symbol tables of the modules
+	 * it imports and adds the imported symbols to its own table, so a module is only resolved once every
+	 * module it imports has been. Mutually importing modules are resolved together, one after the other.
+	 */
+	protected void resolveImports(List<ParsedModule> parsedModules){
+		var graph = new ModuleDependencyGraph(parsedModules.stream().map(ParsedModule::ast).toList());
+		var components = graph.getComponents();
+
+		List<CompletableFuture<Void>> resolved = new ArrayList<>(components.size());
+		for(int i = 0; i < components.size(); i++){
+			var component = components.get(i);
+			var dependencies = graph.getComponentDependencies(i).stream()
+					.map(resolved::get)
+					.toArray(CompletableFuture[]::new);
+
+			resolved.add(CompletableFuture.allOf(dependencies).thenRunAsync(() ->
+					component.forEach(m -> visitAst(parsedModules.get(m).ast(), Pass.IMPORT_RESOLUTION)), executor));
+		}
 
-			ModuleVisitor visitor = new ModuleVisitor(parsed.fileName());
-			ast.visit(visitor);
+		// Join in module order so that the reported failure doesn't depend on scheduling
+		var failures = new ArrayList<CompletableFuture<Void>>(Collections.nCopies(parsedModules.size(), null));
+		for(int i = 0; i < components.size(); i++){
+			for(int m : components.get(i)){
+				failures.set(m, resolved.get(i));
+			}
+		}
+		failures.forEach(ChipmunkCompiler::join);
+	}
 
-			BinaryModule module = visitor.getModule();
-			module.setFileName(parsed.fileName());
-			modules[i] = module;
+	/**
+	 * Applies the function to every element using the compiler's executor (or on the calling thread if
+	 * there isn't one) and returns the results in element order. If any calls fail, the failure of the first
+	 * failing element is thrown.
+	 */
+	protected <T, R> List<R> forEachInOrder(List<T> elements, Function<T, R> function){
+		if(executor == null){
+			return elements.stream().map(function).toList();
 		}
 
-		return modules;
+		var futures = elements.stream()
+				.map(e -> CompletableFuture.supplyAsync(() -> function.apply(e), executor))
+				.toList();
+
+		return futures.stream().map(ChipmunkCompiler::join).toList();
+	}
+
+	protected static <T> T join(CompletableFuture<T> future){
+		try{
+			return future.join();
+		}catch(CompletionException e){
+			if(e.getCause() instanceof RuntimeException re){
+				throw re;
+			}else if(e.getCause() instanceof Error err){
+				throw err;
+			}
+			throw e;
+		}
 	}
 
 	public BinaryModule compileExpression(String exp) throws CompileChipmunk {
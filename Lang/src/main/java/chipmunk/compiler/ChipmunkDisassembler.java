@@ -294,6 +294,16 @@ public class ChipmunkDisassembler {
 				builder.append(constantPool[fetchInt(codeSegment, ip + 1)]);
 				ip += 5;
 				break;
+			case SETSELFATTR:
+				builder.append("setselfattr ");
+				builder.append(constantPool[fetchInt(codeSegment, ip + 1)]);
+				ip += 5;
+				break;
+			case GETSELFATTR:
+				builder.append("getselfattr ");
+				builder.append(constantPool[fetchInt(codeSegment, ip + 1)]);
+				ip += 5;
+				break;
 			case GETAT:
 				builder.append("getat");
 				ip++;
@@ -423,6 +433,20 @@ public class ChipmunkDisassembler {
 				builder.append(fetchInt(codeSegment, ip + 1));
 				ip += 5;
 				break;
+			case GETMODULE:
+				builder.append("getmodule");
+				ip++;
+				break;
+			case CALLMODULE:
+				builder.append("callmodule ");
+				builder.append(fetchByte(codeSegment, ip + 1));
+				builder.append(' ');
+				builder.append(fetchInt(codeSegment, ip + 2));
+				builder.append(" (");
+				builder.append(constantPool[fetchInt(codeSegment, ip + 2)]);
+				builder.append(")");
+				ip += 6;
+				break;
 			case MAP:
 				builder.append("map ");
 				builder.append(fetchInt(codeSegment, ip + 1));
@@ -433,6 +457,11 @@ public class ChipmunkDisassembler {
 				builder.append(fetchByte(codeSegment, ip + 1));
 				ip += 2;
 				break;
+			case INITCONFINEDUPVALUE:
+				builder.append("initconfinedupvalue ");
+				builder.append(fetchByte(codeSegment, ip + 1));
+				ip += 2;
+				break;
 			case GETUPVALUE:
 				builder.append("getupvalue ");
 				builder.append(fetchByte(codeSegment, ip + 1));
@@ -235,6 +235,16 @@ public class ChipmunkAssembler {
 		writeInt(getConstantPoolEntry(attr));
 	}
 	
+	public void setSelfAttr(String attr){
+		writeByte(Opcodes.SETSELFATTR);
+		writeInt(getConstantPoolEntry(attr));
+	}
+
+	public void getSelfAttr(String attr){
+		writeByte(Opcodes.GETSELFATTR);
+		writeInt(getConstantPoolEntry(attr));
+	}
+	
 	public void getat(){
 		writeByte(Opcodes.GETAT);
 	}
@@ -261,6 +271,11 @@ public class ChipmunkAssembler {
 		writeByte(localIndex);
 	}
 
+	public void initConfinedUpvalue(int localIndex){
+		writeByte(Opcodes.INITCONFINEDUPVALUE);
+		writeByte(localIndex);
+	}
+
 	public void getUpvalue(int localIndex){
 		writeByte(Opcodes.GETUPVALUE);
 		writeByte(localIndex);
@@ -305,6 +320,19 @@ public class ChipmunkAssembler {
 		
 		writeInt(entryIndex);
 	}
+
+	public void getModule(){
+		writeByte(Opcodes.GETMODULE);
+	}
+
+	public void callModule(String methodName, byte paramCount){
+		writeByte(Opcodes.CALLMODULE);
+		writeByte(paramCount);
+
+		int entryIndex = getConstantPoolEntry(methodName);
+
+		writeInt(entryIndex);
+	}
 	
 	public Label label(String labelName){
 		Label label = new Label(labelName, index);
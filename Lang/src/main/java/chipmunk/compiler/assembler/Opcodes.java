@@ -86,8 +86,17 @@ public class Opcodes {
 	public static final byte INITUPVALUE = 0x36;
 	public static final byte GETUPVALUE = 0x37;
 	public static final byte SETUPVALUE = 0x38;
+	public static final byte INITCONFINEDUPVALUE = 0x3A;
 
 	// Method bindings
 	public static final byte BIND = 0x39;
+
+	// Direct module calls
+	public static final byte GETMODULE = 0x3B;
+	public static final byte CALLMODULE = 0x3C;
+
+	// Direct field access on self
+	public static final byte GETSELFATTR = 0x3D;
+	public static final byte SETSELFATTR = 0x3E;
 	
 }
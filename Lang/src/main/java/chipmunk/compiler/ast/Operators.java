@@ -32,4 +32,13 @@ public class Operators {
     public static AstNode make(String op, TokenType type, int line, AstNode... operands){
         return new AstNode(NodeType.OPERATOR, new Token(op, type, line), operands);
     }
+
+    public static boolean isRange(AstNode node){
+        return node.is(NodeType.OPERATOR)
+                && (node.getToken().type() == TokenType.DOUBLEDOT || node.getToken().type() == TokenType.DOUBLEDOTLESS);
+    }
+
+    public static boolean isInclusiveRange(AstNode node){
+        return isRange(node) && node.getToken().type() == TokenType.DOUBLEDOT;
+    }
 }
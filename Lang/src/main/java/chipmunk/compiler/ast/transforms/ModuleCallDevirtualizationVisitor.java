@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.compiler.ast.transforms;
+
+import chipmunk.compiler.ast.AstNode;
+import chipmunk.compiler.ast.AstVisitor;
+import chipmunk.compiler.ast.Methods;
+import chipmunk.compiler.ast.NodeType;
+import chipmunk.compiler.lexer.TokenType;
+import chipmunk.compiler.symbols.Symbol;
+import chipmunk.compiler.symbols.SymbolType;
+
+/**
+ * Finds calls from module-level methods to other methods of the same module and binds them statically.
+ * The SymbolAccessRewriteVisitor turns such a call into self.getModule().f(...), which the code generator
+ * would emit as a dynamic call. Module methods can't be rebound at runtime and the receiver of a
+ * module-level method is always its module, so when the callee is a method declared in this module
+ * and the call passes exactly its parameters, the callee is known at compile time. The call node is
+ * given the callee's symbol, and the code generator emits a direct module call for it.
+ *
+ * Calls to imported modules are left dynamic: the field holding an imported module is assignable and
+ * may hold a native module.
+ *
+ * This must run after the SymbolAccessRewriteVisitor and the InnerMethodRewriteVisitor, so that inner
+ * methods have been hoisted and all parameters have been added.
+ */
+public class ModuleCallDevirtualizationVisitor implements AstVisitor {
+
+    protected AstNode module;
+
+    @Override
+    public void visit(AstNode node) {
+        if(node.is(NodeType.MODULE)){
+            module = node;
+            node.visitChildren(this);
+        }else if(node.is(NodeType.CLASS, NodeType.IMPORT)){
+            // The receiver of class methods is not the module
+            return;
+        }else{
+            Symbol callee = directCallee(node);
+            if(callee != null){
+                node.setSymbol(callee);
+            }
+            node.visitChildren(this);
+        }
+    }
+
+    protected Symbol directCallee(AstNode node){
+        if(!isCall(node) || !isModuleAccess(node.getLeft())){
+            return null;
+        }
+
+        final String name = node.getLeft().getRight().getToken().text();
+        Symbol symbol = module.getSymbolTable().getSymbolLocal(name);
+
+        if(symbol == null || symbol.isImported() || symbol.getType() != SymbolType.METHOD){
+            return null;
+        }
+
+        AstNode referent = symbol.getReferent();
+        if(referent == null || !referent.is(NodeType.METHOD) || referent.getParent() != module){
+            return null;
+        }
+
+        // Parameters include self, so a call passing all of them has one child per parameter
+        return Methods.getParamCount(referent) == node.childCount() ? symbol : null;
+    }
+
+    protected boolean isCall(AstNode node){
+        return node.is(NodeType.OPERATOR) && node.getToken().type() == TokenType.LPAREN && node.hasChildren();
+    }
+
+    /**
+     * True if the node is self.getModule().f, as written by the SymbolAccessRewriteVisitor.
+     */
+    protected boolean isModuleAccess(AstNode node){
+        if(!isDot(node) || !node.getRight().is(NodeType.ID)){
+            return false;
+        }
+
+        AstNode getModuleCall = node.getLeft();
+        if(!isCall(getModuleCall) || getModuleCall.childCount() != 1 || !isDot(getModuleCall.getLeft())){
+            return false;
+        }
+
+        AstNode selfDot = getModuleCall.getLeft();
+        return selfDot.getLeft().is(NodeType.ID) && selfDot.getLeft().getToken().text().equals("self")
+                && selfDot.getRight().is(NodeType.ID) && selfDot.getRight().getToken().text().equals("getModule");
+    }
+
+    protected boolean isDot(AstNode node){
+        return node.is(NodeType.OPERATOR) && node.getToken().type() == TokenType.DOT && node.childCount() == 2;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.compiler.ast.transforms;
+
+import chipmunk.compiler.ast.AstNode;
+import chipmunk.compiler.ast.AstVisitor;
+import chipmunk.compiler.ast.Methods;
+import chipmunk.compiler.ast.NodeType;
+import chipmunk.compiler.codegen.ExpressionVisitor;
+import chipmunk.compiler.lexer.TokenType;
+import chipmunk.compiler.symbols.Symbol;
+import chipmunk.compiler.types.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Checks the declared return types of method signatures. A method with a fully typed signature is
+ * compiled with an entry that returns its value unboxed, which is only correct if the method can't
+ * return anything else. A declared return type is kept only if it is proven that, when the parameters
+ * have their declared types, every returned expression has the declared type and the method can't
+ * complete without returning (methods that do return null). Otherwise the signature's return type
+ * is replaced with Any, and the method is compiled without a typed entry.
+ *
+ * Returned expressions are typed from literals, typed locals and parameters, builtin operations, and
+ * direct calls to other methods of the module whose arguments have the callee's parameter types.
+ * Methods calling each other are checked together: all are assumed to return their declared types,
+ * and methods are dropped from the assumption until every remaining method's returns check.
+ *
+ * This must run after the TypeInferenceVisitor and the ModuleCallDevirtualizationVisitor.
+ */
+public class ReturnTypeVisitor implements AstVisitor {
+
+    @Override
+    public void visit(AstNode node) {
+        if(!node.is(NodeType.MODULE)){
+            return;
+        }
+
+        var declared = new ArrayList<AstNode>();
+        collectMethods(node, declared);
+
+        var proven = new HashSet<>(declared);
+        boolean changed = true;
+        while(changed){
+            changed = proven.removeIf(method -> !returnsDeclaredType(method, proven));
+        }
+
+        for(var method : declared){
+            if(!proven.contains(method)){
+                var signature = (MethodType) method.getResultType();
+                method.setResultType(new MethodType(AnyType.INSTANCE, signature.pTypes()));
+            }
+        }
+    }
+
+    protected void collectMethods(AstNode node, List<AstNode> methods){
+        if(node.is(NodeType.METHOD) && node.getResultType() instanceof MethodType signature
+                && !signature.rType().equals(AnyType.INSTANCE)){
+            methods.add(node);
+        }
+        node.getChildren().forEach(child -> collectMethods(child, methods));
+    }
+
+    protected boolean returnsDeclaredType(AstNode method, Set<AstNode> proven){
+        var rType = ((MethodType) method.getResultType()).rType();
+        var types = localTypes(method);
+
+        var last = method.getChild(method.childCount() - 1);
+        if(Methods.getBodyNodeCount(method) == 1 && ExpressionVisitor.isExpressionNode(last)){
+            // Single expression method
+            return rType.equals(typeOf(last, types, proven));
+        }
+
+        var returns = new ArrayList<AstNode>();
+        visitMethodBody(method, n -> {
+            if(n.is(NodeType.FLOW_CONTROL) && n.getToken().type() == TokenType.RETURN){
+                returns.add(n);
+            }
+        });
+
+        for(var ret : returns){
+            if(!ret.hasChildren() || !rType.equals(typeOf(ret.getChild(0), types, proven))){
+                return false;
+            }
+        }
+
+        return !canComplete(method.getChildren().subList(1, method.childCount()));
+    }
+
+    /**
+     * The types of the method's parameters, as they are in its typed entry, and of its typed locals.
+     */
+    protected Map<String, ObjectType> localTypes(AstNode method){
+        var types = new HashMap<String, ObjectType>();
+
+        var pTypes = ((MethodType) method.getResultType()).pTypes();
+        int param = 0;
+        for(var node : method.getChild(0).getChildren()){
+            if(node.is(NodeType.VAR_DEC) && param < pTypes.size()){
+                types.put(node.getSymbol().getName(), pTypes.get(param++));
+            }
+        }
+
+        visitMethodBody(method, n -> {
+            if(n.is(NodeType.VAR_DEC) && !n.getParent().is(NodeType.PARAM_LIST) && n.getResultType() != null){
+                types.put(n.getSymbol().getName(), n.getResultType());
+            }
+        });
+        return types;
+    }
+
+    protected ObjectType typeOf(AstNode node, Map<String, ObjectType> types, Set<AstNode> proven){
+        ObjectType type = switch (node.getNodeType()){
+            case LITERAL -> node.getResultType();
+            case ID -> types.get(node.getToken().text());
+            case OPERATOR -> {
+                if(node.getToken().type() == TokenType.LPAREN){
+                    yield callType(node, types, proven);
+                }
+
+                var operandTypes = new ObjectType[node.childCount()];
+                for(int i = 0; i < operandTypes.length; i++){
+                    operandTypes[i] = typeOf(node.getChild(i), types, proven);
+                }
+                yield BuiltinOps.getOperation(node.getToken().text(), operandTypes)
+                        .map(Operation::rValue)
+                        .orElse(AnyType.INSTANCE);
+            }
+            default -> AnyType.INSTANCE;
+        };
+        return type != null ? type : AnyType.INSTANCE;
+    }
+
+    /**
+     * The return type of a direct call to a method of this module, if the callee is proven to return its
+     * declared type and the call's arguments have the callee's parameter types.
+     */
+    protected ObjectType callType(AstNode call, Map<String, ObjectType> types, Set<AstNode> proven){
+        Symbol callee = call.getSymbol();
+        AstNode referent = callee != null ? callee.getReferent() : null;
+        if(referent == null || !proven.contains(referent)){
+            return AnyType.INSTANCE;
+        }
+
+        var signature = (MethodType) referent.getResultType();
+        var pTypes = signature.pTypes();
+        if(pTypes.size() != call.childCount() - 1){
+            return AnyType.INSTANCE;
+        }
+
+        for(int i = 0; i < pTypes.size(); i++){
+            var pType = pTypes.get(i);
+            if(!pType.equals(AnyType.INSTANCE) && !pType.equals(typeOf(call.getChild(i + 1), types, proven))){
+                return AnyType.INSTANCE;
+            }
+        }
+        return signature.rType();
+    }
+
+    /**
+     * True if running the statements might complete without returning or throwing. Loops and try blocks
+     * are conservatively assumed to be able to complete.
+     */
+    protected boolean canComplete(List<AstNode> statements){
+        for(var statement : statements){
+            if(!canComplete(statement)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected boolean canComplete(AstNode statement){
+        if(statement.is(NodeType.FLOW_CONTROL)){
+            var type = statement.getToken().type();
+            return type != TokenType.RETURN && type != TokenType.THROW;
+        }
+
+        if(statement.is(NodeType.IF_ELSE)){
+            var branches = statement.getChildren();
+            if(branches.isEmpty() || !branches.get(branches.size() - 1).is(NodeType.ELSE)){
+                return true;
+            }
+
+            for(var branch : branches){
+                // An if branch's first child is its condition
+                var body = branch.is(NodeType.IF) ? branch.getChildren().subList(1, branch.childCount()) : branch.getChildren();
+                if(canComplete(body)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    protected void visitMethodBody(AstNode node, Consumer<AstNode> visitor){
+        visitor.accept(node);
+        for(var child : node.getChildren()){
+            // Nested methods & classes have their own returns
+            if(!child.is(NodeType.METHOD, NodeType.CLASS)){
+                visitMethodBody(child, visitor);
+            }
+        }
+    }
+}
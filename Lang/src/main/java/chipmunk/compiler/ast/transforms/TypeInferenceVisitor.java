@@ -22,10 +22,17 @@ package chipmunk.compiler.ast.transforms;
 
 import chipmunk.compiler.ast.AstNode;
 import chipmunk.compiler.ast.AstVisitor;
+import chipmunk.compiler.ast.NodeType;
+import chipmunk.compiler.ast.Operators;
+import chipmunk.compiler.ast.VarDec;
+import chipmunk.compiler.lexer.TokenType;
 import chipmunk.compiler.symbols.Symbol;
 import chipmunk.compiler.symbols.SymbolType;
 import chipmunk.compiler.types.*;
 
+import java.util.*;
+import java.util.function.Consumer;
+
 /**
  * Notes on type resolution:
  *  1. Expressions are fairly easy: recurse to leaves, and on way back up the tree find operations either
@@ -47,33 +54,216 @@ public class TypeInferenceVisitor implements AstVisitor {
     @Override
     public void visit(AstNode node) {
         node.visitChildren(this); // TODO - this might be too aggressive, maybe we should selectively recurse based on what we find
-        switch (node.getNodeType()){
+        if(node.is(NodeType.METHOD)){
+            inferLocalTypes(node);
+            // Declared return types are checked against the method's returns by the ReturnTypeVisitor
+        }
+    }
+
+    /**
+     * Infers the types of the locals declared in a method. Locals are typed flow-insensitively: a local
+     * is given a type only if it is initialized at its declaration and every assignment to it produces
+     * that same type. Upvalues and locals whose names are declared more than once in the method are
+     * never typed, so the inferred type holds for every read of the local regardless of scope.
+     *
+     * The inferred type is stored as the result type of the local's declaration node.
+     */
+    protected void inferLocalTypes(AstNode method){
+        var declarationCounts = new HashMap<String, Integer>();
+        visitMethodBody(method, n -> {
+            if(n.getSymbolTable() != null){
+                n.getSymbolTable().getAllSymbols().forEach(s -> declarationCounts.merge(s.getName(), 1, Integer::sum));
+            }
+        });
+
+        var assignments = new HashMap<String, List<AstNode>>();
+        visitMethodBody(method, n -> {
+            if(n.is(NodeType.VAR_DEC) && VarDec.hasAssignment(n) && isTypeableLocal(n, declarationCounts)){
+                assignments.computeIfAbsent(VarDec.getVarName(n), k -> new ArrayList<>()).add(VarDec.getAssignment(n));
+            }
+        });
+
+        // The variable of a loop over a range literal only takes values counted up from the range's start
+        visitMethodBody(method, n -> {
+            if(isRangeIterator(n) && isTypeableLocal(n.getLeft(), declarationCounts)){
+                assignments.computeIfAbsent(VarDec.getVarName(n.getLeft()), k -> new ArrayList<>()).add(n.getRight().getLeft());
+            }
+        });
+
+        visitMethodBody(method, n -> {
+            if(isLocalAssignment(n) && assignments.containsKey(n.getLeft().getToken().text())){
+                assignments.get(n.getLeft().getToken().text()).add(n.getRight());
+            }
+        });
+
+        // Iterate to a fixed point. A null type means that a local's type has not been resolved
+        // yet. Types only ever move from null -> concrete type -> Any, so this always terminates.
+        var localTypes = new HashMap<String, ObjectType>();
+        assignments.keySet().forEach(name -> localTypes.put(name, null));
+
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(var local : assignments.entrySet()){
+                var current = localTypes.get(local.getKey());
+                var type = current;
+                for(var expr : local.getValue()){
+                    type = join(type, inferType(expr, localTypes));
+                }
+                if(!Objects.equals(type, current)){
+                    localTypes.put(local.getKey(), type);
+                    changed = true;
+                }
+            }
+        }
+
+        visitMethodBody(method, n -> {
+            if(n.is(NodeType.VAR_DEC) && assignments.containsKey(VarDec.getVarName(n))){
+                var type = localTypes.get(VarDec.getVarName(n));
+                n.setResultType(type != null ? type : AnyType.INSTANCE);
+            }
+        });
+
+        // A range loop's counter and end bound locals are typed by its iterator node,
+        // and are only integers if both of the range's bounds are.
+        visitMethodBody(method, n -> {
+            if(isRangeIterator(n)){
+                var start = inferType(n.getRight().getLeft(), localTypes);
+                var end = inferType(n.getRight().getRight(), localTypes);
+                n.setResultType(BuiltinTypes.INTEGER.equals(start) && BuiltinTypes.INTEGER.equals(end) ? BuiltinTypes.INTEGER : AnyType.INSTANCE);
+            }
+        });
+
+        inferSignature(method, declarationCounts, localTypes);
+    }
+
+    /**
+     * Records the method's signature as the result type of the method node. Declared types are taken from the
+     * parameter and return type annotations. A parameter only keeps its declared type if it is never captured
+     * or redeclared and every assignment to it produces that type, so that the type holds for every read of the
+     * parameter when the method is called with arguments of the declared types. All other types are Any.
+     *
+     * Parameter types are deliberately not used to type other locals, since the method can still be called
+     * with arguments of any type.
+     */
+    protected void inferSignature(AstNode method, Map<String, Integer> declarationCounts, Map<String, ObjectType> localTypes){
+        var pTypes = new ArrayList<ObjectType>();
+        for(var param : method.getChild(0).getChildren()){
+            if(!param.is(NodeType.VAR_DEC)){
+                // self
+                continue;
+            }
+
+            var type = declaredType(param);
+            var symbol = param.getSymbol();
+            if(symbol.isUpvalue() || symbol.isUpvalueRef() || declarationCounts.getOrDefault(symbol.getName(), 0) != 1){
+                type = AnyType.INSTANCE;
+            }
+
+            var assignments = new ArrayList<AstNode>();
+            visitMethodBody(method, n -> {
+                if(isLocalAssignment(n) && n.getLeft().getToken().text().equals(symbol.getName())){
+                    assignments.add(n.getRight());
+                }
+            });
+            for(var assigned : assignments){
+                if(!type.equals(inferType(assigned, localTypes))){
+                    type = AnyType.INSTANCE;
+                }
+            }
+
+            pTypes.add(type);
+        }
+
+        method.setResultType(new MethodType(declaredType(method), pTypes));
+    }
+
+    protected ObjectType declaredType(AstNode node){
+        var name = node.getResultTypeName();
+        return name != null ? BuiltinTypes.forName(name.text()).orElse(AnyType.INSTANCE) : AnyType.INSTANCE;
+    }
+
+    protected ObjectType inferType(AstNode node, Map<String, ObjectType> localTypes){
+        ObjectType type = switch (node.getNodeType()){
             // Note: Literal types are set by the LiteralParselet.
+            case LITERAL -> node.getResultType();
             case ID -> {
-                var symbol = node.getSymbolTable().getSymbol(node.getToken().text());
-                node.setResultType(symbol.getReferentType()); // TODO - what to do if the symbol's type hasn't been resolved yet?
+                var name = node.getToken().text();
+                yield localTypes.containsKey(name) ? localTypes.get(name) : AnyType.INSTANCE;
             }
             case OPERATOR -> {
+                if(isLocalAssignment(node)){
+                    yield inferType(node.getRight(), localTypes);
+                }
+
                 // Check for built-in operations first. If the operator's types do not resolve
                 // to a built-in op then overloaded operators defined on the first operand will be used, so use
                 // overload method signatures to resolve the type.
-                var operandTypes = node.getChildren().stream()
-                        .map(AstNode::getResultType)
-                        .toArray(ObjectType[]::new);
+                var operandTypes = new ObjectType[node.childCount()];
+                for(int i = 0; i < operandTypes.length; i++){
+                    operandTypes[i] = inferType(node.getChild(i), localTypes);
+                    if(operandTypes[i] == null){
+                        // Operand depends on a local that is still unresolved
+                        yield null;
+                    }
+                }
+
                 var operator = BuiltinOps.getOperation(node.getToken().text(), operandTypes);
                 if(operator.isEmpty()){
                     // TODO - check LHS for a method with a matching signature
                 }
 
                 if(operator.isPresent()){
-                    node.setResultType(operator.get().rValue());
+                    yield operator.get().rValue();
                 }else{
                     // TODO - emit warning
-                    node.setResultType(AnyType.INSTANCE);
+                    yield AnyType.INSTANCE;
                 }
             }
-            case METHOD -> {
-                // TODO - check return types for inference or against declared type constraints
+            default -> AnyType.INSTANCE;
+        };
+
+        if(type != null){
+            node.setResultType(type);
+        }
+        return type;
+    }
+
+    protected ObjectType join(ObjectType a, ObjectType b){
+        if(a == null){
+            return b;
+        }
+        if(b == null || a.equals(b)){
+            return a;
+        }
+        return AnyType.INSTANCE;
+    }
+
+    protected boolean isTypeableLocal(AstNode varDec, Map<String, Integer> declarationCounts){
+        var symbol = varDec.getSymbol();
+        return symbol != null
+                && !varDec.getParent().is(NodeType.PARAM_LIST)
+                && !symbol.isUpvalue()
+                && !symbol.isUpvalueRef()
+                && declarationCounts.getOrDefault(symbol.getName(), 0) == 1;
+    }
+
+    protected boolean isRangeIterator(AstNode node){
+        return node.is(NodeType.ITERATOR) && Operators.isRange(node.getRight());
+    }
+
+    protected boolean isLocalAssignment(AstNode node){
+        return node.is(NodeType.OPERATOR)
+                && node.getToken().type() == TokenType.EQUALS
+                && node.getLeft().is(NodeType.ID);
+    }
+
+    protected void visitMethodBody(AstNode node, Consumer<AstNode> visitor){
+        visitor.accept(node);
+        for(var child : node.getChildren()){
+            // Nested methods & classes have their own locals
+            if(!child.is(NodeType.METHOD, NodeType.CLASS)){
+                visitMethodBody(child, visitor);
             }
         }
     }
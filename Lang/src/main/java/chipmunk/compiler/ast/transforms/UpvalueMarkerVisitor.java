@@ -20,17 +20,42 @@
 
 package chipmunk.compiler.ast.transforms;
 
-import chipmunk.compiler.UnresolvedSymbolException;
 import chipmunk.compiler.ast.AstNode;
 import chipmunk.compiler.ast.AstVisitor;
+import chipmunk.compiler.ast.Methods;
 import chipmunk.compiler.ast.NodeType;
 import chipmunk.compiler.lexer.TokenType;
 import chipmunk.compiler.symbols.Symbol;
 import chipmunk.compiler.symbols.SymbolTable;
 
+import java.util.*;
+
+/**
+ * Decides how each local that is captured by an inner method is held. The SymbolAccessRewriteVisitor gives
+ * every inner method an upvalue reference for each outer local it uses and marks those locals as upvalues,
+ * which boxes them. This visitor narrows that down:
+ *  1. A captured local that is never assigned after its declaration, and that is only captured after its
+ *     declaration has run, can't change once a closure has it. It is copied into its closures by value and
+ *     is not boxed at all.
+ *  2. A captured local whose closures are only ever called directly by the method declaring them can't be
+ *     seen by another thread, so it is boxed in a confined upvalue that does not need memory fences.
+ *  3. All other captured locals stay shared upvalues.
+ * Symbols are resolved by name, the same way the code generator resolves them, and any local whose name
+ * is declared more than once in a method is left as a shared upvalue.
+ *
+ * This must run after the SymbolAccessRewriteVisitor and before inner methods are hoisted by the
+ * InnerMethodRewriteVisitor.
+ */
 public class UpvalueMarkerVisitor implements AstVisitor {
 
-    protected SymbolTable scope;
+    protected record Span(int start, int end) {}
+
+    protected Map<AstNode, Span> spans;
+    protected Map<Symbol, List<AstNode>> captures;
+    protected Map<Symbol, Integer> writes;
+    protected Set<Symbol> escaping;
+    protected Map<String, Integer> declarationCounts;
+    protected int index;
 
     @Override
     public void visit(AstNode node) {
@@ -39,61 +64,158 @@ public class UpvalueMarkerVisitor implements AstVisitor {
             return;
         }
 
-        if(node.getNodeType().isBlock()){
-            scope = node.getSymbolTable();
+        if(node.is(NodeType.METHOD)){
+            markCaptures(node);
+        }else{
+            node.visitChildren(this);
         }
+    }
 
-        // Recurse to find all non-qualified terminal symbols & rewrite all symbol accesses
-        // that are non-local
+    protected void markCaptures(AstNode method){
+        spans = new IdentityHashMap<>();
+        captures = new IdentityHashMap<>();
+        writes = new IdentityHashMap<>();
+        escaping = Collections.newSetFromMap(new IdentityHashMap<>());
+        declarationCounts = new HashMap<>();
+        index = 0;
 
-        // If visiting a variable declaration, don't rewrite the variable name being declared!
-        int startIndex = node.is(NodeType.VAR_DEC) ? 1 : 0;
-        for(int i = startIndex; i < node.childCount(); i++) {
-            AstNode child = node.getChild(i);
+        scan(method, method, method.getSymbolTable());
 
-            if (child.is(NodeType.ID) && !isQualified(node, child)) {
+        for(var capture : captures.entrySet()){
+            var local = capture.getKey();
+            if(!local.isUpvalue()){
+                continue;
+            }
 
-                if (!isMethodBindTarget(node, i)) {
+            if(isCopyable(local, capture.getValue())){
+                local.unmarkAsUpvalue();
+            }else if(capture.getValue().stream().allMatch(this::isConfined)){
+                local.markAsConfinedUpvalue();
+            }
+        }
+    }
 
-                    markUpvalue(child);
+    protected void scan(AstNode root, AstNode node, SymbolTable scope){
+        int start = index++;
 
+        if(node.getNodeType().isBlock()){
+            scope = node.getSymbolTable();
+            for(var symbol : scope.getAllSymbols()){
+                if(!symbol.isUpvalueRef()){
+                    declarationCounts.merge(symbol.getName(), 1, Integer::sum);
+                }
+            }
+
+            if(node.is(NodeType.METHOD) && node != root){
+                for(var symbol : scope.getAllSymbols()){
+                    if(symbol.isUpvalueRef()){
+                        captures.computeIfAbsent(symbol.getUpvalueRef(), s -> new ArrayList<>()).add(node);
+                    }
                 }
-            } else {
-                child.visit(this);
             }
         }
 
-        if(node.getNodeType().isBlock()){
-            scope = scope.getParent();
+        if(isLocalAssignment(node)){
+            var assigned = resolve(scope, node.getLeft());
+            if(assigned != null){
+                writes.merge(assigned, 1, Integer::sum);
+            }
+        }
+
+        // Parameters and declared names are not uses of a local
+        int startIndex = node.is(NodeType.VAR_DEC) ? 1 : 0;
+        if(!node.is(NodeType.PARAM_LIST, NodeType.IMPORT)){
+            for(int i = startIndex; i < node.childCount(); i++){
+                AstNode child = node.getChild(i);
+                if(child.is(NodeType.ID)){
+                    index++;
+                    if(!isQualified(node, child) && !isMethodBindTarget(node, i) && !isCallOrAssignmentTarget(node, i)){
+                        var used = resolve(scope, child);
+                        if(used != null){
+                            escaping.add(used);
+                        }
+                    }
+                }else{
+                    scan(root, child, scope);
+                }
+            }
         }
 
+        spans.put(node, new Span(start, index - 1));
     }
 
-    protected boolean isQualified(AstNode parent, AstNode child){
-        if(parent.is(NodeType.OPERATOR)){
-            return parent.getToken().text().equals(".") && parent.getRight() == child;
+    protected boolean isCopyable(Symbol local, List<AstNode> capturedBy){
+        if(writes.containsKey(local) || declarationCounts.getOrDefault(local.getName(), 0) != 1){
+            return false;
         }
-        return false;
+
+        var declaration = local.getReferent();
+        if(declaration == null || !declaration.is(NodeType.VAR_DEC) || !declaration.hasParent()){
+            return false;
+        }
+        if(declaration.getParent().is(NodeType.PARAM_LIST)){
+            // Parameters are assigned before anything can capture them
+            return true;
+        }
+
+        // A for loop's variable is assigned by its iterator
+        var declarationSpan = spans.get(declaration.getParent().is(NodeType.ITERATOR) ? declaration.getParent() : declaration);
+        if(declarationSpan == null){
+            return false;
+        }
+
+        return capturedBy.stream()
+                .map(spans::get)
+                .allMatch(s -> s != null && s.start() > declarationSpan.end());
     }
 
-    protected void markUpvalue(AstNode child) {
+    /**
+     * An inner method is confined to the declaring method's thread if it is only ever held in a
+     * local that the declaring method calls directly, and never stores anywhere else.
+     */
+    protected boolean isConfined(AstNode method){
+        Symbol holder = null;
+        var parent = method.getParent();
+        if(parent.is(NodeType.VAR_DEC) && parent.childCount() > 1 && parent.getChild(1) == method){
+            holder = parent.getSymbol();
+        }else if(parent.getNodeType().isBlock() && !Methods.isAnonymousName(method.getSymbol().getName())){
+            holder = method.getSymbol();
+        }
 
-        String symbolName = child.getToken().text();
-        Symbol symbol = scope.getSymbol(symbolName);
+        return holder != null
+                && !writes.containsKey(holder)
+                && !escaping.contains(holder)
+                && !captures.containsKey(holder)
+                && declarationCounts.getOrDefault(holder.getName(), 0) == 1;
+    }
 
+    protected Symbol resolve(SymbolTable scope, AstNode id){
+        var symbol = scope.getSymbol(id.getToken().text());
+        if(symbol != null && symbol.isUpvalueRef()){
+            return symbol.getUpvalueRef();
+        }
+        return symbol;
+    }
+
+    protected boolean isLocalAssignment(AstNode node){
+        return node.is(NodeType.OPERATOR)
+                && node.getToken().type() == TokenType.EQUALS
+                && node.getLeft().is(NodeType.ID);
+    }
 
-        if (symbol == null) {
-            throw new UnresolvedSymbolException(scope.getModuleScope().getDebugSymbol(), symbolName);
+    protected boolean isCallOrAssignmentTarget(AstNode node, int index){
+        if(index == 0 && node.is(NodeType.OPERATOR)){
+            var type = node.getToken().type();
+            return type == TokenType.LPAREN || type == TokenType.EQUALS;
         }
+        return false;
+    }
 
-        if (symbol.getTable().isMethodScope()) {
-            // Mark local variables that are in an outer method scope as upvalues,
-            // and mark the upvalue reference in the nearest method-scope symbol table
-            if(!symbol.getName().equals("self") && scope.isOuterLocal(symbol)){
-                symbol.markAsUpvalue();
-                scope.nearest(SymbolTable.Scope.METHOD).setSymbol(symbol.makeUpvalueRef());
-            }
+    protected boolean isQualified(AstNode parent, AstNode child){
+        if(parent.is(NodeType.OPERATOR)){
+            return parent.getToken().text().equals(".") && parent.getRight() == child;
         }
+        return false;
     }
 
     protected boolean isMethodBindTarget(AstNode node, int index){
@@ -34,6 +34,7 @@ import chipmunk.compiler.ast.NodeType;
 import chipmunk.compiler.lexer.Token;
 import chipmunk.compiler.symbols.Symbol;
 import chipmunk.compiler.symbols.SymbolTable;
+import chipmunk.compiler.symbols.SymbolType;
 import chipmunk.compiler.ast.AstNode;
 import chipmunk.compiler.ast.AstVisitor;
 
@@ -108,15 +109,23 @@ public class Codegen implements AstVisitor {
 				var localIndex = symbols.getLocalIndex(symbol);
 				if(localIndex < preserveArgs){
 					assembler.getLocal(localIndex);
-					assembler.initUpvalue(localIndex);
+					emitUpvalueInit(symbol, localIndex);
 					assembler.setUpvalue(localIndex);
 				}else{
-					assembler.initUpvalue(localIndex);
+					emitUpvalueInit(symbol, localIndex);
 				}
 			}
 		}
 	}
 	
+	private void emitUpvalueInit(Symbol symbol, int localIndex){
+		if(symbol.isConfinedUpvalue()){
+			assembler.initConfinedUpvalue(localIndex);
+		}else{
+			assembler.initUpvalue(localIndex);
+		}
+	}
+	
 	public void exitScope(){
 		if(symbols != null){
 			symbols = symbols.getParent();
@@ -153,13 +162,13 @@ public class Codegen implements AstVisitor {
 
 		if(assign){
 			assembler.dup();
-			if(symbol.isUpvalueRef() || symbol.isUpvalue()){
+			if(symbol.isBoxedUpvalueRef() || symbol.isUpvalue()){
 				assembler.setUpvalue(localIndex);
 			}else{
 				assembler.setLocal(localIndex);
 			}
 		}else{
-			if(symbol.isUpvalueRef() || (symbol.isUpvalue() && !bindingRead)){
+			if(symbol.isBoxedUpvalueRef() || (symbol.isUpvalue() && !bindingRead)){
 				assembler.getUpvalue(localIndex);
 			}else{
 				assembler.getLocal(localIndex);
@@ -207,6 +216,26 @@ public class Codegen implements AstVisitor {
 	public SymbolTable getActiveSymbols(){
 		return symbols;
 	}
+
+	/**
+	 * Returns the symbol of the field that self.name refers to if it is declared by the class
+	 * whose method is being generated, or null otherwise. The receiver of a class method is always
+	 * an instance of the class (or the class object for shared methods), so these fields can be
+	 * accessed on self without dynamic lookup.
+	 */
+	public Symbol getSelfField(String name){
+		if(symbols == null || !symbols.isMethodScope() || !symbols.isClassMethodScope()){
+			return null;
+		}
+
+		SymbolTable method = symbols.getMethodTable();
+		Symbol field = method.getParent().getSymbolLocal(name);
+		if(field == null || field.getType() != SymbolType.VAR || field.isShared() != method.isSharedMethodScope()){
+			return null;
+		}
+
+		return field;
+	}
 	
 	public LoopLabels pushLoop(){
 		LoopLabels labels = new LoopLabels(assembler.nextLabelName(), assembler.nextLabelName(), assembler.nextLabelName());
@@ -28,6 +28,7 @@ import chipmunk.compiler.ast.*;
 import chipmunk.compiler.lexer.ChipmunkLexer;
 import chipmunk.compiler.lexer.Token;
 import chipmunk.compiler.lexer.TokenType;
+import chipmunk.compiler.symbols.Symbol;
 import chipmunk.compiler.symbols.SymbolTable;
 
 public class ExpressionVisitor implements AstVisitor {
@@ -346,15 +347,26 @@ public class ExpressionVisitor implements AstVisitor {
 		AstNode lhs = op.getLeft();
 		if(lhs.is(NodeType.OPERATOR)){
 			if(lhs.getToken().type() == TokenType.DOT){
-				assembler.onLine(lhs.getLineNumber());
-				lhs.getLeft().visit(this);
 				String attr = lhs.getRight().getToken().text();
 
-				assembler.onLine(op.getRight().getLineNumber());
-				op.getRight().visit(this);
+				Symbol field = isSelf(lhs.getLeft()) ? codegen.getSelfField(attr) : null;
+				if(field != null && !field.isTrait() && !field.isFinal()){
+					assembler.onLine(op.getRight().getLineNumber());
+					op.getRight().visit(this);
 
-				assembler.onLine(lhs.getLineNumber());
-				assembler.setattr(attr);
+					assembler.onLine(lhs.getLineNumber());
+					assembler.setSelfAttr(attr);
+				}else{
+					// Trait fields are set through the linker so that it can invalidate the trait
+					assembler.onLine(lhs.getLineNumber());
+					lhs.getLeft().visit(this);
+
+					assembler.onLine(op.getRight().getLineNumber());
+					op.getRight().visit(this);
+
+					assembler.onLine(lhs.getLineNumber());
+					assembler.setattr(attr);
+				}
 			}else if(lhs.getToken().type() == TokenType.LBRACKET){
 				lhs.getLeft().visit(this);
 				lhs.getRight().visit(this);
@@ -375,7 +387,15 @@ public class ExpressionVisitor implements AstVisitor {
 	}
 	
 	private void emitCall(AstNode op){
-		if(op.getLeft().is(NodeType.OPERATOR)
+		if(op.getSymbol() != null){
+			// Devirtualized call to a method of this module - the receiver is always the module itself
+			int argCount = op.childCount() - 1;
+			assembler.getModule();
+			op.visitChildren(this, 1);
+			assembler.onLine(op.getLineNumber());
+			assembler.callModule(op.getSymbol().getName(), (byte)argCount);
+
+		}else if(op.getLeft().is(NodeType.OPERATOR)
 				&& op.getLeft().getToken().type() == TokenType.DOT
 				&& op.getLeft().getRight().is(NodeType.ID)){
 			
@@ -400,14 +420,24 @@ public class ExpressionVisitor implements AstVisitor {
 	
 	private void emitDotGet(AstNode op){
 
+		String attr = op.getRight().getToken().text();
+		if(isSelf(op.getLeft()) && codegen.getSelfField(attr) != null){
+			assembler.onLine(op.getLineNumber());
+			assembler.getSelfAttr(attr);
+			return;
+		}
+
 		assembler.onLine(op.getLeft().getLineNumber());
 		op.getLeft().visit(this);
 		assembler.onLine(op.getLineNumber());
 
-		String attr = op.getRight().getToken().text();
 		assembler.getattr(attr);
 	}
 
+	private boolean isSelf(AstNode node){
+		return node.is(NodeType.ID) && node.getToken().text().equals("self");
+	}
+
 	private void emitLogicalOr(AstNode op){
 		// l | r | v
 		// T | T | T
@@ -23,6 +23,7 @@ package chipmunk.compiler.codegen;
 import chipmunk.compiler.assembler.ChipmunkAssembler;
 import chipmunk.compiler.ast.*;
 import chipmunk.compiler.symbols.SymbolTable;
+import chipmunk.compiler.types.BuiltinTypes;
 
 public class ForVisitor implements AstVisitor {
 
@@ -43,6 +44,12 @@ public class ForVisitor implements AstVisitor {
 
 			AstNode iter = node.getChild();
 
+			if(isCountedLoop(iter)){
+				visitCountedLoop(node, labels);
+				codegen.exitLoop();
+				return;
+			}
+
 			codegen.enterScope(symbols);
 			
 			// Visit iterator expression and push the iterator
@@ -90,4 +97,72 @@ public class ForVisitor implements AstVisitor {
 		}
 	}
 
+	/**
+	 * Loops over integer range literals do not need to create the range or its iterator. Evaluating
+	 * the range's bounds once and counting up from the start by 1 produces the same values in the same
+	 * order as the range would, so these loops are compiled to a counter that is tested against the end
+	 * bound on each iteration.
+	 */
+	protected boolean isCountedLoop(AstNode iter){
+		AstNode range = iter.getRight();
+		return Operators.isRange(range) && BuiltinTypes.INTEGER.equals(range.getLeft().getResultType());
+	}
+
+	protected void visitCountedLoop(AstNode node, LoopLabels labels){
+		SymbolTable symbols = node.getSymbolTable();
+		AstNode iter = node.getChild();
+		AstNode range = iter.getRight();
+		AstNode id = iter.getLeft();
+
+		int counter = symbols.getLocalIndex(iter.getSymbol());
+		int end = symbols.getLocalIndex(VarDec.getIdentifier(id).getToken() + "$end");
+		String test = assembler.nextLabelName();
+
+		codegen.enterScope(symbols);
+
+		// Evaluate the range bounds in the same order the range literal does
+		ExpressionVisitor bounds = new ExpressionVisitor(codegen);
+		range.getLeft().visit(bounds);
+		assembler.setLocal(counter);
+		range.getRight().visit(bounds);
+		assembler.setLocal(end);
+
+		assembler._goto(test);
+
+		// Mark the start of the body
+		assembler.setLabelTarget(labels.getStartLabel());
+
+		// Generate body
+		node.visitChildren(codegen, 1);
+		codegen.exitScope();
+
+		id.getSymbol().setFinal(true);
+		assembler.onLine(id.getLineNumber());
+
+		// The guard is the continue target, so it steps the counter before testing it
+		assembler.setLabelTarget(labels.getGuardLabel());
+		assembler.getLocal(counter);
+		assembler.inc();
+		assembler.setLocal(counter);
+
+		assembler.setLabelTarget(test);
+		assembler.getLocal(counter);
+		assembler.getLocal(end);
+		if(Operators.isInclusiveRange(range)){
+			assembler.le();
+		}else{
+			assembler.lt();
+		}
+		assembler._if(labels.getEndLabel());
+
+		assembler.getLocal(counter);
+		assembler.setLocal(symbols.getLocalIndex(VarDec.getVarName(id)));
+
+		assembler.closeLine();
+
+		assembler._goto(labels.getStartLabel());
+
+		assembler.setLabelTarget(labels.getEndLabel());
+	}
+
 }
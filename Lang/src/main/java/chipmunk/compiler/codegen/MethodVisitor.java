@@ -20,6 +20,7 @@
 
 package chipmunk.compiler.codegen;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -27,10 +28,14 @@ import chipmunk.binary.DebugEntry;
 import chipmunk.binary.ExceptionBlock;
 import chipmunk.binary.BinaryMethod;
 import chipmunk.binary.BinaryModule;
+import chipmunk.binary.LocalType;
 import chipmunk.compiler.assembler.ChipmunkAssembler;
 import chipmunk.compiler.ast.*;
 import chipmunk.compiler.symbols.Symbol;
 import chipmunk.compiler.symbols.SymbolTable;
+import chipmunk.compiler.types.BuiltinTypes;
+import chipmunk.compiler.types.MethodType;
+import chipmunk.compiler.types.ObjectType;
 import static chipmunk.compiler.ast.NodeType.*;
 
 public class MethodVisitor implements AstVisitor {
@@ -169,9 +174,96 @@ public class MethodVisitor implements AstVisitor {
 		method.setModule(module);
 		method.setExceptionTable(codegen.getExceptionBlocks().toArray(new ExceptionBlock[]{}));
 		method.setDebugTable(codegen.getAssembler().getDebugTable().toArray(new DebugEntry[]{}));
+		method.setLocalTypes(getLocalTypes());
+		setSignature();
 		
 		return method;
 	}
+
+	protected void setSignature(){
+		if(!(methodNode.getResultType() instanceof MethodType signature)){
+			return;
+		}
+
+		LocalType[] argTypes = new LocalType[method.getArgCount()];
+		Arrays.fill(argTypes, LocalType.DYNAMIC);
+		LocalType returnType = localTypeOf(signature.rType());
+		boolean typed = returnType != LocalType.DYNAMIC;
+
+		int param = 0;
+		for(AstNode node : methodNode.getChild(0).getChildren()){
+			if(!node.is(VAR_DEC)){
+				continue;
+			}
+
+			int index = symbols.getLocalIndex(node.getSymbol());
+			if(index >= 0 && index < argTypes.length){
+				argTypes[index] = localTypeOf(signature.pTypes().get(param));
+				typed |= argTypes[index] != LocalType.DYNAMIC;
+			}
+			param++;
+		}
+
+		// Untyped signatures are left unset so they take no space in binaries
+		if(typed){
+			method.setArgTypes(argTypes);
+			method.setReturnType(returnType);
+		}
+	}
+
+	protected LocalType[] getLocalTypes(){
+		// Locals in sibling scopes share slots, so a slot is only typed if every
+		// local assigned to it has the same inferred type.
+		LocalType[] types = new LocalType[Math.max(0, symbols.getLocalMax())];
+		boolean[] assigned = new boolean[types.length];
+		Arrays.fill(types, LocalType.DYNAMIC);
+
+		collectLocalTypes(methodNode, types, assigned);
+		return types;
+	}
+
+	private void collectLocalTypes(AstNode node, LocalType[] types, boolean[] assigned){
+		SymbolTable table = node.getSymbolTable();
+		if(table != null){
+			for(Symbol symbol : table.getAllSymbols()){
+				int index = table.getLocalIndex(symbol);
+				if(index < 0 || index >= types.length){
+					continue;
+				}
+
+				LocalType type = localTypeOf(symbol);
+				if(!assigned[index]){
+					types[index] = type;
+					assigned[index] = true;
+				}else if(types[index] != type){
+					types[index] = LocalType.DYNAMIC;
+				}
+			}
+		}
+
+		for(AstNode child : node.getChildren()){
+			if(!child.is(METHOD, CLASS)){
+				collectLocalTypes(child, types, assigned);
+			}
+		}
+	}
+
+	private LocalType localTypeOf(Symbol symbol){
+		if(symbol.isUpvalue() || symbol.isUpvalueRef()){
+			return LocalType.DYNAMIC;
+		}
+
+		return localTypeOf(symbol.getReferentType());
+	}
+
+	private LocalType localTypeOf(ObjectType type){
+		if(BuiltinTypes.INTEGER.equals(type)){
+			return LocalType.INT;
+		}else if(BuiltinTypes.FLOAT.equals(type)){
+			return LocalType.FLOAT;
+		}
+		return LocalType.DYNAMIC;
+	}
 	
 	public Symbol getMethodSymbol(){
 		return methodNode.getSymbol();
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.compiler.imports;
+
+import chipmunk.compiler.ast.AstNode;
+import chipmunk.compiler.ast.Imports;
+import chipmunk.compiler.ast.NodeType;
+
+import java.util.*;
+
+/**
+ * The import dependencies between a set of module ASTs that are being compiled together. Imports of
+ * modules outside of the set are ignored. Modules are grouped into strongly connected components so that
+ * mutually dependent modules can be processed together, and the components are ordered so that every
+ * component comes after all the components it depends on.
+ */
+public class ModuleDependencyGraph {
+
+    protected final List<AstNode> modules;
+    protected final List<Set<Integer>> dependencies;
+    protected final List<List<Integer>> components;
+    protected final List<Set<Integer>> componentDependencies;
+
+    public ModuleDependencyGraph(List<AstNode> modules){
+        this.modules = modules;
+
+        Map<String, Integer> indices = new HashMap<>();
+        for(int i = 0; i < modules.size(); i++){
+            // Match AstImportResolver - the first module with a given name wins
+            indices.putIfAbsent(modules.get(i).getSymbol().getName(), i);
+        }
+
+        dependencies = new ArrayList<>(modules.size());
+        for(int i = 0; i < modules.size(); i++){
+            Set<Integer> deps = new TreeSet<>();
+            for(AstNode child : modules.get(i).getChildren()){
+                if(child.is(NodeType.IMPORT)){
+                    Integer dep = indices.get(Imports.getModule(child).getName());
+                    if(dep != null && dep != i){
+                        deps.add(dep);
+                    }
+                }
+            }
+            dependencies.add(deps);
+        }
+
+        components = new ArrayList<>();
+        componentDependencies = new ArrayList<>();
+        new Tarjan().run();
+    }
+
+    public List<AstNode> getModules(){
+        return modules;
+    }
+
+    /**
+     * Returns the indices of the modules that the given module imports.
+     */
+    public Set<Integer> getDependencies(int module){
+        return Collections.unmodifiableSet(dependencies.get(module));
+    }
+
+    /**
+     * Returns the strongly connected components of the graph as lists of module indices. Each list is in
+     * ascending order, and components are in dependency order: no component depends on a later one.
+     */
+    public List<List<Integer>> getComponents(){
+        return Collections.unmodifiableList(components);
+    }
+
+    /**
+     * Returns the indices of the components that the given component depends on.
+     */
+    public Set<Integer> getComponentDependencies(int component){
+        return Collections.unmodifiableSet(componentDependencies.get(component));
+    }
+
+    protected class Tarjan {
+
+        protected final int[] index = new int[modules.size()];
+        protected final int[] lowLink = new int[modules.size()];
+        protected final boolean[] onStack = new boolean[modules.size()];
+        protected final int[] componentOf = new int[modules.size()];
+        protected final Deque<Integer> stack = new ArrayDeque<>();
+        protected int nextIndex = 1;
+
+        protected void run(){
+            for(int i = 0; i < modules.size(); i++){
+                if(index[i] == 0){
+                    visit(i);
+                }
+            }
+        }
+
+        protected void visit(int module){
+            index[module] = nextIndex;
+            lowLink[module] = nextIndex;
+            nextIndex++;
+            stack.push(module);
+            onStack[module] = true;
+
+            for(int dep : dependencies.get(module)){
+                if(index[dep] == 0){
+                    visit(dep);
+                    lowLink[module] = Math.min(lowLink[module], lowLink[dep]);
+                }else if(onStack[dep]){
+                    lowLink[module] = Math.min(lowLink[module], index[dep]);
+                }
+            }
+
+            if(lowLink[module] == index[module]){
+                // Tarjan's algorithm completes a component only after all components it depends on
+                List<Integer> component = new ArrayList<>();
+                int member;
+                do {
+                    member = stack.pop();
+                    onStack[member] = false;
+                    componentOf[member] = components.size();
+                    component.add(member);
+                } while(member != module);
+                Collections.sort(component);
+
+                Set<Integer> deps = new TreeSet<>();
+                for(int m : component){
+                    for(int dep : dependencies.get(m)){
+                        deps.add(componentOf[dep]);
+                    }
+                }
+                deps.remove(components.size());
+
+                components.add(component);
+                componentDependencies.add(deps);
+            }
+        }
+    }
+}
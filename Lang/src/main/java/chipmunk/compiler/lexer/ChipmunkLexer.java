@@ -22,16 +22,51 @@ package chipmunk.compiler.lexer;
 
 import chipmunk.compiler.SyntaxError;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
+import static chipmunk.compiler.lexer.TokenType.*;
+
+/**
+ * Splits Chipmunk source into tokens. The scanner dispatches on the character at the cursor and consumes
+ * each token in a single forward pass, so the cost of lexing doesn't depend on the number of token types.
+ * Tokens are produced exactly as though each TokenType pattern were tried in declaration order at the cursor,
+ * with the first match winning. Token text is not copied out of the source - each token records its offsets
+ * and only materializes its text when asked for it.
+ */
 public class ChipmunkLexer {
+
+	/**
+	 * Keywords (including the boolean literals) indexed by their first character.
+	 */
+	protected static final Keyword[][] KEYWORDS = new Keyword[128][];
+
+	protected record Keyword(String text, TokenType type) {}
+
+	static {
+		List<List<Keyword>> keywords = new ArrayList<>(KEYWORDS.length);
+		for(int i = 0; i < KEYWORDS.length; i++){
+			keywords.add(new ArrayList<>());
+		}
+
+		for(TokenType type : TokenType.values()){
+			for(String spelling : type.getSpellings()){
+				keywords.get(spelling.charAt(0)).add(new Keyword(spelling, type));
+			}
+		}
+
+		for(int i = 0; i < KEYWORDS.length; i++){
+			KEYWORDS[i] = keywords.get(i).toArray(new Keyword[0]);
+		}
+	}
 	
 	protected TokenStream stream;
 	protected CharSequence src;
 
+	// Set by scan(): the type and end offset (exclusive) of the token at the cursor
+	protected TokenType tokenType;
+	protected int tokenEnd;
+
 	public TokenStream lex(CharSequence source){
 		
 		if(source == null) {
@@ -40,88 +75,291 @@ public class ChipmunkLexer {
 		
 		stream = new TokenStream();
 		
-		src = source;
+		// Tokens read their text from the source lazily, so hold on to an immutable copy of it
+		src = source.toString();
+		final int length = src.length();
 		
 		int line = 1;
 		int column = 1;
 		int cursor = 0;
 		
-		// fill matcher cache
-		Map<TokenType, Matcher> matchers = new HashMap<TokenType, Matcher>();
-		
-		TokenType[] tokenTypes = TokenType.values();
-		for(int i = 0; i < tokenTypes.length; i++){
-			TokenType type = tokenTypes[i];
-			matchers.put(type, type.getPattern().matcher(src));
-		}
-		
-		// spaces
-		Pattern spacePattern = Pattern.compile(" ");
-		Matcher space = spacePattern.matcher(src);
-		
-		// tabs
-		Pattern tabPattern = Pattern.compile("\\t");
-		Matcher tab = tabPattern.matcher(src);
-		
-		while(cursor < src.length()){
-			
-			// check for spaces
-			space.region(cursor, src.length());
-			if(space.lookingAt()){
+		while(cursor < length){
+
+			final char c = src.charAt(cursor);
+
+			if(c == ' '){
 				cursor += 1;
 				column += 1;
 				continue;
 			}
-			
-			// check for tabs
-			tab.region(cursor, src.length());
-			if(tab.lookingAt()){
+
+			if(c == '\t'){
 				cursor += 1;
 				column += 4;
 				continue;
 			}
-			
-			// if skipping the whitespace brings us to the end of the source, break
-			if(cursor == src.length()){
-				break;
-			}
-			
-			boolean foundToken = false;
-			
-			// try to match correct token
-			for(int i = 0; i < tokenTypes.length - 1; i++){
-				
-				TokenType type = tokenTypes[i];
-
-				Matcher matcher = matchers.get(type);
-				matcher.region(cursor, src.length());
-				
-				if (matcher.lookingAt()){
-					String subStr = src.subSequence(matcher.start(), matcher.end()).toString();
-					stream.append(new Token(subStr, type, matcher.start(), line, column));
-					cursor = matcher.end();
-
-					if (type == TokenType.NEWLINE) {
-						column = 1;
-						line += 1;
-					} else {
-						column += matcher.end() - matcher.start();
+
+			// error - we couldn't match a valid token
+			if(!scan(cursor, c)){
+				throw new SyntaxError("Syntax error at line " + line + ", column " + column + ": Could not match a valid syntax element");
+			}
+
+			stream.append(new Token(src, cursor, tokenEnd, tokenType, line, column));
+
+			if(tokenType == NEWLINE){
+				column = 1;
+				line += 1;
+			}else{
+				column += tokenEnd - cursor;
+			}
+			cursor = tokenEnd;
+		}
+
+		stream.append(new Token("", EOF, source.length() - 1, line, column));
+		return stream;
+	}
+
+	protected boolean scan(int start, char c){
+		switch (c) {
+			case '\n', '\r' -> match(NEWLINE, start + 1);
+			case '#' -> {
+				int i = start + 1;
+				while(i < src.length() && !isLineTerminator(src.charAt(i))){
+					i++;
+				}
+				match(COMMENT, i);
+			}
+			case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> scanNumber(start);
+			case '"', '\'' -> {
+				return scanString(start, c);
+			}
+			case '{' -> match(LBRACE, start + 1);
+			case '}' -> match(RBRACE, start + 1);
+			case '[' -> match(LBRACKET, start + 1);
+			case ']' -> match(RBRACKET, start + 1);
+			case '(' -> match(LPAREN, start + 1);
+			case ')' -> match(RPAREN, start + 1);
+			case ',' -> match(COMMA, start + 1);
+			case '+' -> scanOperator(start, PLUS, DOUBLEPLUS, PLUSEQUALS, DOUBLEPLUSEQUALS);
+			case '-' -> scanOperator(start, MINUS, DOUBLEMINUS, MINUSEQUALS, DOUBLEMINUSEQUALS);
+			case '*' -> scanOperator(start, STAR, DOUBLESTAR, STAREQUALS, DOUBLESTAREQUALS);
+			case '/' -> scanOperator(start, FSLASH, DOUBLEFSLASH, FSLASHEQUALS, DOUBLEFSLASHEQUALS);
+			case '&' -> scanOperator(start, AMPERSAND, DOUBLEAMPERSAND, AMPERSANDEQUALS, DOUBLEAMPERSANDEQUALS);
+			case '|' -> scanOperator(start, BAR, DOUBLEBAR, BAREQUALS, DOUBLEBAREQUALS);
+			case '<' -> scanOperator(start, LESSTHAN, DOUBLELESSTHAN, LESSEQUALS, DOUBLELESSEQUALS);
+			case '%' -> scanOperator(start, PERCENT, null, PERCENTEQUALS, null);
+			case '^' -> scanOperator(start, CARET, null, CARETEQUALS, null);
+			case '!' -> scanOperator(start, EXCLAMATION, null, EXCLAMATIONEQUALS, null);
+			case '~' -> scanOperator(start, TILDE, null, TILDEEQUALS, null);
+			case '=' -> scanOperator(start, EQUALS, DOUBLEEQUAlS, null, null);
+			case ':' -> scanOperator(start, COLON, DOUBLECOLON, null, null);
+			case '>' -> {
+				if(at(start + 1) == '>' && at(start + 2) == '>'){
+					if(at(start + 3) == '='){
+						match(TRIPLEMOREQUALS, start + 4);
+					}else{
+						match(TRIPLEMORETHAN, start + 3);
+					}
+				}else{
+					scanOperator(start, MORETHAN, DOUBLEMORETHAN, MOREEQUALS, DOUBLEMOREEQUALS);
+				}
+			}
+			case '.' -> {
+				if(isDigit(at(start + 1))){
+					scanNumber(start);
+				}else if(at(start + 1) == '.'){
+					if(at(start + 2) == '<'){
+						match(DOUBLEDOTLESS, start + 3);
+					}else{
+						match(DOUBLEDOT, start + 2);
 					}
+				}else{
+					match(DOT, start + 1);
+				}
+			}
+			default -> {
+				if(!isIdentifierStart(c)){
+					return false;
+				}
+				scanWord(start, c);
+			}
+		}
+		return true;
+	}
 
-					foundToken = true;
-					break;
+	protected void match(TokenType type, int end){
+		tokenType = type;
+		tokenEnd = end;
+	}
 
+	/**
+	 * Scans an operator that may be doubled (<code>++</code>), combined with an assignment (<code>+=</code>),
+	 * or both (<code>++=</code>). Null types indicate forms that the operator does not have.
+	 */
+	protected void scanOperator(int start, TokenType single, TokenType doubled, TokenType assign, TokenType doubledAssign){
+		char c = src.charAt(start);
+		if(doubled != null && at(start + 1) == c){
+			if(doubledAssign != null && at(start + 2) == '='){
+				match(doubledAssign, start + 3);
+			}else{
+				match(doubled, start + 2);
+			}
+		}else if(assign != null && at(start + 1) == '='){
+			match(assign, start + 2);
+		}else{
+			match(single, start + 1);
+		}
+	}
+
+	protected void scanNumber(int start){
+		if(src.charAt(start) == '0'){
+			char radix = at(start + 1);
+			if((radix == 'b' || radix == 'B') && scanRadixDigits(start + 2, BINARYLITERAL)){
+				return;
+			}
+			if((radix == 'o' || radix == 'O') && scanRadixDigits(start + 2, OCTLITERAL)){
+				return;
+			}
+			if((radix == 'x' || radix == 'X') && scanRadixDigits(start + 2, HEXLITERAL)){
+				return;
+			}
+		}
+
+		int i = start;
+		while(isDigit(at(i))){
+			i++;
+		}
+
+		if(at(i) == '.' && isDigit(at(i + 1))){
+			i += 2;
+			while(isDigit(at(i))){
+				i++;
+			}
+
+			// The exponent is only part of the literal if it has digits
+			char e = at(i);
+			if(e == 'e' || e == 'E'){
+				int exponent = at(i + 1) == '-' ? i + 2 : i + 1;
+				if(isDigit(at(exponent))){
+					i = exponent + 1;
+					while(isDigit(at(i))){
+						i++;
+					}
 				}
 			}
-			
-			// error - we couldn't match a valid token
-			if(!foundToken){
-				throw new SyntaxError("Syntax error at line " + line + ", column " + column + ": Could not match a valid syntax element");
+			match(FLOATLITERAL, i);
+			return;
+		}
+
+		i = start + 1;
+		while(isDigit(at(i)) || at(i) == '_'){
+			i++;
+		}
+		match(INTLITERAL, i);
+	}
+
+	protected boolean scanRadixDigits(int start, TokenType type){
+		int i = start;
+		while(isRadixDigit(at(i), type)){
+			i++;
+		}
+		if(i == start){
+			return false;
+		}
+		match(type, i);
+		return true;
+	}
+
+	/**
+	 * Scans a string literal. An escaped quote does not end the literal, but if the literal is never
+	 * closed it ends at the last escaped quote (if there is one), just as the STRINGLITERAL pattern
+	 * would match after backtracking.
+	 */
+	protected boolean scanString(int start, char quote){
+		int lastEscapedQuote = -1;
+		int i = start + 1;
+		while(i < src.length()){
+			char c = src.charAt(i);
+			if(c == '\\' && at(i + 1) == quote){
+				lastEscapedQuote = i + 1;
+				i += 2;
+			}else if(c == quote){
+				match(STRINGLITERAL, i + 1);
+				return true;
+			}else{
+				i++;
 			}
 		}
 
-		stream.append(new Token("", TokenType.EOF, source.length() - 1, line, column));
-		return stream;
+		if(lastEscapedQuote == -1){
+			return false;
+		}
+		match(STRINGLITERAL, lastEscapedQuote + 1);
+		return true;
+	}
+
+	protected void scanWord(int start, char c){
+		int i = start + 1;
+		while(isIdentifierPart(at(i))){
+			i++;
+		}
+
+		for(Keyword keyword : KEYWORDS[c]){
+			if(spells(keyword.text(), start, i)){
+				match(keyword.type(), i);
+				return;
+			}
+		}
+		match(IDENTIFIER, i);
+	}
+
+	protected boolean spells(String text, int start, int end){
+		if(text.length() != end - start){
+			return false;
+		}
+		for(int i = 1; i < text.length(); i++){
+			if(text.charAt(i) != src.charAt(start + i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the character at the given offset, or 0 past the end of the source.
+	 */
+	protected char at(int index){
+		return index < src.length() ? src.charAt(index) : 0;
+	}
+
+	protected static boolean isDigit(char c){
+		return c >= '0' && c <= '9';
+	}
+
+	protected static boolean isRadixDigit(char c, TokenType type){
+		if(c == '_'){
+			return true;
+		}
+		return switch (type) {
+			case BINARYLITERAL -> c == '0' || c == '1';
+			case OCTLITERAL -> c >= '0' && c <= '7';
+			default -> isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+		};
+	}
+
+	protected static boolean isIdentifierStart(char c){
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	protected static boolean isIdentifierPart(char c){
+		return isIdentifierStart(c) || isDigit(c);
+	}
+
+	/**
+	 * Line terminators as recognized by '.' in java.util.regex, which ends a COMMENT.
+	 */
+	protected static boolean isLineTerminator(char c){
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
 	}
 	
 	public TokenStream getLastTokens(){
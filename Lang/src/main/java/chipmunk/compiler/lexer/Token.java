@@ -20,10 +20,44 @@
 
 package chipmunk.compiler.lexer;
 
-public record Token(String text, TokenType type, int index, int line, int column) {
+import java.util.Objects;
+
+/**
+ * A single lexical token. Tokens produced by the lexer hold their position in the source rather than
+ * a copy of their text - the text is only materialized the first time it is asked for, so tokens that
+ * the parser only checks by type never allocate a string.
+ */
+public final class Token {
 
 	public static final int UNKNOWN = -1;
 
+	private final CharSequence source;
+	private final int end;
+	private final TokenType type;
+	private final int index;
+	private final int line;
+	private final int column;
+	private String text;
+
+	public Token(String text, TokenType type, int index, int line, int column){
+		this.text = text;
+		this.type = type;
+		this.index = index;
+		this.line = line;
+		this.column = column;
+		source = null;
+		end = UNKNOWN;
+	}
+
+	public Token(CharSequence source, int start, int end, TokenType type, int line, int column){
+		this.source = source;
+		this.end = end;
+		this.type = type;
+		this.line = line;
+		this.column = column;
+		index = start;
+	}
+
 	public Token(String token, TokenType tokenType){
 		this(token, tokenType, UNKNOWN, UNKNOWN, UNKNOWN);
 	}
@@ -36,17 +70,57 @@ public record Token(String text, TokenType type, int index, int line, int column
 		this(token, tokenType, UNKNOWN, line, column);
 	}
 
+	public String text(){
+		String t = text;
+		if(t == null && source != null){
+			t = source.subSequence(index, end).toString();
+			text = t;
+		}
+		return t;
+	}
+
+	public TokenType type(){
+		return type;
+	}
+
+	public int index(){
+		return index;
+	}
+
+	public int line(){
+		return line;
+	}
+
+	public int column(){
+		return column;
+	}
+
 	public boolean isSynthetic(){
 		return index == UNKNOWN;
 	}
 
 	public Token withLine(int line){
-		return new Token(text, type, index, line, column);
+		return new Token(text(), type, index, line, column);
+	}
+
+	@Override
+	public boolean equals(Object o){
+		return o instanceof Token other
+				&& type == other.type
+				&& index == other.index
+				&& line == other.line
+				&& column == other.column
+				&& Objects.equals(text(), other.text());
+	}
+
+	@Override
+	public int hashCode(){
+		return Objects.hash(text(), type, index, line, column);
 	}
 	
 	@Override
 	public String toString(){
-		return text.trim() + "(" + type.name().toLowerCase() + ")";
+		return text().trim() + "(" + type.name().toLowerCase() + ")";
 	}
 
 	public static int lineOrNone(Token t){
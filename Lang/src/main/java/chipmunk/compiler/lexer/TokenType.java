@@ -124,6 +124,7 @@ public enum TokenType {
     protected final Pattern pattern;
     protected final boolean keyword;
     protected final boolean literal;
+    protected final String[] spellings;
 
     TokenType(String regex) {
         this(regex, false, false);
@@ -134,9 +135,10 @@ public enum TokenType {
     }
 
     TokenType(String regex, boolean keyword, boolean literal) {
-        pattern = Pattern.compile(keyword ? regex + "(?![a-zA-Z0-9_])" : regex);
+        pattern = Pattern.compile(keyword ? "(?:" + regex + ")(?![a-zA-Z0-9_])" : regex);
         this.keyword = keyword;
         this.literal = literal;
+        spellings = keyword ? regex.split("\\|") : new String[0];
     }
 
     public Pattern getPattern() {
@@ -151,4 +153,12 @@ public enum TokenType {
         return literal;
     }
 
+    /**
+     * Returns the exact source text(s) that a keyword token is spelled with, or an empty array for
+     * token types that are not keywords.
+     */
+    public String[] getSpellings() {
+        return spellings.clone();
+    }
+
 }
@@ -556,6 +556,14 @@ public class ChipmunkParser {
 		node.addChild(iter);
 		iter.setSymbol(new Symbol(varID + "$it"));
 
+		if(Operators.isRange(expr)){
+			// Range loops may be compiled as counted loops, which keep the loop counter in the iterator
+			// local and the range's end bound in a second hidden local. Both locals share the iterator's type.
+			Symbol end = new Symbol(varID + "$end");
+			end.setReferent(iter);
+			node.getSymbolTable().setSymbol(end);
+		}
+
 		tokens.skipNewlines();
 		tokens.forceNext(TokenType.RPAREN);
 		
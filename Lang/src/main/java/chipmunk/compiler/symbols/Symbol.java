@@ -59,6 +59,7 @@ public class Symbol {
 	protected boolean isShared;
 	protected boolean isFinal;
 	protected boolean isUpvalue;
+	protected boolean isConfinedUpvalue;
 	protected boolean isTrait;
 	protected String name;
 	protected Import im;
@@ -120,6 +121,27 @@ public class Symbol {
 		isUpvalue = true;
 	}
 
+	/**
+	 * Clears the upvalue mark from a captured local that is copied into the closures
+	 * capturing it rather than being shared with them.
+	 */
+	public void unmarkAsUpvalue() {
+		isUpvalue = false;
+		isConfinedUpvalue = false;
+	}
+
+	/**
+	 * An upvalue is confined if the closures capturing it can never run on another thread.
+	 */
+	public boolean isConfinedUpvalue() {
+		return isConfinedUpvalue;
+	}
+
+	public void markAsConfinedUpvalue() {
+		isUpvalue = true;
+		isConfinedUpvalue = true;
+	}
+
 	public void setUpvalueRef(Symbol ref){
 		upvalueRef = ref;
 	}
@@ -132,9 +154,18 @@ public class Symbol {
 		return upvalueRef != null;
 	}
 
+	/**
+	 * Returns true if this is a reference to an upvalue that is shared through an upvalue box,
+	 * and false if this is a reference to a captured local that was copied by value.
+	 */
+	public boolean isBoxedUpvalueRef(){
+		return upvalueRef != null && upvalueRef.isUpvalue();
+	}
+
 	public Symbol makeUpvalueRef(){
 		var ref = clone();
 		ref.isUpvalue = false;
+		ref.isConfinedUpvalue = false;
 		ref.setUpvalueRef(this);
 		return ref;
 	}
@@ -205,6 +236,7 @@ public class Symbol {
 
 	public Symbol clone(){
 		Symbol clone = new Symbol(name, isFinal, isShared, isUpvalue, isTrait);
+		clone.isConfinedUpvalue = isConfinedUpvalue;
 		clone.setTable(table);
 		clone.setType(type);
 		clone.setUpvalueRef(upvalueRef);
@@ -241,7 +273,9 @@ public class Symbol {
 			builder.append(getDeclaringScope());
 		}
 
-		if(isUpvalue()){
+		if(isConfinedUpvalue()){
+			builder.append(" confined upvalue ");
+		}else if(isUpvalue()){
 			builder.append(" upvalue ");
 		}
 
@@ -126,7 +126,15 @@ public class BuiltinOps {
 
         ops.put(POWER, BIN_NUMERIC);
 
-        ops.put(DIVIDE, BIN_NUMERIC);
+        // '/' always produces a floating point result - integral division is '//'
+        ops.put(DIVIDE, List.of(
+                binOp(FLOAT, BYTE),
+                binOp(FLOAT, SHORT),
+                binOp(FLOAT, INTEGER),
+                binOp(DOUBLE, LONG),
+                binOp(FLOAT),
+                binOp(DOUBLE)
+        ));
 
         ops.put(FLOOR_DIVIDE, BIN_NUMERIC);
 
@@ -20,6 +20,9 @@
 
 package chipmunk.compiler.types;
 
+import java.util.List;
+import java.util.Optional;
+
 public class BuiltinTypes {
 
     public static final ObjectType ANY = AnyType.INSTANCE;
@@ -36,4 +39,15 @@ public class BuiltinTypes {
 
     public static final ObjectType MAP = CollectionType.MAP;
     public static final ObjectType LIST = CollectionType.LIST;
+
+    protected static final List<ObjectType> ALL = List.of(ANY, BOOLEAN, STRING, FLOAT, DOUBLE, BYTE, SHORT, INTEGER, LONG, MAP, LIST);
+
+    /**
+     * Returns the builtin type with the given name, as written in a type annotation.
+     */
+    public static Optional<ObjectType> forName(String name){
+        return ALL.stream()
+                .filter(t -> t.name().equals(name))
+                .findFirst();
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.runtime;
+
+/**
+ * An upvalue that is only ever accessed from the thread that created it, so it needs no
+ * memory fences.
+ */
+public class ConfinedUpvalue extends Upvalue {
+
+    protected Object value;
+
+    @Override
+    public Object set(Object value){
+        this.value = value;
+        return value;
+    }
+
+    @Override
+    public Object get(){
+        return value;
+    }
+}
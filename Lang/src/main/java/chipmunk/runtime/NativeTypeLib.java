@@ -373,6 +373,10 @@ public class NativeTypeLib implements ChipmunkLibrary {
 
     // ================================ Object Operations ================================
 
+    /**
+     * The class of a Chipmunk object is its Chipmunk class. Library methods apply to implementations of their
+     * receiver type, so this takes precedence over Object.getClass() for every Chipmunk object.
+     */
     public static ChipmunkClass getClass(ChipmunkObject o){
         return o.getChipmunkClass();
     }
@@ -1,15 +1,13 @@
 package chipmunk.runtime;
 
-public class Upvalue {
+/**
+ * A box holding a local variable that closures can assign. Closures that can run on other threads
+ * share a {@link SharedUpvalue}, while closures that never leave the declaring method's thread
+ * share a {@link ConfinedUpvalue}.
+ */
+public abstract class Upvalue {
 
-    protected volatile Object value;
+    public abstract Object set(Object value);
 
-    public Object set(Object value){
-        this.value = value;
-        return value;
-    }
-
-    public Object get(){
-        return value;
-    }
+    public abstract Object get();
 }
@@ -30,8 +30,10 @@ import chipmunk.vm.jvm.JvmCompilerConfig;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public abstract class ChipmunkScript {
 
@@ -56,10 +58,17 @@ public abstract class ChipmunkScript {
     }
 
     protected long id;
-    private volatile boolean yieldFlag;
+    protected volatile long timeSlice;
+    protected volatile long runLimit;
 
     protected final List<Object> tags;
     protected final Map<String, ChipmunkModule> modules;
+    protected final Map<String, CompletableFuture<ChipmunkModule>> loadingModules;
+    protected final Map<String, ModuleInitialization> initializingModules;
+    protected final Map<String, Class<?>> generatedClasses;
+    protected volatile boolean disposed;
+    // Guarded by the VM's running script entry for this script
+    protected int activeInvocations;
 
     protected volatile ChipmunkVM vm;
     protected volatile ModuleLoader loader;
@@ -76,10 +85,19 @@ public abstract class ChipmunkScript {
         this.trapHandler = trapHandler;
         tags = new CopyOnWriteArrayList<>();
         modules = new ConcurrentHashMap<>();
+        loadingModules = new ConcurrentHashMap<>();
+        initializingModules = new ConcurrentHashMap<>();
+        generatedClasses = new ConcurrentHashMap<>();
 
         linkPolicy = new LinkingPolicy(SecurityMode.ALLOWING);
     }
 
+    /**
+     * A module being initialized by the initializer thread. Other threads importing the module wait for
+     * its initialization to complete.
+     */
+    protected record ModuleInitialization(ChipmunkModule module, Thread initializer, CompletableFuture<ChipmunkModule> initialized) {}
+
     public ChipmunkVM getVM() {
         return vm;
     }
@@ -166,22 +184,88 @@ public abstract class ChipmunkScript {
         return modules.containsKey(moduleName);
     }
 
+    /**
+     * Releases the script's modules and generated classes so that its code can be unloaded. Module classes
+     * shared with other scripts stay loaded until every script using them has been disposed. A disposed
+     * script can't be run again.
+     */
+    public void dispose(){
+        if(disposed){
+            return;
+        }
+        disposed = true;
+
+        if(vm != null){
+            vm.dispose(this);
+        }
+
+        modules.clear();
+        loadingModules.clear();
+        initializingModules.clear();
+        generatedClasses.clear();
+        tags.clear();
+
+        if(getCurrentScript() == this){
+            setCurrentScript(null);
+        }
+    }
+
+    public boolean isDisposed(){
+        return disposed;
+    }
+
     public abstract Object run(Object[] args);
 
     public Object run(){
         return run(null);
     }
 
+    /**
+     * Requests that the script stop running. Each of its running invocations is unwound with a
+     * ForcedYieldThrowable the next time it reaches a scheduler checkpoint. Invocations that begin
+     * afterwards run normally.
+     */
     public void yield(){
-        yieldFlag = true;
+        ChipmunkVM vm = this.vm;
+        if(vm != null){
+            vm.getScheduler().yield(this);
+        }
     }
 
     public boolean isYielded(){
-        return yieldFlag;
+        ChipmunkVM vm = this.vm;
+        return vm != null && vm.getScheduler().isYieldRequested(this);
     }
 
     public void resume(){
-        yieldFlag = false;
+        ChipmunkVM vm = this.vm;
+        if(vm != null){
+            vm.getScheduler().resume(this);
+        }
+    }
+
+    /**
+     * Sets how long an invocation of this script may run before it is made to yield
+     * its thread to other scripts. 0 uses the scheduler's default time slice.
+     */
+    public void setTimeSlice(long timeSlice, TimeUnit unit){
+        this.timeSlice = unit.toNanos(timeSlice);
+    }
+
+    public long getTimeSlice(){
+        return timeSlice;
+    }
+
+    /**
+     * Sets the maximum time an invocation of this script may run before it is forced to
+     * yield with a ForcedYieldThrowable. 0 means invocations may run indefinitely.
+     */
+    public void setRunLimit(long runLimit, TimeUnit unit){
+        this.runLimit = unit.toNanos(runLimit);
+    }
+
+    public long getRunLimit(){
+        return runLimit;
     }
 
     public void setLibs(ChipmunkLibraries libs){
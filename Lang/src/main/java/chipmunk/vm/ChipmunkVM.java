@@ -21,6 +21,7 @@
 package chipmunk.vm;
 
 import chipmunk.binary.BinaryFormatException;
+import chipmunk.binary.BinaryImport;
 import chipmunk.binary.BinaryModule;
 import chipmunk.compiler.ChipmunkCompiler;
 import chipmunk.compiler.ChipmunkSource;
@@ -36,6 +37,7 @@ import chipmunk.vm.invoke.security.LinkingPolicy;
 import chipmunk.vm.invoke.security.SecurityMode;
 import chipmunk.vm.jvm.*;
 import chipmunk.vm.scheduler.Scheduler;
+import chipmunk.vm.scheduler.ScriptInvocation;
 import jdk.dynalink.linker.GuardedInvocation;
 
 import java.io.IOException;
@@ -48,6 +50,7 @@ import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ChipmunkVM {
 
@@ -60,6 +63,9 @@ public class ChipmunkVM {
 	protected final AtomicLong scriptIds;
 	protected final ExecutorService scriptExecutor;
 	protected final Scheduler scheduler;
+	protected final ChipmunkLinker linker;
+	protected final CompiledModuleCache moduleCache;
+	protected volatile boolean prefetchImports;
 
 	public ChipmunkVM() {
 		this(SecurityMode.ALLOWING);
@@ -75,6 +81,8 @@ public class ChipmunkVM {
 		scriptIds = new AtomicLong();
 		scriptExecutor = Executors.newVirtualThreadPerTaskExecutor();
 		scheduler = new Scheduler();
+		linker = new ChipmunkLinker();
+		moduleCache = new CompiledModuleCache();
 
 		defaultJvmCompilerConfig = new JvmCompilerConfig(defaultLinkPolicy, new TrapConfig());
 
@@ -126,6 +134,10 @@ public class ChipmunkVM {
 		return scheduler;
 	}
 
+	public CompiledModuleCache getModuleCache(){
+		return moduleCache;
+	}
+
 	public JvmCompiler createDefaultJvmCompiler(){
 		return createJvmCompiler(defaultJvmCompilerConfig);
 	}
@@ -221,17 +233,190 @@ public class ChipmunkVM {
 			return module;
 		}
 
-		module = script.getModuleLoader().load(moduleName, script.getJvmCompiler());
+		ChipmunkScript.ModuleInitialization initialization = script.initializingModules.get(moduleName);
+		if(initialization != null){
+			return awaitInitialization(initialization);
+		}
+
+		module = loadModule(script, moduleName);
 
 		if(module == null){
 			throw new ModuleLoadException(String.format("Module %s not found", moduleName));
 		}
 
+		// Only the thread that claims the module initializes it. Other threads wait until it is initialized,
+		// while the initializing thread can use it right away so that modules importing each other during
+		// initialization can be resolved.
+		var claim = new ChipmunkScript.ModuleInitialization(module, Thread.currentThread(), new CompletableFuture<>());
+		initialization = script.initializingModules.putIfAbsent(moduleName, claim);
+		if(initialization != null){
+			releaseIfUnused(module, initialization.module());
+			return awaitInitialization(initialization);
+		}
+
+		// Another thread may have finished initializing the module before it was claimed
+		ChipmunkModule initialized = script.modules.get(moduleName);
+		if(initialized != null){
+			script.initializingModules.remove(moduleName, claim);
+			claim.initialized().complete(initialized);
+			releaseIfUnused(module, initialized);
+			return initialized;
+		}
+		script.loadingModules.remove(moduleName);
+
+		try{
+			module.initialize(this);
+		}catch(Throwable t){
+			script.initializingModules.remove(moduleName, claim);
+			claim.initialized().completeExceptionally(t);
+			moduleCache.release(module);
+			throw t;
+		}
+
 		script.modules.put(moduleName, module);
-		module.initialize(this);
+		script.initializingModules.remove(moduleName, claim);
+		claim.initialized().complete(module);
+		return module;
+	}
+
+	/**
+	 * Releases a module loaded by a thread that lost the race to initialize it, unless it is the
+	 * same module the winning thread loaded.
+	 */
+	protected void releaseIfUnused(ChipmunkModule loaded, ChipmunkModule used){
+		if(loaded != used){
+			moduleCache.release(loaded);
+		}
+	}
+
+	protected ChipmunkModule awaitInitialization(ChipmunkScript.ModuleInitialization initialization) throws Throwable {
+		if(initialization.initializer() == Thread.currentThread()){
+			return initialization.module();
+		}
+
+		try{
+			return initialization.initialized().join();
+		}catch(CompletionException e){
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Loads and compiles the module for the script without initializing it. Loads are single-flight: concurrent
+	 * imports of the same module (including prefetches) share a single load.
+	 */
+	protected ChipmunkModule loadModule(ChipmunkScript script, String moduleName) throws Throwable {
+		CompletableFuture<ChipmunkModule> load = new CompletableFuture<>();
+		CompletableFuture<ChipmunkModule> inFlight = script.loadingModules.computeIfAbsent(moduleName, n -> load);
+		if(inFlight != load){
+			try{
+				return inFlight.join();
+			}catch(CompletionException e){
+				throw e.getCause();
+			}
+		}
+
+		ChipmunkModule module;
+		try{
+			ChipmunkLibraries scriptLibs = script.getLibs();
+			module = script.getModuleLoader().load(moduleName, script.getJvmCompiler(), moduleCache, script.getLinkPolicy(), scriptLibs != null ? scriptLibs : defaultLibraries);
+		}catch(Throwable t){
+			script.loadingModules.remove(moduleName, load);
+			load.completeExceptionally(t);
+			throw t;
+		}
+
+		if(module == null){
+			script.loadingModules.remove(moduleName, load);
+		}
+		load.complete(module);
+
+		if(module != null && prefetchImports){
+			prefetchImports(script, moduleName);
+		}
 		return module;
 	}
 
+	/**
+	 * Starts loading and compiling the imports of the module in parallel on the script executor, so that they
+	 * are ready (or in flight) by the time they are first used. Prefetched modules also prefetch their own
+	 * imports. Failures are ignored here - they are reported when the import is used.
+	 */
+	protected void prefetchImports(ChipmunkScript script, String moduleName){
+		BinaryModule binary;
+		try{
+			binary = script.getModuleLoader().loadBinary(moduleName);
+		}catch(IOException | BinaryFormatException e){
+			return;
+		}
+
+		if(binary == null || binary.getImports() == null){
+			return;
+		}
+
+		for(BinaryImport im : binary.getImports()){
+			final String importName = im.getName();
+			if(script.modules.containsKey(importName) || script.loadingModules.containsKey(importName)
+					|| script.initializingModules.containsKey(importName)){
+				continue;
+			}
+
+			try{
+				scriptExecutor.execute(() -> {
+					try{
+						loadModule(script, importName);
+					}catch(Throwable ignored){}
+				});
+			}catch(RejectedExecutionException e){
+				// The VM is shutting down
+				return;
+			}
+		}
+	}
+
+	/**
+	 * When enabled, loading a module also starts loading and compiling its imports in parallel.
+	 */
+	public void setImportPrefetching(boolean prefetch){
+		prefetchImports = prefetch;
+	}
+
+	public boolean isImportPrefetching(){
+		return prefetchImports;
+	}
+
+	/**
+	 * Drops the VM's references to the script and releases its modules from the module cache.
+	 * Called by ChipmunkScript.dispose().
+	 */
+	protected void dispose(ChipmunkScript script){
+		runningScripts.computeIfPresent(script.getId(), (id, running) -> {
+			running.activeInvocations = 0;
+			return null;
+		});
+		scheduler.notifyScriptDisposed(script);
+
+		for(ChipmunkModule module : script.modules.values()){
+			moduleCache.release(module);
+		}
+
+		script.initializingModules.forEach((name, initialization) -> {
+			if(script.modules.get(name) != initialization.module()){
+				moduleCache.release(initialization.module());
+			}
+		});
+
+		// Prefetched modules that were never imported
+		script.loadingModules.forEach((name, load) -> {
+			if(load.isDone() && !load.isCompletedExceptionally()){
+				ChipmunkModule module = load.join();
+				if(module != null && script.modules.get(name) != module){
+					moduleCache.release(module);
+				}
+			}
+		});
+	}
+
 	public boolean isModuleLoaded(String moduleName) {
 		return isModuleLoaded(ChipmunkScript.getCurrentScript(), moduleName);
 	}
@@ -255,7 +440,6 @@ public class ChipmunkVM {
 
 	public Object invoke(Object target, String methodName, Object[] params) throws Throwable {
 
-		ChipmunkLinker linker = new ChipmunkLinker();
 		ChipmunkLinker.setLibrariesForThread(defaultLibraries);
 
 		final int pCount = params != null ? params.length : 0;
@@ -272,31 +456,77 @@ public class ChipmunkVM {
 		return invoker.getInvocation().invokeWithArguments(callParams);
 	}
 
+	/**
+	 * Looks up a method for repeated calls from the host application. The returned function is
+	 * linked on its first call and reuses that linkage on subsequent calls.
+	 */
+	public ScriptFunction lookupFunction(Object target, String methodName, int arity){
+		return new ScriptFunction(this, null, defaultLibraries, target, methodName, arity);
+	}
+
+	public ScriptFunction lookupFunction(ChipmunkScript script, Object target, String methodName, int arity){
+		ChipmunkLibraries scriptLibs = script.getLibs();
+		return new ScriptFunction(this, script, scriptLibs != null ? scriptLibs : defaultLibraries, target, methodName, arity);
+	}
+
 	public Object invoke(ChipmunkScript script, Object target, String methodName){
 		return invoke(script, target, methodName, null);
 	}
 
 	public Object invoke(ChipmunkScript script, Object target, String methodName, Object[] params){
-		runningScripts.put(script.getId(), script);
+		checkNotDisposed(script);
+		return invoke(new ScriptInvocation(script), target, methodName, params);
+	}
+
+	protected Object invoke(ScriptInvocation invocation, Object target, String methodName, Object[] params){
+		ChipmunkScript script = invocation.getScript();
+		checkNotDisposed(script);
+
+		ChipmunkScript previousScript = ChipmunkScript.getCurrentScript();
+		ChipmunkLibraries previousLibs = ChipmunkLinker.getLibrariesForThread();
 
 		ChipmunkScript.setCurrentScript(script);
 
 		ChipmunkLibraries scriptLibs = script.getLibs();
 		ChipmunkLinker.setLibrariesForThread(scriptLibs != null ? scriptLibs : defaultLibraries);
 
-		scheduler.notifyInvocationBegan(script);
+		invocationBegan(invocation);
 
 		try{
 			return invoke(target, methodName, params);
 		}catch (Throwable t){
 			throw new RuntimeException(t);
 		}finally{
-			runningScripts.remove(script.getId());
-			//ChipmunkScript.setCurrentScript(null);
-			scheduler.notifyInvocationEnded(script);
+			invocationEnded(invocation);
+			ChipmunkScript.setCurrentScript(previousScript);
+			ChipmunkLinker.setLibrariesForThread(previousLibs);
 		}
 	}
 
+	/**
+	 * Registers an invocation of the script as running. A script may have several invocations running at
+	 * once - concurrently on different threads or reentrantly on one - so it stays registered until the
+	 * last of them has ended.
+	 */
+	protected void invocationBegan(ScriptInvocation invocation){
+		ChipmunkScript script = invocation.getScript();
+		runningScripts.compute(script.getId(), (id, running) -> {
+			script.activeInvocations++;
+			return script;
+		});
+		scheduler.notifyInvocationBegan(invocation);
+	}
+
+	protected void invocationEnded(ScriptInvocation invocation){
+		runningScripts.computeIfPresent(invocation.getScript().getId(),
+				(id, running) -> --running.activeInvocations > 0 ? running : null);
+		scheduler.notifyInvocationEnded(invocation);
+	}
+
+	public boolean isRunning(ChipmunkScript script){
+		return runningScripts.containsKey(script.getId());
+	}
+
 	public CompletableFuture<Object> runAsync(ChipmunkScript script) {
 		return invokeAsync(script, script, "run");
 	}
@@ -310,36 +540,51 @@ public class ChipmunkVM {
 	}
 
 	public CompletableFuture<Object> invokeAsync(ChipmunkScript script, Object target, String methodName, Object[] params){
-		scheduler.notifyQueuedForInvocation(script);
+		checkNotDisposed(script);
+		ScriptInvocation invocation = scheduler.notifyQueuedForInvocation(script);
 		return CompletableFuture.supplyAsync(() -> {
-			Object value = invoke(script, target, methodName, params);
-			ChipmunkScript.setCurrentScript(null);
-			return value;
+			try{
+				return invoke(invocation, target, methodName, params);
+			}finally{
+				// Still queued if the script was disposed before the invocation could begin
+				scheduler.notifyInvocationEnded(invocation);
+				ChipmunkScript.setCurrentScript(null);
+			}
 		}, scriptExecutor);
 	}
 
+	protected void checkNotDisposed(ChipmunkScript script){
+		if(script.isDisposed()){
+			throw new IllegalStateException("Script %d has been disposed".formatted(script.getId()));
+		}
+	}
+
 	public CompletableFuture<Object> runInScriptPool(ChipmunkScript script, Callable<Object> task){
-		scheduler.notifyQueuedForInvocation(script);
+		checkNotDisposed(script);
+		ScriptInvocation invocation = scheduler.notifyQueuedForInvocation(script);
 		return CompletableFuture.supplyAsync(() -> {
 			try {
-				scheduler.notifyInvocationBegan(script);
+				checkNotDisposed(script);
+				scheduler.notifyInvocationBegan(invocation);
 				return task.call();
 			} catch (Throwable e) {
 				throw new RuntimeException(e);
 			} finally {
-				scheduler.notifyInvocationEnded(script);
+				scheduler.notifyInvocationEnded(invocation);
 			}
 		}, scriptExecutor);
 	}
 
 	public CompletableFuture<Void> runInScriptPool(ChipmunkScript script, Runnable task){
-		scheduler.notifyQueuedForInvocation(script);
+		checkNotDisposed(script);
+		ScriptInvocation invocation = scheduler.notifyQueuedForInvocation(script);
 		return CompletableFuture.runAsync(() -> {
 			try {
-				scheduler.notifyInvocationBegan(script);
+				checkNotDisposed(script);
+				scheduler.notifyInvocationBegan(invocation);
 				task.run();
 			} finally {
-				scheduler.notifyInvocationEnded(script);
+				scheduler.notifyInvocationEnded(invocation);
 			}
 		}, scriptExecutor);
 	}
@@ -360,25 +605,35 @@ public class ChipmunkVM {
 
 		var targetType = target.getClass();
 
-		var bindingName = MethodBinding.class.getName() + "$" + targetType.getName().replace('.', '_') + "$" + method;
+		// Hidden class names contain a '/', which can't appear in the binding's name
+		var bindingName = MethodBinding.class.getName() + "$" + targetType.getName().replace('.', '_').replace('/', '_') + "$" + method;
 
 		var script = ChipmunkScript.getCurrentScript();
-		try {
-			return script.getModuleLoader().getClassLoader().loadClass(bindingName);
-		} catch (ClassNotFoundException e) {
-			return script.getJvmCompiler().bindingFor(script.getModuleLoader().getClassLoader(), bindingName, targetType, method);
-		}
+		return generatedClass(script, bindingName,
+				loader -> script.getJvmCompiler().bindingFor(loader, bindingName, targetType, method));
 	}
 
 	public Class<?> getArgBinding(Class<? extends MethodBinding> delegateType, int pos, int argCount){
-		var bindingName = delegateType.getName() + "$bound$%d$%d".formatted(pos, argCount);
+		var bindingName = delegateType.getName().replace('/', '_') + "$bound$%d$%d".formatted(pos, argCount);
 
 		var script = ChipmunkScript.getCurrentScript();
-		try {
-			return script.getModuleLoader().getClassLoader().loadClass(bindingName);
-		} catch (ClassNotFoundException e) {
-			return script.getJvmCompiler().argBindingFor(script.getModuleLoader().getClassLoader(), bindingName, delegateType, pos, argCount);
-		}
+		return generatedClass(script, bindingName,
+				loader -> script.getJvmCompiler().argBindingFor(loader, bindingName, delegateType, pos, argCount));
+	}
+
+	/**
+	 * Returns the script's generated class with the given name, generating it if it doesn't exist yet. Hidden
+	 * classes can't be found through the class loader, so generated classes are also cached by the script.
+	 */
+	protected Class<?> generatedClass(ChipmunkScript script, String name, Function<ChipmunkClassLoader, Class<?>> generator){
+		return script.generatedClasses.computeIfAbsent(name, n -> {
+			var classloader = script.getModuleLoader().getClassLoader();
+			try {
+				return classloader.loadClass(n);
+			} catch (ClassNotFoundException e) {
+				return generator.apply(classloader);
+			}
+		});
 	}
 
 	@SuppressWarnings("unchecked")
@@ -393,18 +648,11 @@ public class ChipmunkVM {
 			throw new IllegalArgumentException("MethodBinding target may only be cast to a functional interface");
 		}
 
-		var proxyName = "chipmunk.proxy." + interfaceType.getName() + "$Proxy$" + target.getClass().getName().replace('.', '$');
+		var proxyName = "chipmunk.proxy." + interfaceType.getName() + "$Proxy$" + target.getClass().getName().replace('.', '$').replace('/', '$');
 
 		var script = ChipmunkScript.getCurrentScript();
-		var classloader = script.getModuleLoader().getClassLoader();
-
-		Class<T> proxyType;
-		try {
-			proxyType = (Class<T>) classloader.loadClass(proxyName);
-		} catch (ClassNotFoundException e) {
-			proxyType = script.getJvmCompiler()
-					.makeProxyInterfaceImpl(script.getModuleLoader().getClassLoader(), proxyName, interfaceType, isSamType);
-		}
+		Class<T> proxyType = (Class<T>) generatedClass(script, proxyName,
+				loader -> script.getJvmCompiler().makeProxyInterfaceImpl(loader, proxyName, interfaceType, isSamType));
 
 		return proxyType.getConstructor(ChipmunkScript.class, Object.class).newInstance(script, target);
 	}
@@ -433,8 +681,20 @@ public class ChipmunkVM {
 		handleTrap(handler -> handler.runtimeTrap(payload));
 	}
 
-	public static void backJump(TrapSite site){
+	/**
+	 * Gives the scheduler a chance to preempt the current script. Scripts only reach these
+	 * checkpoints if they were compiled with BACK_JUMP or METHOD_CALL traps enabled.
+	 */
+	private static void checkpoint() throws ForcedYieldThrowable {
+		var script = ChipmunkScript.getCurrentScript();
+		if(script != null && script.getVM() != null){
+			script.getVM().getScheduler().checkpoint(script);
+		}
+	}
+
+	public static void trapBackJump(TrapSite site) throws ForcedYieldThrowable {
 		handleTrap(handler -> handler.backJump(site));
+		checkpoint();
 	}
 
 	public static void trapObjectAlloc(TrapSite site, Class<?> objectType){
@@ -445,8 +705,9 @@ public class ChipmunkVM {
 		handleTrap(handler -> handler.arrayAlloc(site, arrayType, dimensions, capacity));
 	}
 
-	public static void trapMethodCall(TrapSite site, MethodIdentifier method){
+	public static void trapMethodCall(TrapSite site, MethodIdentifier method) throws ForcedYieldThrowable {
 		handleTrap(handler -> handler.methodCall(site, method));
+		checkpoint();
 	}
 
 	public static void trapObjectInit(TrapSite site, Object object){
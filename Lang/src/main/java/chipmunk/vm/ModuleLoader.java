@@ -24,16 +24,25 @@ import chipmunk.binary.BinaryFormatException;
 import chipmunk.binary.BinaryModule;
 import chipmunk.binary.BinaryReader;
 import chipmunk.modules.lang.LangModule;
+import chipmunk.vm.invoke.ChipmunkLibraries;
+import chipmunk.vm.invoke.security.LinkingPolicy;
 import chipmunk.vm.jvm.ChipmunkClassLoader;
+import chipmunk.vm.jvm.CompiledModuleCache;
+import chipmunk.vm.jvm.JvmCompilation;
 import chipmunk.vm.jvm.JvmCompiler;
+import chipmunk.vm.jvm.ModuleClassStore;
 import chipmunk.runtime.ChipmunkModule;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -42,12 +51,15 @@ public class ModuleLoader {
 	protected volatile ModuleLoader delegate;
 	protected final List<ModuleLocator> locators;
 	protected final Map<String, BinaryModule> loadedModules;
+	protected final Map<String, CompletableFuture<BinaryModule>> pendingModules;
 	protected final Map<String, NativeModuleFactory> nativeFactories;
 	protected final ChipmunkClassLoader classLoader;
+	protected volatile ModuleClassStore classStore;
 
 	public ModuleLoader(){
 		locators = new CopyOnWriteArrayList<>();
 		loadedModules = new ConcurrentHashMap<>();
+		pendingModules = new ConcurrentHashMap<>();
 		nativeFactories = new ConcurrentHashMap<>();
 		classLoader = new ChipmunkClassLoader();
 
@@ -80,6 +92,18 @@ public class ModuleLoader {
 		return classLoader;
 	}
 
+	public ModuleClassStore getClassStore(){
+		return classStore;
+	}
+
+	/**
+	 * Sets the store that module classes are defined from (and saved to) when modules are loaded.
+	 * With no store, module classes are always generated.
+	 */
+	public void setClassStore(ModuleClassStore classStore){
+		this.classStore = classStore;
+	}
+
 	public void addLocator(ModuleLocator locator){
 		locators.add(locator);
 	}
@@ -110,26 +134,76 @@ public class ModuleLoader {
 		return null;
 	}
 
+	/**
+	 * Loads the binary module with the given name. Loads are single-flight: if several threads load the
+	 * same module at once, only one of them locates and reads it, and the others wait for its result.
+	 */
 	public BinaryModule loadBinary(String moduleName) throws IOException, BinaryFormatException {
 
-		if(loadedModules.containsKey(moduleName)){
-			return loadedModules.get(moduleName);
+		BinaryModule module = loadedModules.get(moduleName);
+		if(module != null){
+			return module;
 		}
 
-		InputStream is = locate(moduleName);
-		if(is == null){
-			if(delegate != null){
-				return delegate.loadBinary(moduleName);
+		CompletableFuture<BinaryModule> load = new CompletableFuture<>();
+		CompletableFuture<BinaryModule> inFlight = pendingModules.computeIfAbsent(moduleName, n -> load);
+		if(inFlight != load){
+			return awaitBinary(inFlight);
+		}
+
+		try{
+			// The module may have been added to the loaded modules since it was checked
+			module = loadedModules.get(moduleName);
+			if(module == null){
+				module = readBinary(moduleName);
+				if(module != null){
+					module = Objects.requireNonNullElse(loadedModules.putIfAbsent(moduleName, module), module);
+				}else if(delegate != null){
+					module = delegate.loadBinary(moduleName);
+				}
 			}
-			return null;
+			load.complete(module);
+			return module;
+		}catch(IOException | BinaryFormatException | RuntimeException e){
+			load.completeExceptionally(e);
+			throw e;
+		}finally{
+			pendingModules.remove(moduleName, load);
 		}
+	}
 
-		BinaryReader reader = new BinaryReader();
-		BinaryModule module = reader.readModule(is);
+	protected BinaryModule readBinary(String moduleName) throws IOException, BinaryFormatException {
+		for(ModuleLocator locator : locators){
+			// Prefer mapping binaries from files over streaming them
+			Path path = locator.locateFile(moduleName);
+			if(path != null){
+				return new BinaryReader().readModule(path);
+			}
 
-		loadedModules.put(moduleName, module);
+			InputStream is = locator.locate(moduleName);
+			if(is != null){
+				try(is){
+					return new BinaryReader().readModule(is);
+				}
+			}
+		}
+		return null;
+	}
 
-		return module;
+	protected BinaryModule awaitBinary(CompletableFuture<BinaryModule> load) throws IOException, BinaryFormatException {
+		try{
+			return load.join();
+		}catch(CompletionException e){
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException ioe){
+				throw ioe;
+			}else if(cause instanceof BinaryFormatException bfe){
+				throw bfe;
+			}else if(cause instanceof RuntimeException re){
+				throw re;
+			}
+			throw e;
+		}
 	}
 
 	public ChipmunkModule loadNative(String moduleName){
@@ -144,9 +218,23 @@ public class ModuleLoader {
 	}
 
 	public ChipmunkModule load(String moduleName, JvmCompiler compiler) throws IOException, BinaryFormatException {
+		return load(moduleName, compiler, null, null, null);
+	}
+
+	/**
+	 * Loads the module, reusing its compiled classes from the cache or the class store if possible. Cached
+	 * classes are only shared with scripts using the same linking policy and libraries.
+	 */
+	public ChipmunkModule load(String moduleName, JvmCompiler compiler, CompiledModuleCache cache, LinkingPolicy policy, ChipmunkLibraries libs) throws IOException, BinaryFormatException {
 		BinaryModule binMod = loadBinary(moduleName);
 
 		if(binMod != null){
+			ModuleClassStore store = classStore;
+			if(cache != null){
+				return cache.load(compiler, binMod, policy, libs, store);
+			}else if(store != null){
+				return (ChipmunkModule) compiler.instantiate(store.load(compiler, new JvmCompilation(binMod, new ModuleLoader(), compiler.getConfig())));
+			}
 			return compiler.compileModule(binMod);
 		}
 
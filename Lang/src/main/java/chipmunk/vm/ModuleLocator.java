@@ -22,9 +22,18 @@ package chipmunk.vm;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public interface ModuleLocator {
 
     InputStream locate(String moduleName) throws IOException;
 
+    /**
+     * Returns the path of the module's binary if this locator finds it on the file system, so that it can
+     * be memory-mapped rather than streamed. Returns null otherwise.
+     */
+    default Path locateFile(String moduleName) throws IOException {
+        return null;
+    }
+
 }
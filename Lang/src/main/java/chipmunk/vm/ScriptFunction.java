@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm;
+
+import chipmunk.vm.invoke.Binder;
+import chipmunk.vm.invoke.ChipmunkCallSite;
+import chipmunk.vm.invoke.ChipmunkLibraries;
+import chipmunk.vm.invoke.ChipmunkLinker;
+import chipmunk.vm.scheduler.ScriptInvocation;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A reusable handle for calling a Chipmunk method from the host application. Unlike ChipmunkVM.invoke(),
+ * the call is linked once through an inline-cached call site and later calls go straight through the linked
+ * method handle. The call site relinks itself when its guards fail - for example when the argument types
+ * change, or when a trait the method was resolved through is reassigned.
+ *
+ * Obtain instances via ChipmunkVM.lookupFunction().
+ */
+public class ScriptFunction {
+
+    protected final ChipmunkVM vm;
+    protected final ChipmunkScript script;
+    protected final ChipmunkLibraries libs;
+    protected final Object target;
+    protected final String name;
+    protected final int arity;
+
+    protected final ChipmunkCallSite callSite;
+    protected final MethodHandle handle;
+    protected final MethodHandle spreader;
+
+    public ScriptFunction(ChipmunkVM vm, ChipmunkScript script, ChipmunkLibraries libs, Object target, String name, int arity){
+        if(arity < 0){
+            throw new IllegalArgumentException("Arity must not be negative");
+        }
+
+        this.vm = vm;
+        this.script = script;
+        this.libs = libs;
+        this.target = target;
+        this.name = name;
+        this.arity = arity;
+
+        callSite = Binder.createHostCallSite(name, arity);
+        handle = callSite.dynamicInvoker().bindTo(target);
+        spreader = handle.asSpreader(Object[].class, arity);
+    }
+
+    public Object getTarget(){
+        return target;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public int getArity(){
+        return arity;
+    }
+
+    public ChipmunkScript getScript(){
+        return script;
+    }
+
+    public ChipmunkCallSite getCallSite(){
+        return callSite;
+    }
+
+    /**
+     * Returns the bound method handle, typed (Object x arity) -> Object. Invoking it directly skips
+     * setting up the script and library context for the calling thread, so it should only be used on
+     * a thread that is already running this function's script.
+     */
+    public MethodHandle getHandle(){
+        return handle;
+    }
+
+    public Object invoke(Object... args) throws Throwable {
+        if(args == null){
+            args = new Object[0];
+        }
+
+        if(args.length != arity){
+            throw new IllegalArgumentException("%s expects %d arguments but was called with %d".formatted(name, arity, args.length));
+        }
+
+        ChipmunkScript previousScript = ChipmunkScript.getCurrentScript();
+        ChipmunkLibraries previousLibs = ChipmunkLinker.getLibrariesForThread();
+        ChipmunkLinker.setLibrariesForThread(libs);
+        try{
+            if(script == null){
+                return (Object) spreader.invokeExact(args);
+            }
+
+            vm.checkNotDisposed(script);
+            ChipmunkScript.setCurrentScript(script);
+            ScriptInvocation invocation = new ScriptInvocation(script);
+            vm.invocationBegan(invocation);
+            try{
+                return (Object) spreader.invokeExact(args);
+            }finally{
+                vm.invocationEnded(invocation);
+            }
+        }finally{
+            // The host thread may itself be running a script that called into this function
+            ChipmunkScript.setCurrentScript(previousScript);
+            ChipmunkLinker.setLibrariesForThread(previousLibs);
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "ScriptFunction[%s/%d]".formatted(name, arity);
+    }
+}
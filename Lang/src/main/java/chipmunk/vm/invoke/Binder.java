@@ -21,10 +21,9 @@
 package chipmunk.vm.invoke;
 
 import jdk.dynalink.*;
-import jdk.dynalink.support.ChainedCallSite;
-import jdk.dynalink.support.SimpleRelinkableCallSite;
 
 import java.lang.invoke.*;
+import java.util.*;
 
 public class Binder {
 
@@ -33,24 +32,55 @@ public class Binder {
     public static final String INDY_BOOTSTRAP_GET = "bootstrapGetSite";
 
     protected static final ChipmunkLinker chipmunkLinker = new ChipmunkLinker();
-    protected static final DynamicLinker dynaLink = createDynamicLinker();
+    protected static final DynamicLinker dynaLink = createDynamicLinker(chipmunkLinker);
+    protected static final DynamicLinker hostLink = createDynamicLinker(new ChipmunkLinker(false));
+
+    public static final int DEFAULT_MAX_CHAIN_DEPTH = 8;
+
+    protected static volatile int maxChainDepth = DEFAULT_MAX_CHAIN_DEPTH;
+    protected static final Set<ChipmunkCallSite> callSites = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    protected static final Set<ChipmunkFieldSite> fieldSites = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     public static CallSite bootstrapCallsite(MethodHandles.Lookup lookup, String name, MethodType callType) throws NoSuchMethodException, IllegalAccessException {
-        return dynaLink.link(new ChainedCallSite(
-                new CallSiteDescriptor(lookup, chipmunkCallOp(name), callType)
-        ));
+        ChipmunkCallSite site = new ChipmunkCallSite(
+                new CallSiteDescriptor(lookup, chipmunkCallOp(name), callType),
+                dynaLink.getLinkerServices(),
+                maxChainDepth
+        );
+        callSites.add(site);
+        return dynaLink.link(site);
+    }
+
+    /**
+     * Creates a method call site for use by the host application, with the type (receiver, args...) -> Object.
+     * Calls through it are not subject to linking policy, matching ChipmunkVM.invoke().
+     */
+    public static ChipmunkCallSite createHostCallSite(String name, int argCount){
+        ChipmunkCallSite site = new ChipmunkCallSite(
+                new CallSiteDescriptor(MethodHandles.publicLookup(), chipmunkCallOp(name), MethodType.genericMethodType(argCount + 1)),
+                hostLink.getLinkerServices(),
+                maxChainDepth
+        );
+        callSites.add(site);
+        return hostLink.link(site);
     }
 
     public static CallSite bootstrapSetSite(MethodHandles.Lookup lookup, String name, MethodType callType) throws NoSuchMethodException, IllegalAccessException {
-        return dynaLink.link(new SimpleRelinkableCallSite(
-                new CallSiteDescriptor(lookup, chipmunkFieldSetOp(name), callType)
-        ));
+        return bootstrapFieldSite(new CallSiteDescriptor(lookup, chipmunkFieldSetOp(name), callType));
     }
 
     public static CallSite bootstrapGetSite(MethodHandles.Lookup lookup, String name, MethodType callType) throws NoSuchMethodException, IllegalAccessException {
-        return dynaLink.link(new SimpleRelinkableCallSite(
-                new CallSiteDescriptor(lookup, chipmunkFieldGetOp(name), callType)
-        ));
+        return bootstrapFieldSite(new CallSiteDescriptor(lookup, chipmunkFieldGetOp(name), callType));
+    }
+
+    protected static CallSite bootstrapFieldSite(CallSiteDescriptor descriptor){
+        ChipmunkFieldSite site = new ChipmunkFieldSite(
+                descriptor,
+                dynaLink.getLinkerServices(),
+                maxChainDepth
+        );
+        fieldSites.add(site);
+        return dynaLink.link(site);
     }
 
     protected static Operation chipmunkCallOp(String name){
@@ -73,9 +103,44 @@ public class Binder {
         return MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class);
     }
 
-    protected static DynamicLinker createDynamicLinker(){
+    /**
+     * Sets the number of guarded invocations a call site will cache before it is treated as
+     * megamorphic. Only affects call sites bootstrapped after the change.
+     */
+    public static void setMaxChainDepth(int depth){
+        if(depth < 1){
+            throw new IllegalArgumentException("Chain depth must be at least 1");
+        }
+        maxChainDepth = depth;
+    }
+
+    public static int getMaxChainDepth(){
+        return maxChainDepth;
+    }
+
+    /**
+     * Returns the method call sites that are still reachable, for inspecting their inline cache statistics.
+     */
+    public static List<ChipmunkCallSite> getCallSites(){
+        synchronized (callSites){
+            return new ArrayList<>(callSites);
+        }
+    }
+
+    /**
+     * Returns the field get and set call sites that are still reachable, for inspecting their inline cache statistics.
+     */
+    public static List<ChipmunkFieldSite> getFieldSites(){
+        synchronized (fieldSites){
+            return new ArrayList<>(fieldSites);
+        }
+    }
+
+    protected static DynamicLinker createDynamicLinker(ChipmunkLinker linker){
         DynamicLinkerFactory factory = new DynamicLinkerFactory();
-        factory.setPrioritizedLinker(chipmunkLinker);
+        factory.setPrioritizedLinker(linker);
+        // Chipmunk call sites do their own megamorphic detection
+        factory.setUnstableRelinkThreshold(0);
 
         return factory.createLinker();
     }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.NamedOperation;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.LinkerServices;
+import jdk.dynalink.linker.support.SimpleLinkRequest;
+import jdk.dynalink.support.AbstractRelinkableCallSite;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A call site that caches linked invocations as an inline cache of guarded invocations. The cache
+ * holds up to a configurable number of entries. When a call site needs to link more receiver/argument
+ * shapes than that it is considered megamorphic, the chain is discarded, and the call site switches to
+ * dispatching through a per-site table keyed on the argument classes. This keeps polymorphic call sites
+ * from continually relinking and throwing away cache entries that are still in use.
+ */
+public class ChipmunkCallSite extends AbstractRelinkableCallSite {
+
+    /**
+     * Upper bound on the number of entries in the megamorphic dispatch table. If this is exceeded
+     * the table is cleared and rebuilt on demand.
+     */
+    public static final int MAX_DISPATCH_TABLE_SIZE = 256;
+
+    protected static final MethodHandle SELECT_TARGET;
+
+    static {
+        try {
+            SELECT_TARGET = MethodHandles.lookup().findVirtual(ChipmunkCallSite.class, "selectTarget",
+                    MethodType.methodType(MethodHandle.class, Object[].class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected final int maxChainDepth;
+    protected final LinkerServices linkerServices;
+
+    protected final List<GuardedInvocation> chain;
+    protected final Map<DispatchKey, GuardedInvocation> dispatchTable;
+    protected volatile boolean megamorphic;
+
+    protected final AtomicInteger relinkCount;
+    protected final AtomicInteger dispatchMisses;
+
+    public ChipmunkCallSite(CallSiteDescriptor descriptor, LinkerServices linkerServices, int maxChainDepth){
+        super(descriptor);
+        this.linkerServices = linkerServices;
+        this.maxChainDepth = maxChainDepth;
+
+        chain = new ArrayList<>();
+        dispatchTable = new ConcurrentHashMap<>();
+        relinkCount = new AtomicInteger();
+        dispatchMisses = new AtomicInteger();
+    }
+
+    @Override
+    public synchronized void relink(GuardedInvocation invocation, MethodHandle relinkAndInvoke) {
+        relinkCount.incrementAndGet();
+
+        if(megamorphic){
+            // A thread that entered the chain before the switch to megamorphic dispatch
+            return;
+        }
+
+        chain.removeIf(GuardedInvocation::hasBeenInvalidated);
+        if(chain.size() >= maxChainDepth){
+            chain.clear();
+            megamorphic = true;
+            setTarget(megamorphicTarget());
+            return;
+        }
+
+        chain.add(invocation);
+        setTarget(composeChain(relinkAndInvoke));
+    }
+
+    @Override
+    public synchronized void resetAndRelink(GuardedInvocation invocation, MethodHandle relinkAndInvoke) {
+        relinkCount.incrementAndGet();
+        chain.clear();
+        dispatchTable.clear();
+        megamorphic = false;
+
+        chain.add(invocation);
+        setTarget(composeChain(relinkAndInvoke));
+    }
+
+    protected MethodHandle composeChain(MethodHandle fallback){
+        MethodHandle target = fallback;
+        // The oldest entry is tested first - it's typically the hottest
+        for(int i = chain.size() - 1; i >= 0; i--){
+            target = chain.get(i).compose(target);
+        }
+        return target;
+    }
+
+    protected MethodHandle megamorphicTarget(){
+        MethodType type = type();
+        MethodHandle selector = SELECT_TARGET.bindTo(this)
+                .asCollector(Object[].class, type.parameterCount())
+                .asType(type.changeReturnType(MethodHandle.class));
+
+        return MethodHandles.foldArguments(MethodHandles.exactInvoker(type), selector);
+    }
+
+    protected MethodHandle selectTarget(Object[] args) throws Exception {
+        DispatchKey key = dispatchKey(args);
+
+        GuardedInvocation invocation = dispatchTable.get(key);
+        if(invocation == null || invocation.hasBeenInvalidated()){
+            dispatchMisses.incrementAndGet();
+
+            invocation = linkerServices.getGuardedInvocation(new SimpleLinkRequest(getDescriptor(), true, args));
+            if(invocation == null){
+                throw new NoSuchMethodException(getName());
+            }
+            invocation = invocation.asType(linkerServices, type());
+
+            if(dispatchTable.size() >= MAX_DISPATCH_TABLE_SIZE){
+                dispatchTable.clear();
+            }
+            dispatchTable.put(key, invocation);
+        }
+
+        return invocation.getInvocation();
+    }
+
+    /**
+     * Returns the key the megamorphic dispatch table is indexed by for a call with the given arguments.
+     */
+    protected DispatchKey dispatchKey(Object[] args){
+        return new DispatchKey(args, args.length);
+    }
+
+    public String getName(){
+        return ((NamedOperation) getDescriptor().getOperation()).getName().toString();
+    }
+
+    public int getMaxChainDepth(){
+        return maxChainDepth;
+    }
+
+    public synchronized int getChainDepth(){
+        return chain.size();
+    }
+
+    public int getRelinkCount(){
+        return relinkCount.get();
+    }
+
+    public boolean isMegamorphic(){
+        return megamorphic;
+    }
+
+    public int getDispatchTableSize(){
+        return dispatchTable.size();
+    }
+
+    public int getDispatchMisses(){
+        return dispatchMisses.get();
+    }
+
+    @Override
+    public String toString(){
+        return "%s: depth %d/%d, relinks %d, megamorphic %b, dispatch entries %d, dispatch misses %d".formatted(
+                getName(), getChainDepth(), maxChainDepth, getRelinkCount(), isMegamorphic(), getDispatchTableSize(), getDispatchMisses());
+    }
+
+    /**
+     * Identifies the shape of a call's arguments. This matches what the linker's call guards test: the class of each
+     * argument. Classes used as receivers for static calls are compared by identity, since they link to different methods.
+     * Only the first count arguments are part of the key.
+     */
+    protected static final class DispatchKey {
+
+        private final Object[] shape;
+        private final int hash;
+
+        DispatchKey(Object[] args, int count){
+            shape = new Object[count];
+            for(int i = 0; i < count; i++){
+                Object arg = args[i];
+                shape[i] = arg == null || arg instanceof Class ? arg : arg.getClass();
+            }
+            hash = Arrays.hashCode(shape);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            return o instanceof DispatchKey other && Arrays.equals(shape, other.shape);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+}
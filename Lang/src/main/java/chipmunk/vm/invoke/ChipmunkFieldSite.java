@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.linker.LinkerServices;
+
+/**
+ * A field get or set call site with a bounded inline cache. Field accessors are only guarded on the
+ * receiver, so once the site is megamorphic its dispatch table holds one accessor per receiver class
+ * (the linked VarHandle getter or setter) rather than one per receiver/value class pair.
+ */
+public class ChipmunkFieldSite extends ChipmunkCallSite {
+
+    public ChipmunkFieldSite(CallSiteDescriptor descriptor, LinkerServices linkerServices, int maxChainDepth){
+        super(descriptor, linkerServices, maxChainDepth);
+    }
+
+    @Override
+    protected DispatchKey dispatchKey(Object[] args){
+        return new DispatchKey(args, 1);
+    }
+}
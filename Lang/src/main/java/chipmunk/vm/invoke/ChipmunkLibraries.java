@@ -22,66 +22,109 @@ package chipmunk.vm.invoke;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.SwitchPoint;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.*;
+
+/**
+ * The set of libraries available to a script. A library method's first parameter is the receiver it
+ * applies to. Library methods apply to their declared receiver type and all of its subtypes, and are
+ * resolved before the receiver's own methods. The one exception is library methods whose receiver type
+ * is Object: those only take precedence for Object/null receivers, and are otherwise defaults used when
+ * the receiver doesn't provide a matching method itself.
+ *
+ * Method handles are resolved when a library is registered, and lookups go through a per-class table of
+ * (name, arity) -> candidates so that linking a call is a hash lookup. Each table also holds the names of
+ * its methods, so checking whether a library method applies to a receiver is a hash lookup too.
+ *
+ * Registering or unregistering a library can change how any call resolves, so it invalidates the
+ * switch point that calls linked against these libraries are bound to.
+ */
 public class ChipmunkLibraries {
 
     public static class LibraryMethod {
         public final Method m;
         public final ChipmunkLibrary lib;
+        public final MethodHandle handle;
 
-        public LibraryMethod(Method m, ChipmunkLibrary lib){
+        public LibraryMethod(Method m, ChipmunkLibrary lib, MethodHandle handle){
             this.m = m;
             this.lib = lib;
+            this.handle = handle;
         }
     }
 
-    protected final ConcurrentHashMap<Class<?>, List<LibraryMethod>> libraries;
+    protected record MethodKey(String name, int arity) {}
+
+    protected record MethodTable(Map<MethodKey, LibraryMethod[]> methods, Set<String> names) {}
+
+    protected static final LibraryMethod[] NO_METHODS = new LibraryMethod[0];
+
+    protected final MethodHandles.Lookup lookup;
+
+    // Library methods by their declared receiver type. Guarded by this.
+    protected final Map<Class<?>, List<LibraryMethod>> libraries;
+
+    // Rebuilt whenever the registered libraries change
+    protected volatile ClassValue<MethodTable> resolved;
+    protected volatile MethodTable defaults;
+    protected volatile SwitchPoint invalidationPoint;
 
     public ChipmunkLibraries(){
-        libraries = new ConcurrentHashMap<>();
+        lookup = MethodHandles.lookup();
+        libraries = new HashMap<>();
+        invalidate();
     }
 
-    private List<LibraryMethod> getLibraryMethodsForType(Class<?> receiverType){
-        List<LibraryMethod> methods = libraries.get(receiverType);
-        return methods != null ? methods : Collections.emptyList();
+    /**
+     * Returns the switch point that is invalidated the next time the registered libraries change.
+     * Calls linked against these libraries must be bound to it.
+     */
+    public SwitchPoint getInvalidationPoint(){
+        return invalidationPoint;
     }
 
-    public MethodHandle getMethod(MethodHandles.Lookup lookup, Class<?> returnType, String name, Class<?>[] argTypes) throws Exception {
-
+    /**
+     * Finds a library method for the receiver type (argTypes[0]) or any of its supertypes. Object's
+     * library methods are only included if the receiver is null or an Object.
+     */
+    public MethodHandle getMethod(Class<?> returnType, String name, Class<?>[] argTypes) {
         Class<?> receiverType = argTypes[0];
         if(receiverType == null){
             receiverType = Object.class;
         }
 
-        List<LibraryMethod> candidates = libraries.get(receiverType);
+        return match(resolved.get(receiverType).methods().get(new MethodKey(name, argTypes.length)), returnType, argTypes);
+    }
+
+    /**
+     * Finds a library method declared for Object receivers. These are used for receivers that don't
+     * provide a matching method of their own.
+     */
+    public MethodHandle getDefaultMethod(Class<?> returnType, String name, Class<?>[] argTypes) {
+        return match(defaults.methods().get(new MethodKey(name, argTypes.length)), returnType, argTypes);
+    }
+
+    /**
+     * True if any library method with this name applies to the receiver type.
+     */
+    public boolean hasMethod(Class<?> receiverType, String name){
+        return resolved.get(receiverType).names().contains(name) || defaults.names().contains(name);
+    }
 
+    protected MethodHandle match(LibraryMethod[] candidates, Class<?> returnType, Class<?>[] argTypes){
         if(candidates == null){
             return null;
         }
 
         for(LibraryMethod lm : candidates) {
             Method m = lm.m;
-            ChipmunkLibrary lib = lm.lib;
-
-            Class<?>[] candidatePTypes = m.getParameterTypes();
-
-            if (candidatePTypes.length != argTypes.length) {
-                continue;
-            }
-
-            if (!m.getName().equals(name)) {
-                continue;
-            }
 
             Class<?> retType = m.getReturnType();
             if (retType.equals(void.class) || ChipmunkLinker.isCallTypeCompatible(returnType, retType)) {
 
+                Class<?>[] candidatePTypes = m.getParameterTypes();
                 boolean matches = true;
                 for (int i = 0; i < candidatePTypes.length; i++) {
 
@@ -99,12 +142,7 @@ public class ChipmunkLibraries {
                 }
 
                 if(matches){
-                    MethodHandle handle = lookup.unreflect(m);
-                    if(!Modifier.isStatic(m.getModifiers())){
-                        handle = handle.bindTo(lib);
-                    }
-
-                    return handle;
+                    return lm.handle;
                 }
             }
         }
@@ -112,47 +150,102 @@ public class ChipmunkLibraries {
         return null;
     }
 
-    public void registerLibrary(ChipmunkLibrary library){
+    public synchronized void registerLibrary(ChipmunkLibrary library){
         try{
             for(Method m : library.getClass().getMethods()){
                 Class<?>[] pTypes = m.getParameterTypes();
 
-                if(pTypes.length == 0){
+                if(pTypes.length == 0 || m.getDeclaringClass() == Object.class){
                     continue;
                 }
 
-                Class<?> receiverType = pTypes[0];
-                if(!libraries.containsKey(receiverType)){
-                    libraries.put(receiverType, new ArrayList<>());
+                MethodHandle handle = lookup.unreflect(m);
+                if(!Modifier.isStatic(m.getModifiers())){
+                    handle = handle.bindTo(library);
                 }
 
-                libraries.get(receiverType).add(new LibraryMethod(m, library));
+                libraries.computeIfAbsent(pTypes[0], t -> new ArrayList<>())
+                        .add(new LibraryMethod(m, library, handle));
             }
 
         }catch(Throwable t){
             throw new RuntimeException("Failed to load library " + library.getClass().getName(), t);
+        }finally{
+            invalidate();
         }
     }
 
-    public void unregisterLibrary(ChipmunkLibrary library){
-        try{
-            for(Method m : library.getClass().getMethods()){
-                Class<?>[] pTypes = m.getParameterTypes();
+    public synchronized void unregisterLibrary(ChipmunkLibrary library){
+        for(List<LibraryMethod> methods : libraries.values()){
+            methods.removeIf(lm -> lm.lib == library);
+        }
+        libraries.values().removeIf(List::isEmpty);
+        invalidate();
+    }
 
-                if(pTypes.length == 0){
-                    continue;
-                }
+    protected synchronized void invalidate(){
+        defaults = index(libraries.getOrDefault(Object.class, Collections.emptyList()));
+        resolved = new ClassValue<>() {
+            @Override
+            protected MethodTable computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
 
-                Class<?> receiverType = pTypes[0];
-                if(!libraries.containsKey(receiverType)){
-                    libraries.put(receiverType, new ArrayList<>());
-                }
+        // Only invalidate once the new tables are in place, so calls that relink see them
+        SwitchPoint previous = invalidationPoint;
+        invalidationPoint = new SwitchPoint();
+        if(previous != null){
+            SwitchPoint.invalidateAll(new SwitchPoint[]{previous});
+        }
+    }
 
-                libraries.get(receiverType).remove(m);
-            }
+    protected synchronized MethodTable resolve(Class<?> receiverType){
+        List<LibraryMethod> methods = new ArrayList<>();
+        for(Class<?> type : linearize(receiverType)){
+            methods.addAll(libraries.getOrDefault(type, Collections.emptyList()));
+        }
+        return index(methods);
+    }
 
-        }catch(Throwable t){
-            throw new RuntimeException("Failed to unload library " + library.getClass().getName(), t);
+    protected MethodTable index(List<LibraryMethod> methods){
+        Map<MethodKey, List<LibraryMethod>> grouped = new HashMap<>();
+        Set<String> names = new HashSet<>();
+        for(LibraryMethod lm : methods){
+            grouped.computeIfAbsent(new MethodKey(lm.m.getName(), lm.m.getParameterCount()), k -> new ArrayList<>()).add(lm);
+            names.add(lm.m.getName());
+        }
+
+        Map<MethodKey, LibraryMethod[]> index = new HashMap<>();
+        grouped.forEach((k, v) -> index.put(k, v.toArray(NO_METHODS)));
+        return new MethodTable(index, names);
+    }
+
+    /**
+     * Orders a type's supertypes for library resolution: the type itself, then its superclasses,
+     * then its interfaces breadth first. Object is only included if the type is Object.
+     */
+    protected List<Class<?>> linearize(Class<?> type){
+        if(type == Object.class){
+            return List.of(Object.class);
+        }
+
+        LinkedHashSet<Class<?>> types = new LinkedHashSet<>();
+        for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+            types.add(c);
+        }
+
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for(Class<?> c = type; c != null; c = c.getSuperclass()){
+            interfaces.addAll(Arrays.asList(c.getInterfaces()));
         }
+        while(!interfaces.isEmpty()){
+            Class<?> i = interfaces.poll();
+            if(types.add(i)){
+                interfaces.addAll(Arrays.asList(i.getInterfaces()));
+            }
+        }
+
+        return new ArrayList<>(types);
     }
 }
@@ -47,15 +47,30 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
     protected static final ThreadLocal<ChipmunkLibraries> libraries = new ThreadLocal<>();
 
     protected final MethodHandles.Lookup lookup;
+    protected final boolean enforceLinkagePolicy;
 
     public ChipmunkLinker(){
+        this(true);
+    }
+
+    /**
+     * @param enforceLinkagePolicy whether method calls linked through {@link #getGuardedInvocation} are
+     *                             checked against the script's linking policy. Calls made by the host
+     *                             application are trusted and don't need to be.
+     */
+    public ChipmunkLinker(boolean enforceLinkagePolicy){
         lookup = MethodHandles.lookup();
+        this.enforceLinkagePolicy = enforceLinkagePolicy;
     }
 
     public static void setLibrariesForThread(ChipmunkLibraries libs){
         libraries.set(libs);
     }
 
+    public static ChipmunkLibraries getLibrariesForThread(){
+        return libraries.get();
+    }
+
     public static final Map<Class<?>, Class<?>> COMPATIBLE_PRIMITIVES = Map.ofEntries(
             Map.entry(Boolean.class, boolean.class),
             Map.entry(boolean.class, Boolean.class),
@@ -95,7 +110,7 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
 
         if(op.getBaseOperation().equals(StandardOperation.CALL)){
             // Bind method calls
-            return getInvocationHandle(lookup, receiver, callType, (String)op.getName(), params, true);
+            return getInvocationHandle(lookup, receiver, callType, (String)op.getName(), params, enforceLinkagePolicy);
         }else if(op.getBaseOperation().equals(StandardOperation.GET)){
             // Bind field access
             Object target = linkRequest.getReceiver();
@@ -143,14 +158,30 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
             callType = MethodType.methodType(Object.class, pTypes);
         }
 
+        // Taken before resolving so that a library change during resolution invalidates the result
+        ChipmunkLibraries libs = getLibrariesForThread();
+        SwitchPoint libraryInvalidation = libs != null ? libs.getInvalidationPoint() : null;
+
         GuardedInvocation invocation = resolveCallTarget(lookup, receiver, callType, methodName, params, pTypes, enforceLinkagePolicy);
 
+        if(invocation == null && libs != null){
+            // Fall back to library defaults for methods the receiver doesn't define
+            MethodHandle callTarget = libs.getDefaultMethod(callType.returnType(), methodName, pTypes);
+            if(callTarget != null){
+                invocation = new GuardedInvocation(callTarget, getCallGuard(params, guardAll(params.length)));
+            }
+        }
+
         if(invocation == null){
             // Failed to resolve method or a trait providing the method
             throw new NoSuchMethodException(
                     formatMethodSignature(receiver, methodName, pTypes));
         }
 
+        if(libraryInvalidation != null){
+            invocation = invocation.addSwitchPoint(libraryInvalidation);
+        }
+
         return invocation;
     }
 
@@ -158,16 +189,20 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
         // Library methods should override type methods, so check them first
         Class<?> expectedReturnType = callType.returnType();
         ChipmunkLibraries libs = getLibrariesForThread();
-        MethodHandle callTarget = libs != null ? libs.getMethod(lookup, expectedReturnType, methodName, pTypes) : null;
+        MethodHandle callTarget = libs != null ? libs.getMethod(expectedReturnType, methodName, pTypes) : null;
+        // Library methods are overloaded on their argument types, so only receiver methods
+        // can skip guarding their untyped parameters
+        long guardMask = guardAll(params.length);
 
         // TODO - need to be able to adapt the call type for variadic targets
         if (callTarget == null) {
             callTarget = getMethod(receiver, expectedReturnType, methodName, params, pTypes, enforceLinkagePolicy);
+            guardMask = getCallGuardMask(receiver, methodName, params.length, libs);
         }
 
         if (callTarget != null) {
             // Return non-trait invocation
-            return new GuardedInvocation(callTarget, getCallGuard(lookup, callType, params));
+            return new GuardedInvocation(callTarget, getCallGuard(params, guardMask));
         }
 
         // Check for trait methods
@@ -199,11 +234,13 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
                         MethodHandle receiverFilter = lookup.unreflectGetter(trait.getReflectedField())
                                 .asType(MethodType.methodType(traitReceiver.getClass(), receiver.getClass()));
 
+                        // The outer receiver's own methods were passed over for these argument types, so
+                        // they all need to be guarded
                         invocation = invocation
                                 .addSwitchPoint(trait.getInvalidationPoint())
                                 .replaceMethods(
                                         MethodHandles.filterArguments(invocation.getInvocation(), 0, receiverFilter),
-                                        invocation.getGuard()
+                                        getCallGuard(params, guardAll(params.length))
                                 );
 
                         return invocation;
@@ -233,6 +270,9 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
             // cases where interface proxying happens when a different method is available
             // with an identical type match. Worse, these scenarios are unpredictable since
             // the order of methods returned by Object.getMethods() is not specified.
+            // Primitive types are favored over Object for the same reason, so that the
+            // typed entry of a Chipmunk method links ahead of its boxed entry when the
+            // arguments match it.
             if(m1.getParameterCount() == m2.getParameterCount()){
                 var p1Types = m1.getParameterTypes();
                 var p2Types = m2.getParameterTypes();
@@ -245,6 +285,10 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
                         m1Weight++;
                     }else if(!p1IsInterface && p2IsInterface){
                         m1Weight--;
+                    }else if(p1Types[i].isPrimitive() && p2Types[i].equals(Object.class)){
+                        m1Weight--;
+                    }else if(p1Types[i].equals(Object.class) && p2Types[i].isPrimitive()){
+                        m1Weight++;
                     }
                 }
                 return m1Weight;
@@ -266,18 +310,9 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
             receiverType = receiver.getClass();
         }
 
-        var methods = receiverType.getMethods();
-        linkOrder(methods);
-        for (Method m : methods) {
-            Class<?>[] candidatePTypes = m.getParameterTypes();
-
-            if (candidatePTypes.length != pTypes.length - 1 && !m.isVarArgs()) {
-                continue;
-            }
-
-            if (!getMethodName(m).equals(methodName)) {
-                continue;
-            }
+        for (MethodIndex.Candidate candidate : MethodIndex.of(receiverType).getCandidates(methodName, pTypes.length - 1)) {
+            Method m = candidate.getMethod();
+            Class<?>[] candidatePTypes = candidate.getParameterTypes();
 
             Class<?> retType = m.getReturnType();
 
@@ -285,7 +320,7 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
 
                 boolean paramsMatch = true;
                 long interfaceParamMask = 0;
-                boolean isStatic = Modifier.isStatic(m.getModifiers());
+                boolean isStatic = candidate.isStatic();
                 for (int i = 0; i < candidatePTypes.length; i++) {
 
                     // Need to offset by 1 because the incoming types include the receiver type
@@ -307,13 +342,10 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
                 if (paramsMatch || m.isVarArgs()) {
                     // We have a match!
                     LinkingPolicy linkPolicy = getLinkingPolicy();
-                    if(linkPolicy != null && enforceLinkagePolicy && !linkPolicy.allowMethodCall(receiver, m, params)){
+                    if(linkPolicy != null && enforceLinkagePolicy && !linkPolicy.allowMethodCall(receiver, m, params, candidate.isLinkageAnnotated())){
                         throw new IllegalAccessException(formatMethodSignature(receiver, methodName, pTypes) + ": policy forbids call");
                     }
-                    m.setAccessible(true);
-                    var handle = isStatic
-                            ? MethodHandles.dropArguments(lookup.unreflect(m), 0, Object.class)
-                            : lookup.unreflect(m);
+                    var handle = candidate.getHandle(lookup);
                     while(interfaceParamMask != 0){
                         for(int i = candidatePTypes.length - 1; i >= 0; i--){
                             var paramIndex = isStatic ? i : i + 1;
@@ -463,20 +495,16 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
         return null;
     }
 
-    public static boolean validateCall(Object[] boundArgs, Object[] callArgs){
-        if(boundArgs.length != callArgs.length){
-            return false;
-        }
+    public static boolean isInstanceOfExactly(Class<?> expected, Object arg){
+        return arg != null && arg.getClass() == expected;
+    }
 
-        for(int i = 0; i < boundArgs.length; i++){
-            Class<?> boundType = boundArgs[i] != null ? boundArgs[i].getClass() : null;
-            Class<?> callType = callArgs[i] != null ? callArgs[i].getClass() : null;
+    public static boolean isNull(Object arg){
+        return arg == null;
+    }
 
-            if(boundType != callType){
-                return false;
-            }
-        }
-        return true;
+    public static boolean isSame(Object expected, Object arg){
+        return expected == arg;
     }
 
     public static boolean validateFieldAccess(Object boundTarget, Object fieldValue){
@@ -491,18 +519,101 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
         return target;
     }
 
-    protected MethodHandle getCallGuard(MethodHandles.Lookup lookup, MethodType callType, Object[] params) throws NoSuchMethodException, IllegalAccessException {
-        MethodType guardType = callType.generic().changeReturnType(Boolean.class);
+    /**
+     * Builds a guard that checks the exact class of each argument selected by guardMask (bit i set means
+     * argument i is guarded) against the arguments the call was linked with. The guard is specialized to
+     * the call's arity so that it doesn't allocate or loop. A Class receiver is checked by identity since
+     * it links to that class's static methods.
+     */
+    protected MethodHandle getCallGuard(Object[] params, long guardMask) throws NoSuchMethodException, IllegalAccessException {
+        Class<?>[] guardParams = new Class<?>[params.length];
+        Arrays.fill(guardParams, Object.class);
+
+        MethodHandle guard = null;
+        for(int i = params.length - 1; i >= 0; i--){
+            if(i < Long.SIZE && (guardMask & (1L << i)) == 0){
+                continue;
+            }
 
-        return lookup.findStatic(
-                this.getClass(),
-                "validateCall",
-                MethodType.methodType(boolean.class, Object[].class, Object[].class))
-                .bindTo(params)
-                .asCollector(Object[].class, guardType.parameterCount());
+            MethodHandle test;
+            if(params[i] == null){
+                test = lookup.findStatic(ChipmunkLinker.class, "isNull",
+                        MethodType.methodType(boolean.class, Object.class));
+            }else if(i == 0 && params[i] instanceof Class){
+                test = lookup.findStatic(ChipmunkLinker.class, "isSame",
+                        MethodType.methodType(boolean.class, Object.class, Object.class))
+                        .bindTo(params[i]);
+            }else{
+                test = lookup.findStatic(ChipmunkLinker.class, "isInstanceOfExactly",
+                        MethodType.methodType(boolean.class, Class.class, Object.class))
+                        .bindTo(params[i].getClass());
+            }
+
+            // Widen the test to take all of the call's arguments
+            test = MethodHandles.dropArguments(test, 0, Arrays.copyOfRange(guardParams, 0, i));
+            test = MethodHandles.dropArguments(test, i + 1, Arrays.copyOfRange(guardParams, i + 1, params.length));
+
+            guard = guard == null
+                    ? test
+                    : MethodHandles.guardWithTest(test, guard, MethodHandles.dropArguments(
+                            MethodHandles.constant(boolean.class, false), 0, guardParams));
+        }
+
+        if(guard == null){
+            guard = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, guardParams);
+        }
+        return guard;
+    }
+
+    protected long guardAll(int argCount){
+        return argCount >= Long.SIZE ? -1L : (1L << argCount) - 1;
+    }
+
+    /**
+     * Determines which arguments a call needs to guard on. The receiver is always guarded. An argument
+     * doesn't need to be guarded if the receiver has exactly one method with this name and arity and
+     * that method accepts any Object in that position, because no other argument type could link
+     * differently. This is always the case for methods of Chipmunk classes.
+     */
+    protected long getCallGuardMask(Object receiver, String methodName, int argCount, ChipmunkLibraries libs){
+        Class<?> receiverType;
+        if(receiver == null){
+            receiverType = Object.class;
+        }else if(receiver instanceof Class){
+            receiverType = (Class<?>) receiver;
+        }else{
+            receiverType = receiver.getClass();
+        }
+
+        if(libs != null && libs.hasMethod(receiverType, methodName)){
+            return guardAll(argCount);
+        }
+
+        MethodIndex.Candidate[] candidates = MethodIndex.of(receiverType).getCandidates(methodName);
+        if(candidates.length != 1 || candidates[0].isVarArgs() || candidates[0].getParameterTypes().length != argCount - 1){
+            // Overloaded or variadic - argument types determine which method is linked
+            return guardAll(argCount);
+        }
+
+        long mask = guardAll(argCount);
+        Class<?>[] targetPTypes = candidates[0].getParameterTypes();
+        for(int i = 0; i < targetPTypes.length && i + 1 < Long.SIZE; i++){
+            if(targetPTypes[i] == Object.class){
+                mask &= ~(1L << (i + 1));
+            }
+        }
+        return mask;
     }
 
     protected MethodHandle getFieldGuard(MethodHandles.Lookup lookup, Object target) throws NoSuchMethodException, IllegalAccessException {
+        if(target instanceof Class){
+            // Static field accessors are specific to the class, so the receiver must be the same class object
+            return lookup.findStatic(
+                    this.getClass(),
+                    "isSame",
+                    MethodType.methodType(boolean.class, Object.class, Object.class))
+                    .bindTo(target);
+        }
         return lookup.findStatic(
                 this.getClass(),
                 "validateFieldAccess",
@@ -510,10 +621,6 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
                 .bindTo(target);
     }
 
-    public ChipmunkLibraries getLibrariesForThread(){
-        return libraries.get();
-    }
-
     protected LinkingPolicy getLinkingPolicy(){
         ChipmunkScript script = ChipmunkScript.getCurrentScript();
         if(script == null){
@@ -557,8 +664,7 @@ public class ChipmunkLinker implements GuardingDynamicLinker {
     }
 
     protected String getMethodName(Method m){
-        ChipmunkName override = m.getAnnotation(ChipmunkName.class);
-        return override != null ? override.value() : m.getName();
+        return MethodIndex.getMethodName(m);
     }
 
     public String formatMethodSignature(Object receiver, String methodName, Class<?>[] pTypes){
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke;
+
+import chipmunk.vm.invoke.security.LinkingPolicy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A per-class index of the public methods that the linker can bind calls to. Methods are grouped by their
+ * Chipmunk name and kept in link order, and everything about a method that doesn't depend on the call being
+ * linked (its name, parameter types, whether it carries a linkage annotation, and its unreflected method handle)
+ * is resolved once and then reused. This turns repeated link requests against the same class into hash lookups
+ * rather than reflection scans.
+ */
+public class MethodIndex {
+
+    public static class Candidate {
+
+        protected final Method method;
+        protected final Class<?>[] parameterTypes;
+        protected final boolean isStatic;
+        protected final boolean linkageAnnotated;
+        protected volatile MethodHandle handle;
+
+        public Candidate(Method method){
+            this.method = method;
+            parameterTypes = method.getParameterTypes();
+            isStatic = Modifier.isStatic(method.getModifiers());
+            linkageAnnotated = LinkingPolicy.hasLinkageAnnotation(method);
+        }
+
+        public Method getMethod(){
+            return method;
+        }
+
+        public Class<?>[] getParameterTypes(){
+            return parameterTypes;
+        }
+
+        public boolean isStatic(){
+            return isStatic;
+        }
+
+        public boolean isVarArgs(){
+            return method.isVarArgs();
+        }
+
+        public boolean isLinkageAnnotated(){
+            return linkageAnnotated;
+        }
+
+        /**
+         * Returns a handle for the method that takes the receiver as its first parameter. For
+         * static methods the receiver is dropped.
+         */
+        public MethodHandle getHandle(MethodHandles.Lookup lookup) throws IllegalAccessException {
+            MethodHandle h = handle;
+            if(h == null){
+                method.setAccessible(true);
+                h = lookup.unreflect(method);
+                if(isStatic){
+                    h = MethodHandles.dropArguments(h, 0, Object.class);
+                }
+                handle = h;
+            }
+            return h;
+        }
+    }
+
+    protected record NameAndArity(String name, int arity) {}
+
+    protected static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+    protected static final ClassValue<MethodIndex> indices = new ClassValue<>() {
+        @Override
+        protected MethodIndex computeValue(Class<?> type) {
+            return new MethodIndex(type);
+        }
+    };
+
+    protected final Map<String, Candidate[]> byName;
+    protected final Map<NameAndArity, Candidate[]> byNameAndArity;
+
+    protected MethodIndex(Class<?> type){
+        Method[] methods = type.getMethods();
+        ChipmunkLinker.linkOrder(methods);
+
+        Map<String, List<Candidate>> grouped = new HashMap<>();
+        for(Method m : methods){
+            grouped.computeIfAbsent(getMethodName(m), n -> new ArrayList<>()).add(new Candidate(m));
+        }
+
+        byName = new HashMap<>();
+        grouped.forEach((name, candidates) -> byName.put(name, candidates.toArray(NO_CANDIDATES)));
+
+        byNameAndArity = new ConcurrentHashMap<>();
+    }
+
+    public static MethodIndex of(Class<?> type){
+        return indices.get(type);
+    }
+
+    /**
+     * Returns all methods with the given Chipmunk name, in link order.
+     */
+    public Candidate[] getCandidates(String name){
+        return byName.getOrDefault(name, NO_CANDIDATES);
+    }
+
+    /**
+     * Returns the methods with the given Chipmunk name that can accept the given number of
+     * arguments (not counting the receiver), in link order. Variadic methods are always included.
+     */
+    public Candidate[] getCandidates(String name, int arity){
+        if(!byName.containsKey(name)){
+            return NO_CANDIDATES;
+        }
+        return byNameAndArity.computeIfAbsent(new NameAndArity(name, arity), k -> {
+            Candidate[] named = getCandidates(name);
+            List<Candidate> candidates = new ArrayList<>(named.length);
+            for(Candidate c : named){
+                if(c.parameterTypes.length == arity || c.isVarArgs()){
+                    candidates.add(c);
+                }
+            }
+            return candidates.toArray(NO_CANDIDATES);
+        });
+    }
+
+    public static String getMethodName(Method m){
+        ChipmunkName override = m.getAnnotation(ChipmunkName.class);
+        return override != null ? override.value() : m.getName();
+    }
+}
@@ -83,9 +83,16 @@ public class LinkingPolicy {
     }
 
     public boolean allowMethodCall(Object target, Method method, Object[] params){
+        return allowMethodCall(target, method, params, hasLinkageAnnotation(method));
+    }
+
+    /**
+     * Variant of allowMethodCall() for callers that have already determined (and cached) whether
+     * the method is annotated for linkage.
+     */
+    public boolean allowMethodCall(Object target, Method method, Object[] params, boolean linkageAnnotated){
 
-        if(method.getAnnotation(AllowChipmunkLinkage.class) != null ||
-                method.getDeclaringClass().getDeclaredAnnotation(AllowChipmunkLinkage.class) != null){
+        if(linkageAnnotated){
             return true;
         }
 
@@ -99,6 +106,11 @@ public class LinkingPolicy {
         return mode == SecurityMode.ALLOWING;
     }
 
+    public static boolean hasLinkageAnnotation(Method method){
+        return method.getAnnotation(AllowChipmunkLinkage.class) != null ||
+                method.getDeclaringClass().getDeclaredAnnotation(AllowChipmunkLinkage.class) != null;
+    }
+
     public boolean allowFieldSet(Object target, Field field, Object value){
 
         if(field.getAnnotation(AllowChipmunkLinkage.class) != null ||
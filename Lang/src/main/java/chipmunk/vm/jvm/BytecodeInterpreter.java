@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package chipmunk.vm.jvm;
+
+import chipmunk.ChipmunkRuntimeException;
+import chipmunk.binary.BinaryMethod;
+import chipmunk.binary.ExceptionBlock;
+import chipmunk.compiler.assembler.InvalidOpcodeChipmunk;
+import chipmunk.runtime.ConfinedUpvalue;
+import chipmunk.runtime.SharedUpvalue;
+import chipmunk.runtime.Upvalue;
+import chipmunk.vm.ChipmunkScript;
+import chipmunk.vm.invoke.Binder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+import static chipmunk.compiler.assembler.Opcodes.*;
+
+/**
+ * Runs a Chipmunk method by interpreting its bytecode. This is the first tier of a TieredMethod, used
+ * until the method is hot enough to be worth compiling.
+ *
+ * Every instruction has exactly the semantics of the code JvmCompiler generates for it: dynamic operations
+ * go through call sites bootstrapped by the Binder, just as they would from an invokedynamic instruction at
+ * the same position in compiled code, and exceptions are caught by the method's handlers on the same terms.
+ * Locals and operand stack entries are always boxed.
+ *
+ * While it runs, the interpreter records the types of the values stored in locals and the operands of
+ * arithmetic, comparisons, and branches in a TypeProfile, for the compiler to speculate on.
+ */
+public class BytecodeInterpreter {
+
+    protected final TieredMethod tier;
+    protected final MethodHandles.Lookup lookup;
+
+    protected final BinaryMethod method;
+    protected final byte[] code;
+    protected final Object[] constants;
+    protected final Object[] moduleConstants;
+    protected final ExceptionBlock[] exceptionTable;
+    protected final Set<Class<? extends Throwable>> uncatchable;
+
+    protected final int frameSize;
+    protected final int maxStack;
+    protected final Object[] localDefaults;
+    protected final boolean[] osrEntries;
+    protected final boolean hasOsrEntries;
+    protected final int[] depths;
+    protected final TypeProfile profile;
+
+    // Linked call sites, by the ip of the instruction using them
+    protected final MethodHandle[] sites;
+
+    public BytecodeInterpreter(TieredMethod tier, MethodHandles.Lookup lookup){
+        this.tier = tier;
+        this.lookup = lookup;
+
+        method = tier.getMethod();
+        code = method.getCode();
+        constants = method.getConstantPool();
+        moduleConstants = method.getModule() != null ? method.getModule().getConstantPool() : constants;
+        exceptionTable = method.getExceptionTable() != null ? method.getExceptionTable() : new ExceptionBlock[0];
+        uncatchable = tier.compiler.getConfig().getUncatchable();
+
+        frameSize = Math.max(1, Math.max(method.getArgCount(), method.getLocalCount()));
+        sites = new MethodHandle[code.length];
+
+        // Typed locals hold primitives in compiled code, so they start out as zero rather than null
+        localDefaults = new Object[frameSize];
+        for(int i = method.getArgCount(); i < method.getLocalCount(); i++){
+            localDefaults[i] = switch (TypeSpecializer.kindOf(method.getLocalType(i))) {
+                case INT -> 0;
+                case FLOAT -> 0.0f;
+                default -> null;
+            };
+        }
+
+        depths = stackDepths();
+        int max = 0;
+        for(int ip = 0; ip < code.length; ip += TypeSpecializer.instructionSize(code[ip])){
+            if(depths[ip] >= 0){
+                max = Math.max(max, depths[ip] + pushes(ip));
+            }
+        }
+        // RANGE pushes its inclusive flag before the range call consumes all three operands
+        maxStack = max + 1;
+
+        // A loop header can be resumed in compiled code if the operand stack is always empty there
+        osrEntries = new boolean[code.length];
+        boolean anyOsrEntries = false;
+        for(int ip = 0; ip < code.length; ip += TypeSpecializer.instructionSize(code[ip])){
+            if(code[ip] == GOTO || code[ip] == IF){
+                int target = fetchInt(ip + 1);
+                if(target <= ip && target >= 0 && depths[target] == 0){
+                    osrEntries[target] = true;
+                    anyOsrEntries = true;
+                }
+            }
+        }
+        hasOsrEntries = anyOsrEntries;
+
+        profile = new TypeProfile(frameSize, code.length);
+    }
+
+    /**
+     * The loop headers that an interpreted invocation of this method can resume at in compiled code.
+     */
+    public Set<Integer> getOsrEntries(){
+        Set<Integer> entries = new TreeSet<>();
+        for(int ip = 0; ip < osrEntries.length; ip++){
+            if(osrEntries[ip]){
+                entries.add(ip);
+            }
+        }
+        return entries;
+    }
+
+    public boolean hasOsrEntries(){
+        return hasOsrEntries;
+    }
+
+    public int getFrameSize(){
+        return frameSize;
+    }
+
+    public int getMaxStack(){
+        return maxStack;
+    }
+
+    /**
+     * The operand stack depth before the instruction at ip, or -1 if the instruction is unreachable.
+     */
+    public int getStackDepth(int ip){
+        return depths[ip];
+    }
+
+    public TypeProfile getProfile(){
+        return profile;
+    }
+
+    public Object execute(Object[] args) throws Throwable {
+        for(int i = 0; i < Math.min(args.length, frameSize); i++){
+            profile.recordLocal(i, args[i]);
+        }
+        return resume(args, 0);
+    }
+
+    /**
+     * Runs the method from ip with the given locals and an empty operand stack. Locals beyond the end
+     * of the given frame start out with their default values.
+     */
+    public Object resume(Object[] frame, int startIp) throws Throwable {
+        final Object[] locals = Arrays.copyOf(localDefaults, frameSize);
+        System.arraycopy(frame, 0, locals, 0, Math.min(frame.length, frameSize));
+
+        final Object[] stack = new Object[maxStack];
+        int sp = 0;
+        int ip = startIp;
+        int osrTarget = -1;
+
+        dispatch:
+        while(true){
+            try{
+                while(true){
+                    final byte op = code[ip];
+                    switch (op) {
+                        case ADD -> sp = invokeProfiled(ip, "plus", stack, sp, 2);
+                        case SUB -> sp = invokeProfiled(ip, "minus", stack, sp, 2);
+                        case MUL -> sp = invokeProfiled(ip, "mul", stack, sp, 2);
+                        case DIV -> sp = invokeProfiled(ip, "div", stack, sp, 2);
+                        case FDIV -> sp = invokeProfiled(ip, "fdiv", stack, sp, 2);
+                        case MOD -> sp = invokeProfiled(ip, "mod", stack, sp, 2);
+                        case POW -> sp = invoke(ip, "pow", stack, sp, 2);
+                        case INC -> sp = invokeProfiled(ip, "inc", stack, sp, 1);
+                        case DEC -> sp = invokeProfiled(ip, "dec", stack, sp, 1);
+                        case POS -> sp = invokeProfiled(ip, "pos", stack, sp, 1);
+                        case NEG -> sp = invokeProfiled(ip, "neg", stack, sp, 1);
+                        case BXOR -> sp = invoke(ip, "binaryXor", stack, sp, 2);
+                        case BAND -> sp = invoke(ip, "binaryAnd", stack, sp, 2);
+                        case BOR -> sp = invoke(ip, "binaryOr", stack, sp, 2);
+                        case BNEG -> sp = invoke(ip, "binaryNeg", stack, sp, 1);
+                        case LSHIFT -> sp = invoke(ip, "lShift", stack, sp, 2);
+                        case RSHIFT -> sp = invoke(ip, "rShift", stack, sp, 2);
+                        case URSHIFT -> sp = invoke(ip, "unsignedRShift", stack, sp, 2);
+                        case POP -> stack[--sp] = null;
+                        case DUP -> {
+                            stack[sp] = stack[sp - 1];
+                            sp++;
+                        }
+                        case SWAP -> {
+                            Object top = stack[sp - 1];
+                            stack[sp - 1] = stack[sp - 2];
+                            stack[sp - 2] = top;
+                        }
+                        case PUSH -> stack[sp++] = constants[fetchInt(ip + 1)];
+                        case GETLOCAL -> stack[sp++] = locals[code[ip + 1] & 0xFF];
+                        case GETMODULE -> stack[sp++] = locals[0];
+                        case SETLOCAL -> {
+                            int index = code[ip + 1] & 0xFF;
+                            locals[index] = stack[--sp];
+                            stack[sp] = null;
+                            profile.recordLocal(index, locals[index]);
+                        }
+                        case IF -> {
+                            sp = invokeProfiled(ip, "truth", stack, sp, 1);
+                            boolean truth = (Boolean) stack[--sp];
+                            stack[sp] = null;
+                            if(!truth){
+                                int target = fetchInt(ip + 1);
+                                if(target <= ip && backJump(target, sp)){
+                                    osrTarget = target;
+                                    break dispatch;
+                                }
+                                ip = target;
+                                continue;
+                            }
+                        }
+                        case CALL -> sp = invoke(ip, "call", stack, sp, code[ip + 1] + 1);
+                        case CALLAT, CALLMODULE -> sp = invoke(ip, (String) constants[fetchInt(ip + 2)], stack, sp, code[ip + 1] + 1);
+                        case GOTO -> {
+                            int target = fetchInt(ip + 1);
+                            if(target <= ip && backJump(target, sp)){
+                                osrTarget = target;
+                                break dispatch;
+                            }
+                            ip = target;
+                            continue;
+                        }
+                        case THROW -> {
+                            Object thrown = stack[--sp];
+                            if(thrown instanceof Throwable t){
+                                throw t;
+                            }
+                            throw new ChipmunkRuntimeException(thrown);
+                        }
+                        case RETURN -> {
+                            return stack[sp - 1];
+                        }
+                        case NOT -> {
+                            sp = invoke(ip, "truth", stack, sp, 1);
+                            stack[sp - 1] = !(Boolean) stack[sp - 1];
+                        }
+                        case EQ -> sp = invokeProfiled(ip, "equals", stack, sp, 2);
+                        case GT -> {
+                            sp = invokeProfiled(ip, "compare", stack, sp, 2);
+                            stack[sp - 1] = (Integer) stack[sp - 1] > 0;
+                        }
+                        case LT -> {
+                            sp = invokeProfiled(ip, "compare", stack, sp, 2);
+                            stack[sp - 1] = (Integer) stack[sp - 1] < 0;
+                        }
+                        case GE -> {
+                            sp = invokeProfiled(ip, "compare", stack, sp, 2);
+                            stack[sp - 1] = (Integer) stack[sp - 1] >= 0;
+                        }
+                        case LE -> {
+                            sp = invokeProfiled(ip, "compare", stack, sp, 2);
+                            stack[sp - 1] = (Integer) stack[sp - 1] <= 0;
+                        }
+                        case IS -> {
+                            sp--;
+                            stack[sp - 1] = stack[sp - 1] == stack[sp];
+                            stack[sp] = null;
+                        }
+                        case INSTANCEOF -> sp = invoke(ip, "instanceOf", stack, sp, 2);
+                        case SETATTR -> sp = accessField(ip, (String) constants[fetchInt(ip + 1)], true, stack, sp);
+                        case GETATTR -> sp = accessField(ip, (String) constants[fetchInt(ip + 1)], false, stack, sp);
+                        case SETSELFATTR -> {
+                            stack[sp] = stack[sp - 1];
+                            stack[sp - 1] = locals[0];
+                            sp = accessField(ip, (String) constants[fetchInt(ip + 1)], true, stack, sp + 1);
+                        }
+                        case GETSELFATTR -> {
+                            stack[sp++] = locals[0];
+                            sp = accessField(ip, (String) constants[fetchInt(ip + 1)], false, stack, sp);
+                        }
+                        case GETAT -> sp = invoke(ip, "getAt", stack, sp, 2);
+                        case SETAT -> sp = invoke(ip, "setAt", stack, sp, 3);
+                        case TRUTH -> sp = invoke(ip, "truth", stack, sp, 1);
+                        case AS -> sp = invoke(ip, "as", stack, sp, 2);
+                        case ITER -> sp = invoke(ip, "iterator", stack, sp, 1);
+                        case RANGE -> {
+                            stack[sp++] = code[ip + 1] != 0;
+                            sp = invoke(ip, "range", stack, sp, 3);
+                        }
+                        case LIST -> stack[sp++] = new ArrayList<>(fetchInt(ip + 1));
+                        case MAP -> stack[sp++] = new HashMap<>(fetchInt(ip + 1));
+                        case INITUPVALUE -> locals[code[ip + 1] & 0xFF] = new SharedUpvalue();
+                        case INITCONFINEDUPVALUE -> locals[code[ip + 1] & 0xFF] = new ConfinedUpvalue();
+                        case GETUPVALUE -> stack[sp++] = ((Upvalue) locals[code[ip + 1] & 0xFF]).get();
+                        case SETUPVALUE -> stack[sp - 1] = ((Upvalue) locals[code[ip + 1] & 0xFF]).set(stack[sp - 1]);
+                        case BIND -> {
+                            String methodName = (String) moduleConstants[fetchInt(ip + 1)];
+                            stack[sp - 1] = ChipmunkScript.getCurrentScript().getVM().bind(stack[sp - 1], methodName);
+                        }
+                        default -> throw new InvalidOpcodeChipmunk(op);
+                    }
+                    ip += TypeSpecializer.instructionSize(op);
+                }
+            }catch(Exception e){
+                int handler = handlerFor(ip, e);
+                if(handler < 0){
+                    throw e;
+                }
+                Arrays.fill(stack, null);
+                stack[0] = e;
+                sp = 1;
+                ip = handler;
+            }
+        }
+
+        // The method was compiled while this invocation was looping - finish it in compiled code
+        return tier.enterCompiled(locals, osrTarget);
+    }
+
+    /**
+     * Counts a back jump to target, returning true if the invocation should continue in compiled code.
+     */
+    protected boolean backJump(int target, int sp){
+        return tier.countTowardsThreshold() && sp == 0 && osrEntries[target] && tier.canEnterCompiled();
+    }
+
+    /**
+     * Calls the named operation with the top count stack entries as its receiver and arguments,
+     * replacing them with the result. Returns the new stack pointer.
+     */
+    protected int invoke(int ip, String name, Object[] stack, int sp, int count) throws Throwable {
+        MethodHandle site = sites[ip];
+        if(site == null){
+            site = Binder.bootstrapCallsite(lookup, name, MethodType.genericMethodType(count))
+                    .dynamicInvoker()
+                    .asSpreader(Object[].class, count);
+            sites[ip] = site;
+        }
+
+        int base = sp - count;
+        Object result = (Object) site.invokeExact(Arrays.copyOfRange(stack, base, sp));
+        Arrays.fill(stack, base + 1, sp, null);
+        stack[base] = result;
+        return base + 1;
+    }
+
+    protected int invokeProfiled(int ip, String name, Object[] stack, int sp, int count) throws Throwable {
+        profile.recordOperands(ip, stack, sp, count);
+        return invoke(ip, name, stack, sp, count);
+    }
+
+    protected int accessField(int ip, String name, boolean set, Object[] stack, int sp) throws Throwable {
+        MethodHandle site = sites[ip];
+        int count = set ? 2 : 1;
+        if(site == null){
+            MethodType type = MethodType.genericMethodType(count);
+            site = (set ? Binder.bootstrapSetSite(lookup, name, type) : Binder.bootstrapGetSite(lookup, name, type))
+                    .dynamicInvoker()
+                    .asSpreader(Object[].class, count);
+            sites[ip] = site;
+        }
+
+        int base = sp - count;
+        Object result = (Object) site.invokeExact(Arrays.copyOfRange(stack, base, sp));
+        Arrays.fill(stack, base + 1, sp, null);
+        stack[base] = result;
+        return base + 1;
+    }
+
+    /**
+     * Finds the handler for an exception thrown by the instruction at ip, or returns -1. Handlers
+     * catch what the JVM handlers generated for them catch: any Exception that isn't uncatchable.
+     */
+    protected int handlerFor(int ip, Exception e){
+        for(Class<? extends Throwable> type : uncatchable){
+            if(type.isInstance(e)){
+                return -1;
+            }
+        }
+
+        for(ExceptionBlock block : exceptionTable){
+            if(ip >= block.startIndex && ip < block.endIndex){
+                return block.catchIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the operand stack depth before each instruction, or -1 for unreachable instructions.
+     */
+    protected int[] stackDepths(){
+        int[] depths = new int[code.length];
+        Arrays.fill(depths, -1);
+
+        Deque<Integer> work = new ArrayDeque<>();
+        mark(depths, work, 0, 0);
+        for(ExceptionBlock block : exceptionTable){
+            mark(depths, work, block.catchIndex, 1);
+        }
+
+        while(!work.isEmpty()){
+            int ip = work.pop();
+            byte op = code[ip];
+            int depth = depths[ip] - pops(ip) + pushes(ip);
+
+            if(op == GOTO || op == IF){
+                mark(depths, work, fetchInt(ip + 1), depth);
+            }
+            if(op != GOTO && op != RETURN && op != THROW){
+                mark(depths, work, ip + TypeSpecializer.instructionSize(op), depth);
+            }
+        }
+        return depths;
+    }
+
+    protected void mark(int[] depths, Deque<Integer> work, int ip, int depth){
+        if(ip >= 0 && ip < code.length && depths[ip] < 0){
+            depths[ip] = depth;
+            work.push(ip);
+        }
+    }
+
+    protected int pops(int ip){
+        return switch (code[ip]) {
+            case ADD, SUB, MUL, DIV, FDIV, MOD, POW, BXOR, BAND, BOR, LSHIFT, RSHIFT, URSHIFT,
+                 EQ, GT, LT, GE, LE, IS, INSTANCEOF, AS, GETAT, SETATTR, SWAP, RANGE -> 2;
+            case SETAT -> 3;
+            case CALL, CALLAT, CALLMODULE -> code[ip + 1] + 1;
+            case INC, DEC, POS, NEG, BNEG, NOT, TRUTH, ITER, GETATTR, POP, DUP, SETLOCAL, IF, THROW, RETURN,
+                 SETUPVALUE, BIND, SETSELFATTR -> 1;
+            default -> 0;
+        };
+    }
+
+    protected int pushes(int ip){
+        return switch (code[ip]) {
+            case POP, SETLOCAL, IF, GOTO, THROW, RETURN, INITUPVALUE, INITCONFINEDUPVALUE -> 0;
+            case DUP, SWAP -> 2;
+            default -> 1;
+        };
+    }
+
+    protected int fetchInt(int ip){
+        int b1 = code[ip] & 0xFF;
+        int b2 = code[ip + 1] & 0xFF;
+        int b3 = code[ip + 2] & 0xFF;
+        int b4 = code[ip + 3] & 0xFF;
+        return (b1 << 24) | (b2 << 16) | (b3 << 8) | b4;
+    }
+}
@@ -20,9 +20,90 @@
 
 package chipmunk.vm.jvm;
 
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ChipmunkClassLoader extends ClassLoader {
 
+    /**
+     * Simple name of the class defined in each package that hidden classes are defined in. Its
+     * lookup is used to define hidden classes in that package.
+     */
+    public static final String LOOKUP_CLASS_NAME = "$ChipmunkLookup";
+
+    protected final Map<String, MethodHandles.Lookup> packageLookups = new ConcurrentHashMap<>();
+    protected final Map<String, TieredMethod> tieredMethods = new ConcurrentHashMap<>();
+
     public Class<?> define(String name, byte[] bytes){
         return super.defineClass(name, bytes, 0, bytes.length);
     }
+
+    /**
+     * Defines the class as a hidden class. Hidden classes can't be found by name, and are unloaded as soon as
+     * they are unreachable rather than when this loader is, so they are suitable for generated code that is
+     * only referenced through its Class object. The class must not be referenced by name from other classes.
+     */
+    public Class<?> defineHidden(String name, byte[] bytes){
+        try {
+            return packageLookup(packageName(name)).defineHiddenClass(bytes, true).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registers a method of a class defined by this loader for tiered compilation. The method's generated
+     * stub finds it here by id when its call site is bootstrapped.
+     */
+    public void registerTieredMethod(String id, TieredMethod method){
+        tieredMethods.put(id, method);
+    }
+
+    public TieredMethod getTieredMethod(String id){
+        return tieredMethods.get(id);
+    }
+
+    protected MethodHandles.Lookup packageLookup(String packageName){
+        return packageLookups.computeIfAbsent(packageName, p -> {
+            String lookupName = p.isEmpty() ? LOOKUP_CLASS_NAME : p + "." + LOOKUP_CLASS_NAME;
+            try {
+                return (MethodHandles.Lookup) define(lookupName, lookupClass(lookupName))
+                        .getMethod("lookup")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Generates a class whose static lookup() method returns a full privilege lookup on it.
+     */
+    protected byte[] lookupClass(String name){
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V14, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, name.replace('.', '/'), null, Type.getInternalName(Object.class), null);
+
+        MethodVisitor lookup = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "lookup",
+                Type.getMethodDescriptor(Type.getType(MethodHandles.Lookup.class)), null, null);
+        lookup.visitCode();
+        lookup.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(MethodHandles.class), "lookup",
+                Type.getMethodDescriptor(Type.getType(MethodHandles.Lookup.class)), false);
+        lookup.visitInsn(Opcodes.ARETURN);
+        lookup.visitMaxs(0, 0);
+        lookup.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    protected static String packageName(String className){
+        int lastDot = className.lastIndexOf('.');
+        return lastDot == -1 ? "" : className.substring(0, lastDot);
+    }
 }
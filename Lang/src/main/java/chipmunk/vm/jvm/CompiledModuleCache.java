@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.jvm;
+
+import chipmunk.binary.BinaryConstants;
+import chipmunk.binary.BinaryImage;
+import chipmunk.binary.BinaryModule;
+import chipmunk.binary.BinaryWriter;
+import chipmunk.runtime.ChipmunkModule;
+import chipmunk.vm.ModuleLoader;
+import chipmunk.vm.invoke.ChipmunkLibraries;
+import chipmunk.vm.invoke.security.LinkingPolicy;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the JVM classes generated for modules so that scripts loading the same module code share
+ * them rather than each generating, defining, and warming up their own copy. Each script still gets
+ * its own module instance, and so its own module state.
+ *
+ * Classes are keyed by a hash of the module's binary content together with the compiler configuration,
+ * and the linking policy and libraries of the script loading the module. Call sites in shared classes are
+ * linked once for all of the scripts using them - and the linking policy is only checked when a call site
+ * links - so scripts with different linking policies or libraries never share classes. Compiler configurations
+ * are mutable, so they are compared by the values of their settings at the time each module is loaded.
+ *
+ * The cache counts the module instances created from each class. Disposed scripts release their modules,
+ * and a class is dropped from the cache (so that it can be unloaded) once all of its instances have been
+ * released. Classes used by scripts that are never disposed stay cached for the cache's lifetime.
+ */
+public class CompiledModuleCache {
+
+    protected record Key(String contentHash, String configKey, LinkingPolicy policy, ChipmunkLibraries libs) {
+
+        @Override
+        public boolean equals(Object o){
+            return o instanceof Key other
+                    && contentHash.equals(other.contentHash)
+                    && configKey.equals(other.configKey)
+                    && policy == other.policy
+                    && libs == other.libs;
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(contentHash, configKey, System.identityHashCode(policy), System.identityHashCode(libs));
+        }
+    }
+
+    /**
+     * A cached module class. The class is compiled by the thread that added the entry, outside of the
+     * map, while other threads loading the same module wait for it.
+     */
+    protected static final class Entry {
+
+        protected final CompletableFuture<Class<?>> moduleClass;
+        protected int users;
+
+        protected Entry(){
+            moduleClass = new CompletableFuture<>();
+        }
+    }
+
+    protected final Map<Key, Entry> modules;
+    protected final Map<Class<?>, Key> keys;
+    protected final Map<BinaryModule, String> hashes;
+
+    public CompiledModuleCache(){
+        modules = new ConcurrentHashMap<>();
+        keys = new ConcurrentHashMap<>();
+        hashes = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    /**
+     * Returns a new instance of the module, generating its classes only if no matching
+     * module has been compiled before.
+     */
+    public ChipmunkModule load(JvmCompiler compiler, BinaryModule module, LinkingPolicy policy, ChipmunkLibraries libs){
+        return load(compiler, module, policy, libs, null);
+    }
+
+    /**
+     * Returns a new instance of the module. If no matching module has been compiled before, its
+     * classes are taken from the store when it holds them, and generated (and stored) otherwise.
+     */
+    public ChipmunkModule load(JvmCompiler compiler, BinaryModule module, LinkingPolicy policy, ChipmunkLibraries libs, ModuleClassStore store){
+        String hash = hash(module);
+        if(hash == null){
+            // Can't identify the module's content, so don't share it
+            return compiler.compileModule(module);
+        }
+
+        Key key = new Key(hash, configKey(compiler.getConfig()), policy, libs);
+        Entry created = new Entry();
+        Entry entry = modules.compute(key, (k, e) -> {
+            if(e == null){
+                e = created;
+            }
+            e.users++;
+            return e;
+        });
+
+        if(entry == created){
+            try{
+                JvmCompilation compilation = new JvmCompilation(module, new ModuleLoader(), compiler.getConfig());
+                Class<?> moduleClass = store != null ? store.load(compiler, compilation, hash) : compiler.compileModuleClass(compilation);
+                keys.put(moduleClass, key);
+                created.moduleClass.complete(moduleClass);
+            }catch(Throwable t){
+                // Evict the entry so that a later load tries again
+                modules.remove(key, created);
+                created.moduleClass.completeExceptionally(t);
+                throw t;
+            }
+        }
+
+        Class<?> moduleClass;
+        try{
+            moduleClass = entry.moduleClass.join();
+        }catch(CompletionException e){
+            if(e.getCause() instanceof RuntimeException re){
+                throw re;
+            }else if(e.getCause() instanceof Error err){
+                throw err;
+            }
+            throw e;
+        }
+        return (ChipmunkModule) compiler.instantiate(moduleClass);
+    }
+
+    /**
+     * Releases a module instance loaded from the cache. When every instance of a module's class has been
+     * released the class is removed from the cache. Modules that weren't loaded from the cache are ignored.
+     */
+    public void release(ChipmunkModule module){
+        Class<?> moduleClass = module.getClass();
+        Key key = keys.get(moduleClass);
+        if(key == null){
+            return;
+        }
+
+        modules.computeIfPresent(key, (k, e) -> {
+            if(e.moduleClass.getNow(null) != moduleClass || --e.users > 0){
+                return e;
+            }
+            keys.remove(moduleClass);
+            return null;
+        });
+    }
+
+    public boolean contains(JvmCompiler compiler, BinaryModule module, LinkingPolicy policy, ChipmunkLibraries libs){
+        String hash = hash(module);
+        return hash != null && modules.containsKey(new Key(hash, configKey(compiler.getConfig()), policy, libs));
+    }
+
+    public int size(){
+        return modules.size();
+    }
+
+    public void clear(){
+        modules.clear();
+        keys.clear();
+    }
+
+    /**
+     * Snapshots the compiler settings that affect the classes generated for a module.
+     */
+    protected static String configKey(JvmCompilerConfig config){
+        return ModuleClassStore.configKey(config)
+                + " hidden " + config.isHiddenClasses()
+                + " tiered " + config.isTieredCompilation()
+                + " threshold " + config.getTierThreshold()
+                + " speculation " + config.isTypeSpeculation();
+    }
+
+    protected String hash(BinaryModule module){
+        String hash = hashes.get(module);
+        if(hash != null){
+            return hash;
+        }
+
+        hash = contentHash(module);
+        if(hash != null){
+            hashes.put(module, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a SHA-256 hash of the module's binary encoding, or null if the module
+     * can't be encoded. Modules read from an image are hashed from the image's data, so
+     * that hashing them doesn't decode their lazily read parts.
+     */
+    public static String contentHash(BinaryModule module){
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try(DigestOutputStream os = new DigestOutputStream(OutputStream.nullOutputStream(), digest)){
+                BinaryImage image = module.getImage();
+                if(image != null){
+                    // Same header BinaryWriter writes, so both hash the same for the current version
+                    DataOutputStream dos = new DataOutputStream(os);
+                    dos.writeUTF(BinaryConstants.CHIPMUNK_BINARY_IDENTIFIER);
+                    dos.writeShort(image.getVersion());
+                    dos.flush();
+                    digest.update(image.getData());
+                }else{
+                    new BinaryWriter().writeModule(os, module);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }catch(Exception e){
+            return null;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import chipmunk.vm.invoke.security.LinkingPolicy;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -41,6 +43,8 @@ public class JvmCompilation {
 
     protected final JvmCompilerConfig config;
 
+    protected final Map<String, byte[]> generatedClasses;
+
     public JvmCompilation(BinaryModule module, ModuleLoader loader, JvmCompilerConfig config){
         this.module = module;
         this.loader = loader;
@@ -48,6 +52,7 @@ public class JvmCompilation {
         bindings = new HashSet<>();
 
         this.config = config;
+        generatedClasses = new LinkedHashMap<>();
     }
 
     public BinaryModule getModule() {
@@ -112,4 +117,15 @@ public class JvmCompilation {
     public void defineBinding(String bindingSignature){
         bindings.add(bindingSignature);
     }
+
+    public void addGeneratedClass(String name, byte[] bytes){
+        generatedClasses.put(name, bytes);
+    }
+
+    /**
+     * Returns the bytes of every class defined for this compilation, by class name, in the order they were defined.
+     */
+    public Map<String, byte[]> getGeneratedClasses(){
+        return generatedClasses;
+    }
 }
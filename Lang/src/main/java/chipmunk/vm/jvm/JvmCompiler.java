@@ -35,12 +35,27 @@ import chipmunk.vm.invoke.security.LinkingPolicy;
 import org.objectweb.asm.*;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static chipmunk.compiler.assembler.Opcodes.*;
 
 public class JvmCompiler {
 
+    /**
+     * Identifies the shape of the code this compiler generates. This must change whenever code
+     * generation changes, because stored module classes are only reused if it matches.
+     */
+    public static final int CODEGEN_VERSION = 5;
+
+    /**
+     * A point where speculative code hands its invocation back to the interpreter: the label jumped to, the
+     * local being stored (or -1 for the method's entry), the number of stack entries to discard below the stored
+     * value, and the ip the interpreter resumes at.
+     */
+    protected record Deoptimization(Label label, int index, int discards, int resumeIp) {}
+
     protected final JvmCompilerConfig config;
 
     public JvmCompiler(LinkingPolicy linkingPolicy){
@@ -131,7 +146,7 @@ public class JvmCompiler {
         run.visitEnd();
 
         sw.visitEnd();
-        return (ChipmunkScript) instantiate(sources.getModuleLoader().getClassLoader().define("ChipmunkScriptImpl", sw.toByteArray()));
+        return (ChipmunkScript) instantiate(defineGenerated(sources.getModuleLoader().getClassLoader(), "ChipmunkScriptImpl", sw.toByteArray()));
     }
 
     public ChipmunkModule compileModule(BinaryModule module){
@@ -139,6 +154,14 @@ public class JvmCompiler {
     }
 
     public ChipmunkModule compileModule(JvmCompilation compilation){
+        return (ChipmunkModule) instantiate(compileModuleClass(compilation));
+    }
+
+    /**
+     * Generates and defines the module's JVM class (along with the classes for its Chipmunk
+     * classes) without instantiating it.
+     */
+    public Class<?> compileModuleClass(JvmCompilation compilation){
 
         final BinaryModule module = compilation.getModule();
 
@@ -210,14 +233,31 @@ public class JvmCompiler {
 
         byte[] bytes = moduleWriter.toByteArray();
 
-        return (ChipmunkModule) instantiate(loadClass(compilation.getLoader().getClassLoader(), compilation.getPrefixedModuleName(), bytes));
+        return loadClass(compilation, compilation.getPrefixedModuleName(), bytes);
+    }
+
+    /**
+     * Defines a class generated for the compilation and records its bytes, so that the
+     * compilation's classes can be stored and defined again without regenerating them.
+     */
+    protected Class<?> loadClass(JvmCompilation compilation, String name, byte[] bytes){
+        compilation.addGeneratedClass(name, bytes);
+        return loadClass(compilation.getLoader().getClassLoader(), name, bytes);
     }
 
     protected Class<?> loadClass(ChipmunkClassLoader loader, String name, byte[] bytes){
         return loader.define(name, bytes);
     }
 
-    protected <T> T instantiate(Class<T> cls){
+    /**
+     * Defines a generated class that is never referenced by name, as a hidden class if the
+     * configuration calls for it.
+     */
+    protected Class<?> defineGenerated(ChipmunkClassLoader loader, String name, byte[] bytes){
+        return config.isHiddenClasses() ? loader.defineHidden(name, bytes) : loader.define(name, bytes);
+    }
+
+    public <T> T instantiate(Class<T> cls){
         try {
             return cls.getConstructor().newInstance();
         } catch (Exception e) {
@@ -440,8 +480,8 @@ public class JvmCompiler {
 
         cInsWriter.visitEnd();
 
-        Class<?> cClass = loadClass(compilation.getLoader().getClassLoader(), qualifiedCClassName, cClassWriter.toByteArray());
-        loadClass(compilation.getLoader().getClassLoader(), qualifiedInsName, cInsWriter.toByteArray());
+        Class<?> cClass = loadClass(compilation, qualifiedCClassName, cClassWriter.toByteArray());
+        loadClass(compilation, qualifiedInsName, cInsWriter.toByteArray());
 
         return cClass;
     }
@@ -524,6 +564,11 @@ public class JvmCompiler {
 
         final Type objType = Type.getType(Object.class);
 
+        if(isTiered(compilation.getConfig())){
+            visitTieredMethod(compilation, cw, flags, name, method);
+            return;
+        }
+
         // Note: Chipmunk counts the 'self' parameter as an argument, but Java does not
         Type[] pTypes = new Type[Math.max(0, method.getArgCount() - 1)];
         Arrays.fill(pTypes, objType);
@@ -531,10 +576,259 @@ public class JvmCompiler {
         Type methodType = Type.getMethodType(objType, pTypes);
 
         var sandbox = new SandboxContext(compilation.getPrefixedModuleName() + "." + className, name, methodType.getDescriptor(), compilation.getConfig());
+        // Chipmunk locals map directly to JVM slots, so the first slot past them is free
+        sandbox.setBudgetLocal(Math.max(method.getArgCount(), method.getLocalCount()));
+        MethodVisitor mv = new Sandbox(cw.visitMethod(flags, name, methodType.getDescriptor(), null, null), sandbox);
+        mv.visitCode();
+
+        final String owner = jvmName(compilation.qualifiedContainingName());
+        if(method.hasTypedSignature()){
+            generateTypedEntryCall(mv, owner, name, method);
+        }
+        generateMethodBody(compilation, mv, owner, name, method, new HashMap<>(), null);
+
+        if(method.hasTypedSignature()){
+            visitTypedMethod(compilation, cw, className, flags, name, method);
+        }
+    }
+
+    /**
+     * Generates the typed entry of a method with a typed signature. The entry takes and returns primitives
+     * in place of the typed arguments and return value, and is an overload of the method's boxed entry so
+     * that call sites whose arguments have the right types link to it directly.
+     */
+    protected void visitTypedMethod(JvmCompilation compilation, ClassWriter cw, String className, int flags, String name, BinaryMethod method){
+        Type methodType = typedMethodCallType(method);
+
+        var sandbox = new SandboxContext(compilation.getPrefixedModuleName() + "." + className, name, methodType.getDescriptor(), compilation.getConfig());
+        sandbox.setBudgetLocal(Math.max(method.getArgCount(), method.getLocalCount()));
         MethodVisitor mv = new Sandbox(cw.visitMethod(flags, name, methodType.getDescriptor(), null, null), sandbox);
         mv.visitCode();
 
-        Map<Integer, Label> labelMappings = new HashMap<>();
+        generateMethodBody(compilation, mv, jvmName(compilation.qualifiedContainingName()), name, method, new HashMap<>(), null, true);
+    }
+
+    /**
+     * Makes the boxed entry of a method with a typed signature a bridge to its typed entry. If every argument
+     * has its typed parameter's type, the arguments are unboxed and passed to the typed entry. Otherwise the
+     * boxed body that follows runs instead.
+     */
+    protected void generateTypedEntryCall(MethodVisitor mv, String owner, String name, BinaryMethod method){
+        Label boxed = new Label();
+        for(int i = 1; i < method.getArgCount(); i++){
+            mv.visitVarInsn(Opcodes.ALOAD, i);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(TypeSpecializer.kindOf(method.getArgType(i)))));
+            mv.visitJumpInsn(Opcodes.IFEQ, boxed);
+        }
+
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        for(int i = 1; i < method.getArgCount(); i++){
+            mv.visitVarInsn(Opcodes.ALOAD, i);
+            generateUnboxing(mv, boxedType(TypeSpecializer.kindOf(method.getArgType(i))));
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, name, typedMethodCallType(method).getDescriptor(), false);
+        generatePrimitiveBoxing(mv, TypeSpecializer.kindOf(method.getReturnType()));
+        mv.visitInsn(Opcodes.ARETURN);
+
+        mv.visitLabel(boxed);
+    }
+
+    protected boolean isTiered(JvmCompilerConfig config){
+        // Interpreted code can't be instrumented, so sandboxed code is always compiled
+        return config.isTieredCompilation() && !config.getTrapConfig().isEnabled(TrapFlag.values());
+    }
+
+    /**
+     * Generates a stub for a method compiled in tiers. The stub passes its receiver and arguments to the
+     * method's TieredMethod call site, which interprets the method until it is hot and then compiles it.
+     * The method's body isn't read until it is first called.
+     */
+    protected void visitTieredMethod(JvmCompilation compilation, ClassWriter cw, int flags, String name, BinaryMethod method){
+        final String ownerName = compilation.qualifiedContainingName();
+        final String id = ownerName + "." + name;
+        compilation.getLoader().getClassLoader().registerTieredMethod(id, new TieredMethod(this, compilation, id, ownerName, name, method));
+
+        Type methodType = methodCallType(method);
+        MethodVisitor mv = cw.visitMethod(flags, name, methodType.getDescriptor(), null, null);
+        mv.visitCode();
+
+        // Receiver and arguments
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        for(int i = 1; i <= methodType.getArgumentTypes().length; i++){
+            mv.visitVarInsn(Opcodes.ALOAD, i);
+        }
+
+        Handle bootstrap = new Handle(Opcodes.H_INVOKESTATIC,
+                Type.getInternalName(TieredMethod.class),
+                TieredMethod.BOOTSTRAP_METHOD,
+                TieredMethod.bootstrapType().toMethodDescriptorString(),
+                false);
+
+        mv.visitInvokeDynamicInsn(name, Type.getMethodDescriptor(Type.getType(Object.class), paramTypes(methodType.getArgumentTypes().length + 1)),
+                bootstrap, id);
+        mv.visitInsn(Opcodes.ARETURN);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Compiles the body of a tiered method into a class of its own. The class has a static entry point that
+     * takes the receiver followed by the arguments, and if there are any OSR entries, a static entry point
+     * that takes a frame of locals and the ip of one of those loop headers, restores the locals, and resumes
+     * the method there. If a speculation is given, the code assumes the types it speculates on, and
+     * deoptimizes through the TieredMethod where those assumptions fail.
+     */
+    public Class<?> compileTier(JvmCompilation compilation, TieredMethod tier, Set<Integer> osrEntries, Speculation speculation){
+        final BinaryMethod method = tier.getMethod();
+        // Each recompilation after a deoptimization needs a class name of its own
+        final int compilations = tier.getCompilations();
+        final String tierName = tier.getOwnerName() + "$tier$" + tier.getName() + (compilations > 0 ? "$" + compilations : "");
+        final int frameSize = Math.max(1, Math.max(method.getArgCount(), method.getLocalCount()));
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V14, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, jvmName(tierName), null, Type.getInternalName(Object.class), null);
+        cw.visitSource(method.getModule() != null ? method.getModule().getFileName() : null, null);
+
+        // The receiver becomes an ordinary parameter, so the Chipmunk locals keep their slots
+        Type entryType = Type.getMethodType(Type.getType(Object.class), paramTypes(Math.max(1, method.getArgCount())));
+        var sandbox = new SandboxContext(tier.getOwnerName(), tier.getName(), entryType.getDescriptor(), compilation.getConfig());
+        sandbox.setBudgetLocal(frameSize);
+        MethodVisitor entry = new Sandbox(cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, TieredMethod.ENTRY_METHOD,
+                entryType.getDescriptor(), null, null), sandbox);
+        entry.visitCode();
+        generateMethodBody(compilation, entry, jvmName(tier.getOwnerName()), tier.getName(), method, new HashMap<>(), speculation);
+
+        if(!osrEntries.isEmpty()){
+            Type osrType = Type.getMethodType(Type.getType(Object.class), Type.getType(Object[].class), Type.INT_TYPE);
+            sandbox = new SandboxContext(tier.getOwnerName(), tier.getName(), osrType.getDescriptor(), compilation.getConfig());
+            sandbox.setBudgetLocal(frameSize);
+            MethodVisitor osr = new Sandbox(cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, TieredMethod.OSR_METHOD,
+                    osrType.getDescriptor(), null, null), sandbox);
+            osr.visitCode();
+
+            Map<Integer, Label> labelMappings = new HashMap<>();
+            generateOsrEntry(osr, method, frameSize, osrEntries, labelMappings, speculation);
+            generateMethodBody(compilation, osr, jvmName(tier.getOwnerName()), tier.getName(), method, labelMappings, speculation);
+        }
+
+        cw.visitEnd();
+        return defineGenerated(compilation.getLoader().getClassLoader(), tierName, cw.toByteArray());
+    }
+
+    /**
+     * Restores the locals of an interpreted frame and jumps to the loop header it is resuming at. The frame
+     * and ip parameters are moved out of the way first, since the locals they occupy belong to the method.
+     * A frame whose locals don't match the speculation is handed straight back to the interpreter.
+     */
+    protected void generateOsrEntry(MethodVisitor mv, BinaryMethod method, int frameSize, Set<Integer> osrEntries, Map<Integer, Label> labelMappings,
+                                    Speculation speculation){
+        final int frameLocal = frameSize + 1;
+        final int ipLocal = frameSize + 2;
+
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ASTORE, frameLocal);
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitVarInsn(Opcodes.ISTORE, ipLocal);
+
+        Label deoptimize = new Label();
+        TypeSpecializer types = new TypeSpecializer(method, speculation);
+        for(int i = 0; i < frameSize; i++){
+            if(types.isSpeculated(i)){
+                Label isNull = new Label();
+                Label next = new Label();
+                mv.visitVarInsn(Opcodes.ALOAD, frameLocal);
+                mv.visitLdcInsn(i);
+                mv.visitInsn(Opcodes.AALOAD);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitJumpInsn(Opcodes.IFNULL, isNull);
+                mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(types.localKind(i))));
+                mv.visitJumpInsn(Opcodes.IFEQ, deoptimize);
+                mv.visitJumpInsn(Opcodes.GOTO, next);
+
+                // Locals that haven't been assigned yet are null in the interpreter, and start out as zero
+                mv.visitLabel(isNull);
+                mv.visitInsn(Opcodes.POP);
+                if(i < method.getArgCount()){
+                    mv.visitJumpInsn(Opcodes.GOTO, deoptimize);
+                }
+                mv.visitLabel(next);
+            }
+        }
+
+        for(int i = 0; i < frameSize; i++){
+            mv.visitVarInsn(Opcodes.ALOAD, frameLocal);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+
+            TypeSpecializer.Kind kind = i < method.getArgCount() && !types.isSpeculated(i) ? TypeSpecializer.Kind.OBJECT : types.localKind(i);
+            if(types.isSpeculated(i) && i >= method.getArgCount()){
+                generateNullAsZero(mv, kind);
+            }
+            switch (kind) {
+                case INT -> {
+                    generateUnboxing(mv, Integer.class);
+                    mv.visitVarInsn(Opcodes.ISTORE, i);
+                }
+                case FLOAT -> {
+                    generateUnboxing(mv, Float.class);
+                    mv.visitVarInsn(Opcodes.FSTORE, i);
+                }
+                default -> mv.visitVarInsn(Opcodes.ASTORE, i);
+            }
+        }
+
+        int[] keys = osrEntries.stream().mapToInt(Integer::intValue).sorted().toArray();
+        Label[] targets = new Label[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            targets[i] = markLabel(keys[i], labelMappings);
+        }
+
+        Label invalidEntry = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, ipLocal);
+        mv.visitLookupSwitchInsn(invalidEntry, keys, targets);
+
+        mv.visitLabel(invalidEntry);
+        mv.visitTypeInsn(Opcodes.NEW, Type.getInternalName(IllegalArgumentException.class));
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn("Not an OSR entry");
+        invokeConstructor(mv, IllegalArgumentException.class, String.class);
+        mv.visitInsn(Opcodes.ATHROW);
+
+        if(speculation != null){
+            mv.visitLabel(deoptimize);
+            mv.visitVarInsn(Opcodes.ALOAD, frameLocal);
+            mv.visitVarInsn(Opcodes.ILOAD, ipLocal);
+            generateDeoptimization(mv, speculation.getTier());
+        }
+    }
+
+    /**
+     * Replaces a null on top of the stack with a boxed zero of the given kind.
+     */
+    protected void generateNullAsZero(MethodVisitor mv, TypeSpecializer.Kind kind){
+        Label nonNull = new Label();
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitJumpInsn(Opcodes.IFNONNULL, nonNull);
+        mv.visitInsn(Opcodes.POP);
+        generatePush(mv, kind == TypeSpecializer.Kind.FLOAT ? (Object) 0.0f : (Object) 0);
+        mv.visitLabel(nonNull);
+    }
+
+    /**
+     * Generates the JVM code for a Chipmunk method body, with the Chipmunk locals in the JVM slots of the
+     * same index. The owner is the internal name of the class the method belongs to, which is the class of
+     * self. Labels that have been created for ips already (by a caller jumping into the body) are used
+     * as the labels of those instructions. If a speculation is given, the code assumes the types it
+     * speculates on.
+     */
+    protected void generateMethodBody(JvmCompilation compilation, MethodVisitor mv, String owner, String name, BinaryMethod method, Map<Integer, Label> labelMappings,
+                                      Speculation speculation){
+        generateMethodBody(compilation, mv, owner, name, method, labelMappings, speculation, false);
+    }
+
+    protected void generateMethodBody(JvmCompilation compilation, MethodVisitor mv, String owner, String name, BinaryMethod method, Map<Integer, Label> labelMappings,
+                                      Speculation speculation, boolean typedEntry){
         DebugEntry[] debugTable = method.getDebugTable();
         int debugIndex = 0;
 
@@ -550,6 +844,14 @@ public class JvmCompiler {
             mv.visitVarInsn(Opcodes.ASTORE, i + firstUpvalueIndex);
         }*/
 
+        // Typed entries only exist when methods are compiled eagerly
+        TypeSpecializer types = new TypeSpecializer(method, speculation, typedEntry, !isTiered(compilation.getConfig()));
+        generateTypedLocalInit(mv, method, types);
+
+        List<Deoptimization> deoptimizations = new ArrayList<>();
+        if(speculation != null){
+            generateSpeculativeEntry(mv, method, types, deoptimizations);
+        }
 
         byte[] instructions = method.getCode();
         for(int ip = 0; ip < instructions.length;) {
@@ -582,49 +884,25 @@ public class JvmCompiler {
 
             final byte op = instructions[ip];
 
+            // Control flow can merge here, so no unboxed values can be live on the stack
+            if(types.isJumpTarget(ip)){
+                types.reset();
+            }
+
+            if(!TypeSpecializer.specializes(op)){
+                types.apply(ip);
+            }
+
             switch (op) {
-                case ADD -> {
-                    generateDynamicInvocation(mv, "plus", 2);
-                    ip++;
-                }
-                case SUB -> {
-                    generateDynamicInvocation(mv, "minus", 2);
-                    ip++;
-                }
-                case MUL -> {
-                    generateDynamicInvocation(mv, "mul", 2);
-                    ip++;
-                }
-                case DIV -> {
-                    generateDynamicInvocation(mv, "div", 2);
-                    ip++;
-                }
-                case FDIV -> {
-                    generateDynamicInvocation(mv, "fdiv", 2);
-                    ip++;
-                }
-                case MOD -> {
-                    generateDynamicInvocation(mv, "mod", 2);
-                    ip++;
+                case ADD, SUB, MUL, DIV, FDIV, MOD, EQ, GT, LT, GE, LE -> {
+                    ip = generateBinaryOperation(mv, types, labelMappings, instructions, ip);
                 }
                 case POW -> {
                     generateDynamicInvocation(mv, "pow", 2);
                     ip++;
                 }
-                case INC -> {
-                    generateDynamicInvocation(mv, "inc", 1);
-                    ip++;
-                }
-                case DEC -> {
-                    generateDynamicInvocation(mv, "dec", 1);
-                    ip++;
-                }
-                case POS -> {
-                    generateDynamicInvocation(mv, "pos", 1);
-                    ip++;
-                }
-                case NEG -> {
-                    generateDynamicInvocation(mv, "neg", 1);
+                case INC, DEC, POS, NEG, NOT -> {
+                    generateUnaryOperation(mv, types, op, ip + 1);
                     ip++;
                 }
                 case BXOR -> {
@@ -665,6 +943,16 @@ public class JvmCompiler {
                     generateFieldGet(mv, attr);
                     ip += 5;
                 }
+                case SETSELFATTR -> {
+                    String attr = (String) method.getConstantPool()[fetchInt(instructions, ip + 1)];
+                    generateSelfFieldSet(mv, owner, attr);
+                    ip += 5;
+                }
+                case GETSELFATTR -> {
+                    String attr = (String) method.getConstantPool()[fetchInt(instructions, ip + 1)];
+                    generateSelfFieldGet(mv, owner, attr);
+                    ip += 5;
+                }
                 case GETAT -> {
                     generateDynamicInvocation(mv, "getAt", 2);
                     ip++;
@@ -674,29 +962,37 @@ public class JvmCompiler {
                     ip++;
                 }
                 case GETLOCAL -> {
-                    generateLocalGet(mv, instructions[ip + 1]);
+                    generateLocalGet(mv, types, instructions[ip + 1], ip + 2);
                     ip += 2;
                 }
                 case SETLOCAL -> {
-                    generateLocalSet(mv, instructions[ip + 1]);
+                    byte index = instructions[ip + 1];
+                    if(types.isSpeculated(index) && speculation.resumeIp(ip) >= 0){
+                        generateSpeculatedLocalSet(mv, types, index, ip, deoptimizations);
+                    }else{
+                        generateLocalSet(mv, types, index);
+                    }
                     ip += 2;
                 }
                 case TRUTH -> {
                     generateDynamicInvocation(mv, "truth", 1);
                     ip++;
                 }
-                case NOT -> {
-                    generateDynamicInvocation(mv, "truth", 1);
-                    generateBoxedBooleanNegation(mv);
-                    ip++;
-                }
                 case AS -> {
                     generateDynamicInvocation(mv, "as", 2);
                     ip++;
                 }
                 case IF -> {
-                    generateDynamicInvocation(mv, "truth", 1);
-                    generateIfJump(mv, labelMappings, fetchInt(instructions, ip + 1));
+                    TypeSpecializer.Kind kind = types.pop();
+                    if(kind == TypeSpecializer.Kind.BOOLEAN || kind == TypeSpecializer.Kind.INT){
+                        // Unboxed booleans and ints are tested directly - truth(Int) is (value != 0)
+                        mv.visitJumpInsn(Opcodes.IFEQ, markLabel(fetchInt(instructions, ip + 1), labelMappings));
+                    }else if(types.speculatedOperand(ip, 0) == TypeSpecializer.Kind.BOOLEAN){
+                        generateSpeculatedIfJump(mv, labelMappings, fetchInt(instructions, ip + 1));
+                    }else{
+                        generateDynamicInvocation(mv, "truth", 1);
+                        generateIfJump(mv, labelMappings, fetchInt(instructions, ip + 1));
+                    }
                     ip += 5;
                 }
                 case CALL -> {
@@ -712,6 +1008,14 @@ public class JvmCompiler {
 
                     ip += 6;
                 }
+                case GETMODULE -> {
+                    generateModuleGet(mv, compilation);
+                    ip++;
+                }
+                case CALLMODULE -> {
+                    generateModuleInvocation(mv, compilation, types, method, ip);
+                    ip += 6;
+                }
                 case GOTO -> {
                     int jumpTarget = fetchInt(instructions, ip + 1);
                     generateGoto(mv, jumpTarget, labelMappings);
@@ -722,49 +1026,31 @@ public class JvmCompiler {
                     ip++;
                 }
                 case RETURN -> {
-                    generateReturn(mv);
+                    generateReturn(mv, types);
                     ip++;
                 }
                 case POP -> {
+                    types.pop();
                     generatePop(mv);
                     ip++;
                 }
                 case DUP -> {
+                    types.push(types.peek(0));
                     generateDup(mv);
                     ip++;
                 }
                 case SWAP -> {
+                    TypeSpecializer.Kind top = types.pop();
+                    TypeSpecializer.Kind next = types.pop();
+                    types.push(top);
+                    types.push(next);
                     generateSwap(mv);
                     ip++;
                 }
                 case PUSH -> {
-                    generatePush(mv, method.getConstantPool()[fetchInt(instructions, ip + 1)]);
+                    generatePush(mv, types, method.getConstantPool()[fetchInt(instructions, ip + 1)], ip + 5);
                     ip += 5;
                 }
-                case EQ -> {
-                    generateDynamicInvocation(mv, "equals", 2);
-                    ip++;
-                }
-                case GT -> {
-                    generateDynamicInvocation(mv, "compare", 2);
-                    generateGreaterThan(mv);
-                    ip++;
-                }
-                case LT -> {
-                    generateDynamicInvocation(mv, "compare", 2);
-                    generateLessThan(mv);
-                    ip++;
-                }
-                case GE -> {
-                    generateDynamicInvocation(mv, "compare", 2);
-                    generateGreaterThanOrEqual(mv);
-                    ip++;
-                }
-                case LE -> {
-                    generateDynamicInvocation(mv, "compare", 2);
-                    generateLessThanOrEqual(mv);
-                    ip++;
-                }
                 case IS -> {
                     generateReferentialEqualityCheck(mv);
                     ip++;
@@ -791,7 +1077,11 @@ public class JvmCompiler {
                     ip += 5;
                 }
                 case INITUPVALUE -> {
-                    generateUpvalueInit(mv, instructions[ip + 1]);
+                    generateUpvalueInit(mv, SharedUpvalue.class, instructions[ip + 1]);
+                    ip += 2;
+                }
+                case INITCONFINEDUPVALUE -> {
+                    generateUpvalueInit(mv, ConfinedUpvalue.class, instructions[ip + 1]);
                     ip += 2;
                 }
                 case GETUPVALUE -> {
@@ -814,6 +1104,11 @@ public class JvmCompiler {
 
         }
 
+        // Deoptimizations are placed after the body, outside the range of any of its exception handlers
+        for(Deoptimization deoptimization : deoptimizations){
+            generateDeoptimization(mv, method, types, deoptimization);
+        }
+
         try{
             mv.visitMaxs(0, 0);
         }catch (Exception e){
@@ -848,6 +1143,84 @@ public class JvmCompiler {
 
     }
 
+    /**
+     * Pushes the receiver of a module-level method, which is always the module instance, typed as the
+     * module's class so that calls on it can be bound directly.
+     */
+    protected void generateModuleGet(MethodVisitor mv, JvmCompilation compilation){
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, jvmName(compilation.getPrefixedModuleName()));
+    }
+
+    /**
+     * Calls a method of the compilation's own module directly. Module methods can't be rebound, so unlike
+     * generateDynamicInvocation() this needs no call site or guards and the JIT can inline the callee.
+     */
+    protected void generateModuleInvocation(MethodVisitor mv, JvmCompilation compilation, String method, int paramCount){
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, jvmName(compilation.getPrefixedModuleName()), method,
+                Type.getMethodDescriptor(Type.getType(Object.class), paramTypes(paramCount)), false);
+    }
+
+    /**
+     * Calls a method of the compilation's own module through its typed entry if every argument is an unboxed
+     * primitive, otherwise through its boxed entry. The arguments are spilled into locals past the method's
+     * frame so that any unboxed ones can be boxed.
+     */
+    protected void generateModuleInvocation(MethodVisitor mv, JvmCompilation compilation, TypeSpecializer types, BinaryMethod method, int ip){
+        final byte[] code = method.getCode();
+        final String methodName = (String) method.getConstantPool()[fetchInt(code, ip + 2)];
+        final int paramCount = code[ip + 1];
+
+        TypeSpecializer.Kind[] kinds = new TypeSpecializer.Kind[paramCount];
+        boolean primitives = false;
+        boolean boxed = false;
+        for(int i = 0; i < paramCount; i++){
+            kinds[i] = types.peek(paramCount - 1 - i);
+            primitives |= kinds[i] != TypeSpecializer.Kind.OBJECT;
+            boxed |= kinds[i] == TypeSpecializer.Kind.OBJECT;
+        }
+        types.pop(paramCount + 1);
+
+        BinaryMethod callee = types.typedCallee(ip);
+        if(callee != null && !boxed){
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, jvmName(compilation.getPrefixedModuleName()), methodName,
+                    typedMethodCallType(callee).getDescriptor(), false);
+            generatePrimitiveResult(mv, types, TypeSpecializer.kindOf(callee.getReturnType()), ip + 6);
+            return;
+        }
+
+        if(primitives){
+            // Past the locals used by the sandbox budget, OSR entries, and deoptimizations
+            final int scratch = Math.max(1, Math.max(method.getArgCount(), method.getLocalCount())) + 4;
+            for(int i = paramCount - 1; i >= 0; i--){
+                mv.visitVarInsn(storeOpcode(kinds[i]), scratch + i);
+            }
+            for(int i = 0; i < paramCount; i++){
+                mv.visitVarInsn(loadOpcode(kinds[i]), scratch + i);
+                generatePrimitiveBoxing(mv, kinds[i]);
+            }
+        }
+
+        generateModuleInvocation(mv, compilation, methodName, paramCount);
+        types.push(TypeSpecializer.Kind.OBJECT);
+    }
+
+    protected int storeOpcode(TypeSpecializer.Kind kind){
+        return switch (kind) {
+            case INT, BOOLEAN -> Opcodes.ISTORE;
+            case FLOAT -> Opcodes.FSTORE;
+            case OBJECT -> Opcodes.ASTORE;
+        };
+    }
+
+    protected int loadOpcode(TypeSpecializer.Kind kind){
+        return switch (kind) {
+            case INT, BOOLEAN -> Opcodes.ILOAD;
+            case FLOAT -> Opcodes.FLOAD;
+            case OBJECT -> Opcodes.ALOAD;
+        };
+    }
+
     protected void generateDynamicFieldAccess(MethodVisitor mv, String field, boolean set) {
         final Type objType = Type.getType(Object.class);
 
@@ -903,7 +1276,390 @@ public class JvmCompiler {
         generateUnboxing(mv, Integer.class);
         // Need to use the opposite operation in JVM bytecode because Java has the
         // stack backwards from how we have it
-        generateTest(mv, Opcodes.IFGE);
+        generateTest(mv, Opcodes.IFGT);
+    }
+
+    /**
+     * Generates a binary arithmetic or comparison operation. If both operands are unboxed
+     * primitives the operation is emitted as plain JVM arithmetic. If only one is, the other
+     * operand is speculatively unboxed behind an instanceof guard that falls back to the
+     * dynamic operation. Returns the ip of the next instruction to compile.
+     */
+    protected int generateBinaryOperation(MethodVisitor mv, TypeSpecializer types, Map<Integer, Label> labels, byte[] code, int ip){
+        final byte op = code[ip];
+        final int next = ip + 1;
+
+        TypeSpecializer.Kind b = types.pop();
+        TypeSpecializer.Kind a = types.pop();
+
+        TypeSpecializer.Kind result = TypeSpecializer.binaryResult(op, a, b);
+        if(result == TypeSpecializer.Kind.BOOLEAN && next < code.length && code[next] == IF && !types.isJumpTarget(next)){
+            // Fuse the comparison with the branch that consumes it
+            generatePrimitiveComparison(mv, op, a, b, markLabel(fetchInt(code, next + 1), labels));
+            return next + 5;
+        }
+
+        if(result != null){
+            generatePrimitiveBinaryOperation(mv, op, a, b, result);
+            generatePrimitiveResult(mv, types, result, next);
+            return next;
+        }
+
+        if(a == TypeSpecializer.Kind.OBJECT && b.isNumeric() || a.isNumeric() && b == TypeSpecializer.Kind.OBJECT){
+            TypeSpecializer.Kind known = a.isNumeric() ? a : b;
+            TypeSpecializer.Kind speculated = TypeSpecializer.binaryResult(op, known, known);
+            if(speculated != null){
+                generateGuardedBinaryOperation(mv, op, a, b, known, speculated);
+                types.push(TypeSpecializer.Kind.OBJECT);
+                return next;
+            }
+        }
+
+        if(a == TypeSpecializer.Kind.OBJECT && b == TypeSpecializer.Kind.OBJECT){
+            TypeSpecializer.Kind profiledA = types.speculatedOperand(ip, 0);
+            TypeSpecializer.Kind profiledB = types.speculatedOperand(ip, 1);
+            TypeSpecializer.Kind speculated = TypeSpecializer.binaryResult(op, profiledA, profiledB);
+            if(speculated == TypeSpecializer.Kind.BOOLEAN && next < code.length && code[next] == IF && !types.isJumpTarget(next)){
+                generateSpeculatedComparison(mv, op, profiledA, profiledB, labels, fetchInt(code, next + 1));
+                return next + 5;
+            }
+            if(speculated != null){
+                generateSpeculatedBinaryOperation(mv, op, profiledA, profiledB, speculated);
+                types.push(TypeSpecializer.Kind.OBJECT);
+                return next;
+            }
+        }
+
+        if(b != TypeSpecializer.Kind.OBJECT){
+            generatePrimitiveBoxing(mv, b);
+        }
+        if(a != TypeSpecializer.Kind.OBJECT){
+            mv.visitInsn(Opcodes.SWAP);
+            generatePrimitiveBoxing(mv, a);
+            mv.visitInsn(Opcodes.SWAP);
+        }
+        generateDynamicBinaryOperation(mv, op);
+        types.push(TypeSpecializer.Kind.OBJECT);
+        return next;
+    }
+
+    /**
+     * Tests that two boxed operands have the types profiled for them and unboxes them, or jumps to slowPath
+     * with the operands unchanged.
+     */
+    protected void generateOperandGuards(MethodVisitor mv, TypeSpecializer.Kind a, TypeSpecializer.Kind b, Label slowPath){
+        Label swappedSlowPath = new Label();
+        Label unboxed = new Label();
+
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(b)));
+        mv.visitJumpInsn(Opcodes.IFEQ, slowPath);
+
+        mv.visitInsn(Opcodes.SWAP);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(a)));
+        mv.visitJumpInsn(Opcodes.IFEQ, swappedSlowPath);
+
+        generateUnboxing(mv, boxedType(a));
+        mv.visitInsn(Opcodes.SWAP);
+        generateUnboxing(mv, boxedType(b));
+        mv.visitJumpInsn(Opcodes.GOTO, unboxed);
+
+        mv.visitLabel(swappedSlowPath);
+        mv.visitInsn(Opcodes.SWAP);
+        mv.visitJumpInsn(Opcodes.GOTO, slowPath);
+
+        mv.visitLabel(unboxed);
+    }
+
+    /**
+     * Performs a binary operation on two boxed operands as primitive arithmetic if they have the types
+     * profiled for them, otherwise as the dynamic operation. The result is boxed.
+     */
+    protected void generateSpeculatedBinaryOperation(MethodVisitor mv, byte op, TypeSpecializer.Kind a, TypeSpecializer.Kind b,
+                                                     TypeSpecializer.Kind result){
+        Label slowPath = new Label();
+        Label end = new Label();
+
+        generateOperandGuards(mv, a, b, slowPath);
+        generatePrimitiveBinaryOperation(mv, op, a, b, result);
+        generatePrimitiveBoxing(mv, result);
+        mv.visitJumpInsn(Opcodes.GOTO, end);
+
+        mv.visitLabel(slowPath);
+        generateDynamicBinaryOperation(mv, op);
+        mv.visitLabel(end);
+    }
+
+    /**
+     * Fuses a comparison of two boxed operands with the branch consuming it, comparing them as primitives
+     * if they have the types profiled for them.
+     */
+    protected void generateSpeculatedComparison(MethodVisitor mv, byte op, TypeSpecializer.Kind a, TypeSpecializer.Kind b,
+                                                Map<Integer, Label> labels, int jumpTarget){
+        Label slowPath = new Label();
+        Label end = new Label();
+
+        generateOperandGuards(mv, a, b, slowPath);
+        generatePrimitiveComparison(mv, op, a, b, markLabel(jumpTarget, labels));
+        mv.visitJumpInsn(Opcodes.GOTO, end);
+
+        mv.visitLabel(slowPath);
+        generateDynamicBinaryOperation(mv, op);
+        generateDynamicInvocation(mv, "truth", 1);
+        generateIfJump(mv, labels, jumpTarget);
+        mv.visitLabel(end);
+    }
+
+    /**
+     * Branches on a boxed value that has only ever been a Boolean, testing it directly rather than through
+     * truth() while it still is one.
+     */
+    protected void generateSpeculatedIfJump(MethodVisitor mv, Map<Integer, Label> labels, int jumpTarget){
+        Label slowPath = new Label();
+        Label test = new Label();
+
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(Boolean.class));
+        mv.visitJumpInsn(Opcodes.IFEQ, slowPath);
+        mv.visitJumpInsn(Opcodes.GOTO, test);
+
+        mv.visitLabel(slowPath);
+        generateDynamicInvocation(mv, "truth", 1);
+
+        mv.visitLabel(test);
+        generateIfJump(mv, labels, jumpTarget);
+    }
+
+    protected void generateGuardedBinaryOperation(MethodVisitor mv, byte op, TypeSpecializer.Kind a, TypeSpecializer.Kind b,
+                                                  TypeSpecializer.Kind known, TypeSpecializer.Kind result){
+        Class<?> boxed = boxedType(known);
+        Label slowPath = new Label();
+        Label end = new Label();
+
+        if(b == TypeSpecializer.Kind.OBJECT){
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxed));
+            mv.visitJumpInsn(Opcodes.IFEQ, slowPath);
+
+            generateUnboxing(mv, boxed);
+            generatePrimitiveBinaryOperation(mv, op, known, known, result);
+            generatePrimitiveBoxing(mv, result);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+
+            mv.visitLabel(slowPath);
+            mv.visitInsn(Opcodes.SWAP);
+            generatePrimitiveBoxing(mv, known);
+            mv.visitInsn(Opcodes.SWAP);
+        }else{
+            // Bring the unknown operand to the top to test it
+            mv.visitInsn(Opcodes.SWAP);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxed));
+            mv.visitJumpInsn(Opcodes.IFEQ, slowPath);
+
+            generateUnboxing(mv, boxed);
+            mv.visitInsn(Opcodes.SWAP);
+            generatePrimitiveBinaryOperation(mv, op, known, known, result);
+            generatePrimitiveBoxing(mv, result);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+
+            mv.visitLabel(slowPath);
+            mv.visitInsn(Opcodes.SWAP);
+            generatePrimitiveBoxing(mv, known);
+        }
+
+        generateDynamicBinaryOperation(mv, op);
+        mv.visitLabel(end);
+    }
+
+    protected void generateDynamicBinaryOperation(MethodVisitor mv, byte op){
+        switch (op) {
+            case ADD -> generateDynamicInvocation(mv, "plus", 2);
+            case SUB -> generateDynamicInvocation(mv, "minus", 2);
+            case MUL -> generateDynamicInvocation(mv, "mul", 2);
+            case DIV -> generateDynamicInvocation(mv, "div", 2);
+            case FDIV -> generateDynamicInvocation(mv, "fdiv", 2);
+            case MOD -> generateDynamicInvocation(mv, "mod", 2);
+            case EQ -> generateDynamicInvocation(mv, "equals", 2);
+            case GT -> {
+                generateDynamicInvocation(mv, "compare", 2);
+                generateGreaterThan(mv);
+            }
+            case LT -> {
+                generateDynamicInvocation(mv, "compare", 2);
+                generateLessThan(mv);
+            }
+            case GE -> {
+                generateDynamicInvocation(mv, "compare", 2);
+                generateGreaterThanOrEqual(mv);
+            }
+            case LE -> {
+                generateDynamicInvocation(mv, "compare", 2);
+                generateLessThanOrEqual(mv);
+            }
+            default -> throw new InvalidOpcodeChipmunk(op);
+        }
+    }
+
+    /**
+     * Emits a binary operation on two unboxed operands, leaving an unboxed result of the given kind.
+     * Comparisons leave 0 or 1.
+     */
+    protected void generatePrimitiveBinaryOperation(MethodVisitor mv, byte op, TypeSpecializer.Kind a, TypeSpecializer.Kind b,
+                                                    TypeSpecializer.Kind result){
+        if(result == TypeSpecializer.Kind.BOOLEAN){
+            Label falseLabel = new Label();
+            Label end = new Label();
+
+            generatePrimitiveComparison(mv, op, a, b, falseLabel);
+            mv.visitInsn(Opcodes.ICONST_1);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(falseLabel);
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitLabel(end);
+            return;
+        }
+
+        if(result == TypeSpecializer.Kind.INT){
+            mv.visitInsn(switch (op) {
+                case ADD -> Opcodes.IADD;
+                case SUB -> Opcodes.ISUB;
+                case MUL -> Opcodes.IMUL;
+                case FDIV -> Opcodes.IDIV;
+                case MOD -> Opcodes.IREM;
+                default -> throw new InvalidOpcodeChipmunk(op);
+            });
+            return;
+        }
+
+        // Float arithmetic - widen any int operand first
+        if(a == TypeSpecializer.Kind.INT){
+            mv.visitInsn(Opcodes.SWAP);
+            mv.visitInsn(Opcodes.I2F);
+            mv.visitInsn(Opcodes.SWAP);
+        }
+        if(b == TypeSpecializer.Kind.INT){
+            mv.visitInsn(Opcodes.I2F);
+        }
+
+        mv.visitInsn(switch (op) {
+            case ADD -> Opcodes.FADD;
+            case SUB -> Opcodes.FSUB;
+            case MUL -> Opcodes.FMUL;
+            case DIV -> Opcodes.FDIV;
+            default -> throw new InvalidOpcodeChipmunk(op);
+        });
+    }
+
+    /**
+     * Compares two unboxed operands and jumps to falseTarget if the comparison does not hold.
+     */
+    protected void generatePrimitiveComparison(MethodVisitor mv, byte op, TypeSpecializer.Kind a, TypeSpecializer.Kind b, Label falseTarget){
+        if(a == TypeSpecializer.Kind.INT && b == TypeSpecializer.Kind.INT){
+            mv.visitJumpInsn(switch (op) {
+                case GT -> Opcodes.IF_ICMPLE;
+                case LT -> Opcodes.IF_ICMPGE;
+                case GE -> Opcodes.IF_ICMPLT;
+                case LE -> Opcodes.IF_ICMPGT;
+                case EQ -> Opcodes.IF_ICMPNE;
+                default -> throw new InvalidOpcodeChipmunk(op);
+            }, falseTarget);
+            return;
+        }
+
+        if(b == TypeSpecializer.Kind.INT){
+            mv.visitInsn(Opcodes.I2F);
+        }
+
+        // Float.compare() matches the boxed semantics, including for NaN and -0.0
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                Type.getInternalName(Float.class),
+                "compare",
+                Type.getMethodDescriptor(Type.INT_TYPE, Type.FLOAT_TYPE, Type.FLOAT_TYPE),
+                false);
+
+        mv.visitJumpInsn(switch (op) {
+            case GT -> Opcodes.IFLE;
+            case LT -> Opcodes.IFGE;
+            case GE -> Opcodes.IFLT;
+            case LE -> Opcodes.IFGT;
+            case EQ -> Opcodes.IFNE;
+            default -> throw new InvalidOpcodeChipmunk(op);
+        }, falseTarget);
+    }
+
+    protected void generateUnaryOperation(MethodVisitor mv, TypeSpecializer types, byte op, int next){
+        TypeSpecializer.Kind a = types.pop();
+        TypeSpecializer.Kind result = TypeSpecializer.unaryResult(op, a);
+
+        if(result == null){
+            generatePrimitiveBoxing(mv, a);
+            switch (op) {
+                case INC -> generateDynamicInvocation(mv, "inc", 1);
+                case DEC -> generateDynamicInvocation(mv, "dec", 1);
+                case POS -> generateDynamicInvocation(mv, "pos", 1);
+                case NEG -> generateDynamicInvocation(mv, "neg", 1);
+                case NOT -> {
+                    generateDynamicInvocation(mv, "truth", 1);
+                    generateBoxedBooleanNegation(mv);
+                }
+                default -> throw new InvalidOpcodeChipmunk(op);
+            }
+            types.push(TypeSpecializer.Kind.OBJECT);
+            return;
+        }
+
+        boolean isInt = a == TypeSpecializer.Kind.INT;
+        switch (op) {
+            case INC -> {
+                mv.visitInsn(isInt ? Opcodes.ICONST_1 : Opcodes.FCONST_1);
+                mv.visitInsn(isInt ? Opcodes.IADD : Opcodes.FADD);
+            }
+            case DEC -> {
+                mv.visitInsn(isInt ? Opcodes.ICONST_1 : Opcodes.FCONST_1);
+                mv.visitInsn(isInt ? Opcodes.ISUB : Opcodes.FSUB);
+            }
+            case NEG -> mv.visitInsn(isInt ? Opcodes.INEG : Opcodes.FNEG);
+            case POS -> {
+                Type t = isInt ? Type.INT_TYPE : Type.FLOAT_TYPE;
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(Math.class), "abs",
+                        Type.getMethodDescriptor(t, t), false);
+            }
+            case NOT -> {
+                mv.visitInsn(Opcodes.ICONST_1);
+                mv.visitInsn(Opcodes.IXOR);
+            }
+        }
+        generatePrimitiveResult(mv, types, result, next);
+    }
+
+    /**
+     * Leaves a freshly produced primitive unboxed if the instructions starting at next can consume it
+     * directly, otherwise boxes it.
+     */
+    protected void generatePrimitiveResult(MethodVisitor mv, TypeSpecializer types, TypeSpecializer.Kind kind, int next){
+        if(types.keepUnboxed(next, kind)){
+            types.push(kind);
+        }else{
+            generatePrimitiveBoxing(mv, kind);
+            types.push(TypeSpecializer.Kind.OBJECT);
+        }
+    }
+
+    protected void generatePrimitiveBoxing(MethodVisitor mv, TypeSpecializer.Kind kind){
+        if(kind != TypeSpecializer.Kind.OBJECT){
+            generateBoxingForType(mv, boxedType(kind));
+        }
+    }
+
+    protected Class<?> boxedType(TypeSpecializer.Kind kind){
+        return switch (kind) {
+            case INT -> Integer.class;
+            case FLOAT -> Float.class;
+            case BOOLEAN -> Boolean.class;
+            case OBJECT -> Object.class;
+        };
     }
 
     protected void generateReferentialEqualityCheck(MethodVisitor mv){
@@ -943,6 +1699,26 @@ public class JvmCompiler {
         generateDynamicFieldAccess(mv, attr, false);
     }
 
+    /**
+     * Sets a field declared by the class of self directly, leaving the value on the stack.
+     */
+    protected void generateSelfFieldSet(MethodVisitor mv, String owner, String attr){
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitInsn(Opcodes.SWAP);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, owner, attr, Type.getDescriptor(Object.class));
+    }
+
+    /**
+     * Reads a field declared by the class of self directly.
+     */
+    protected void generateSelfFieldGet(MethodVisitor mv, String owner, String attr){
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitFieldInsn(Opcodes.GETFIELD, owner, attr, Type.getDescriptor(Object.class));
+    }
+
     protected void generateLocalSet(MethodVisitor mv, byte index){
         mv.visitVarInsn(Opcodes.ASTORE, index);
     }
@@ -951,10 +1727,176 @@ public class JvmCompiler {
         mv.visitVarInsn(Opcodes.ALOAD, index);
     }
 
-    protected void generateUpvalueInit(MethodVisitor mv, byte index){
-        mv.visitTypeInsn(Opcodes.NEW, Type.getInternalName(Upvalue.class));
+    protected void generateLocalSet(MethodVisitor mv, TypeSpecializer types, byte index){
+        TypeSpecializer.Kind slot = types.localKind(index);
+        TypeSpecializer.Kind value = types.pop();
+
+        if(slot == TypeSpecializer.Kind.OBJECT){
+            generatePrimitiveBoxing(mv, value);
+            generateLocalSet(mv, index);
+            return;
+        }
+
+        if(value != slot){
+            // The compiler proved the slot's type, so any boxed value stored here has that type
+            generatePrimitiveBoxing(mv, value);
+            generateUnboxing(mv, boxedType(slot));
+        }
+        mv.visitVarInsn(slot == TypeSpecializer.Kind.INT ? Opcodes.ISTORE : Opcodes.FSTORE, index);
+    }
+
+    protected void generateLocalGet(MethodVisitor mv, TypeSpecializer types, byte index, int next){
+        TypeSpecializer.Kind slot = types.localKind(index);
+        if(slot == TypeSpecializer.Kind.OBJECT){
+            generateLocalGet(mv, index);
+            types.push(slot);
+            return;
+        }
+
+        mv.visitVarInsn(slot == TypeSpecializer.Kind.INT ? Opcodes.ILOAD : Opcodes.FLOAD, index);
+        generatePrimitiveResult(mv, types, slot, next);
+    }
+
+    /**
+     * Stores a value into a speculated local. A boxed value is tested against the speculated type, and if it
+     * doesn't match the invocation deoptimizes just after the store.
+     */
+    protected void generateSpeculatedLocalSet(MethodVisitor mv, TypeSpecializer types, byte index, int ip, List<Deoptimization> deoptimizations){
+        final Speculation speculation = types.getSpeculation();
+        TypeSpecializer.Kind slot = types.localKind(index);
+        TypeSpecializer.Kind value = types.pop();
+
+        if(value != slot){
+            Label mismatch = new Label();
+            generatePrimitiveBoxing(mv, value);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(slot)));
+            mv.visitJumpInsn(Opcodes.IFEQ, mismatch);
+            generateUnboxing(mv, boxedType(slot));
+
+            deoptimizations.add(new Deoptimization(mismatch, index, speculation.discards(ip), speculation.resumeIp(ip)));
+        }
+        mv.visitVarInsn(slot == TypeSpecializer.Kind.INT ? Opcodes.ISTORE : Opcodes.FSTORE, index);
+    }
+
+    /**
+     * Gives every untyped local an initial value, so that a deoptimization can read all of them into a frame,
+     * and unboxes speculated arguments. Arguments that don't match the speculation deoptimize the invocation
+     * before it starts.
+     */
+    protected void generateSpeculativeEntry(MethodVisitor mv, BinaryMethod method, TypeSpecializer types, List<Deoptimization> deoptimizations){
+        for(int i = method.getArgCount(); i < method.getLocalCount(); i++){
+            if(types.localKind(i) == TypeSpecializer.Kind.OBJECT){
+                mv.visitInsn(Opcodes.ACONST_NULL);
+                mv.visitVarInsn(Opcodes.ASTORE, i);
+            }
+        }
+
+        Label mismatch = new Label();
+        boolean speculatedArgs = false;
+        for(int i = 0; i < method.getArgCount(); i++){
+            if(types.isSpeculated(i)){
+                mv.visitVarInsn(Opcodes.ALOAD, i);
+                mv.visitTypeInsn(Opcodes.INSTANCEOF, Type.getInternalName(boxedType(types.localKind(i))));
+                mv.visitJumpInsn(Opcodes.IFEQ, mismatch);
+                speculatedArgs = true;
+            }
+        }
+
+        for(int i = 0; i < method.getArgCount(); i++){
+            if(types.isSpeculated(i)){
+                TypeSpecializer.Kind kind = types.localKind(i);
+                mv.visitVarInsn(Opcodes.ALOAD, i);
+                generateUnboxing(mv, boxedType(kind));
+                mv.visitVarInsn(kind == TypeSpecializer.Kind.INT ? Opcodes.ISTORE : Opcodes.FSTORE, i);
+            }
+        }
+
+        if(speculatedArgs){
+            deoptimizations.add(new Deoptimization(mismatch, -1, 0, 0));
+        }
+    }
+
+    /**
+     * Hands an invocation that failed a speculation back to the interpreter. For a failed store, the stored
+     * value and the entries below it are taken off the stack, and all locals are passed with the stored value
+     * in place. For failed arguments, only the arguments are passed and the method restarts.
+     */
+    protected void generateDeoptimization(MethodVisitor mv, BinaryMethod method, TypeSpecializer types, Deoptimization deoptimization){
+        final Speculation speculation = types.getSpeculation();
+        final boolean atEntry = deoptimization.index() < 0;
+        final int valueLocal = speculation.getFrameSize() + 3;
+
+        mv.visitLabel(deoptimization.label());
+        if(!atEntry){
+            mv.visitVarInsn(Opcodes.ASTORE, valueLocal);
+            for(int i = 0; i < deoptimization.discards(); i++){
+                mv.visitInsn(Opcodes.POP);
+            }
+        }
+
+        int frameSize = atEntry ? method.getArgCount() : speculation.getFrameSize();
+        mv.visitLdcInsn(frameSize);
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, Type.getInternalName(Object.class));
+        for(int i = 0; i < frameSize; i++){
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitLdcInsn(i);
+
+            TypeSpecializer.Kind kind = atEntry ? TypeSpecializer.Kind.OBJECT : types.localKind(i);
+            if(i == deoptimization.index()){
+                mv.visitVarInsn(Opcodes.ALOAD, valueLocal);
+            }else{
+                switch (kind) {
+                    case INT -> mv.visitVarInsn(Opcodes.ILOAD, i);
+                    case FLOAT -> mv.visitVarInsn(Opcodes.FLOAD, i);
+                    default -> mv.visitVarInsn(Opcodes.ALOAD, i);
+                }
+                generatePrimitiveBoxing(mv, kind);
+            }
+            mv.visitInsn(Opcodes.AASTORE);
+        }
+
+        mv.visitLdcInsn(deoptimization.resumeIp());
+        generateDeoptimization(mv, speculation.getTier());
+    }
+
+    /**
+     * Deoptimizes through the tiered method with the frame and ip on the stack, and returns the result.
+     */
+    protected void generateDeoptimization(MethodVisitor mv, TieredMethod tier){
+        Handle bootstrap = new Handle(Opcodes.H_INVOKESTATIC,
+                Type.getInternalName(TieredMethod.class),
+                TieredMethod.BOOTSTRAP_DEOPTIMIZATION_METHOD,
+                TieredMethod.bootstrapType().toMethodDescriptorString(),
+                false);
+
+        mv.visitInvokeDynamicInsn("deoptimize",
+                Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object[].class), Type.INT_TYPE),
+                bootstrap, tier.getId());
+        mv.visitInsn(Opcodes.ARETURN);
+    }
+
+    protected void generateTypedLocalInit(MethodVisitor mv, BinaryMethod method, TypeSpecializer types){
+        // Typed locals live unboxed in their slots. Give every one a value up front so the
+        // verifier sees a primitive on every path that reaches a load.
+        for(int i = method.getArgCount(); i < method.getLocalCount(); i++){
+            switch (types.localKind(i)) {
+                case INT -> {
+                    mv.visitInsn(Opcodes.ICONST_0);
+                    mv.visitVarInsn(Opcodes.ISTORE, i);
+                }
+                case FLOAT -> {
+                    mv.visitInsn(Opcodes.FCONST_0);
+                    mv.visitVarInsn(Opcodes.FSTORE, i);
+                }
+            }
+        }
+    }
+
+    protected void generateUpvalueInit(MethodVisitor mv, Class<? extends Upvalue> upvalueType, byte index){
+        mv.visitTypeInsn(Opcodes.NEW, Type.getInternalName(upvalueType));
         mv.visitInsn(Opcodes.DUP);
-        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(Upvalue.class), "<init>",
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(upvalueType), "<init>",
                 Type.getMethodDescriptor(Type.VOID_TYPE), false);
         mv.visitVarInsn(Opcodes.ASTORE, index);
     }
@@ -1019,6 +1961,29 @@ public class JvmCompiler {
         mv.visitInsn(Opcodes.ARETURN);
     }
 
+    /**
+     * Returns the value on top of the stack as the kind of value the method returns. A typed entry
+     * returning a boxed value unboxes it. Methods are only given a typed return when the compiler has
+     * proven that every return produces the declared type (see ReturnTypeVisitor).
+     */
+    protected void generateReturn(MethodVisitor mv, TypeSpecializer types){
+        TypeSpecializer.Kind value = types.pop();
+        TypeSpecializer.Kind result = types.returnKind();
+        types.reset();
+
+        if(result == TypeSpecializer.Kind.OBJECT){
+            generatePrimitiveBoxing(mv, value);
+            generateReturn(mv);
+            return;
+        }
+
+        if(value != result){
+            generatePrimitiveBoxing(mv, value);
+            generateUnboxing(mv, boxedType(result));
+        }
+        mv.visitInsn(result == TypeSpecializer.Kind.INT ? Opcodes.IRETURN : Opcodes.FRETURN);
+    }
+
     protected void generatePop(MethodVisitor mv){
         mv.visitInsn(Opcodes.POP);
     }
@@ -1036,6 +2001,20 @@ public class JvmCompiler {
         }
     }
 
+    protected void generatePush(MethodVisitor mv, TypeSpecializer types, Object constant, int next){
+        TypeSpecializer.Kind kind = constant instanceof Integer ? TypeSpecializer.Kind.INT
+                : constant instanceof Float ? TypeSpecializer.Kind.FLOAT
+                : TypeSpecializer.Kind.OBJECT;
+
+        if(kind != TypeSpecializer.Kind.OBJECT && types.keepUnboxed(next, kind)){
+            mv.visitLdcInsn(constant);
+            types.push(kind);
+        }else{
+            generatePush(mv, constant);
+            types.push(TypeSpecializer.Kind.OBJECT);
+        }
+    }
+
     protected void generateDup(MethodVisitor mv){
         mv.visitInsn(Opcodes.DUP);
     }
@@ -1265,12 +2244,15 @@ public class JvmCompiler {
         constructor.visitMaxs(0, 0);
         constructor.visitEnd();
 
-        var methods = Arrays.stream(targetType.getMethods())
+        // Overloads with the same parameter count, such as the boxed and typed entries of a Chipmunk method,
+        // share a call method. The call site the binding invokes selects the overload.
+        var paramCounts = Arrays.stream(targetType.getMethods())
                 .filter(m -> m.getName().equals(methodName))
-                .toList();
+                .map(Method::getParameterCount)
+                .collect(Collectors.toCollection(TreeSet::new));
 
-        for(var method : methods){
-            var descriptor = Type.getMethodDescriptor(method);
+        for(var paramCount : paramCounts){
+            var descriptor = Type.getMethodDescriptor(Type.getType(Object.class), paramTypes(paramCount));
             var methodWriter = gen.visitMethod(Opcodes.ACC_PUBLIC, "call", descriptor, null, null);
             methodWriter.visitAnnotation(Type.getDescriptor(AllowChipmunkLinkage.class), true);
 
@@ -1279,11 +2261,11 @@ public class JvmCompiler {
             methodWriter.visitVarInsn(Opcodes.ALOAD, 0);
             methodWriter.visitFieldInsn(Opcodes.GETFIELD, internalName, MethodBinding.TARGET_FIELD_NAME, Type.getDescriptor(Object.class));
 
-            for(int i = 1; i <= method.getParameterCount(); i++){
+            for(int i = 1; i <= paramCount; i++){
                 methodWriter.visitVarInsn(Opcodes.ALOAD, i);
             }
 
-            generateDynamicInvocation(methodWriter, methodName, method.getParameterCount() + 1);
+            generateDynamicInvocation(methodWriter, methodName, paramCount + 1);
             methodWriter.visitInsn(Opcodes.ARETURN);
 
             methodWriter.visitMaxs(0, 0);
@@ -1291,7 +2273,7 @@ public class JvmCompiler {
         }
 
         gen.visitEnd();
-        return loader.define(bindingName, gen.toByteArray());
+        return defineGenerated(loader, bindingName, gen.toByteArray());
     }
 
     public Class<?> argBindingFor(ChipmunkClassLoader loader, String bindingName, Class<? extends MethodBinding> delegateType, int pos, int argCount){
@@ -1381,7 +2363,7 @@ public class JvmCompiler {
 
         gen.visitEnd();
 
-        return loader.define(bindingName, gen.toByteArray());
+        return defineGenerated(loader, bindingName, gen.toByteArray());
     }
 
     @SuppressWarnings("unchecked")
@@ -1502,7 +2484,7 @@ public class JvmCompiler {
 
         cw.visitEnd();
 
-        return (Class<T>) loader.define(proxyName, cw.toByteArray());
+        return (Class<T>) defineGenerated(loader, proxyName, cw.toByteArray());
     }
 
     protected void invokeConstructor(MethodVisitor mv, Class<?> target, Class<?>... pTypes){
@@ -1562,6 +2544,26 @@ public class JvmCompiler {
         return Type.getMethodType(objType, paramTypes(m));
     }
 
+    /**
+     * The JVM type of the typed entry of a method with a typed signature.
+     */
+    public Type typedMethodCallType(BinaryMethod m){
+        Type[] pTypes = new Type[Math.max(0, m.getArgCount() - 1)];
+        for(int i = 0; i < pTypes.length; i++){
+            pTypes[i] = primitiveType(TypeSpecializer.kindOf(m.getArgType(i + 1)));
+        }
+        return Type.getMethodType(primitiveType(TypeSpecializer.kindOf(m.getReturnType())), pTypes);
+    }
+
+    protected Type primitiveType(TypeSpecializer.Kind kind){
+        return switch (kind) {
+            case INT -> Type.INT_TYPE;
+            case FLOAT -> Type.FLOAT_TYPE;
+            case BOOLEAN -> Type.BOOLEAN_TYPE;
+            case OBJECT -> Type.getType(Object.class);
+        };
+    }
+
     public Type[] paramTypes(BinaryMethod m){
         return paramTypes(Math.max(0, m.getArgCount() - 1)); // JVM doesn't count self as a parameter
     }
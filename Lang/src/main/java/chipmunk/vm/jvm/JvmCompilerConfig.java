@@ -27,16 +27,24 @@ import java.util.Set;
 
 public class JvmCompilerConfig {
 
+    public static final int DEFAULT_TIER_THRESHOLD = 500;
+
     protected final LinkingPolicy linkingPolicy;
     protected final TrapConfig trapConfig;
 
     protected final Set<Class<? extends Throwable>> uncatchable;
+    protected volatile boolean hiddenClasses;
+    protected volatile boolean tieredCompilation;
+    protected volatile int tierThreshold;
+    protected volatile boolean typeSpeculation;
 
     public JvmCompilerConfig(LinkingPolicy policy, TrapConfig trapConfig){
         linkingPolicy = policy;
         this.trapConfig = trapConfig;
         uncatchable = new HashSet<>();
         uncatchable.add(Uncatchable.class);
+        tierThreshold = DEFAULT_TIER_THRESHOLD;
+        typeSpeculation = true;
     }
 
     public LinkingPolicy getLinkingPolicy(){
@@ -56,4 +64,61 @@ public class JvmCompilerConfig {
         return uncatchable;
     }
 
+    /**
+     * When enabled, the generated classes that are only referenced through their Class objects (script entry
+     * points, method bindings, and interface proxies) are defined as hidden classes. These are unloaded once
+     * the scripts using them are unreachable, instead of living as long as their script's module loader.
+     */
+    public void setHiddenClasses(boolean hiddenClasses){
+        this.hiddenClasses = hiddenClasses;
+    }
+
+    public boolean isHiddenClasses(){
+        return hiddenClasses;
+    }
+
+    /**
+     * When enabled, method bodies are not translated to JVM code when their module is compiled. Each method
+     * is interpreted from its Chipmunk bytecode until it has been invoked or looped often enough to reach the
+     * tier threshold, and only then compiled. Startup cost is then proportional to the code that actually
+     * runs rather than to the size of the modules loaded. Methods are always compiled up front when any trap
+     * is enabled, since interpreted code can't be instrumented.
+     */
+    public void setTieredCompilation(boolean tieredCompilation){
+        this.tieredCompilation = tieredCompilation;
+    }
+
+    public boolean isTieredCompilation(){
+        return tieredCompilation;
+    }
+
+    /**
+     * Sets the number of invocations plus loop back jumps after which an interpreted method is compiled.
+     */
+    public void setTierThreshold(int threshold){
+        if(threshold < 1){
+            throw new IllegalArgumentException("Tier threshold must be at least 1");
+        }
+        tierThreshold = threshold;
+    }
+
+    public int getTierThreshold(){
+        return tierThreshold;
+    }
+
+    /**
+     * When enabled (the default), tiered methods are compiled using the types their interpreted invocations
+     * observed: locals that only ever held Ints or Floats are kept unboxed, and operations whose operands
+     * always had those types are performed directly. The speculated types are guarded, and a method whose
+     * guards fail is deoptimized back to the interpreter and later recompiled. Only applies with tiered
+     * compilation enabled.
+     */
+    public void setTypeSpeculation(boolean typeSpeculation){
+        this.typeSpeculation = typeSpeculation;
+    }
+
+    public boolean isTypeSpeculation(){
+        return typeSpeculation;
+    }
+
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.jvm;
+
+import chipmunk.binary.BinaryConstants;
+import chipmunk.binary.BinaryModule;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An on-disk store of the JVM classes generated for modules, which lets modules be loaded without
+ * regenerating their classes. Generating module classes is one of the most expensive parts of startup,
+ * so a process that loads modules from a store populated by an earlier run skips code generation entirely.
+ *
+ * The classes for a module are kept in a single file per module and compiler configuration. Each file
+ * records the hash of the module's binary content, the compiler configuration (enabled traps, back jump
+ * budget and uncatchable exceptions), and the code generation and binary versions it was generated with.
+ * Stored classes are only used if all of these match; otherwise the classes are generated and the file
+ * is replaced. Failing to write a file is not an error - the module is still loaded from its generated
+ * classes.
+ */
+public class ModuleClassStore {
+
+    public static final String CLASSES_EXTENSION = ".chpc";
+    protected static final String FORMAT_IDENTIFIER = "chipmunk-classes";
+
+    protected final Path directory;
+    protected final AtomicInteger hits;
+    protected final AtomicInteger misses;
+
+    public ModuleClassStore(Path directory){
+        this.directory = directory;
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+    }
+
+    public Path getDirectory(){
+        return directory;
+    }
+
+    /**
+     * Defines the compilation's module classes from the store if it holds them, and generates and
+     * stores them otherwise. Returns the module class. Modules compiled in tiers are always generated
+     * and never stored.
+     */
+    public Class<?> load(JvmCompiler compiler, JvmCompilation compilation){
+        String contentHash = CompiledModuleCache.contentHash(compilation.getModule());
+        if(contentHash == null){
+            return compiler.compileModuleClass(compilation);
+        }
+        return load(compiler, compilation, contentHash);
+    }
+
+    /**
+     * Like load(JvmCompiler, JvmCompilation), for a module whose content hash is already known.
+     */
+    public Class<?> load(JvmCompiler compiler, JvmCompilation compilation, String contentHash){
+        if(compiler.isTiered(compilation.getConfig())){
+            // Tiered classes are only stubs for method state that lives in the compiling class loader
+            return compiler.compileModuleClass(compilation);
+        }
+
+        final String moduleName = compilation.getPrefixedModuleName();
+        final String configKey = configKey(compilation.getConfig());
+        final String key = key(contentHash, moduleName, configKey);
+        final Path path = classesPath(moduleName, configKey);
+
+        Map<String, byte[]> classes = read(path, key);
+        if(classes != null && classes.containsKey(moduleName)){
+            hits.incrementAndGet();
+
+            ChipmunkClassLoader loader = compilation.getLoader().getClassLoader();
+            Class<?> moduleClass = null;
+            for(Map.Entry<String, byte[]> cls : classes.entrySet()){
+                compilation.addGeneratedClass(cls.getKey(), cls.getValue());
+                Class<?> defined = loader.define(cls.getKey(), cls.getValue());
+                if(cls.getKey().equals(moduleName)){
+                    moduleClass = defined;
+                }
+            }
+            return moduleClass;
+        }
+
+        misses.incrementAndGet();
+        Class<?> moduleClass = compiler.compileModuleClass(compilation);
+        write(path, key, compilation.getGeneratedClasses());
+        return moduleClass;
+    }
+
+    public boolean contains(BinaryModule module, JvmCompilerConfig config){
+        String contentHash = CompiledModuleCache.contentHash(module);
+        if(contentHash == null){
+            return false;
+        }
+
+        String configKey = configKey(config);
+        Map<String, byte[]> classes = read(classesPath(module.getName(), configKey), key(contentHash, module.getName(), configKey));
+        return classes != null && classes.containsKey(module.getName());
+    }
+
+    /**
+     * The number of loads that defined stored classes.
+     */
+    public int getHits(){
+        return hits.get();
+    }
+
+    /**
+     * The number of loads that generated their classes.
+     */
+    public int getMisses(){
+        return misses.get();
+    }
+
+    public Path classesPath(String moduleName, String configKey){
+        return directory.resolve(moduleName + "." + configKey.substring(0, 16) + CLASSES_EXTENSION);
+    }
+
+    /**
+     * Identifies everything in the compiler configuration that affects the generated code. The linking
+     * policy is left out, since it's applied when call sites are linked rather than when code is generated.
+     */
+    public static String configKey(JvmCompilerConfig config){
+        StringBuilder sb = new StringBuilder();
+        sb.append("codegen ").append(JvmCompiler.CODEGEN_VERSION).append('\n');
+
+        TrapConfig traps = config.getTrapConfig();
+        sb.append("traps");
+        for(TrapFlag flag : TrapFlag.values()){
+            if(traps.isEnabled(flag)){
+                sb.append(' ').append(flag.name());
+            }
+        }
+        sb.append('\n');
+        sb.append("budget ").append(traps.getBackJumpBudget()).append('\n');
+
+        sb.append("uncatchable");
+        config.getUncatchable().stream()
+                .map(Class::getName)
+                .sorted()
+                .forEach(name -> sb.append(' ').append(name));
+        sb.append('\n');
+
+        return sha256(sb.toString());
+    }
+
+    protected String key(String contentHash, String moduleName, String configKey){
+        return sha256(BinaryConstants.BINARY_VERSION + "\n" + moduleName + "\n" + contentHash + "\n" + configKey);
+    }
+
+    protected Map<String, byte[]> read(Path path, String key){
+        if(!Files.isRegularFile(path)){
+            return null;
+        }
+
+        try(DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+            if(!is.readUTF().equals(FORMAT_IDENTIFIER) || !is.readUTF().equals(key)){
+                return null;
+            }
+
+            int count = is.readInt();
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for(int i = 0; i < count; i++){
+                String name = is.readUTF();
+                byte[] bytes = new byte[is.readInt()];
+                is.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            return classes;
+        }catch(IOException | RuntimeException e){
+            // Truncated or corrupt - the classes will be regenerated and rewritten
+            return null;
+        }
+    }
+
+    protected void write(Path path, String key, Map<String, byte[]> classes){
+        Path temp = null;
+        try{
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+            try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))){
+                os.writeUTF(FORMAT_IDENTIFIER);
+                os.writeUTF(key);
+                os.writeInt(classes.size());
+                for(Map.Entry<String, byte[]> cls : classes.entrySet()){
+                    os.writeUTF(cls.getKey());
+                    os.writeInt(cls.getValue().length);
+                    os.write(cls.getValue());
+                }
+            }
+
+            // Readers in other processes must never see a partially written file
+            try{
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }catch(AtomicMoveNotSupportedException e){
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }catch(IOException e){
+            try{
+                if(temp != null){
+                    Files.deleteIfExists(temp);
+                }
+            }catch(IOException ignored){}
+        }
+    }
+
+    protected static String sha256(String s){
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(s.getBytes(StandardCharsets.UTF_8)));
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -23,12 +23,11 @@ package chipmunk.vm.jvm;
 import chipmunk.vm.ChipmunkVM;
 import org.objectweb.asm.*;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class Sandbox extends MethodVisitor {
 
@@ -55,6 +54,14 @@ public class Sandbox extends MethodVisitor {
         guardedBlocks = new ArrayList<>();
     }
 
+    @Override
+    public void visitCode(){
+        super.visitCode();
+        if(isBudgeted()){
+            resetBudget();
+        }
+    }
+
     @Override
     public void visitLineNumber(int lineNumber, Label start){
         this.lineNumber = lineNumber;
@@ -191,7 +198,33 @@ public class Sandbox extends MethodVisitor {
         unmarkGuardedBlock(tc.start(), tc.end());
     }
 
+    protected boolean isBudgeted(){
+        return sandbox.hasBudgetLocal()
+                && sandbox.getTrapConfig().isEnabled(TrapFlag.BACK_JUMP)
+                && sandbox.getTrapConfig().isBudgeted();
+    }
+
+    protected void resetBudget(){
+        super.visitLdcInsn(sandbox.getTrapConfig().getBackJumpBudget());
+        super.visitVarInsn(Opcodes.ISTORE, sandbox.getBudgetLocal());
+    }
+
     protected void generateBackJumpTrap(){
+        if(isBudgeted()){
+            // Count down the budget and only trap when it runs out
+            var withinBudget = new Label();
+            super.visitIincInsn(sandbox.getBudgetLocal(), -1);
+            super.visitVarInsn(Opcodes.ILOAD, sandbox.getBudgetLocal());
+            super.visitJumpInsn(Opcodes.IFGT, withinBudget);
+            generateBackJumpTrapCall();
+            resetBudget();
+            super.visitLabel(withinBudget);
+        }else{
+            generateBackJumpTrapCall();
+        }
+    }
+
+    protected void generateBackJumpTrapCall(){
         super.visitLdcInsn(makeTrapSite(TrapSite.Position.PRE));
         super.visitMethodInsn(Opcodes.INVOKESTATIC,
                 Type.getInternalName(ChipmunkVM.class),
@@ -250,11 +283,6 @@ public class Sandbox extends MethodVisitor {
     }
 
     protected ConstantDynamic makeTrapSite(TrapSite.Position pos){
-
-        var paramNames = Arrays.stream(Type.getArgumentTypes(sandbox.getMethodDescriptor()))
-                .map(Type::getClassName)
-                .toArray(String[]::new);
-
         return new ConstantDynamic("trap$" + (trap++),
                 Type.getDescriptor(TrapSite.class),
                 new Handle(
@@ -263,58 +291,56 @@ public class Sandbox extends MethodVisitor {
                         "bootstrapTrapsite",
                         Type.getMethodDescriptor(
                                 Type.getType(TrapSite.class),
-                                Type.getType(TrapSite.Position.class),
+                                Type.getType(MethodHandles.Lookup.class),
+                                Type.getType(String.class),
+                                Type.getType(Class.class),
                                 Type.getType(String.class),
                                 Type.getType(String.class),
                                 Type.getType(String.class),
-                                Type.getType(String[].class),
                                 Type.INT_TYPE
                         ),
                         false
                 ),
-                pos,
-                sandbox.getClassName(),
+                pos.name(),
                 sandbox.getMethodName(),
-                Type.getReturnType(sandbox.getMethodDescriptor()).getClassName(),
-                paramNames,
+                sandbox.getMethodDescriptor(),
                 lineNumber);
     }
 
     protected ConstantDynamic makeMethodId(String targetClass, String targetMethodName, String targetDescriptor){
-        var paramNames = Arrays.stream(Type.getArgumentTypes(targetDescriptor))
-                .map(Type::getClassName)
-                .toArray(String[]::new);
-
         return new ConstantDynamic("method$" + (methodId++),
-                Type.getDescriptor(TrapSite.class),
+                Type.getDescriptor(MethodIdentifier.class),
                 new Handle(
                         Opcodes.H_INVOKESTATIC,
                         Type.getInternalName(Sandbox.class),
                         "bootstrapMethodId",
                         Type.getMethodDescriptor(
                                 Type.getType(MethodIdentifier.class),
+                                Type.getType(MethodHandles.Lookup.class),
                                 Type.getType(String.class),
+                                Type.getType(Class.class),
                                 Type.getType(String.class),
                                 Type.getType(String.class),
-                                Type.getType(String[].class)
+                                Type.getType(String.class)
                         ),
                         false
                 ),
                 targetClass,
                 targetMethodName,
-                Type.getReturnType(targetDescriptor).getClassName(),
-                paramNames,
-                lineNumber);
+                targetDescriptor);
     }
 
     protected ConstantDynamic makeClassConst(String targetClass) {
-        return new ConstantDynamic("cls$" + targetClass,
+        return new ConstantDynamic("cls$" + targetClass.replace('/', '_').replace(';', '_'),
                 Type.getDescriptor(Class.class),
                 new Handle(
                         Opcodes.H_INVOKESTATIC,
                         Type.getInternalName(Sandbox.class),
-                        "classForName",
+                        "bootstrapClass",
                         Type.getMethodDescriptor(
+                                Type.getType(Class.class),
+                                Type.getType(MethodHandles.Lookup.class),
+                                Type.getType(String.class),
                                 Type.getType(Class.class),
                                 Type.getType(String.class)
                         ),
@@ -323,70 +349,39 @@ public class Sandbox extends MethodVisitor {
                 targetClass);
     }
 
-    protected static Class<?>[] signature(String returnType, String[] params) throws ClassNotFoundException {
-        var signature = new Class<?>[params.length + 1];
-        signature[0] = classForName(returnType);
-
-        for(int i = 1; i < params.length; i++){
-            signature[i] = classForName(params[i - 1]);
-        }
-        return signature;
+    // Constant bootstraps resolve classes through the trapped class's loader, since the trapped
+    // class and the classes it refers to may be generated
+    public static TrapSite bootstrapTrapsite(MethodHandles.Lookup lookup, String name, Class<?> type, String pos, String method, String descriptor, int line) throws ClassNotFoundException {
+        return new TrapSite(TrapSite.Position.valueOf(pos), methodIdentifier(lookup, lookup.lookupClass().getName(), method, descriptor), line);
     }
 
-    protected static TrapSite bootstrapTrapsite(TrapSite.Position pos, String className, String method, String returnType, String[] params, int line) throws ClassNotFoundException {
-        return new TrapSite(pos, new MethodIdentifier(classForName(className), method, signature(returnType, params)), line);
+    public static MethodIdentifier bootstrapMethodId(MethodHandles.Lookup lookup, String name, Class<?> type, String className, String methodName, String descriptor) throws ClassNotFoundException {
+        return methodIdentifier(lookup, className, methodName, descriptor);
     }
 
-    protected static MethodIdentifier bootstrapMethodId(String className, String methodName, String returnType, String[] params) throws ClassNotFoundException {
-        return new MethodIdentifier(classForName(className), methodName, signature(returnType, params));
+    public static Class<?> bootstrapClass(MethodHandles.Lookup lookup, String name, Class<?> type, String className) throws ClassNotFoundException {
+        return classForName(lookup, className);
     }
 
-    protected static Class<?> classForName(String name) throws ClassNotFoundException {
-        if(name.contains("[]")){
-            // This is an array type
-            return arrayClassForName(name);
-        }else{
-            // This is a plain type
-            return plainClassForName(name);
+    protected static MethodIdentifier methodIdentifier(MethodHandles.Lookup lookup, String className, String methodName, String descriptor) throws ClassNotFoundException {
+        var methodType = MethodType.fromMethodDescriptorString(descriptor, lookup.lookupClass().getClassLoader());
+
+        var signature = new Class<?>[methodType.parameterCount() + 1];
+        signature[0] = methodType.returnType();
+        for(int i = 0; i < methodType.parameterCount(); i++){
+            signature[i + 1] = methodType.parameterType(i);
         }
-    }
 
-    protected static Class<?> plainClassForName(String name) throws ClassNotFoundException {
-        return switch (name){
-            case "void" -> void.class;
-            case "boolean" -> boolean.class;
-            case "byte" -> byte.class;
-            case "char" -> char.class;
-            case "short" -> short.class;
-            case "int" -> int.class;
-            case "long" -> long.class;
-            case "float" -> float.class;
-            case "double" -> double.class;
-            default -> Class.forName(name);
-        };
+        return new MethodIdentifier(classForName(lookup, className), methodName, signature);
     }
 
-    protected static Class<?> arrayClassForName(String name) throws ClassNotFoundException {
-
-        var jvmName = switch(name.replace("[]", "")){
-            case "boolean" -> "Z";
-            case "byte" -> "B";
-            case "char" -> "C";
-            case "short" -> "S";
-            case "int" -> "I";
-            case "long" -> "J";
-            case "float" -> "F";
-            case "double" -> "D";
-            default -> "L" + name + ";";
-        };
-
-        var nestingPrefix = Pattern.compile("\\[]")
-                .matcher(name)
-                .results()
-                .map(s -> "[")
-                .collect(Collectors.joining());
-
-        return Class.forName(nestingPrefix + jvmName);
+    protected static Class<?> classForName(MethodHandles.Lookup lookup, String name) throws ClassNotFoundException {
+        // Names are JVM internal names or array descriptors
+        var className = name.replace('/', '.');
+        if(className.equals(lookup.lookupClass().getName())){
+            return lookup.lookupClass();
+        }
+        return Class.forName(className, false, lookup.lookupClass().getClassLoader());
     }
 
     protected String arrayOperandToClassName(int operand){
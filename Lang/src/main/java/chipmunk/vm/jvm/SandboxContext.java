@@ -31,12 +31,14 @@ public class SandboxContext {
     protected final String methodDescriptor;
 
     protected final JvmCompilerConfig config;
+    protected int budgetLocal;
 
     public SandboxContext(String className, String methodName, String methodDescriptor, JvmCompilerConfig config){
         this.className = className;
         this.methodName = methodName;
         this.methodDescriptor = methodDescriptor;
         this.config = config;
+        budgetLocal = -1;
     }
 
     public String getClassName(){
@@ -51,6 +53,22 @@ public class SandboxContext {
         return methodDescriptor;
     }
 
+    /**
+     * Sets a free local slot the sandbox can use to count back jumps against the trap budget.
+     * Methods without one trap on every back jump.
+     */
+    public void setBudgetLocal(int index){
+        budgetLocal = index;
+    }
+
+    public int getBudgetLocal(){
+        return budgetLocal;
+    }
+
+    public boolean hasBudgetLocal(){
+        return budgetLocal >= 0;
+    }
+
     public JvmCompilerConfig getCompilerConfig(){
         return config;
     }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package chipmunk.vm.jvm;
+
+import chipmunk.binary.BinaryMethod;
+
+import java.util.Arrays;
+
+import static chipmunk.compiler.assembler.Opcodes.*;
+
+/**
+ * The types that a tiered method is compiled to assume, derived from the TypeProfile collected while it was
+ * interpreted.
+ *
+ * Operations whose operands were always Ints, Floats, or Booleans are compiled to test for those types and
+ * operate on them directly, falling back to the dynamic operation inline. Locals that only ever held Ints or
+ * Floats are kept unboxed, just like locals the compiler typed statically. Values stored into those locals are
+ * guarded, and when a guard fails the invocation is deoptimized: its locals are handed back to the interpreter,
+ * which resumes the method with an empty operand stack. So a local is only speculated on if every store to it
+ * is at a point where the stack can be emptied - a plain assignment, or an assignment statement whose result
+ * is popped straight away.
+ */
+public class Speculation {
+
+    protected final TieredMethod tier;
+    protected final TypeProfile profile;
+    protected final TypeSpecializer.Kind[] locals;
+
+    // By the ip of each store to a speculated local: where to resume if the store's guard fails,
+    // and how many stack entries are dropped to get there
+    protected final int[] resumeIps;
+    protected final int[] discards;
+
+    protected Speculation(TieredMethod tier, TypeProfile profile, TypeSpecializer.Kind[] locals, int[] resumeIps, int[] discards){
+        this.tier = tier;
+        this.profile = profile;
+        this.locals = locals;
+        this.resumeIps = resumeIps;
+        this.discards = discards;
+    }
+
+    /**
+     * Derives the speculation for a method from the profile its interpreter has collected, or returns
+     * null if the profile gives nothing to speculate on.
+     */
+    public static Speculation of(TieredMethod tier, BytecodeInterpreter interpreter){
+        final BinaryMethod method = tier.getMethod();
+        final byte[] code = method.getCode();
+        final TypeProfile profile = interpreter.getProfile();
+
+        TypeSpecializer.Kind[] locals = new TypeSpecializer.Kind[interpreter.getFrameSize()];
+        for(int i = 0; i < locals.length; i++){
+            TypeSpecializer.Kind kind = kindOf(profile.localType(i));
+            boolean staticallyTyped = TypeSpecializer.kindOf(method.getLocalType(i)) != TypeSpecializer.Kind.OBJECT;
+            locals[i] = kind.isNumeric() && !staticallyTyped ? kind : TypeSpecializer.Kind.OBJECT;
+        }
+
+        int[] resumeIps = new int[code.length];
+        int[] discards = new int[code.length];
+        Arrays.fill(resumeIps, -1);
+
+        boolean profiledOperations = false;
+        for(int ip = 0; ip < code.length; ip += TypeSpecializer.instructionSize(code[ip])){
+            switch (code[ip]) {
+                case INITUPVALUE, INITCONFINEDUPVALUE, GETUPVALUE, SETUPVALUE -> locals[code[ip + 1] & 0xFF] = TypeSpecializer.Kind.OBJECT;
+                case SETLOCAL -> {
+                    int depth = interpreter.getStackDepth(ip);
+                    int next = ip + 2;
+                    if(depth == 1){
+                        resumeIps[ip] = next;
+                    }else if(depth == 2 && next < code.length && code[next] == POP){
+                        resumeIps[ip] = next + 1;
+                        discards[ip] = 1;
+                    }else if(depth >= 0){
+                        locals[code[ip + 1] & 0xFF] = TypeSpecializer.Kind.OBJECT;
+                    }
+                }
+            }
+
+            for(int operand = 0; operand < 2; operand++){
+                profiledOperations |= kindOf(profile.operandType(ip, operand)) != TypeSpecializer.Kind.OBJECT;
+            }
+        }
+
+        boolean speculatedLocals = false;
+        for(TypeSpecializer.Kind kind : locals){
+            speculatedLocals |= kind != TypeSpecializer.Kind.OBJECT;
+        }
+
+        if(!speculatedLocals && !profiledOperations){
+            return null;
+        }
+        return new Speculation(tier, profile, locals, resumeIps, discards);
+    }
+
+    public TieredMethod getTier(){
+        return tier;
+    }
+
+    /**
+     * The kind a local is speculated to hold, or OBJECT if it isn't speculated on.
+     */
+    public TypeSpecializer.Kind localKind(int index){
+        return index >= 0 && index < locals.length ? locals[index] : TypeSpecializer.Kind.OBJECT;
+    }
+
+    /**
+     * The kind the operand of the operation at ip always had, or OBJECT if it had no single primitive type.
+     */
+    public TypeSpecializer.Kind operandKind(int ip, int operand){
+        return kindOf(profile.operandType(ip, operand));
+    }
+
+    /**
+     * The ip to resume interpreting at if the store to a speculated local at ip gets a value of another type.
+     */
+    public int resumeIp(int ip){
+        return resumeIps[ip];
+    }
+
+    /**
+     * The number of stack entries below the stored value that are discarded to resume at resumeIp().
+     */
+    public int discards(int ip){
+        return discards[ip];
+    }
+
+    public int getFrameSize(){
+        return locals.length;
+    }
+
+    public static TypeSpecializer.Kind kindOf(Class<?> type){
+        if(type == Integer.class){
+            return TypeSpecializer.Kind.INT;
+        }else if(type == Float.class){
+            return TypeSpecializer.Kind.FLOAT;
+        }else if(type == Boolean.class){
+            return TypeSpecializer.Kind.BOOLEAN;
+        }
+        return TypeSpecializer.Kind.OBJECT;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package chipmunk.vm.jvm;
+
+import chipmunk.binary.BinaryMethod;
+import chipmunk.binary.BinaryModule;
+import chipmunk.vm.ModuleLoader;
+
+import java.lang.invoke.*;
+import java.util.Arrays;
+
+/**
+ * A Chipmunk method compiled in tiers. The method's JVM class holds only a stub that calls through
+ * this method's call site. The call site starts out running the method in a BytecodeInterpreter, and
+ * counts invocations and loop back jumps. Once the count reaches the tier threshold the method body is
+ * compiled into a class of its own and the call site is retargeted to it, so later calls run compiled
+ * code directly. Interpreted invocations that are still looping when this happens move to the compiled
+ * code at their next loop back jump (on-stack replacement).
+ *
+ * The interpreter profiles the types the method sees, and the method is compiled to speculate on them
+ * (see Speculation). If a speculation turns out to be wrong the compiled code deoptimizes: the invocation
+ * is finished by the interpreter, the call site goes back to interpreting, and the method is recompiled
+ * from its updated profile once it reaches the threshold again. After MAX_DEOPTIMIZATIONS the method is
+ * compiled without speculating.
+ */
+public class TieredMethod {
+
+    public static final String BOOTSTRAP_METHOD = "bootstrap";
+
+    /**
+     * Name of the compiled method's static entry point, taking the receiver followed by the method's
+     * arguments.
+     */
+    public static final String ENTRY_METHOD = "invoke";
+
+    /**
+     * Name of the compiled method's static on-stack replacement entry point, taking the interpreted
+     * invocation's locals and the ip of the loop header to resume at.
+     */
+    public static final String OSR_METHOD = "osr";
+
+    public static final String BOOTSTRAP_DEOPTIMIZATION_METHOD = "bootstrapDeoptimization";
+
+    public static final int MAX_DEOPTIMIZATIONS = 4;
+
+    protected static final MethodHandle INTERPRET;
+    protected static final MethodHandle DEOPTIMIZE;
+
+    static {
+        try {
+            INTERPRET = MethodHandles.lookup().findVirtual(TieredMethod.class, "interpret",
+                    MethodType.methodType(Object.class, Object[].class));
+            DEOPTIMIZE = MethodHandles.lookup().findVirtual(TieredMethod.class, "deoptimize",
+                    MethodType.methodType(Object.class, Object[].class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected final JvmCompiler compiler;
+    protected final BinaryModule module;
+    protected final ModuleLoader loader;
+    protected final String packagePrefix;
+    protected final String id;
+    protected final String ownerName;
+    protected final String name;
+    protected final BinaryMethod method;
+    protected final int threshold;
+
+    protected int count;
+    protected volatile boolean failed;
+    protected volatile MutableCallSite site;
+    protected volatile BytecodeInterpreter interpreter;
+    protected volatile MethodHandle compiledEntry;
+    protected volatile MethodHandle osrEntry;
+    protected volatile boolean speculative;
+    protected volatile int deoptimizations;
+    protected int compilations;
+
+    public TieredMethod(JvmCompiler compiler, JvmCompilation compilation, String id, String ownerName, String name, BinaryMethod method){
+        this.compiler = compiler;
+        module = compilation.getModule();
+        loader = compilation.getLoader();
+        packagePrefix = compilation.getPackagePrefix();
+        this.id = id;
+        this.ownerName = ownerName;
+        this.name = name;
+        this.method = method;
+        threshold = compilation.getConfig().getTierThreshold();
+    }
+
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType callType, String id){
+        return forId(lookup, id).link(lookup, callType);
+    }
+
+    public static MethodType bootstrapType(){
+        return MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class, String.class);
+    }
+
+    /**
+     * Links a call site that speculative compiled code deoptimizes through, taking the frame and the ip to
+     * resume at. Call sites are used rather than constants because the JIT treats a call site that has never
+     * been linked as a rare path, while it won't compile a method with a constant that has never been resolved.
+     */
+    public static CallSite bootstrapDeoptimization(MethodHandles.Lookup lookup, String name, MethodType callType, String id){
+        return new ConstantCallSite(DEOPTIMIZE.bindTo(forId(lookup, id)).asType(callType));
+    }
+
+    protected static TieredMethod forId(MethodHandles.Lookup lookup, String id){
+        TieredMethod method = lookup.lookupClass().getClassLoader() instanceof ChipmunkClassLoader loader
+                ? loader.getTieredMethod(id)
+                : null;
+
+        if(method == null){
+            throw new IllegalStateException("No tiered method is registered for " + id);
+        }
+        return method;
+    }
+
+    protected synchronized CallSite link(MethodHandles.Lookup lookup, MethodType callType){
+        if(site == null){
+            interpreter = new BytecodeInterpreter(this, lookup);
+            site = new MutableCallSite(callType);
+            site.setTarget(interpreterTarget(callType));
+        }
+        return site;
+    }
+
+    protected MethodHandle interpreterTarget(MethodType callType){
+        return INTERPRET.bindTo(this)
+                .asCollector(Object[].class, callType.parameterCount())
+                .asType(callType);
+    }
+
+    /**
+     * The name the method is registered under with its class loader.
+     */
+    public String getId(){
+        return id;
+    }
+
+    /**
+     * The qualified name of the module or class that the method belongs to.
+     */
+    public String getOwnerName(){
+        return ownerName;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public BinaryMethod getMethod(){
+        return method;
+    }
+
+    /**
+     * True once the method has been called at least once.
+     */
+    public boolean isLinked(){
+        return site != null;
+    }
+
+    public boolean isCompiled(){
+        return compiledEntry != null;
+    }
+
+    /**
+     * True if the method's current compiled code speculates on profiled types.
+     */
+    public boolean isSpeculative(){
+        return compiledEntry != null && speculative;
+    }
+
+    /**
+     * The number of times compiled code for the method has been discarded because a speculation failed.
+     */
+    public int getDeoptimizations(){
+        return deoptimizations;
+    }
+
+    /**
+     * The types observed by the method's interpreted invocations so far, or null if it hasn't been called.
+     */
+    public TypeProfile getProfile(){
+        BytecodeInterpreter interpreter = this.interpreter;
+        return interpreter != null ? interpreter.getProfile() : null;
+    }
+
+    /**
+     * The number of times the method has been compiled. This is more than once if the method was
+     * recompiled after deoptimizing.
+     */
+    public synchronized int getCompilations(){
+        return compilations;
+    }
+
+    /**
+     * The number of interpreted invocations and back jumps counted towards the tier threshold.
+     */
+    public int getCount(){
+        return count;
+    }
+
+    public int getThreshold(){
+        return threshold;
+    }
+
+    protected Object interpret(Object[] args) throws Throwable {
+        // Read once - the compiled code may be discarded by a deoptimization at any time
+        MethodHandle entry = countTowardsThreshold() ? compiledEntry : null;
+        if(entry != null){
+            return (Object) entry.invokeExact(args);
+        }
+        return interpreter.execute(args);
+    }
+
+    /**
+     * Counts an interpreted invocation or back jump, compiling the method if that reaches the threshold.
+     * Returns true if the method is compiled. The count is deliberately unsynchronized - an occasional
+     * lost update only delays compilation.
+     */
+    protected boolean countTowardsThreshold(){
+        if(compiledEntry != null){
+            return true;
+        }
+        if(failed || ++count < threshold){
+            return false;
+        }
+        return promote();
+    }
+
+    protected synchronized boolean promote(){
+        if(compiledEntry != null || failed){
+            return compiledEntry != null;
+        }
+
+        try{
+            JvmCompilation compilation = new JvmCompilation(module, loader, compiler.getConfig());
+            compilation.setPackagePrefix(packagePrefix);
+
+            Speculation speculation = compiler.getConfig().isTypeSpeculation() && deoptimizations < MAX_DEOPTIMIZATIONS
+                    ? Speculation.of(this, interpreter)
+                    : null;
+
+            Class<?> tier = compiler.compileTier(compilation, this, interpreter.getOsrEntries(), speculation);
+            compilations++;
+
+            int paramCount = site.type().parameterCount();
+            Class<?>[] pTypes = new Class<?>[paramCount];
+            Arrays.fill(pTypes, Object.class);
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle entry = lookup.unreflect(tier.getMethod(ENTRY_METHOD, pTypes));
+            if(interpreter.hasOsrEntries()){
+                osrEntry = lookup.unreflect(tier.getMethod(OSR_METHOD, Object[].class, int.class));
+            }
+            speculative = speculation != null;
+            compiledEntry = entry.asSpreader(Object[].class, paramCount);
+
+            site.setTarget(entry.asType(site.type()));
+        }catch(RuntimeException | LinkageError | ReflectiveOperationException e){
+            // The method stays interpreted - it behaves the same, only slower
+            failed = true;
+        }
+
+        return compiledEntry != null;
+    }
+
+    /**
+     * Resumes an interpreted invocation in compiled code at the loop header at ip, with the given locals.
+     * The interpreter's operand stack must be empty.
+     */
+    protected Object enterCompiled(Object[] locals, int ip) throws Throwable {
+        MethodHandle osr = osrEntry;
+        if(osr == null){
+            // Deoptimized since the interpreter checked
+            return interpreter.resume(locals, ip);
+        }
+        return (Object) osr.invokeExact(locals, ip);
+    }
+
+    protected boolean canEnterCompiled(){
+        return osrEntry != null;
+    }
+
+    /**
+     * Called by speculative compiled code when a speculation fails. Discards the compiled code and finishes
+     * the invocation in the interpreter, resuming at ip with the given locals and an empty operand stack.
+     * Locals missing from the end of the frame have their default values.
+     */
+    protected Object deoptimize(Object[] frame, int ip) throws Throwable {
+        synchronized(this){
+            if(speculative && compiledEntry != null){
+                deoptimizations++;
+                compiledEntry = null;
+                osrEntry = null;
+                speculative = false;
+                count = 0;
+                site.setTarget(interpreterTarget(site.type()));
+            }
+        }
+
+        // The values that failed the speculation are in the frame, so the recompiled code won't repeat it
+        TypeProfile profile = interpreter.getProfile();
+        for(int i = 0; i < frame.length; i++){
+            profile.recordLocal(i, frame[i]);
+        }
+        return interpreter.resume(frame, ip);
+    }
+
+    @Override
+    public String toString(){
+        return "%s.%s: count %d/%d, compiled %b, speculative %b, deoptimizations %d".formatted(
+                ownerName, name, count, threshold, isCompiled(), isSpeculative(), deoptimizations);
+    }
+}
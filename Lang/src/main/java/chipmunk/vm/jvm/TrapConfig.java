@@ -27,11 +27,33 @@ import java.util.Set;
 public class TrapConfig {
 
     protected final Set<TrapFlag> enabledTraps;
+    protected volatile int backJumpBudget;
 
     public TrapConfig(){
         enabledTraps = new HashSet<>();
     }
 
+    /**
+     * Sets the number of back jumps a method invocation may make between BACK_JUMP traps. With a budget
+     * the generated code counts back jumps in a local and only calls the trap handler (and the scheduler)
+     * when the count runs out, rather than on every loop iteration. 0 disables budgeting, and every back
+     * jump traps.
+     */
+    public void setBackJumpBudget(int budget){
+        if(budget < 0){
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+        backJumpBudget = budget;
+    }
+
+    public int getBackJumpBudget(){
+        return backJumpBudget;
+    }
+
+    public boolean isBudgeted(){
+        return backJumpBudget > 0;
+    }
+
     public void enable(TrapFlag flag){
         enabledTraps.add(flag);
     }
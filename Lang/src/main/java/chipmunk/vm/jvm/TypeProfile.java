@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package chipmunk.vm.jvm;
+
+/**
+ * Records the classes of the values seen by an interpreted method: the values stored in each local, and the
+ * operands of each profiled operation, by the ip of the operation. Each position settles on the single class
+ * it has seen, or becomes polymorphic once it sees a second. Null values are recorded as Object, so they
+ * never look like a specializable type. Recording is unsynchronized, so concurrent invocations may lose the
+ * occasional observation.
+ */
+public class TypeProfile {
+
+    protected static final Class<?> POLYMORPHIC = TypeProfile.class;
+
+    protected final Class<?>[] locals;
+    protected final Class<?>[][] operands;
+
+    public TypeProfile(int localCount, int codeLength){
+        locals = new Class<?>[localCount];
+        operands = new Class<?>[codeLength][];
+    }
+
+    public void recordLocal(int index, Object value){
+        locals[index] = merge(locals[index], value);
+    }
+
+    /**
+     * Records the top count entries of the stack as the operands of the operation at ip.
+     */
+    public void recordOperands(int ip, Object[] stack, int sp, int count){
+        Class<?>[] seen = operands[ip];
+        if(seen == null){
+            seen = new Class<?>[count];
+            operands[ip] = seen;
+        }
+
+        int base = sp - count;
+        for(int i = 0; i < count; i++){
+            seen[i] = merge(seen[i], stack[base + i]);
+        }
+    }
+
+    /**
+     * The only class of value stored in the local, or null if the local is unprofiled or polymorphic.
+     */
+    public Class<?> localType(int index){
+        return monomorphic(locals[index]);
+    }
+
+    /**
+     * The only class seen for the operand of the operation at ip, or null if the operation is unprofiled
+     * or the operand polymorphic.
+     */
+    public Class<?> operandType(int ip, int operand){
+        Class<?>[] seen = operands[ip];
+        return seen != null && operand < seen.length ? monomorphic(seen[operand]) : null;
+    }
+
+    protected static Class<?> merge(Class<?> seen, Object value){
+        Class<?> type = value != null ? value.getClass() : Object.class;
+        if(seen == null){
+            return type;
+        }
+        return seen == type ? seen : POLYMORPHIC;
+    }
+
+    protected static Class<?> monomorphic(Class<?> seen){
+        return seen == POLYMORPHIC ? null : seen;
+    }
+}
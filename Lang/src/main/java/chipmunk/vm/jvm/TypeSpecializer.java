@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.jvm;
+
+import chipmunk.binary.BinaryMethod;
+import chipmunk.binary.BinaryNamespace;
+import chipmunk.binary.ExceptionBlock;
+import chipmunk.binary.LocalType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static chipmunk.compiler.assembler.Opcodes.*;
+
+/**
+ * Tracks which values on the JVM operand stack are unboxed primitives while a Chipmunk
+ * method is being compiled, and decides where primitive values can stay unboxed.
+ *
+ * Values only become unboxed primitives when their type is proven: numeric constants,
+ * locals that the compiler inferred as Int or Float, and the results of specialized operations
+ * on those. A primitive value is only left unboxed if a forward scan shows that it will be consumed
+ * by an instruction that can use it directly before any control flow merge. Everything else sees
+ * boxed values exactly as it would without specialization, so entries below the tracked region of
+ * the stack are always boxed objects.
+ *
+ * When a method is compiled with a Speculation, locals that it speculates on are treated as typed locals too.
+ *
+ * When compiling the typed entry of a method with a typed signature, the typed arguments and the return value
+ * are primitives as well. Calls to methods of the same module that have typed entries can take primitive arguments.
+ */
+public class TypeSpecializer {
+
+    public enum Kind {
+        OBJECT,
+        INT,
+        FLOAT,
+        BOOLEAN;
+
+        public boolean isNumeric(){
+            return this == INT || this == FLOAT;
+        }
+    }
+
+    protected final byte[] code;
+    protected final BinaryMethod method;
+    protected final Set<Integer> jumpTargets;
+    protected final List<Kind> stack;
+    protected final Speculation speculation;
+    protected final boolean typedEntry;
+    protected final boolean typedCalls;
+
+    public TypeSpecializer(BinaryMethod method){
+        this(method, null);
+    }
+
+    public TypeSpecializer(BinaryMethod method, Speculation speculation){
+        this(method, speculation, false, false);
+    }
+
+    public TypeSpecializer(BinaryMethod method, Speculation speculation, boolean typedEntry, boolean typedCalls){
+        this.method = method;
+        this.speculation = speculation;
+        this.typedEntry = typedEntry;
+        this.typedCalls = typedCalls;
+        code = method.getCode();
+        jumpTargets = new HashSet<>();
+        stack = new ArrayList<>();
+
+        for(int ip = 0; ip < code.length; ip += instructionSize(code[ip])){
+            if(code[ip] == IF || code[ip] == GOTO){
+                jumpTargets.add(fetchInt(ip + 1));
+            }
+        }
+
+        ExceptionBlock[] exceptionTable = method.getExceptionTable();
+        if(exceptionTable != null){
+            for(ExceptionBlock block : exceptionTable){
+                jumpTargets.add(block.startIndex);
+                jumpTargets.add(block.endIndex);
+                jumpTargets.add(block.catchIndex);
+            }
+        }
+    }
+
+    public Kind localKind(int index){
+        if(isSpeculated(index)){
+            return speculation.localKind(index);
+        }
+        if(typedEntry && index > 0 && index < method.getArgCount()){
+            return kindOf(method.getArgType(index));
+        }
+        return kindOf(method.getLocalType(index));
+    }
+
+    /**
+     * The kind of value the method being compiled returns.
+     */
+    public Kind returnKind(){
+        return typedEntry ? kindOf(method.getReturnType()) : Kind.OBJECT;
+    }
+
+    /**
+     * The callee of the CALLMODULE instruction at ip if it can be called through its typed entry, otherwise null.
+     */
+    public BinaryMethod typedCallee(int ip){
+        if(!typedCalls || method.getModule() == null){
+            return null;
+        }
+
+        String name = (String) method.getConstantPool()[fetchInt(ip + 2)];
+        BinaryNamespace.Entry entry = method.getModule().getNamespace().getEntry(name);
+        BinaryMethod callee = entry != null ? entry.getBinaryMethod() : null;
+        if(callee == null || !callee.hasTypedSignature() || callee.getArgCount() != code[ip + 1] + 1){
+            return null;
+        }
+        return callee;
+    }
+
+    /**
+     * True if the local's kind is speculated rather than proven, so stores to it must be guarded.
+     */
+    public boolean isSpeculated(int index){
+        return speculation != null && speculation.localKind(index) != Kind.OBJECT;
+    }
+
+    /**
+     * The speculated kind of an operand of the operation at ip, or OBJECT if there is none.
+     */
+    public Kind speculatedOperand(int ip, int operand){
+        return speculation != null ? speculation.operandKind(ip, operand) : Kind.OBJECT;
+    }
+
+    public Speculation getSpeculation(){
+        return speculation;
+    }
+
+    public boolean hasTypedLocals(){
+        for(int i = 0; i < method.getLocalCount(); i++){
+            if(localKind(i) != Kind.OBJECT){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isJumpTarget(int ip){
+        return jumpTargets.contains(ip);
+    }
+
+    public Kind peek(int depth){
+        int index = stack.size() - 1 - depth;
+        return index >= 0 ? stack.get(index) : Kind.OBJECT;
+    }
+
+    public Kind pop(){
+        return stack.isEmpty() ? Kind.OBJECT : stack.remove(stack.size() - 1);
+    }
+
+    public void pop(int count){
+        for(int i = 0; i < count; i++){
+            pop();
+        }
+    }
+
+    public void push(Kind kind){
+        stack.add(kind);
+    }
+
+    /**
+     * Forget all stack state. Only valid when the stack holds no unboxed values, which is
+     * guaranteed at jump targets and after any instruction that keepUnboxed() does not scan past.
+     */
+    public void reset(){
+        stack.clear();
+    }
+
+    /**
+     * True if the JVM compiler handles the typed stack state for this opcode itself. All other
+     * instructions only ever see boxed operands and are tracked via apply().
+     */
+    public static boolean specializes(byte op){
+        return switch (op) {
+            case ADD, SUB, MUL, DIV, FDIV, MOD, INC, DEC, POS, NEG, NOT, EQ, GT, LT, GE, LE,
+                 PUSH, GETLOCAL, SETLOCAL, DUP, POP, SWAP, IF, RETURN, CALLMODULE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Applies the stack effect of a generic (non-specialized) instruction.
+     */
+    public void apply(int ip){
+        int[] effect = stackEffect(ip);
+        if(effect == null){
+            reset();
+        }else{
+            pop(effect[0]);
+            for(int i = 0; i < effect[1]; i++){
+                push(Kind.OBJECT);
+            }
+        }
+    }
+
+    /**
+     * Determines whether a primitive of the given kind produced just before the instruction at ip
+     * can be left unboxed, i.e. every copy of it is consumed by an instruction that accepts a primitive
+     * of that kind before any jump, jump target, or instruction with an unknown stack effect.
+     */
+    public boolean keepUnboxed(int ip, Kind kind){
+        // Simulated stack: true entries are copies of the value being scanned
+        List<Boolean> sim = new ArrayList<>();
+        sim.add(true);
+        int live = 1;
+
+        while(ip < code.length){
+            if(isJumpTarget(ip)){
+                return false;
+            }
+
+            final byte op = code[ip];
+            switch (op) {
+                case DUP -> {
+                    boolean top = !sim.isEmpty() && sim.get(sim.size() - 1);
+                    sim.add(top);
+                    if(top){
+                        live++;
+                    }
+                }
+                case IF -> {
+                    // Control flow splits here, so the value must be fully consumed by this instruction
+                    boolean top = !sim.isEmpty() && sim.remove(sim.size() - 1);
+                    return top && live == 1 && (kind == Kind.BOOLEAN || kind == Kind.INT);
+                }
+                case RETURN -> {
+                    boolean top = !sim.isEmpty() && sim.remove(sim.size() - 1);
+                    return top && live == 1 && kind == returnKind();
+                }
+                default -> {
+                    int[] effect = stackEffect(ip);
+                    if(effect == null){
+                        return false;
+                    }
+
+                    for(int i = 0; i < effect[0]; i++){
+                        // Entries below the simulated region were on the stack before the value
+                        if(!sim.isEmpty() && sim.remove(sim.size() - 1)){
+                            if(!acceptsPrimitive(ip, kind, i)){
+                                return false;
+                            }
+                            live--;
+                        }
+                    }
+
+                    for(int i = 0; i < effect[1]; i++){
+                        sim.add(false);
+                    }
+                }
+            }
+
+            if(live == 0){
+                return true;
+            }
+
+            ip += instructionSize(op);
+        }
+        return false;
+    }
+
+    /**
+     * True if the instruction at ip accepts a primitive of the given kind as the operand at the given
+     * depth below the top of the stack.
+     */
+    protected boolean acceptsPrimitive(int ip, Kind kind, int depth){
+        return switch (code[ip]) {
+            case ADD, SUB, MUL, DIV, FDIV, MOD, INC, DEC, POS, NEG, EQ, GT, LT, GE, LE -> kind.isNumeric();
+            case NOT -> kind == Kind.BOOLEAN;
+            case SETLOCAL -> localKind(code[ip + 1]) == kind;
+            case POP -> true;
+            case CALLMODULE -> {
+                BinaryMethod callee = typedCallee(ip);
+                int argCount = code[ip + 1];
+                yield callee != null && depth < argCount && kindOf(callee.getArgType(argCount - depth)) == kind;
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * The result kind of a specialized binary operation, or null if the operation cannot
+     * be specialized for these operand kinds. Results match the semantics of the boxed
+     * operations in NativeTypeLib exactly.
+     */
+    public static Kind binaryResult(byte op, Kind a, Kind b){
+        if(!a.isNumeric() || !b.isNumeric()){
+            return null;
+        }
+
+        boolean ints = a == Kind.INT && b == Kind.INT;
+        return switch (op) {
+            case ADD, SUB, MUL -> ints ? Kind.INT : Kind.FLOAT;
+            case DIV -> Kind.FLOAT;
+            case FDIV, MOD -> ints ? Kind.INT : null;
+            // There is no boxed Int/Float comparison, so that ordering can't be specialized
+            case GT, LT, GE, LE -> a == Kind.INT && b == Kind.FLOAT ? null : Kind.BOOLEAN;
+            case EQ -> a == b ? Kind.BOOLEAN : null;
+            default -> null;
+        };
+    }
+
+    public static Kind unaryResult(byte op, Kind a){
+        return switch (op) {
+            case INC, DEC, POS, NEG -> a.isNumeric() ? a : null;
+            case NOT -> a == Kind.BOOLEAN ? a : null;
+            default -> null;
+        };
+    }
+
+    public static Kind kindOf(LocalType type){
+        return switch (type) {
+            case INT -> Kind.INT;
+            case FLOAT -> Kind.FLOAT;
+            default -> Kind.OBJECT;
+        };
+    }
+
+    /**
+     * Returns {pops, pushes} for the instruction at ip, or null if the instruction's effect on the
+     * stack is not tracked.
+     */
+    protected int[] stackEffect(int ip){
+        return switch (code[ip]) {
+            case PUSH, GETLOCAL, GETUPVALUE, LIST, MAP, GETMODULE, GETSELFATTR -> new int[]{0, 1};
+            case POP, SETLOCAL -> new int[]{1, 0};
+            case INC, DEC, POS, NEG, NOT, TRUTH, ITER, GETATTR, SETSELFATTR -> new int[]{1, 1};
+            case ADD, SUB, MUL, DIV, FDIV, MOD, POW, BXOR, BAND, BOR, LSHIFT, RSHIFT, URSHIFT,
+                 EQ, GT, LT, GE, LE, IS, INSTANCEOF, AS, GETAT, SETATTR -> new int[]{2, 1};
+            case SETAT -> new int[]{3, 1};
+            case CALL, CALLAT, CALLMODULE -> new int[]{code[ip + 1] + 1, 1};
+            default -> null;
+        };
+    }
+
+    public static int instructionSize(byte op){
+        return switch (op) {
+            case GETLOCAL, SETLOCAL, CALL, RANGE, INITUPVALUE, INITCONFINEDUPVALUE, GETUPVALUE, SETUPVALUE -> 2;
+            case SETATTR, GETATTR, SETSELFATTR, GETSELFATTR, IF, GOTO, PUSH, LIST, MAP, BIND -> 5;
+            case CALLAT, CALLMODULE -> 6;
+            default -> 1;
+        };
+    }
+
+    protected int fetchInt(int ip){
+        int b1 = code[ip] & 0xFF;
+        int b2 = code[ip + 1] & 0xFF;
+        int b3 = code[ip + 2] & 0xFF;
+        int b4 = code[ip + 3] & 0xFF;
+        return (b1 << 24) | (b2 << 16) | (b3 << 8) | b4;
+    }
+}
@@ -58,6 +58,12 @@ public class FileModuleLocator implements ModuleLocator {
 
     @Override
     public InputStream locate(String moduleName) throws IOException {
+        Path path = locateFile(moduleName);
+        return path != null ? Files.newInputStream(path) : null;
+    }
+
+    @Override
+    public Path locateFile(String moduleName) {
 
         if(!moduleName.endsWith(BINARY_FILE_EXTENSION)){
             moduleName = moduleName + BINARY_FILE_EXTENSION;
@@ -66,7 +72,7 @@ public class FileModuleLocator implements ModuleLocator {
         for(Path dirPath : paths){
             Path path = dirPath.resolve(moduleName);
             if(Files.exists(path)){
-                return Files.newInputStream(path);
+                return path;
             }
         }
         return null;
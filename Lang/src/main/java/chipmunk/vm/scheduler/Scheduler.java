@@ -21,17 +21,46 @@
 package chipmunk.vm.scheduler;
 
 import chipmunk.vm.ChipmunkScript;
+import chipmunk.vm.jvm.ForcedYieldThrowable;
 
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Preemptive time-slice scheduler for script invocations. The scheduling thread periodically checks the
+ * running invocations. Invocations that have used up their time slice are marked for preemption, and
+ * invocations that have exceeded their script's run limit are marked to be stopped. Asking a script to
+ * yield marks each of its running invocations to be stopped. Each invocation is tracked separately, so a script invoked several times at once
+ * has a time slice and run limit per invocation.
+ *
+ * Scripts act on this at checkpoints, which are compiled into scripts via the BACK_JUMP and METHOD_CALL
+ * traps. A preempted script calls Thread.yield() and starts a new time slice. This is only a hint to the
+ * JVM: it gives other threads waiting to run - on the VM's executor, other virtual threads waiting for a
+ * carrier - a chance to be scheduled, but makes no ordering or fairness guarantee between scripts. A stopped
+ * script is unwound with a ForcedYieldThrowable. Scripts compiled without either trap never reach a
+ * checkpoint and are not preempted.
+ */
 public class Scheduler {
 
-    protected final ConcurrentHashMap<Long, ScriptInvocation> invocations;
+    public static final long DEFAULT_TIME_SLICE = TimeUnit.MILLISECONDS.toNanos(10);
+    public static final long DEFAULT_TICK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    protected final Set<ScriptInvocation> invocations;
+    protected final ThreadLocal<ScriptInvocation> currentInvocation;
     protected final Thread schedulingThread;
 
+    protected volatile long defaultTimeSlice;
+    protected volatile long tickInterval;
+
     public Scheduler(){
-        invocations = new ConcurrentHashMap<>();
+        invocations = ConcurrentHashMap.newKeySet();
+        currentInvocation = new ThreadLocal<>();
         schedulingThread = new Thread(this::schedule, "Chipmunk Scheduler");
+
+        defaultTimeSlice = DEFAULT_TIME_SLICE;
+        tickInterval = DEFAULT_TICK_INTERVAL;
     }
 
     public void start(){
@@ -42,29 +71,191 @@ public class Scheduler {
         schedulingThread.interrupt();
     }
 
-    public void notifyQueuedForInvocation(ChipmunkScript script){
-        invocations.putIfAbsent(script.getId(), new ScriptInvocation(script));
+    /**
+     * Sets the time slice used for scripts that don't set their own.
+     */
+    public void setDefaultTimeSlice(long timeSlice, TimeUnit unit){
+        if(timeSlice <= 0){
+            throw new IllegalArgumentException("Time slice must be positive");
+        }
+        defaultTimeSlice = unit.toNanos(timeSlice);
+    }
+
+    public long getDefaultTimeSlice(){
+        return defaultTimeSlice;
+    }
+
+    /**
+     * Sets how often the scheduling thread checks running invocations. This bounds how precisely
+     * time slices and run limits are enforced.
+     */
+    public void setTickInterval(long interval, TimeUnit unit){
+        if(interval <= 0){
+            throw new IllegalArgumentException("Tick interval must be positive");
+        }
+        tickInterval = unit.toNanos(interval);
+    }
+
+    public long getTickInterval(){
+        return tickInterval;
     }
 
-    public void notifyInvocationBegan(ChipmunkScript script){
-        invocations.compute(script.getId(), (k, invocation) -> {
-            if(invocation == null){
-                invocation = new ScriptInvocation(script);
+    /**
+     * Returns one of the script's invocations, preferring a running one, or null if the script has
+     * no queued or running invocations.
+     */
+    public ScriptInvocation getInvocation(ChipmunkScript script){
+        ScriptInvocation found = null;
+        for(ScriptInvocation invocation : invocations){
+            if(invocation.getScript() == script){
+                if(invocation.isRunning()){
+                    return invocation;
+                }
+                found = invocation;
             }
-            invocation.setStartTime(System.nanoTime());
-            return invocation;
-        });
+        }
+        return found;
+    }
+
+    public List<ScriptInvocation> getInvocations(ChipmunkScript script){
+        return invocations.stream()
+                .filter(i -> i.getScript() == script)
+                .toList();
+    }
+
+    /**
+     * Returns the invocation running on the calling thread, or null if the thread isn't running one.
+     */
+    public ScriptInvocation getCurrentInvocation(){
+        return currentInvocation.get();
+    }
+
+    public ScriptInvocation notifyQueuedForInvocation(ChipmunkScript script){
+        ScriptInvocation invocation = new ScriptInvocation(script);
+        invocations.add(invocation);
+        return invocation;
     }
 
-    public void notifyInvocationEnded(ChipmunkScript script){
-        invocations.remove(script.getId());
+    /**
+     * Starts a new invocation of the script on the calling thread.
+     */
+    public ScriptInvocation notifyInvocationBegan(ChipmunkScript script){
+        ScriptInvocation invocation = new ScriptInvocation(script);
+        notifyInvocationBegan(invocation);
+        return invocation;
+    }
+
+    /**
+     * Starts a queued invocation on the calling thread. The invocation becomes the thread's current
+     * invocation until it ends, after which the thread's enclosing invocation (if any) is current again.
+     */
+    public void notifyInvocationBegan(ScriptInvocation invocation){
+        invocation.setEnclosing(currentInvocation.get());
+        invocations.add(invocation);
+        invocation.begin(System.nanoTime());
+        currentInvocation.set(invocation);
+    }
+
+    /**
+     * Stops tracking the invocation. Ending an invocation more than once has no further effect.
+     */
+    public void notifyInvocationEnded(ScriptInvocation invocation){
+        invocations.remove(invocation);
+        if(currentInvocation.get() == invocation){
+            currentInvocation.set(invocation.getEnclosing());
+        }
+    }
+
+    /**
+     * Stops tracking all of the script's invocations.
+     */
+    public void notifyScriptDisposed(ChipmunkScript script){
+        invocations.removeIf(i -> i.getScript() == script);
+    }
+
+    /**
+     * Asks every running invocation of the script to stop at its next checkpoint. Invocations that
+     * are queued or begin later are not affected.
+     */
+    public void yield(ChipmunkScript script){
+        for(ScriptInvocation invocation : invocations){
+            if(invocation.getScript() == script && invocation.isRunning()){
+                invocation.requestYield();
+            }
+        }
+    }
+
+    /**
+     * Returns true if any of the script's invocations has been asked to yield and hasn't reached a
+     * checkpoint yet.
+     */
+    public boolean isYieldRequested(ChipmunkScript script){
+        for(ScriptInvocation invocation : invocations){
+            if(invocation.getScript() == script && invocation.isYieldRequested()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Withdraws the pending yield requests of the script's invocations.
+     */
+    public void resume(ChipmunkScript script){
+        for(ScriptInvocation invocation : invocations){
+            if(invocation.getScript() == script){
+                invocation.clearYieldRequest();
+            }
+        }
+    }
+
+    /**
+     * Called by a running script at its checkpoints. Stops the calling thread's invocation if it has been
+     * asked to yield or has exceeded the run limit, and yields the thread if the invocation's time
+     * slice is used up.
+     */
+    public void checkpoint(ChipmunkScript script) throws ForcedYieldThrowable {
+        ScriptInvocation invocation = currentInvocation.get();
+        if(invocation == null || invocation.getScript() != script){
+            return;
+        }
+
+        if(invocation.isYieldRequested() || invocation.isStopped()){
+            invocation.clearYieldRequest();
+            throw new ForcedYieldThrowable();
+        }
+
+        if(invocation.isPreempted()){
+            invocation.countPreemption();
+            Thread.yield();
+            invocation.startSlice(System.nanoTime());
+        }
+    }
+
+    protected long timeSliceFor(ChipmunkScript script){
+        long timeSlice = script.getTimeSlice();
+        return timeSlice > 0 ? timeSlice : defaultTimeSlice;
     }
 
     private void schedule(){
         while(!Thread.interrupted()){
-            // TODO - yield scripts that have run for too long
+            long now = System.nanoTime();
+            for(ScriptInvocation invocation : invocations){
+                if(!invocation.isRunning()){
+                    continue;
+                }
+
+                ChipmunkScript script = invocation.getScript();
+                long runLimit = script.getRunLimit();
+                if(runLimit > 0 && now - invocation.getStartTime() > runLimit){
+                    invocation.stop();
+                }else if(now - invocation.getSliceStartTime() > timeSliceFor(script)){
+                    invocation.preempt();
+                }
+            }
+
             try {
-                Thread.sleep(10);
+                TimeUnit.NANOSECONDS.sleep(tickInterval);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -26,7 +26,14 @@ public class ScriptInvocation {
 
     protected volatile long queueTime;
     protected volatile long startTime;
+    protected volatile long sliceStartTime;
+    protected volatile boolean running;
+    protected volatile boolean preempted;
+    protected volatile boolean stopped;
+    protected volatile boolean yieldRequested;
+    protected volatile int preemptions;
     protected final ChipmunkScript script;
+    protected ScriptInvocation enclosing;
 
     public ScriptInvocation(ChipmunkScript script){
         this(System.nanoTime(), script);
@@ -56,4 +63,76 @@ public class ScriptInvocation {
     public ChipmunkScript getScript() {
         return script;
     }
+
+    /**
+     * Returns the invocation that was running on this invocation's thread when it began, if any.
+     */
+    public ScriptInvocation getEnclosing(){
+        return enclosing;
+    }
+
+    public void setEnclosing(ScriptInvocation enclosing){
+        this.enclosing = enclosing;
+    }
+
+    public void begin(long startTime){
+        this.startTime = startTime;
+        sliceStartTime = startTime;
+        preempted = false;
+        stopped = false;
+        yieldRequested = false;
+        running = true;
+    }
+
+    public boolean isRunning(){
+        return running;
+    }
+
+    public long getSliceStartTime(){
+        return sliceStartTime;
+    }
+
+    public void startSlice(long sliceStartTime){
+        this.sliceStartTime = sliceStartTime;
+        preempted = false;
+    }
+
+    public void preempt(){
+        preempted = true;
+    }
+
+    public boolean isPreempted(){
+        return preempted;
+    }
+
+    public void stop(){
+        stopped = true;
+    }
+
+    public boolean isStopped(){
+        return stopped;
+    }
+
+    /**
+     * Asks the invocation to stop at its next checkpoint.
+     */
+    public void requestYield(){
+        yieldRequested = true;
+    }
+
+    public boolean isYieldRequested(){
+        return yieldRequested;
+    }
+
+    public void clearYieldRequest(){
+        yieldRequested = false;
+    }
+
+    protected void countPreemption(){
+        preemptions++;
+    }
+
+    public int getPreemptions(){
+        return preemptions;
+    }
 }
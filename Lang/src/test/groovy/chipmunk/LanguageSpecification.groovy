@@ -209,6 +209,14 @@ class LanguageSpecification extends Specification {
 		result == 3
 	}
 	
+	def "Run ClassOfInstance.chp"(){
+		when:
+		def result = compileAndRun("ClassOfInstance.chp")
+
+		then:
+		result == [true, true]
+	}
+
 	def "Run Polymorphism.chp"(){
 		when:
 		def result = compileAndRun("Polymorphism.chp")
@@ -463,4 +471,12 @@ class LanguageSpecification extends Specification {
 		then:
 		result ==  [5, 3, 3, 15, 3]
 	}
+
+	def "Run TypedArithmetic.chp"(){
+		when:
+		def result = compileAndRun("TypedArithmetic.chp", true)
+
+		then:
+		result == [80, 11.75f, 20.0f, 6, 3, 1, -10, 2.5f, true, true, true, true]
+	}
 }
@@ -24,6 +24,9 @@ import chipmunk.vm.ChipmunkVM
 import chipmunk.compiler.ChipmunkCompiler
 import spock.lang.Specification
 
+import java.nio.file.Files
+import java.nio.file.Paths
+
 class BinaryFormatSpecification  extends Specification {
 
     ChipmunkCompiler compiler = new ChipmunkCompiler()
@@ -48,6 +51,100 @@ class BinaryFormatSpecification  extends Specification {
 
     }
 
+    def "Inferred local types survive write/read"(){
+        when:
+        BinaryModule module = compiler.compile(
+                getClass()
+                        .getResourceAsStream("/chipmunk/TypedArithmetic.chp"),
+                "TypedArithmetic.chp")[0]
+
+        module = writeAndRead(module)
+        BinaryMethod main = module.getNamespace().getEntry("main").getBinaryMethod()
+
+        then:
+        main.getLocalTypes() as List == [LocalType.DYNAMIC, LocalType.INT, LocalType.INT, LocalType.FLOAT,
+                                          LocalType.FLOAT, LocalType.INT, LocalType.DYNAMIC]
+    }
+
+    def "Typed signatures survive write/read"(){
+        when:
+        BinaryModule module = compiler.compile(
+                getClass()
+                        .getResourceAsStream("/chipmunk/TypedSignatures.chp"),
+                "TypedSignatures.chp")[0]
+
+        module = writeAndRead(module)
+        BinaryMethod scale = module.getNamespace().getEntry("scale").getBinaryMethod()
+
+        then:
+        scale.hasTypedSignature()
+        scale.getArgTypes() as List == [LocalType.DYNAMIC, LocalType.FLOAT, LocalType.INT]
+        scale.getReturnType() == LocalType.FLOAT
+    }
+
+    def "Read mapped binary lazily and run"(){
+        setup:
+        BinaryModule module = compiler.compile(
+                getClass()
+                        .getResourceAsStream("/chipmunk/binary/BinaryFeatureTest.chp"),
+                "BinaryFeatureTest.chp")[0]
+
+        def path = Files.createTempFile("BinaryFeatureTest", ".chpb")
+        path.withOutputStream { writer.writeModule(it, module) }
+
+        when:
+        module = reader.readModule(path)
+        def methods = module.getNamespace().getEntries()
+                .findAll { it.getType() == FieldType.METHOD }
+                .collect { it.getBinaryMethod() }
+        def loadedBeforeRun = methods.count { it.isBodyLoaded() }
+
+        def script = vm.compileScript(module)
+        def result = vm.runAsync(script).get()
+
+        then:
+        loadedBeforeRun == 0
+        methods.every { it.isBodyLoaded() }
+        result as String == "TheQuickBrownFox"
+
+        cleanup:
+        Files.deleteIfExists(path)
+    }
+
+    def "Read module written in binary version 1.1"(){
+        when:
+        def path = Paths.get(getClass().getResource("/chipmunk/binary/BinaryFeatureTest-1_1.chpb").toURI())
+        BinaryModule fromPath = reader.readModule(path)
+        BinaryModule fromStream = reader.readModule(getClass().getResourceAsStream("/chipmunk/binary/BinaryFeatureTest-1_1.chpb"))
+
+        def result = vm.runAsync(vm.compileScript(fromPath)).get()
+
+        then:
+        result as String == "TheQuickBrownFox"
+        toBytes(fromPath) == toBytes(fromStream)
+    }
+
+    def "Rewriting a read module reproduces its binary"(){
+        setup:
+        BinaryModule module = compiler.compile(
+                getClass()
+                        .getResourceAsStream("/chipmunk/Polymorphism.chp"),
+                "Polymorphism.chp")[0]
+        def bytes = toBytes(module)
+
+        when:
+        def read = reader.readModule(new ByteArrayInputStream(bytes))
+
+        then:
+        toBytes(read) == bytes
+    }
+
+    def toBytes(BinaryModule module){
+        ByteArrayOutputStream os = new ByteArrayOutputStream()
+        writer.writeModule(os, module)
+        return os.toByteArray()
+    }
+
     def writeAndRead(BinaryModule module){
 
         ByteArrayOutputStream os = new ByteArrayOutputStream()
@@ -182,4 +182,86 @@ class ChipmunkLexerSpecification extends Specification {
 		token4.type() == TokenType.IDENTIFIER
 	}
 
+	def "Tokenize operators"(String src, List<TokenType> expect){
+		setup:
+		def lexer = new ChipmunkLexer()
+		def tokens = lexer.lex(src)
+		def types = []
+
+		when:
+		def token = tokens.get()
+		while(token.type() != TokenType.EOF){
+			types.add(token.type())
+			token = tokens.get()
+		}
+
+		then:
+		types == expect
+
+		where:
+		src       || expect
+		"++="     || [TokenType.DOUBLEPLUSEQUALS]
+		"+++"     || [TokenType.DOUBLEPLUS, TokenType.PLUS]
+		">>>="    || [TokenType.TRIPLEMOREQUALS]
+		">>="     || [TokenType.DOUBLEMOREEQUALS]
+		"a..<b"   || [TokenType.IDENTIFIER, TokenType.DOUBLEDOTLESS, TokenType.IDENTIFIER]
+		"1..2"    || [TokenType.INTLITERAL, TokenType.DOUBLEDOT, TokenType.INTLITERAL]
+		"a.b"     || [TokenType.IDENTIFIER, TokenType.DOT, TokenType.IDENTIFIER]
+		".5"      || [TokenType.FLOATLITERAL]
+		"1.5e"    || [TokenType.FLOATLITERAL, TokenType.IDENTIFIER]
+		"0x"      || [TokenType.INTLITERAL, TokenType.IDENTIFIER]
+		"a::b"    || [TokenType.IDENTIFIER, TokenType.DOUBLECOLON, TokenType.IDENTIFIER]
+		"x != y"  || [TokenType.IDENTIFIER, TokenType.EXCLAMATIONEQUALS, TokenType.IDENTIFIER]
+		"\r\n"  || [TokenType.NEWLINE, TokenType.NEWLINE]
+	}
+
+	def "Keywords are only matched as whole words"(String src, TokenType expect){
+		setup:
+		def lexer = new ChipmunkLexer()
+
+		when:
+		def token = lexer.lex(src).get()
+
+		then:
+		token.text() == src
+		token.type() == expect
+
+		where:
+		src          || expect
+		"true"       || TokenType.BOOLLITERAL
+		"trueValue"  || TokenType.IDENTIFIER
+		"false_"     || TokenType.IDENTIFIER
+		"in"         || TokenType.IN
+		"instanceof" || TokenType.INSTANCEOF
+		"input"      || TokenType.IDENTIFIER
+	}
+
+	def "Tokenize strings with escaped quotes"(){
+		setup:
+		def lexer = new ChipmunkLexer()
+
+		when:
+		def tokens = lexer.lex('"say \\"hi\\"" \'it\\\'s\'')
+		def token1 = tokens.get()
+		def token2 = tokens.get()
+
+		then:
+		token1.type() == TokenType.STRINGLITERAL
+		token1.text() == '"say \\"hi\\""'
+		token2.type() == TokenType.STRINGLITERAL
+		token2.text() == "'it\\'s'"
+		tokens.get().type() == TokenType.EOF
+	}
+
+	def "Unterminated string is a syntax error"(){
+		setup:
+		def lexer = new ChipmunkLexer()
+
+		when:
+		lexer.lex('x = "abc')
+
+		then:
+		thrown(SyntaxError)
+	}
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.compiler
+
+import chipmunk.binary.BinaryModule
+import chipmunk.binary.BinaryWriter
+import chipmunk.compiler.imports.ModuleDependencyGraph
+import chipmunk.modules.TestModule
+import chipmunk.modules.imports.JvmImportModule
+import chipmunk.vm.ModuleLoader
+import spock.lang.Specification
+
+class ParallelCompilationSpecification extends Specification {
+
+    static final String CYCLIC_MODULES = """
+        module a
+        import b.y
+        var x = 1
+        def f(){ return y }
+
+        module b
+        import a.*
+        var y = 2
+        def g(){ return x }
+
+        module c
+        import a.f
+        import b.g
+        def main(){ return f() + g() }
+        """.stripIndent()
+
+    def compile(boolean parallel, List<String> scripts, String inline = null){
+        ModuleLoader loader = new ModuleLoader()
+        loader.registerNativeFactory(JvmImportModule.IMPORT_MODULE_NAME, { new JvmImportModule() })
+        loader.registerNativeFactory(TestModule.TEST_MODULE_NAME, { new TestModule() })
+
+        ChipmunkCompiler compiler = new ChipmunkCompiler(loader)
+        compiler.setParallel(parallel)
+
+        Compilation compilation = new Compilation()
+        scripts.each {
+            compilation.addSource(new ChipmunkSource(getClass().getResourceAsStream("/chipmunk/" + it), it))
+        }
+        if(inline != null){
+            compilation.addSource(new ChipmunkSource(new ByteArrayInputStream(inline.getBytes("UTF-8")), "inline.chp"))
+        }
+
+        return compiler.compile(compilation).collect { toBytes(it) }
+    }
+
+    def toBytes(BinaryModule module){
+        def os = new ByteArrayOutputStream()
+        new BinaryWriter().writeModule(os, module)
+        return os.toByteArray()
+    }
+
+    def "Parallel compilation produces the same modules as sequential compilation"(){
+        setup:
+        def scripts = ["ModuleImports.chp", "ModuleStarImport.chp", "ModuleFromImportStar.chp",
+                       "InnerClasses.chp", "Polymorphism.chp", "Upvalues.chp", "TypedArithmetic.chp"]
+
+        when:
+        def sequential = compile(false, scripts)
+        def parallel = (1..10).collect { compile(true, scripts) }
+
+        then:
+        sequential.size() == 10
+        parallel.every { it == sequential }
+    }
+
+    def "Compile mutually importing modules in parallel"(){
+        when:
+        def sequential = compile(false, [], CYCLIC_MODULES)
+        def parallel = compile(true, [], CYCLIC_MODULES)
+
+        then:
+        parallel.size() == 3
+        parallel == sequential
+    }
+
+    def "Parallel compilation reports the first failing module"(){
+        when:
+        compile(true, [], """
+            module a
+            import missing1.x
+            module b
+            import missing2.y
+            """.stripIndent())
+
+        then:
+        def e = thrown(UnresolvedSymbolException)
+        e.message.contains("missing1")
+    }
+
+    def "Dependency graph orders components after their dependencies"(){
+        setup:
+        def compiler = new ChipmunkCompiler()
+        def modules = compiler.parse(compiler.lex(CYCLIC_MODULES), "inline.chp")
+
+        when:
+        def graph = new ModuleDependencyGraph(modules)
+
+        then:
+        graph.getComponents() == [[0, 1], [2]]
+        graph.getComponentDependencies(1) == [0] as Set
+        graph.getDependencies(2) == [0, 1] as Set
+    }
+}
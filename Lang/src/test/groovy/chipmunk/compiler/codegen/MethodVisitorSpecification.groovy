@@ -26,8 +26,10 @@ import chipmunk.compiler.ChipmunkCompiler
 import chipmunk.vm.ChipmunkScript
 import chipmunk.vm.ChipmunkVM
 import chipmunk.compiler.ChipmunkDisassembler
+import chipmunk.compiler.assembler.Opcodes
 import chipmunk.vm.ModuleLoader
 import chipmunk.vm.jvm.CompilationUnit
+import chipmunk.vm.jvm.TypeSpecializer
 import spock.lang.Ignore
 import spock.lang.Specification
 
@@ -334,7 +336,80 @@ class MethodVisitorSpecification extends Specification {
 		result instanceof Integer
 		result == 4
 	}
-	
+
+	def "For loop over inclusive range"(){
+		when:
+		def result = parseAndCall("""
+			def method(){
+				var v1 = 0
+				for(i in 0..4){
+					v1 = v1 + i
+				}
+				return v1
+			}
+			""")
+
+		then:
+		result instanceof Integer
+		result == 10
+	}
+
+	def "For loop over empty ranges"(){
+		when:
+		def result = parseAndCall("""
+			def method(){
+				var v1 = 0
+				for(i in 5..<5){
+					v1 = v1 + 1
+				}
+				for(i in 5..0){
+					v1 = v1 + 1
+				}
+				return v1
+			}
+			""")
+
+		then:
+		result instanceof Integer
+		result == 0
+	}
+
+	def "For loop over range - assigning the loop variable does not change iteration"(){
+		when:
+		def result = parseAndCall("""
+			def method(){
+				var v1 = 0
+				for(i in 0..<3){
+					i = i + 10
+					v1 = v1 + 1
+				}
+				return v1
+			}
+			""")
+
+		then:
+		result instanceof Integer
+		result == 3
+	}
+
+	def "For loop over range with dynamic bound"(){
+		when:
+		def result = parseAndCall("""
+			def method(){
+				var end = def() 3
+				var v1 = 0
+				for(i in 0..end()){
+					v1 = v1 + i
+				}
+				return v1
+			}
+			""")
+
+		then:
+		result instanceof Integer
+		result == 6
+	}
+
 	def "While loop - break"(){
 		when:
 		def result = parseAndCall("""
@@ -418,7 +493,103 @@ class MethodVisitorSpecification extends Specification {
 		result instanceof Integer
 		result == 3
 	}
-	
+
+	def "Lambda call - read-only capture is copied"(){
+		setup:
+		def source = """
+			def method(){
+				var x = 5
+				var v1 = def() x + 1
+				return v1()
+			}
+			"""
+
+		when:
+		def result = parseAndCall(source)
+
+		then:
+		result == 6
+		upvalueOps(compiler.compileMethod(source)).isEmpty()
+	}
+
+	def "Lambda call - captured loop variables are copied per iteration"(){
+		when:
+		def result = parseAndCall("""
+			def method(){
+				var v1 = []
+				for(i in 0..<3){
+					v1.add(def() i)
+				}
+				return [v1[0](), v1[1](), v1[2]()]
+			}
+			""")
+
+		then:
+		result == [0, 1, 2]
+	}
+
+	def "Lambda call - assigned capture in a directly called lambda is confined"(){
+		setup:
+		def source = """
+			def method(){
+				var x = 5
+				var v1 = def(v) {
+					x = v
+				}
+				v1(3)
+				return x
+			}
+			"""
+
+		when:
+		def result = parseAndCall(source)
+		def ops = upvalueOps(compiler.compileMethod(source))
+
+		then:
+		result == 3
+		ops.contains(Opcodes.INITCONFINEDUPVALUE)
+		!ops.contains(Opcodes.INITUPVALUE)
+	}
+
+	def "Lambda call - assigned capture in an escaping lambda is shared"(){
+		setup:
+		def source = """
+			def method(){
+				var x = 5
+				var v1 = def(v) {
+					x = v
+				}
+				var v2 = [v1]
+				v2[0](3)
+				return x
+			}
+			"""
+
+		when:
+		def result = parseAndCall(source)
+
+		then:
+		result == 3
+		upvalueOps(compiler.compileMethod(source)).contains(Opcodes.INITUPVALUE)
+	}
+
+	def upvalueOps(BinaryModule binary){
+		def ops = []
+		binary.getNamespace().getEntries()
+				.findAll { it.getBinaryMethod() != null }
+				.each {
+					byte[] code = it.getBinaryMethod().getCode()
+					int ip = 0
+					while(ip < code.length){
+						if(code[ip] in [Opcodes.INITUPVALUE, Opcodes.INITCONFINEDUPVALUE, Opcodes.GETUPVALUE, Opcodes.SETUPVALUE]){
+							ops.add(code[ip])
+						}
+						ip += TypeSpecializer.instructionSize(code[ip])
+					}
+				}
+		return ops
+	}
+
 	def parseAndCall(String methodBody, String test = ""){
 
 		BinaryModule binary = compiler.compileMethod(methodBody)
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm
+
+import chipmunk.binary.BinaryWriter
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.runtime.ChipmunkModule
+import chipmunk.vm.invoke.ChipmunkLibraries
+import chipmunk.vm.invoke.security.LinkingPolicy
+import chipmunk.vm.jvm.CompiledModuleCache
+import chipmunk.vm.jvm.JvmCompiler
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+class ModuleLoaderSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+    ChipmunkCompiler cc = new ChipmunkCompiler()
+
+    def "Concurrent loads of a module locate and read it once"(){
+        setup:
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/Polymorphism.chp"), "Polymorphism.chp")[0]
+        def os = new ByteArrayOutputStream()
+        new BinaryWriter().writeModule(os, module)
+        def bytes = os.toByteArray()
+
+        def locates = new AtomicInteger()
+        def loader = new ModuleLoader()
+        loader.addLocator({ String name ->
+            locates.incrementAndGet()
+            // Keep the load in flight long enough for the other threads to join it
+            Thread.sleep(50)
+            return name == module.getName() ? new ByteArrayInputStream(bytes) : null
+        } as ModuleLocator)
+
+        def threads = 8
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def loads = (1..threads).collect {
+            executor.submit({
+                start.await()
+                return loader.loadBinary(module.getName())
+            } as Callable)
+        }
+        start.countDown()
+        def loaded = loads.collect { it.get() }
+
+        then:
+        locates.get() == 1
+        loaded.every { it.is(loaded[0]) }
+        loaded[0].getName() == module.getName()
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "Run with import prefetching"(){
+        setup:
+        vm.setImportPrefetching(true)
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/ModuleImports.chp"), "ModuleImports.chp")
+
+        when:
+        def result = vm.runAsync(script).get()
+
+        then:
+        result == 10
+        script.getModulesUnmodifiable().containsKey("foo")
+    }
+
+    def "Concurrent imports of a module wait for it to be initialized"(){
+        setup:
+        def initialized = new AtomicBoolean()
+        def initializations = new AtomicInteger()
+        def module = new ChipmunkModule() {
+            String getName(){ "slow" }
+
+            void initialize(ChipmunkVM vm){
+                initializations.incrementAndGet()
+                Thread.sleep(100)
+                initialized.set(true)
+            }
+        }
+        def loader = new ModuleLoader() {
+            ChipmunkModule load(String moduleName, JvmCompiler compiler, CompiledModuleCache cache, LinkingPolicy policy, ChipmunkLibraries libs){
+                return moduleName == "slow" ? module : null
+            }
+        }
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/ModuleImports.chp"), "ModuleImports.chp")
+        script.setModuleLoader(loader)
+
+        def threads = 8
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def imports = (1..threads).collect {
+            executor.submit({
+                start.await()
+                def imported = vm.getModule(script, "slow")
+                return [imported, initialized.get()]
+            } as Callable)
+        }
+        start.countDown()
+        def results = imports.collect { it.get() }
+
+        then:
+        initializations.get() == 1
+        results.every { it[0].is(module) && it[1] }
+
+        cleanup:
+        executor.shutdown()
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm
+
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.invoke.ChipmunkLinker
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+
+class ScriptFunctionSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+    ChipmunkCompiler cc = new ChipmunkCompiler()
+
+    def load(){
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/ScriptFunctions.chp"), "ScriptFunctions.chp")[0]
+        return vm.load(module)
+    }
+
+    def "Function links once for repeated calls"(){
+        when:
+        def add = vm.lookupFunction(load(), "add", 2)
+        def results = (1..100).collect { add.invoke(it, 1) }
+
+        then:
+        results == (2..101).toList()
+        add.getCallSite().getRelinkCount() == 1
+    }
+
+    def "Untyped parameters do not cause relinking"(){
+        when:
+        def add = vm.lookupFunction(load(), "add", 2)
+
+        then:
+        add.invoke(1, 2) == 3
+        add.invoke(1.5f, 2.0f) == 3.5f
+        add.getCallSite().getRelinkCount() == 1
+    }
+
+    def "Function is invalidated when a trait changes"(){
+        when:
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/ScriptFunctions.chp"), "ScriptFunctions.chp")
+        def speaker = vm.lookupFunction(script, script, "run", 0).invoke()
+        def greet = vm.lookupFunction(script, speaker, "greet", 0)
+        def first = greet.invoke()
+        vm.lookupFunction(script, speaker, "useFarewell", 0).invoke()
+        def second = greet.invoke()
+
+        then:
+        first == "hello"
+        second == "goodbye"
+        greet.getCallSite().getRelinkCount() == 2
+    }
+
+    def "Function checks its arity"(){
+        when:
+        vm.lookupFunction(load(), "add", 2).invoke(1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Overlapping invocations keep their script running"(){
+        when:
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/ScriptFunctions.chp"), "ScriptFunctions.chp")
+        vm.lookupFunction(script, script, "run", 0).invoke()
+        def module = script.getModulesUnmodifiable().get("test")
+        def add = vm.lookupFunction(script, module, "add", 2)
+        def callBack = vm.lookupFunction(script, module, "callBack", 1)
+        def result = callBack.invoke({ -> [add.invoke(1, 2), vm.isRunning(script)] } as Callable)
+
+        then:
+        result == [3, true]
+        !vm.isRunning(script)
+    }
+
+    def "Function restores the calling thread's script and libraries"(){
+        when:
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/ScriptFunctions.chp"), "ScriptFunctions.chp")
+        vm.lookupFunction(script, script, "run", 0).invoke()
+
+        then:
+        ChipmunkScript.getCurrentScript() == null
+        ChipmunkLinker.getLibrariesForThread() == null
+    }
+}
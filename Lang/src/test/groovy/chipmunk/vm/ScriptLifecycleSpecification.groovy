@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm
+
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.jvm.CompilationUnit
+import spock.lang.Specification
+
+class ScriptLifecycleSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+
+    def compileScript(String scriptName){
+        return vm.compileScript(getClass().getResourceAsStream("/chipmunk/" + scriptName), scriptName)
+    }
+
+    def "Run with hidden classes"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setHiddenClasses(true)
+
+        when:
+        def script = compileScript("BoundMethodArgs.chp")
+        def result = vm.runAsync(script).get()
+
+        then:
+        script.getClass().isHidden()
+        result == [11, 10, 14, 11, 11]
+    }
+
+    def "Compile several scripts with one module loader using hidden classes"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setHiddenClasses(true)
+
+        def loader = new ModuleLoader()
+        loader.addToLoaded(new ChipmunkCompiler().compile(getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp").toList())
+
+        def unit = new CompilationUnit()
+        unit.setModuleLoader(loader)
+        unit.setEntryModule("test")
+        unit.setEntryMethodName("main")
+
+        when:
+        def first = vm.compileScript(unit)
+        def second = vm.compileScript(unit)
+
+        then:
+        vm.runAsync(first).get() == 2
+        vm.runAsync(second).get() == 2
+    }
+
+    def "Disposing scripts releases their modules"(){
+        when:
+        def first = compileScript("ModuleState.chp")
+        def second = compileScript("ModuleState.chp")
+        vm.runAsync(first).get()
+        vm.runAsync(second).get()
+
+        first.dispose()
+        def sizeAfterFirst = vm.getModuleCache().size()
+        second.dispose()
+        def sizeAfterSecond = vm.getModuleCache().size()
+
+        then:
+        first.isDisposed()
+        first.getModulesUnmodifiable().isEmpty()
+        sizeAfterFirst == 1
+        sizeAfterSecond == 0
+    }
+
+    def "Disposed scripts can't be run"(){
+        setup:
+        def script = compileScript("ModuleState.chp")
+        script.dispose()
+
+        when:
+        vm.runAsync(script).get()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "Disposed scripts can't be invoked through a function"(){
+        setup:
+        def script = compileScript("ModuleState.chp")
+        def run = vm.lookupFunction(script, script, "run", 0)
+        script.dispose()
+
+        when:
+        run.invoke()
+
+        then:
+        thrown(IllegalStateException)
+        vm.getScheduler().getInvocation(script) == null
+    }
+
+    def "Disposed scripts can't run tasks in the script pool"(){
+        setup:
+        def script = compileScript("ModuleState.chp")
+        script.dispose()
+
+        when:
+        vm.runInScriptPool(script, { -> } as Runnable).get()
+
+        then:
+        thrown(IllegalStateException)
+        vm.getScheduler().getInvocation(script) == null
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke
+
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.ChipmunkVM
+import spock.lang.Specification
+
+class ChipmunkCallSiteSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+    ChipmunkCompiler cc = new ChipmunkCompiler()
+
+    def cleanup(){
+        Binder.setMaxChainDepth(Binder.DEFAULT_MAX_CHAIN_DEPTH)
+    }
+
+    def "Polymorphic call site becomes megamorphic past the chain depth"(){
+        when:
+        Binder.setMaxChainDepth(2)
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/PolymorphicCalling.chp"), "PolymorphicCalling.chp")[0]
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+        def valueSites = Binder.getCallSites().findAll { it.getName() == "value" }
+
+        then:
+        result == 100
+        valueSites.any { it.isMegamorphic() && it.getDispatchTableSize() == 4 }
+        // Once megamorphic the call site stops relinking
+        valueSites.every { it.getRelinkCount() <= 3 }
+    }
+
+    def "Polymorphic call site within the chain depth stays chained"(){
+        when:
+        Binder.setMaxChainDepth(4)
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/PolymorphicCalling.chp"), "PolymorphicCalling.chp")[0]
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+        def site = Binder.getCallSites().find { it.getName() == "value" && it.getMaxChainDepth() == 4 }
+
+        then:
+        result == 100
+        !site.isMegamorphic()
+        site.getChainDepth() == 4
+        site.getRelinkCount() == 4
+    }
+
+    def "Polymorphic field sites become megamorphic past the chain depth"(){
+        when:
+        Binder.setMaxChainDepth(2)
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/PolymorphicFields.chp"), "PolymorphicFields.chp")[0]
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+        def valueSites = Binder.getFieldSites().findAll { it.getName() == "value" && it.getMaxChainDepth() == 2 }
+
+        then:
+        result == 200
+        valueSites.every { it.isMegamorphic() }
+        // Accessors are cached per receiver class, regardless of the value being set
+        valueSites.any { it.getDispatchTableSize() == 4 }
+        valueSites.every { it.getRelinkCount() <= 3 }
+    }
+
+    def "Polymorphic field sites within the chain depth stay chained"(){
+        when:
+        Binder.setMaxChainDepth(4)
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/PolymorphicFields.chp"), "PolymorphicFields.chp")[0]
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+        def valueSites = Binder.getFieldSites().findAll { it.getName() == "value" && it.getMaxChainDepth() == 4 }
+
+        then:
+        result == 200
+        valueSites.size() == 3
+        valueSites.every { !it.isMegamorphic() && it.getChainDepth() == 4 && it.getRelinkCount() == 4 }
+    }
+
+    def "Chain depth must be positive"(){
+        when:
+        Binder.setMaxChainDepth(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
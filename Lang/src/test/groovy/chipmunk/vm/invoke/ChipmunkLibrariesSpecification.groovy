@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm.invoke
+
+import spock.lang.Specification
+
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+
+class DescribingLib implements ChipmunkLibrary {
+
+    static String describe(CharSequence s){
+        return "chars"
+    }
+
+    static String describe(Object o){
+        return "object"
+    }
+
+    static Integer size(Collection<?> c){
+        return c.size()
+    }
+}
+
+class ChipmunkLibrariesSpecification extends Specification {
+
+    ChipmunkLibraries libs = new ChipmunkLibraries()
+    DescribingLib lib = new DescribingLib()
+
+    def setup(){
+        libs.registerLibrary(lib)
+    }
+
+    def "Library methods apply to subclasses and interface implementations"(){
+        expect:
+        libs.getMethod(Object, "describe", [String] as Class[]).invoke("x") == "chars"
+        libs.getMethod(Object, "size", [ArrayList] as Class[]).invoke([1, 2, 3]) == 3
+        libs.hasMethod(ArrayList, "size")
+        !libs.hasMethod(String, "size")
+    }
+
+    def "Object library methods are defaults for other receivers"(){
+        expect:
+        libs.getMethod(Object, "describe", [Integer] as Class[]) == null
+        libs.getDefaultMethod(Object, "describe", [Integer] as Class[]).invoke(1) == "object"
+        libs.getMethod(Object, "describe", [null] as Class[]).invoke(null) == "object"
+        libs.hasMethod(Integer, "describe")
+    }
+
+    def "Unregistered libraries no longer resolve"(){
+        when:
+        libs.unregisterLibrary(lib)
+
+        then:
+        libs.getMethod(Object, "size", [ArrayList] as Class[]) == null
+        libs.getDefaultMethod(Object, "describe", [Integer] as Class[]) == null
+        !libs.hasMethod(String, "describe")
+    }
+
+    def "Calls linked against libraries are invalidated when the libraries change"(){
+        setup:
+        ChipmunkLinker.setLibrariesForThread(libs)
+        def invocation = new ChipmunkLinker().getInvocationHandle(MethodHandles.lookup(), "x",
+                MethodType.methodType(Object), "describe", ["x"] as Object[], false)
+
+        when:
+        def result = invocation.getInvocation().invokeWithArguments("x")
+        libs.unregisterLibrary(lib)
+
+        then:
+        result == "chars"
+        invocation.hasBeenInvalidated()
+        !libs.getInvalidationPoint().hasBeenInvalidated()
+
+        cleanup:
+        ChipmunkLinker.setLibrariesForThread(null)
+    }
+}
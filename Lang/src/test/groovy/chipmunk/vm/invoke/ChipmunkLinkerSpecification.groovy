@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke
+
+import spock.lang.Specification
+
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+
+class GuardTarget {
+
+    Object echo(Object o){
+        return o
+    }
+
+    Object pick(String s){
+        return s
+    }
+
+    Object pick(Integer i){
+        return i
+    }
+
+    Object choose(Object o){
+        return o
+    }
+
+    Object choose(Object a, Object b){
+        return a
+    }
+}
+
+class ChipmunkLinkerSpecification extends Specification {
+
+    ChipmunkLinker linker = new ChipmunkLinker()
+    GuardTarget target = new GuardTarget()
+
+    def guardFor(String method, Object... args){
+        return linker.getInvocationHandle(MethodHandles.lookup(), args[0], MethodType.genericMethodType(args.length), method, args).getGuard()
+    }
+
+    def "Untyped parameters of non-overloaded methods are not guarded"(){
+        when:
+        def guard = guardFor("echo", target, "a")
+
+        then:
+        guard.invokeWithArguments(target, "b")
+        guard.invokeWithArguments(target, 5)
+        guard.invokeWithArguments(target, null)
+        !guard.invokeWithArguments(new Object(), "a")
+        !guard.invokeWithArguments(null, "a")
+    }
+
+    def "Overloaded methods guard every argument"(){
+        when:
+        def guard = guardFor("pick", target, "a")
+
+        then:
+        guard.invokeWithArguments(target, "b")
+        !guard.invokeWithArguments(target, 5)
+        !guard.invokeWithArguments(target, null)
+    }
+
+    def "Null arguments are guarded as null"(){
+        when:
+        def guard = guardFor("choose", target, null)
+
+        then:
+        guard.invokeWithArguments(target, null)
+        !guard.invokeWithArguments(target, 3)
+    }
+}
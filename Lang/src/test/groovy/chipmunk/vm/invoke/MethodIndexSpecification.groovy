@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.invoke
+
+import chipmunk.vm.invoke.security.AllowChipmunkLinkage
+import spock.lang.Specification
+
+import java.lang.invoke.MethodHandles
+
+class IndexTarget {
+
+    Object value(){
+        return 1
+    }
+
+    Object value(Object o){
+        return o
+    }
+
+    @ChipmunkName("renamed")
+    Object original(){
+        return 2
+    }
+
+    @AllowChipmunkLinkage
+    static Object create(){
+        return new IndexTarget()
+    }
+}
+
+class MethodIndexSpecification extends Specification {
+
+    def "Index is shared per class"(){
+        expect:
+        MethodIndex.of(IndexTarget).is(MethodIndex.of(IndexTarget))
+    }
+
+    def "Candidates are grouped by name and arity"(){
+        when:
+        def index = MethodIndex.of(IndexTarget)
+
+        then:
+        index.getCandidates("value").length == 2
+        index.getCandidates("value", 0)*.getParameterTypes()*.length == [0]
+        index.getCandidates("value", 1)*.getParameterTypes()*.length == [1]
+        index.getCandidates("value", 2).length == 0
+        index.getCandidates("missing", 0).length == 0
+    }
+
+    def "Candidates use Chipmunk names"(){
+        when:
+        def index = MethodIndex.of(IndexTarget)
+
+        then:
+        index.getCandidates("original").length == 0
+        index.getCandidates("renamed", 0).length == 1
+    }
+
+    def "Linkage annotations and handles are resolved once"(){
+        when:
+        def create = MethodIndex.of(IndexTarget).getCandidates("create", 0)[0]
+        def handle = create.getHandle(MethodHandles.lookup())
+
+        then:
+        create.isLinkageAnnotated()
+        create.isStatic()
+        handle.is(create.getHandle(MethodHandles.lookup()))
+        handle.invokeWithArguments([null]) instanceof IndexTarget
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm.jvm
+
+import chipmunk.binary.BinaryModule
+import chipmunk.binary.BinaryReader
+import chipmunk.binary.BinaryWriter
+import chipmunk.binary.FieldType
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.ChipmunkVM
+import chipmunk.vm.invoke.security.LinkingPolicy
+import chipmunk.vm.invoke.security.SecurityMode
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class CompiledModuleCacheSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+
+    def compileScript(){
+        return vm.compileScript(getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp")
+    }
+
+    def "Scripts share module classes but not module state"(){
+        when:
+        def first = compileScript()
+        def second = compileScript()
+        def firstResult = vm.runAsync(first).get()
+        def secondResult = vm.runAsync(second).get()
+
+        def firstModule = first.getModulesUnmodifiable().get("test")
+        def secondModule = second.getModulesUnmodifiable().get("test")
+
+        then:
+        firstResult == 2
+        secondResult == 2
+        !firstModule.is(secondModule)
+        firstModule.getClass().is(secondModule.getClass())
+        vm.getModuleCache().size() == 1
+    }
+
+    def "Scripts with different compiler configurations don't share classes"(){
+        when:
+        def first = compileScript()
+        def config = new JvmCompilerConfig(vm.getDefaultLinkPolicy(), new TrapConfig())
+        config.getTrapConfig().enable(TrapFlag.BACK_JUMP)
+        def second = vm.compileScript(vm.createJvmCompiler(config), compileScript().getModuleLoader().getLoadedModules().values() as BinaryModule[])
+        vm.runAsync(first).get()
+        vm.runAsync(second).get()
+
+        then:
+        !first.getModulesUnmodifiable().get("test").getClass().is(second.getModulesUnmodifiable().get("test").getClass())
+        vm.getModuleCache().size() == 2
+    }
+
+    def "Changing the compiler configuration after a load stops classes being shared"(){
+        when:
+        def first = compileScript()
+        vm.runAsync(first).get()
+        vm.getDefaultJvmCompilerConfig().getTrapConfig().enable(TrapFlag.BACK_JUMP)
+        def second = compileScript()
+        vm.runAsync(second).get()
+
+        then:
+        !first.getModulesUnmodifiable().get("test").getClass().is(second.getModulesUnmodifiable().get("test").getClass())
+        vm.getModuleCache().size() == 2
+    }
+
+    def "Scripts with different linking policies don't share classes"(){
+        when:
+        def allowed = vm.compileScript(getClass().getResourceAsStream("/chipmunk/LinkingPolicyCheck.chp"), "LinkingPolicyCheck.chp")
+        def denied = vm.compileScript(getClass().getResourceAsStream("/chipmunk/LinkingPolicyCheck.chp"), "LinkingPolicyCheck.chp")
+        denied.setLinkPolicy(new LinkingPolicy(SecurityMode.DENYING))
+        def allowedResult = vm.runAsync(allowed).get()
+        vm.runAsync(denied).get()
+
+        then:
+        allowedResult == "ABC"
+        def e = thrown(ExecutionException)
+        e.getCause().getCause() instanceof IllegalAccessException
+        vm.getModuleCache().size() == 2
+    }
+
+    def "Cached loads leave method bodies unloaded"(){
+        setup:
+        def module = new ChipmunkCompiler().compile(getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp")[0]
+        def bytes = new ByteArrayOutputStream()
+        new BinaryWriter().writeModule(bytes, module)
+        def read = { new BinaryReader().readModule(new ByteArrayInputStream(bytes.toByteArray())) }
+        def compiler = vm.createDefaultJvmCompiler()
+
+        when:
+        vm.getModuleCache().load(compiler, read(), vm.getDefaultLinkPolicy(), vm.getDefaultLibraries())
+        def second = read()
+        vm.getModuleCache().load(compiler, second, vm.getDefaultLinkPolicy(), vm.getDefaultLibraries())
+        def methods = second.getNamespace().getEntries()
+                .findAll { it.getType() == FieldType.METHOD }
+                .collect { it.getBinaryMethod() }
+
+        then:
+        !methods.isEmpty()
+        methods.every { !it.isBodyLoaded() }
+        vm.getModuleCache().size() == 1
+        CompiledModuleCache.contentHash(read()) == CompiledModuleCache.contentHash(module)
+    }
+
+    def countingCompiler(AtomicInteger compiles, boolean fail){
+        return new JvmCompiler(vm.getDefaultJvmCompilerConfig()) {
+            Class<?> compileModuleClass(JvmCompilation compilation){
+                compiles.incrementAndGet()
+                // Keep the compile in flight long enough for other loads to wait on it
+                Thread.sleep(50)
+                if(fail){
+                    throw new IllegalStateException("Compile failed")
+                }
+                return super.compileModuleClass(compilation)
+            }
+        }
+    }
+
+    def "Concurrent loads of a module compile its class once"(){
+        setup:
+        def module = new ChipmunkCompiler().compile(getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp")[0]
+        def compiles = new AtomicInteger()
+        def compiler = countingCompiler(compiles, false)
+
+        def threads = 8
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def loads = (1..threads).collect {
+            executor.submit({
+                start.await()
+                return vm.getModuleCache().load(compiler, module, vm.getDefaultLinkPolicy(), vm.getDefaultLibraries())
+            } as Callable)
+        }
+        start.countDown()
+        def loaded = loads.collect { it.get() }
+
+        then:
+        compiles.get() == 1
+        loaded.every { it.getClass().is(loaded[0].getClass()) }
+        vm.getModuleCache().size() == 1
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "Failed compiles aren't cached"(){
+        setup:
+        def module = new ChipmunkCompiler().compile(getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp")[0]
+        def compiles = new AtomicInteger()
+
+        when:
+        vm.getModuleCache().load(countingCompiler(compiles, true), module, vm.getDefaultLinkPolicy(), vm.getDefaultLibraries())
+
+        then:
+        thrown(IllegalStateException)
+        vm.getModuleCache().size() == 0
+
+        when:
+        def loaded = vm.getModuleCache().load(countingCompiler(compiles, false), module, vm.getDefaultLinkPolicy(), vm.getDefaultLibraries())
+
+        then:
+        loaded != null
+        compiles.get() == 2
+        vm.getModuleCache().size() == 1
+    }
+}
@@ -20,8 +20,10 @@
 
 package chipmunk.vm.jvm
 
+import chipmunk.binary.BinaryMethod
 import chipmunk.vm.ChipmunkVM
 import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.compiler.assembler.Opcodes
 import spock.lang.Specification
 
 class JvmCompilerSpecification extends Specification {
@@ -39,4 +41,79 @@ class JvmCompilerSpecification extends Specification {
         then:
         result == 10
     }
+
+    def "Calls between module methods are direct"(){
+        when:
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/Fibonacci.chp"), "Fibonacci.chp")[0]
+        def fib = module.getNamespace().getEntry("fib").getBinaryMethod()
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+
+        then:
+        result == 832040
+        opcodes(fib).count { it == Opcodes.CALLMODULE } == 2
+        !opcodes(fib).contains(Opcodes.CALLAT)
+    }
+
+    def "Fields of self are accessed directly"(){
+        when:
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/SetClassAndInstanceVariables.chp"), "SetClassAndInstanceVariables.chp")[0]
+        def foo = module.getNamespace().getEntry("Foo").getBinaryClass()
+        def constructor = foo.getInstanceNamespace().getEntry("\$Foo").getBinaryMethod()
+        def addAgeAndBar = foo.getInstanceNamespace().getEntry("addAgeAndBar").getBinaryMethod()
+        def getBar = foo.getSharedNamespace().getEntry("getBar").getBinaryMethod()
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+
+        then:
+        result == 9
+        opcodes(constructor).contains(Opcodes.SETSELFATTR)
+        !opcodes(constructor).contains(Opcodes.SETATTR)
+        opcodes(addAgeAndBar).contains(Opcodes.GETSELFATTR)
+        opcodes(getBar).contains(Opcodes.GETSELFATTR)
+        !opcodes(getBar).contains(Opcodes.GETATTR)
+    }
+
+    def "Methods with typed signatures have primitive entries"(){
+        when:
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/TypedSignatures.chp"), "TypedSignatures.chp")[0]
+        def fib = module.getNamespace().getEntry("fib").getBinaryMethod()
+        def instance = vm.load(module)
+
+        def result = vm.invoke(instance, "main")
+
+        then:
+        result == [6765, 6.0f, 2.0f]
+        fib.hasTypedSignature()
+        !module.getNamespace().getEntry("main").getBinaryMethod().hasTypedSignature()
+        instance.getClass().getMethod("fib", int.class).getReturnType() == int.class
+        instance.getClass().getMethod("fib", Object.class).getReturnType() == Object.class
+        instance.getClass().getMethod("scale", float.class, int.class).getReturnType() == float.class
+        vm.invoke(instance, "fib", [10] as Object[]) == 55
+        vm.invoke(instance, "fib", [10.0f] as Object[]) == 55.0f
+    }
+
+    def "Methods with unproven returns don't have typed returns"(){
+        when:
+        def module = cc.compile(getClass().getResourceAsStream("/chipmunk/TypedSignatures.chp"), "TypedSignatures.chp")[0]
+        def instance = vm.load(module)
+
+        then:
+        !module.getNamespace().getEntry("half").getBinaryMethod().hasTypedSignature()
+        !module.getNamespace().getEntry("pos").getBinaryMethod().hasTypedSignature()
+        vm.invoke(instance, "half", [3] as Object[]) == 1.5f
+        vm.invoke(instance, "pos", [2] as Object[]) == 2
+        vm.invoke(instance, "pos", [-1] as Object[]) == null
+    }
+
+    def opcodes(BinaryMethod method){
+        def ops = []
+        byte[] code = method.getCode()
+        for(int ip = 0; ip < code.length; ip += TypeSpecializer.instructionSize(code[ip])){
+            ops.add(code[ip])
+        }
+        return ops
+    }
 }
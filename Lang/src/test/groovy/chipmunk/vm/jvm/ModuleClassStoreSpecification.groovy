@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package chipmunk.vm.jvm
+
+import chipmunk.vm.ChipmunkVM
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ModuleClassStoreSpecification extends Specification {
+
+    Path directory = Files.createTempDirectory("chipmunk-classes")
+
+    def cleanup(){
+        directory.toFile().deleteDir()
+    }
+
+    def run(ModuleClassStore store, TrapConfig traps = new TrapConfig(), boolean tiered = false){
+        ChipmunkVM vm = new ChipmunkVM()
+        def config = new JvmCompilerConfig(vm.getDefaultLinkPolicy(), traps)
+        config.setTieredCompilation(tiered)
+        def script = vm.compileScript(vm.createJvmCompiler(config), getClass().getResourceAsStream("/chipmunk/ModuleState.chp"), "ModuleState.chp")
+        script.getModuleLoader().setClassStore(store)
+        return vm.runAsync(script).get()
+    }
+
+    def "Stored module classes are reused by a new VM"(){
+        when:
+        def first = new ModuleClassStore(directory)
+        def firstResult = run(first)
+        def second = new ModuleClassStore(directory)
+        def secondResult = run(second)
+
+        then:
+        firstResult == 2
+        secondResult == 2
+        first.getMisses() == 1
+        first.getHits() == 0
+        second.getMisses() == 0
+        second.getHits() == 1
+    }
+
+    def "Stored module classes are not reused with different traps"(){
+        when:
+        run(new ModuleClassStore(directory))
+
+        def traps = new TrapConfig()
+        traps.enable(TrapFlag.BACK_JUMP)
+        def store = new ModuleClassStore(directory)
+        def result = run(store, traps)
+
+        then:
+        result == 2
+        store.getMisses() == 1
+        store.getHits() == 0
+        Files.list(directory).count() == 2
+    }
+
+    def "Corrupt stored module classes are regenerated"(){
+        when:
+        run(new ModuleClassStore(directory))
+        Files.list(directory).each { Files.write(it, [1, 2, 3] as byte[]) }
+
+        def store = new ModuleClassStore(directory)
+        def result = run(store)
+        def reloaded = new ModuleClassStore(directory)
+        run(reloaded)
+
+        then:
+        result == 2
+        store.getMisses() == 1
+        reloaded.getHits() == 1
+    }
+
+    def "Sandboxed configs store their classes even with tiered compilation enabled"(){
+        when:
+        def traps = new TrapConfig()
+        traps.enable(TrapFlag.BACK_JUMP)
+        def first = new ModuleClassStore(directory)
+        run(first, traps, true)
+        def second = new ModuleClassStore(directory)
+        def result = run(second, traps, true)
+
+        then:
+        result == 2
+        first.getMisses() == 1
+        second.getHits() == 1
+    }
+}
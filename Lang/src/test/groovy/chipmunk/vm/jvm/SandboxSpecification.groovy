@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm.jvm
+
+import chipmunk.vm.ChipmunkVM
+import chipmunk.vm.TrapHandler
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class SandboxSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+    AtomicInteger backJumps = new AtomicInteger()
+
+    def setup(){
+        vm.getDefaultJvmCompilerConfig().getTrapConfig().enable(TrapFlag.BACK_JUMP)
+        vm.setDefaultTrapHandler(new TrapHandler() {
+            @Override
+            void backJump(TrapSite site) {
+                backJumps.incrementAndGet()
+            }
+        })
+    }
+
+    def runCountingLoop(){
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/CountingLoop.chp"), "CountingLoop.chp")
+        return vm.runAsync(script).get()
+    }
+
+    def "Every back jump traps without a budget"(){
+        when:
+        def result = runCountingLoop()
+
+        then:
+        result == 1000
+        backJumps.get() == 1000
+    }
+
+    def "Back jumps only trap when the budget runs out"(){
+        when:
+        vm.getDefaultJvmCompilerConfig().getTrapConfig().setBackJumpBudget(100)
+        def result = runCountingLoop()
+
+        then:
+        result == 1000
+        backJumps.get() == 10
+    }
+
+    def "Budget must not be negative"(){
+        when:
+        new TrapConfig().setBackJumpBudget(-1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ */
+
+package chipmunk.vm.jvm
+
+import chipmunk.compiler.ChipmunkCompiler
+import chipmunk.vm.ChipmunkVM
+import spock.lang.Specification
+
+class TieredCompilationSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+    ChipmunkCompiler cc = new ChipmunkCompiler()
+
+    def setup(){
+        vm.getDefaultJvmCompilerConfig().setTieredCompilation(true)
+    }
+
+    def load(String source){
+        def module = cc.compile(new ByteArrayInputStream(source.getBytes()), "Tiers.chp")[0]
+        return vm.load(module)
+    }
+
+    def tierOf(Object module, String method){
+        return (module.getClass().getClassLoader() as ChipmunkClassLoader).getTieredMethod(method)
+    }
+
+    def "Run #scriptName in tiers with threshold #threshold"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(threshold)
+
+        when:
+        def script = vm.compileScript(getClass().getResourceAsStream("/chipmunk/" + scriptName), scriptName)
+        def result = vm.runAsync(script).get()
+
+        then:
+        result == expected
+
+        where:
+        scriptName             | threshold | expected
+        "Fibonacci.chp"        | 1         | 832040
+        "Fibonacci.chp"        | 100       | 832040
+        "Fibonacci.chp"        | 1000000   | 832040
+        "TryCatch.chp"         | 1         | 2
+        "TryCatch.chp"         | 1000000   | 2
+        "Upvalues.chp"         | 2         | [5, 3, 3, 15, 3]
+        "Polymorphism.chp"     | 2         | 21
+        "BoundMethodArgs.chp"  | 2         | [11, 10, 14, 11, 11]
+        "NestedRangeLoops.chp" | 5         | 9
+        "TypedArithmetic.chp"  | 1000000   | [80, 11.75f, 20.0f, 6, 3, 1, -10, 2.5f, true, true, true, true]
+    }
+
+    def "Methods are compiled once they reach the threshold"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(3)
+        def module = load("""
+            module test
+            def unused(){ return 0 }
+            def add(a, b){ return a + b }
+        """)
+
+        when:
+        def first = vm.invoke(module, "add", [1, 2] as Object[])
+        def interpreted = tierOf(module, "test.add").isCompiled()
+        vm.invoke(module, "add", [1, 2] as Object[])
+        def last = vm.invoke(module, "add", [3, 4] as Object[])
+
+        then:
+        first == 3
+        last == 7
+        !interpreted
+        tierOf(module, "test.add").isCompiled()
+        !tierOf(module, "test.unused").isLinked()
+    }
+
+    def "Interpreted loops continue in compiled code"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(100)
+        def module = load("""
+            module test
+            def main(){
+                var total = 0
+                for(i in 0..1000){
+                    total = total + i
+                }
+                return total
+            }
+        """)
+
+        when:
+        def result = vm.invoke(module, "main")
+
+        then:
+        result == 500500
+        tierOf(module, "test.main").isCompiled()
+        tierOf(module, "test.main").getCount() == 100
+    }
+
+    def "Hot methods are compiled to speculate on profiled types"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(5)
+        def module = load("""
+            module test
+            def sum(n){
+                var total = 0
+                var i = 0
+                while(i < n){
+                    total = total + i
+                    i = i + 1
+                }
+                return total
+            }
+        """)
+
+        when:
+        5.times { vm.invoke(module, "sum", [10] as Object[]) }
+        def result = vm.invoke(module, "sum", [1000] as Object[])
+
+        then:
+        result == 499500
+        tierOf(module, "test.sum").isSpeculative()
+        tierOf(module, "test.sum").getDeoptimizations() == 0
+    }
+
+    def "Failed speculations deoptimize to the interpreter and recompile"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(3)
+        def module = load("""
+            module test
+            def scale(x, f){
+                var r = x * f
+                return r
+            }
+        """)
+
+        when:
+        5.times { vm.invoke(module, "scale", [2, 3] as Object[]) }
+        def speculative = tierOf(module, "test.scale").isSpeculative()
+        def deoptimized = vm.invoke(module, "scale", [2, 1.5f] as Object[])
+        def interpreted = tierOf(module, "test.scale").isCompiled()
+        5.times { vm.invoke(module, "scale", [2, 3] as Object[]) }
+
+        then:
+        speculative
+        deoptimized == 3.0f
+        !interpreted
+        vm.invoke(module, "scale", [4, 0.5f] as Object[]) == 2.0f
+        tierOf(module, "test.scale").isCompiled()
+        tierOf(module, "test.scale").getDeoptimizations() == 1
+        tierOf(module, "test.scale").getCompilations() == 2
+    }
+
+    def "Methods are not speculative when type speculation is disabled"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().setTierThreshold(3)
+        vm.getDefaultJvmCompilerConfig().setTypeSpeculation(false)
+        def module = load("""
+            module test
+            def add(a, b){ return a + b }
+        """)
+
+        when:
+        5.times { vm.invoke(module, "add", [1, 2] as Object[]) }
+
+        then:
+        vm.invoke(module, "add", [1, 2] as Object[]) == 3
+        tierOf(module, "test.add").isCompiled()
+        !tierOf(module, "test.add").isSpeculative()
+    }
+
+    def "Methods are compiled up front when traps are enabled"(){
+        setup:
+        vm.getDefaultJvmCompilerConfig().getTrapConfig().enable(TrapFlag.BACK_JUMP)
+        def module = load("""
+            module test
+            def main(){ return 1 }
+        """)
+
+        expect:
+        vm.invoke(module, "main") == 1
+        tierOf(module, "test.main") == null
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 MyWorld, LLC
+ * All rights reserved.
+ *
+ * This file is part of Chipmunk.
+ *
+ * Chipmunk is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Chipmunk is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Chipmunk.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package chipmunk.vm.scheduler
+
+import chipmunk.vm.ChipmunkVM
+import chipmunk.vm.jvm.ForcedYieldThrowable
+import chipmunk.vm.jvm.TrapFlag
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class SchedulerSpecification extends Specification {
+
+    ChipmunkVM vm = new ChipmunkVM()
+
+    def setup(){
+        vm.getDefaultJvmCompilerConfig().getTrapConfig().enable(TrapFlag.BACK_JUMP)
+        vm.start()
+    }
+
+    def cleanup(){
+        vm.stop()
+    }
+
+    def compileRunaway(){
+        return vm.compileScript(getClass().getResourceAsStream("/chipmunk/RunawayLoop.chp"), "RunawayLoop.chp")
+    }
+
+    @Timeout(10)
+    def "Script exceeding its run limit is forced to yield"(){
+        when:
+        def script = compileRunaway()
+        script.setRunLimit(50, TimeUnit.MILLISECONDS)
+        vm.runAsync(script).get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.getCause().getCause() instanceof ForcedYieldThrowable
+    }
+
+    @Timeout(10)
+    def "Yielded script is stopped at its next checkpoint"(){
+        when:
+        def script = compileRunaway()
+        def result = vm.runAsync(script)
+        Thread.sleep(50)
+        script.yield()
+        result.get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.getCause().getCause() instanceof ForcedYieldThrowable
+        !script.isYielded()
+    }
+
+    @Timeout(10)
+    def "Running script is preempted when its time slice is used"(){
+        when:
+        def script = compileRunaway()
+        script.setTimeSlice(2, TimeUnit.MILLISECONDS)
+        def result = vm.runAsync(script)
+        Thread.sleep(100)
+        def preemptions = vm.getScheduler().getInvocation(script).getPreemptions()
+        script.yield()
+        result.handle { v, t -> t }.get()
+
+        then:
+        preemptions > 0
+    }
+
+    @Timeout(10)
+    def "Concurrent invocations of one script are tracked separately"(){
+        when:
+        def script = compileRunaway()
+        script.setRunLimit(200, TimeUnit.MILLISECONDS)
+        def first = vm.runAsync(script)
+        def second = vm.runAsync(script)
+        Thread.sleep(50)
+        def invocations = vm.getScheduler().getInvocations(script)
+        def results = [first, second].collect { it.handle { v, t -> t }.get() }
+
+        then:
+        invocations.size() == 2
+        invocations.every { it.isRunning() }
+        results.every { it.getCause().getCause() instanceof ForcedYieldThrowable }
+        vm.getScheduler().getInvocations(script).isEmpty()
+    }
+
+    @Timeout(10)
+    def "Yielding a script stops all of its running invocations"(){
+        when:
+        def script = compileRunaway()
+        def first = vm.runAsync(script)
+        def second = vm.runAsync(script)
+        Thread.sleep(50)
+        script.yield()
+        def results = [first, second].collect { it.handle { v, t -> t }.get() }
+
+        then:
+        results.every { it.getCause().getCause() instanceof ForcedYieldThrowable }
+        !script.isYielded()
+    }
+
+    @Timeout(10)
+    def "Yielding a script that isn't running doesn't stop its next invocation"(){
+        when:
+        def script = compileRunaway()
+        script.yield()
+        def result = vm.runAsync(script)
+        Thread.sleep(50)
+        def stillRunning = !result.isDone()
+        script.yield()
+        result.handle { v, t -> t }.get()
+
+        then:
+        stillRunning
+    }
+}